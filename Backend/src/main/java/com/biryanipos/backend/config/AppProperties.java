@@ -4,6 +4,10 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "app")
@@ -16,6 +20,16 @@ public class AppProperties {
   private Security security = new Security();
   private System system = new System();
   private Easebuzz easebuzz = new Easebuzz();
+  private Printing printing = new Printing();
+  private Journal journal = new Journal();
+  private Idempotency idempotency = new Idempotency();
+  private Qr qr = new Qr();
+  private Reporting reporting = new Reporting();
+  private Replica replica = new Replica();
+  private Events events = new Events();
+  private Concurrency concurrency = new Concurrency();
+  private Invoice invoice = new Invoice();
+  private Tracing tracing = new Tracing();
 
   @Data
   public static class Easebuzz {
@@ -58,6 +72,11 @@ public class AppProperties {
     private boolean autoPrintBill = false;
     private String defaultOrderType = "DINE_IN";
     private boolean allowVoidAfterPrint = false;
+    private long deadlineTickMs = 1000; // Resolution of the freeze/overdue timer wheel
+    private int deadlineWheelSize = 512; // Buckets per revolution (one tick each)
+    private int stationCapacity = 4; // Lines one preparation station cooks at once
+    private Map<String, Integer> stationCapacities = new HashMap<>(); // Per-station overrides
+    private long etaRefreshMs = 30000; // Re-projects ETAs as time passes
   }
 
   @Data
@@ -79,5 +98,131 @@ public class AppProperties {
     private int maxBackupHistoryDays = 7;
     private String backupPath = "./backups";
     private boolean enableSoundAlerts = true;
+    private int fullBackupIntervalDays = 7; // Nightly backups are incremental in between
+    private int backupChunkRows = 5000;
+    // Incrementals re-read rows stamped this long before the previous backup
+    // started, covering transactions that were still open while it ran
+    private int backupWatermarkMarginMinutes = 10;
+    private long backupMaxBytesPerSecond = 4L * 1024 * 1024; // 0 = unthrottled
+    private int restoreThreads = 4;
+  }
+
+  @Data
+  public static class Printing {
+    private boolean enabled = false; // Off until real printers are configured
+    private String billPrinter = "counter";
+    private String defaultKotPrinter = "kitchen";
+    // Printer name -> raw TCP (port 9100 style) endpoint
+    private Map<String, Printer> printers = new LinkedHashMap<>();
+    // MenuItem.preparationStation -> printer name
+    private Map<String, String> stationPrinters = new HashMap<>();
+    private int maxAttempts = 8;
+    private long initialBackoffMs = 1000;
+    private long maxBackoffMs = 60000;
+    private long pollIntervalMs = 2000;
+    private int connectTimeoutMs = 2000;
+    private int socketTimeoutMs = 5000;
+    private int dedupeWindowSeconds = 30;
+    private Emulator emulator = new Emulator();
+
+    @Data
+    public static class Printer {
+      private String host = "127.0.0.1";
+      private int port = 9100;
+      private boolean enabled = true;
+    }
+
+    @Data
+    public static class Emulator {
+      private boolean enabled = false;
+      private int port = 9100;
+      private long delayMs = 0; // Simulated print time per job
+      private String outputDir; // Optional: dump received jobs to files
+    }
+  }
+
+  @Data
+  public static class Journal {
+    private boolean enabled = true;
+    private String directory = "./journal";
+    private int segmentSizeMb = 16;
+    private long applyTimeoutMs = 2000; // How long a request waits for the DB before answering 202
+    private long initialRetryBackoffMs = 500;
+    private long maxRetryBackoffMs = 30000;
+  }
+
+  @Data
+  public static class Idempotency {
+    private int ttlMinutes = 1440; // How long a key is remembered in memory
+    private int maxEntries = 10000;
+  }
+
+  @Data
+  public static class Qr {
+    private int cartsPerTablePerMinute = 3; // Cart submissions one table may send
+    private int maxPendingPerTable = 3; // Unconfirmed carts one table may have
+    private int maxPendingCarts = 200; // Staging queue size across all tables
+    private int maxLinesPerCart = 30;
+    private int maxQuantityPerLine = 20;
+    private int cartTtlMinutes = 30; // Unconfirmed carts expire after this
+  }
+
+  @Data
+  public static class Reporting {
+    private int threads = 2; // Reports and exports running at once
+    private int queueCapacity = 10; // Reports waiting for a thread before new ones get 503
+    private int poolSize = 3; // Read-only JDBC connections for reports
+    private double oltpBusyRatio = 0.8; // OLTP pool share in use at which reports hold back
+    private long maxHoldBackMs = 10000; // How long a report waits for the OLTP pool before being shed
+    private String cacheDirectory = "./report-cache"; // Per-day sales figures of closed business days
+    private String jobDirectory = "./report-jobs"; // Artifacts of background report jobs
+    private int maxQueuedJobs = 20; // Queued and running jobs before new ones get 503
+    private int maxJobDays = 731; // Longest range a job may cover
+    private int jobRetentionDays = 7; // Finished jobs and their files are deleted after this
+    private int cubeHistoryDays = 1100; // How far back the sales cube is built from payments
+    private int topSellers = 10; // Ranks per window pushed to /topic/top-sellers
+    private int topSellerCounters = 64; // Space-Saving counters per sketch; more = fewer estimates
+  }
+
+  @Data
+  public static class Replica {
+    private String url; // Read replica JDBC URL; unset = every query goes to the primary
+    private String username;
+    private String password;
+    private int poolSize = 5;
+    private long maxLagSeconds = 5; // Staler than this and reads fall back to the primary
+    private long checkMs = 2000;
+    // Seconds_Behind_Source (or _Master) if present, else the first column
+    private String lagQuery = "SHOW REPLICA STATUS";
+  }
+
+  @Data
+  public static class Events {
+    private int queueCapacity = 10000;
+    private boolean outboxEnabled = false; // Persist side effects (e.g. loyalty) until handled
+    private int outboxRetryAfterSeconds = 30;
+    private int outboxMaxAttempts = 10;
+  }
+
+  @Data
+  public static class Concurrency {
+    private int maxConflictRetries = 3; // Re-runs after an optimistic lock conflict
+    private long conflictBackoffMs = 20; // Scaled by attempt, with jitter
+    private int orderLanes = 0; // Single-writer lanes for order commands; 0 = one per CPU core
+    private int laneQueueCapacity = 256; // Commands waiting per lane before new ones get 503
+  }
+
+  @Data
+  public static class Invoice {
+    private String gstPrefix = "INV"; // Tax invoices
+    private String nonGstPrefix = "BOS"; // Bills of supply
+    private int blockSize = 50; // Numbers reserved per write to invoice_sequences
+  }
+
+  @Data
+  public static class Tracing {
+    private boolean enabled = true; // Server-Timing header on /api responses
+    private long slowRequestMs = 500; // Requests at least this slow go to the slow-request log
+    private String slowLogDirectory = "./logs";
   }
 }
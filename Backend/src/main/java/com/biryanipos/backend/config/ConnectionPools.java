@@ -0,0 +1,180 @@
+package com.biryanipos.backend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// The application's two JDBC pools. Reports, exports and X-reports borrow
+// from a small read-only pool of their own while they run inside
+// reporting(); orders, payments, the KDS and everything else use the OLTP
+// pool, so a month-long sales report cannot hold the connections a waiter
+// needs. With app.replica.url set there is a third pool on the read replica:
+// read-only transactions that accept stale data (reports and @ReplicaRead
+// methods) run there while ReplicaLagMonitor finds it within
+// app.replica.max-lag-seconds, and on the primary otherwise. All of them sit
+// behind one routing DataSource, which is the only DataSource bean, so JPA
+// and the repositories are unchanged.
+public class ConnectionPools implements AutoCloseable {
+
+  private static final ThreadLocal<Boolean> REPORTING = new ThreadLocal<>();
+  private static final ThreadLocal<Boolean> REPLICA_READS = new ThreadLocal<>();
+
+  private final HikariDataSource oltp;
+  private final HikariDataSource reporting;
+  private final HikariDataSource replica;
+  private final AbstractRoutingDataSource routing;
+  private final DataSource dataSource;
+
+  private final long maxLagSeconds;
+  private volatile Long replicaLagSeconds; // null until checked, or when replication is down
+
+  public ConnectionPools(DataSourceProperties properties, Environment environment, AppProperties appProperties) {
+    AppProperties.Reporting config = appProperties.getReporting();
+    oltp = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    // What Boot would bind onto its own pool
+    Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(oltp));
+    oltp.setPoolName("oltp");
+
+    reporting = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    reporting.setPoolName("reporting");
+    reporting.setReadOnly(true);
+    reporting.setMaximumPoolSize(config.getPoolSize());
+    reporting.setMinimumIdle(0); // No connections held between reports
+
+    AppProperties.Replica replicaConfig = appProperties.getReplica();
+    maxLagSeconds = replicaConfig.getMaxLagSeconds();
+    Map<Object, Object> targets = new HashMap<>(Map.of("oltp", oltp, "reporting", reporting));
+    if (replicaConfig.getUrl() != null && !replicaConfig.getUrl().isBlank()) {
+      replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+          .url(replicaConfig.getUrl())
+          .username(replicaConfig.getUsername())
+          .password(replicaConfig.getPassword())
+          .build();
+      replica.setPoolName("replica");
+      replica.setReadOnly(true);
+      replica.setMaximumPoolSize(replicaConfig.getPoolSize());
+      replica.setMinimumIdle(0);
+      targets.put("replica", replica);
+    } else {
+      replica = null;
+    }
+
+    routing = new AbstractRoutingDataSource() {
+      @Override
+      protected Object determineCurrentLookupKey() {
+        return route();
+      }
+    };
+    routing.setTargetDataSources(targets);
+    routing.setDefaultTargetDataSource(oltp);
+    routing.afterPropertiesSet();
+    // Hibernate takes the connection as the transaction begins, before it is
+    // marked read-only; the proxy defers that to the first statement
+    dataSource = replica != null ? new LazyConnectionDataSourceProxy(routing) : routing;
+  }
+
+  public DataSource getDataSource() {
+    return dataSource;
+  }
+
+  public DataSource getReplica() {
+    return replica;
+  }
+
+  // Runs work with every connection it opens taken from the reporting pool
+  public static <T> T reporting(Supplier<T> work) {
+    Boolean previous = REPORTING.get();
+    REPORTING.set(true);
+    try {
+      return work.get();
+    } finally {
+      REPORTING.set(previous);
+    }
+  }
+
+  // While set, read-only transactions this thread starts may use the replica.
+  // Returns the previous value so the caller can restore it.
+  public static Boolean allowReplicaReads(Boolean allowed) {
+    Boolean previous = REPLICA_READS.get();
+    if (allowed == null) {
+      REPLICA_READS.remove();
+    } else {
+      REPLICA_READS.set(allowed);
+    }
+    return previous;
+  }
+
+  public void setReplicaLagSeconds(Long lagSeconds) {
+    replicaLagSeconds = lagSeconds;
+  }
+
+  public boolean isReplicaUsable() {
+    Long lag = replicaLagSeconds;
+    return replica != null && lag != null && lag <= maxLagSeconds;
+  }
+
+  private String route() {
+    boolean reportingThread = Boolean.TRUE.equals(REPORTING.get());
+    boolean staleReadsOk = reportingThread || Boolean.TRUE.equals(REPLICA_READS.get());
+    if (staleReadsOk && TransactionSynchronizationManager.isCurrentTransactionReadOnly() && isReplicaUsable()) {
+      return "replica";
+    }
+    return reportingThread ? "reporting" : "oltp";
+  }
+
+  // Someone is already waiting for an OLTP connection, or nearly all are in use
+  public boolean isOltpBusy(double busyRatio) {
+    HikariPoolMXBean pool = oltp.getHikariPoolMXBean();
+    if (pool == null) {
+      return false; // Not started yet
+    }
+    return pool.getThreadsAwaitingConnection() > 0
+        || pool.getActiveConnections() >= Math.max(1, busyRatio * oltp.getMaximumPoolSize());
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("oltp", stats(oltp));
+    stats.put("reporting", stats(reporting));
+    if (replica != null) {
+      Map<String, Object> replicaStats = stats(replica);
+      replicaStats.put("lagSeconds", replicaLagSeconds);
+      replicaStats.put("usable", isReplicaUsable());
+      stats.put("replica", replicaStats);
+    }
+    return stats;
+  }
+
+  private static Map<String, Object> stats(HikariDataSource dataSource) {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("max", dataSource.getMaximumPoolSize());
+    HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+    if (pool != null) {
+      stats.put("active", pool.getActiveConnections());
+      stats.put("idle", pool.getIdleConnections());
+      stats.put("waiting", pool.getThreadsAwaitingConnection());
+    }
+    return stats;
+  }
+
+  @Override
+  public void close() {
+    if (replica != null) {
+      replica.close();
+    }
+    reporting.close();
+    oltp.close();
+  }
+}
@@ -25,7 +25,7 @@ public class CorsConfig {
 
     config.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
     config.setAllowedHeaders(Arrays.asList("Authorization", "Cache-Control", "Content-Type", "X-Requested-With",
-        "Accept", "Origin", "Access-Control-Request-Method", "Access-Control-Request-Headers"));
+        "Accept", "Origin", "Idempotency-Key", "Access-Control-Request-Method", "Access-Control-Request-Headers"));
     config.setExposedHeaders(Arrays.asList("Authorization"));
     config.setAllowCredentials(true);
     config.setMaxAge(3600L);
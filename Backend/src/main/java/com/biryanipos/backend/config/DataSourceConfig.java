@@ -0,0 +1,26 @@
+package com.biryanipos.backend.config;
+
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class DataSourceConfig {
+
+  @Bean(destroyMethod = "close")
+  public ConnectionPools connectionPools(DataSourceProperties properties, Environment environment,
+      AppProperties appProperties) {
+    return new ConnectionPools(properties, environment, appProperties);
+  }
+
+  // Replaces Boot's single pool; the tracing wrappers still see one DataSource
+  @Bean
+  @Primary
+  public DataSource dataSource(ConnectionPools connectionPools) {
+    return connectionPools.getDataSource();
+  }
+}
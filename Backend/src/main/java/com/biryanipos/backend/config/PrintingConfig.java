@@ -0,0 +1,20 @@
+package com.biryanipos.backend.config;
+
+import com.biryanipos.backend.service.PrinterEmulator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+@Configuration
+public class PrintingConfig {
+
+  @Bean(initMethod = "start", destroyMethod = "stop")
+  @ConditionalOnProperty(prefix = "app.printing.emulator", name = "enabled", havingValue = "true")
+  public PrinterEmulator printerEmulator(AppProperties appProperties) {
+    AppProperties.Printing.Emulator emulator = appProperties.getPrinting().getEmulator();
+    return new PrinterEmulator(emulator.getPort(), emulator.getDelayMs(),
+        emulator.getOutputDir() != null ? Paths.get(emulator.getOutputDir()) : null);
+  }
+}
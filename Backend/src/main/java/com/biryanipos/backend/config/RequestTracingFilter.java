@@ -0,0 +1,103 @@
+package com.biryanipos.backend.config;
+
+import com.biryanipos.backend.service.RequestTrace;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// Traces each API request and reports its cost in a Server-Timing header:
+// db (statements, time), lock (time in SELECT ... FOR UPDATE), ws (publishes),
+// resp (bytes serialized) and app (total). The body is buffered so the header
+// can still be set after serialization. Requests slower than
+// app.tracing.slow-request-ms go to the "slow-requests" logger, which
+// logback-spring.xml writes asynchronously to a rotating file. Async
+// requests (reports) keep their trace in a request attribute and are
+// finished on the dispatch that writes the result. File downloads are not
+// traced: buffering them would hold a whole report file in the heap.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@RequiredArgsConstructor
+public class RequestTracingFilter extends OncePerRequestFilter {
+
+  private static final Logger slowLog = LoggerFactory.getLogger("slow-requests");
+  private static final String TRACE_ATTRIBUTE = RequestTracingFilter.class.getName() + ".trace";
+  private static final Pattern DOWNLOAD = Pattern.compile("/api/reports/jobs/[^/]+/download");
+
+  private final AppProperties appProperties;
+
+  @Override
+  protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+    String uri = request.getRequestURI();
+    return !appProperties.getTracing().isEnabled() || !uri.startsWith("/api/") || DOWNLOAD.matcher(uri).matches();
+  }
+
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    return false;
+  }
+
+  @Override
+  protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+      @NonNull FilterChain filterChain) throws ServletException, IOException {
+    RequestTrace trace = (RequestTrace) request.getAttribute(TRACE_ATTRIBUTE);
+    if (trace == null) {
+      trace = new RequestTrace();
+      request.setAttribute(TRACE_ATTRIBUTE, trace);
+    }
+    ContentCachingResponseWrapper wrapper = WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+    if (wrapper == null) {
+      wrapper = new ContentCachingResponseWrapper(response);
+    }
+    RequestTrace previous = RequestTrace.attach(trace);
+    try {
+      filterChain.doFilter(request, wrapper);
+    } finally {
+      RequestTrace.attach(previous);
+      if (!request.isAsyncStarted()) {
+        finish(request, response, wrapper, trace);
+      }
+    }
+  }
+
+  private void finish(HttpServletRequest request, HttpServletResponse response, ContentCachingResponseWrapper wrapper,
+      RequestTrace trace) throws IOException {
+    trace.setResponseBytes(wrapper.getContentSize());
+    if (!response.isCommitted()) {
+      response.setHeader("Server-Timing", serverTiming(trace));
+    }
+    wrapper.copyBodyToResponse();
+
+    double elapsed = trace.getElapsedMillis();
+    if (elapsed >= appProperties.getTracing().getSlowRequestMs()) {
+      String query = request.getQueryString();
+      slowLog.info(String.format(Locale.ROOT,
+          "%s %s%s status=%d total=%.1fms db=%.1fms statements=%d lock=%.1fms ws=%d bytes=%d",
+          request.getMethod(), request.getRequestURI(), query != null ? "?" + query : "",
+          response.getStatus(), elapsed, trace.getDbMillis(), trace.getStatements(), trace.getLockMillis(),
+          trace.getPublishes(), trace.getResponseBytes()));
+    }
+  }
+
+  static String serverTiming(RequestTrace trace) {
+    return String.format(Locale.ROOT,
+        "db;dur=%.1f;desc=\"%d statements\", lock;dur=%.1f, ws;desc=\"%d publishes\", "
+            + "resp;desc=\"%d bytes\", app;dur=%.1f",
+        trace.getDbMillis(), trace.getStatements(), trace.getLockMillis(), trace.getPublishes(),
+        trace.getResponseBytes(), trace.getElapsedMillis());
+  }
+}
@@ -1,6 +1,7 @@
 package com.biryanipos.backend.config;
 
 import com.biryanipos.backend.security.JwtAuthFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -33,12 +34,17 @@ public class SecurityConfig {
         .csrf(csrf -> csrf.disable()) // Stateless REST API
         .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
         .authorizeHttpRequests(auth -> auth
-            // Public endpoints — login, WebSocket, Config, Payment Callbacks
+            // Public endpoints — login, WebSocket, Config, Payment Callbacks, QR ordering
             .requestMatchers("/api/auth/login").permitAll()
             .requestMatchers("/ws/**").permitAll()
             .requestMatchers("/api/config", "/api/config/**").permitAll()
             .requestMatchers("/api/payments/easebuzz/**").permitAll()
             .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+            // Async reports finish on a second dispatch; the request was authorized on the first
+            .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+            // QR ordering from customer phones: menu, cart submission and cart status
+            .requestMatchers(HttpMethod.GET, "/api/qr/menu", "/api/qr/carts/*").permitAll()
+            .requestMatchers(HttpMethod.POST, "/api/qr/tables/*/carts").permitAll()
 
             // Restricted access
             .requestMatchers("/h2-console/**").hasRole("ADMIN")
@@ -0,0 +1,26 @@
+package com.biryanipos.backend.config;
+
+import com.biryanipos.backend.service.RequestTrace;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class TracingConfig {
+
+  // Static so the DataSource is wrapped before anything uses it; statements
+  // outside a traced request cost one ThreadLocal lookup
+  @Bean
+  static BeanPostProcessor requestTracingDataSource() {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        return bean instanceof DataSource dataSource
+            ? TracingDataSource.wrap(dataSource, RequestTrace::statementExecuted)
+            : bean;
+      }
+    };
+  }
+}
@@ -0,0 +1,108 @@
+package com.biryanipos.backend.config;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+// JDBC proxies that report every executed statement (with its SQL and wall
+// time) and every row read to a Listener. Used for per-request tracing and
+// by the statement-budget tests.
+public final class TracingDataSource {
+
+  public interface Listener {
+    void executed(String sql, long nanos);
+
+    default void rowRead() {
+    }
+  }
+
+  private TracingDataSource() {
+  }
+
+  public static DataSource wrap(DataSource dataSource, Listener listener) {
+    return proxy(DataSource.class, dataSource, (target, method, args) -> {
+      Object result = invoke(target, method, args);
+      return result instanceof Connection connection ? wrapConnection(connection, listener) : result;
+    });
+  }
+
+  private static Connection wrapConnection(Connection connection, Listener listener) {
+    return proxy(Connection.class, connection, (target, method, args) -> {
+      Object result = invoke(target, method, args);
+      // prepareStatement/prepareCall carry the SQL; createStatement passes it on execute
+      String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+      if (result instanceof CallableStatement statement) {
+        return wrapStatement(CallableStatement.class, statement, sql, listener);
+      }
+      if (result instanceof PreparedStatement statement) {
+        return wrapStatement(PreparedStatement.class, statement, sql, listener);
+      }
+      if (result instanceof Statement statement) {
+        return wrapStatement(Statement.class, statement, null, listener);
+      }
+      return result;
+    });
+  }
+
+  private static <S extends Statement> S wrapStatement(Class<S> type, S statement, String preparedSql,
+      Listener listener) {
+    return proxy(type, statement, (target, method, args) -> {
+      if (!method.getName().startsWith("execute")) {
+        Object result = invoke(target, method, args);
+        return result instanceof ResultSet resultSet && method.getName().equals("getResultSet")
+            ? wrapResultSet(resultSet, listener)
+            : result;
+      }
+      String sql = preparedSql != null ? preparedSql
+          : args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+      long started = System.nanoTime();
+      try {
+        Object result = invoke(target, method, args);
+        return result instanceof ResultSet resultSet ? wrapResultSet(resultSet, listener) : result;
+      } finally {
+        listener.executed(sql, System.nanoTime() - started);
+      }
+    });
+  }
+
+  private static ResultSet wrapResultSet(ResultSet resultSet, Listener listener) {
+    return proxy(ResultSet.class, resultSet, (target, method, args) -> {
+      Object result = invoke(target, method, args);
+      if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+        listener.rowRead();
+      }
+      return result;
+    });
+  }
+
+  private interface Handler {
+    Object handle(Object target, Method method, Object[] args) throws Throwable;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, T target, Handler handler) {
+    InvocationHandler invocationHandler = (proxy, method, args) -> {
+      if (method.getName().equals("unwrap") || method.getName().equals("isWrapperFor")) {
+        return invoke(target, method, args);
+      }
+      return handler.handle(target, method, args);
+    };
+    return (T) Proxy.newProxyInstance(TracingDataSource.class.getClassLoader(), new Class<?>[] { type },
+        invocationHandler);
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
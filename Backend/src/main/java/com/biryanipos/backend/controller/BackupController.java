@@ -1,11 +1,13 @@
 package com.biryanipos.backend.controller;
 
+import com.biryanipos.backend.dto.BackupInfo;
 import com.biryanipos.backend.service.BackupService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/backup")
@@ -15,16 +17,26 @@ public class BackupController {
   private final BackupService backupService;
 
   @PostMapping("/now")
-  public ResponseEntity<String> triggerBackup() {
-    String file = backupService.performBackup();
-    if (file.startsWith("Backup failed") || file.startsWith("Database file not found")) {
+  public ResponseEntity<String> triggerBackup(@RequestParam(defaultValue = "false") boolean incremental) {
+    String file = incremental ? backupService.performIncrementalBackup() : backupService.performBackup();
+    if (file.startsWith("Backup failed")) {
       return ResponseEntity.internalServerError().body(file);
     }
     return ResponseEntity.ok("Backup successful. Filename: " + file);
   }
 
   @GetMapping
-  public ResponseEntity<List<String>> listBackups() {
+  public ResponseEntity<List<BackupInfo>> listBackups() {
     return ResponseEntity.ok(backupService.listBackups());
   }
+
+  // Overwrites live data with the backup (and its base chain)
+  @PostMapping("/restore/{fileName}")
+  public ResponseEntity<Map<String, Object>> restoreBackup(@PathVariable String fileName,
+      @RequestParam(defaultValue = "false") boolean confirm) {
+    if (!confirm) {
+      throw new RuntimeException("Restore replaces current data; repeat with confirm=true");
+    }
+    return ResponseEntity.ok(backupService.restoreBackup(fileName));
+  }
 }
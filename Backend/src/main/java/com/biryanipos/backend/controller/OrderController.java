@@ -1,20 +1,34 @@
 package com.biryanipos.backend.controller;
 
+import com.biryanipos.backend.dto.BatchReadyRequest;
+import com.biryanipos.backend.dto.BatchReadyResult;
+import com.biryanipos.backend.dto.BulkStatusRequest;
+import com.biryanipos.backend.dto.BulkStatusResult;
+import com.biryanipos.backend.dto.JournalReceipt;
+import com.biryanipos.backend.dto.KitchenBatch;
 import com.biryanipos.backend.dto.OrderRequest;
 import com.biryanipos.backend.dto.OrderItemRequest;
+import com.biryanipos.backend.dto.QuickBillRequest;
 import com.biryanipos.backend.model.Order;
 import com.biryanipos.backend.model.OrderStatus;
 import com.biryanipos.backend.repository.PaymentRepository;
+import com.biryanipos.backend.model.PrintJob;
+import com.biryanipos.backend.service.BillingJournalService;
+import com.biryanipos.backend.service.KitchenBatchService;
+import com.biryanipos.backend.service.OrderEtaService;
 import com.biryanipos.backend.service.OrderService;
+import com.biryanipos.backend.service.PrintSpoolerService;
 import com.biryanipos.backend.service.PrintingService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/orders")
@@ -22,16 +36,36 @@ import java.util.List;
 public class OrderController {
 
   private final OrderService orderService;
+  private final BillingJournalService billingJournalService;
   private final PrintingService printingService;
+  private final PrintSpoolerService printSpoolerService;
   private final PaymentRepository paymentRepository;
+  private final KitchenBatchService kitchenBatchService;
+  private final OrderEtaService orderEtaService;
 
   @PostMapping
-  public ResponseEntity<Order> createOrder(@RequestBody OrderRequest request,
+  public ResponseEntity<?> createOrder(@RequestBody OrderRequest request,
+      @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
       org.springframework.security.core.Authentication auth) {
     if (auth != null) {
       request.setCreatedBy(auth.getName());
     }
-    return ResponseEntity.ok(orderService.createOrder(request));
+    // 202 + journalRef when the database is too slow to confirm right now;
+    // a retry with the same Idempotency-Key gets the same order back
+    JournalReceipt receipt = billingJournalService.submitOrder(request, idempotencyKey);
+    return receipt.isApplied() ? ResponseEntity.ok(receipt.getResult()) : ResponseEntity.accepted().body(receipt);
+  }
+
+  // Takeaway at the counter: order, payment and receipt text in one round trip
+  @PostMapping("/quick-bill")
+  public ResponseEntity<?> quickBill(@RequestBody QuickBillRequest request,
+      @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+      org.springframework.security.core.Authentication auth) {
+    if (auth != null) {
+      request.setCreatedBy(auth.getName());
+    }
+    JournalReceipt receipt = billingJournalService.submitQuickBill(request, idempotencyKey);
+    return receipt.isApplied() ? ResponseEntity.ok(receipt.getResult()) : ResponseEntity.accepted().body(receipt);
   }
 
   @GetMapping
@@ -49,6 +83,23 @@ public class OrderController {
     return ResponseEntity.ok(orderService.getKitchenOrders());
   }
 
+  // Portions to cook per menu item across all open orders; live on /topic/kitchen/batches
+  @GetMapping("/kitchen/batches")
+  public ResponseEntity<List<KitchenBatch>> getKitchenBatches() {
+    return ResponseEntity.ok(kitchenBatchService.getBatches());
+  }
+
+  // Projected ready time per order still in the kitchen; changes arrive on /topic/orders/eta
+  @GetMapping("/eta")
+  public ResponseEntity<Map<Long, LocalDateTime>> getProjectedEtas() {
+    return ResponseEntity.ok(orderEtaService.getProjections());
+  }
+
+  @PostMapping("/kitchen/batches/ready")
+  public ResponseEntity<BatchReadyResult> markBatchReady(@RequestBody BatchReadyRequest request) {
+    return ResponseEntity.ok(kitchenBatchService.markReady(request));
+  }
+
   @GetMapping("/{id}")
   public ResponseEntity<Order> getOrder(@PathVariable Long id) {
     return ResponseEntity.ok(orderService.getOrderById(id));
@@ -70,6 +121,12 @@ public class OrderController {
     return ResponseEntity.ok(orderService.updateOrderItemStatus(itemId, status));
   }
 
+  // Many lines at once; one compact change event on /topic/orders/items
+  @PutMapping("/items/status")
+  public ResponseEntity<BulkStatusResult> updateItemStatuses(@RequestBody BulkStatusRequest request) {
+    return ResponseEntity.ok(orderService.updateItemStatuses(request));
+  }
+
   @PutMapping("/{id}/cancel")
   public ResponseEntity<Order> cancelOrder(@PathVariable Long id) {
     return ResponseEntity.ok(orderService.cancelOrder(id));
@@ -96,7 +153,21 @@ public class OrderController {
   @GetMapping("/{id}/print")
   public ResponseEntity<String> printReceipt(@PathVariable Long id) {
     Order order = orderService.getOrderById(id);
-    com.biryanipos.backend.model.Payment payment = paymentRepository.findByOrderId(id).orElse(null);
+    com.biryanipos.backend.model.Payment payment = paymentRepository.findWithDetailsByOrderId(id).orElse(null);
     return ResponseEntity.ok(printingService.generateTextReceipt(order, payment));
   }
+
+  // Queues the receipt on the bill printer instead of rendering it in the request
+  @PostMapping("/{id}/print")
+  public ResponseEntity<PrintJob> queueReceipt(@PathVariable Long id) {
+    Order order = orderService.getOrderById(id);
+    com.biryanipos.backend.model.Payment payment = paymentRepository.findWithDetailsByOrderId(id).orElse(null);
+    return ResponseEntity.accepted().body(printSpoolerService.printBill(order, payment));
+  }
+
+  @PostMapping("/{id}/kot/reprint")
+  public ResponseEntity<List<PrintJob>> reprintKots(@PathVariable Long id) {
+    Order order = orderService.getOrderById(id);
+    return ResponseEntity.accepted().body(printSpoolerService.printKots(order, order.getItems(), "REPRINT"));
+  }
 }
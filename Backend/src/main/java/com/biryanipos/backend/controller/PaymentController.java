@@ -2,9 +2,11 @@ package com.biryanipos.backend.controller;
 
 import com.biryanipos.backend.dto.BillResponse;
 import com.biryanipos.backend.dto.InitiateDigitalPaymentRequest;
+import com.biryanipos.backend.dto.JournalReceipt;
 
 import com.biryanipos.backend.dto.PaymentRequest;
 import com.biryanipos.backend.model.Payment;
+import com.biryanipos.backend.service.BillingJournalService;
 import com.biryanipos.backend.service.EasebuzzService;
 import com.biryanipos.backend.service.PaymentService;
 import lombok.RequiredArgsConstructor;
@@ -19,6 +21,7 @@ import java.util.Map;
 public class PaymentController {
 
   private final PaymentService paymentService;
+  private final BillingJournalService billingJournalService;
   private final EasebuzzService easebuzzService;
 
   @PostMapping("/initiate-digital")
@@ -143,8 +146,10 @@ public class PaymentController {
   }
 
   @PostMapping
-  public ResponseEntity<Payment> processPayment(@RequestBody PaymentRequest request) {
-    return ResponseEntity.ok(paymentService.processPayment(request));
+  public ResponseEntity<?> processPayment(@RequestBody PaymentRequest request,
+      @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+    JournalReceipt receipt = billingJournalService.submitPayment(request, idempotencyKey);
+    return receipt.isApplied() ? ResponseEntity.ok(receipt.getResult()) : ResponseEntity.accepted().body(receipt);
   }
 
   @GetMapping("/bill/{orderId}")
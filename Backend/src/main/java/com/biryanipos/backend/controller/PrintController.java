@@ -0,0 +1,54 @@
+package com.biryanipos.backend.controller;
+
+import com.biryanipos.backend.model.PrintJob;
+import com.biryanipos.backend.model.PrintJobStatus;
+import com.biryanipos.backend.service.PrintSpoolerService;
+import com.biryanipos.backend.service.PrinterEmulator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/print")
+@RequiredArgsConstructor
+public class PrintController {
+
+  private final PrintSpoolerService printSpoolerService;
+  private final ObjectProvider<PrinterEmulator> printerEmulator;
+
+  @GetMapping("/jobs")
+  public ResponseEntity<List<PrintJob>> getJobs(@RequestParam(required = false) PrintJobStatus status) {
+    return ResponseEntity.ok(printSpoolerService.getRecentJobs(status));
+  }
+
+  @GetMapping("/jobs/order/{orderId}")
+  public ResponseEntity<List<PrintJob>> getJobsForOrder(@PathVariable Long orderId) {
+    return ResponseEntity.ok(printSpoolerService.getJobsForOrder(orderId));
+  }
+
+  @PostMapping("/jobs/{id}/retry")
+  public ResponseEntity<PrintJob> retryJob(@PathVariable Long id) {
+    return ResponseEntity.ok(printSpoolerService.retry(id));
+  }
+
+  @GetMapping("/printers")
+  public ResponseEntity<List<Map<String, Object>>> getPrinters() {
+    return ResponseEntity.ok(printSpoolerService.getPrinterStatus());
+  }
+
+  @GetMapping("/emulator")
+  public ResponseEntity<Map<String, Object>> getEmulatorStats() {
+    PrinterEmulator emulator = printerEmulator.getIfAvailable();
+    if (emulator == null) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(Map.of(
+        "port", emulator.getPort(),
+        "jobsReceived", emulator.getJobsReceived(),
+        "bytesReceived", emulator.getBytesReceived()));
+  }
+}
@@ -0,0 +1,75 @@
+package com.biryanipos.backend.controller;
+
+import com.biryanipos.backend.dto.JournalReceipt;
+import com.biryanipos.backend.dto.QrCart;
+import com.biryanipos.backend.dto.QrCartRequest;
+import com.biryanipos.backend.service.QrCartService;
+import com.biryanipos.backend.service.QrMenuService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+// Customer QR ordering. The menu, cart submission and cart status are
+// public; listing, confirming and rejecting carts is for staff.
+@RestController
+@RequestMapping("/api/qr")
+@RequiredArgsConstructor
+public class QrController {
+
+  private final QrMenuService qrMenuService;
+  private final QrCartService qrCartService;
+
+  @GetMapping("/menu")
+  public ResponseEntity<byte[]> getMenu(
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    QrMenuService.Bundle menu = qrMenuService.getBundle();
+    String etag = "\"" + menu.version() + "\"";
+    // Phones keep the bundle and revalidate, so availability changes show up at once
+    if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+    }
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+        .eTag(etag)
+        .cacheControl(CacheControl.noCache())
+        .contentType(MediaType.APPLICATION_JSON)
+        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+      return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(menu.gzip());
+    }
+    return response.body(menu.json());
+  }
+
+  // 202: the cart waits for staff before it becomes an order
+  @PostMapping("/tables/{tableNumber}/carts")
+  public ResponseEntity<QrCart> submitCart(@PathVariable String tableNumber, @RequestBody QrCartRequest request) {
+    return ResponseEntity.accepted().body(qrCartService.submit(tableNumber, request));
+  }
+
+  @GetMapping("/carts/{id}")
+  public ResponseEntity<QrCart> getCart(@PathVariable String id) {
+    return ResponseEntity.ok(qrCartService.getCart(id));
+  }
+
+  @GetMapping("/carts")
+  public ResponseEntity<List<QrCart>> getPendingCarts() {
+    return ResponseEntity.ok(qrCartService.getPendingCarts());
+  }
+
+  @PostMapping("/carts/{id}/confirm")
+  public ResponseEntity<?> confirmCart(@PathVariable String id) {
+    JournalReceipt receipt = qrCartService.confirm(id);
+    return receipt.isApplied() ? ResponseEntity.ok(receipt.getResult()) : ResponseEntity.accepted().body(receipt);
+  }
+
+  @DeleteMapping("/carts/{id}")
+  public ResponseEntity<QrCart> rejectCart(@PathVariable String id) {
+    return ResponseEntity.ok(qrCartService.reject(id));
+  }
+}
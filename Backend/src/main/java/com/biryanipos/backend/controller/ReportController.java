@@ -2,44 +2,54 @@ package com.biryanipos.backend.controller;
 
 import com.biryanipos.backend.dto.DashboardData;
 import com.biryanipos.backend.service.ReportService;
+import com.biryanipos.backend.service.ReportingExecutor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+// Every report runs on the reporting bulkhead and completes asynchronously
 @RestController
 @RequestMapping("/api/reports")
 @RequiredArgsConstructor
 public class ReportController {
 
   private final ReportService reportService;
+  private final ReportingExecutor reportingExecutor;
 
   @GetMapping("/dashboard")
-  public ResponseEntity<DashboardData> getDashboard() {
-    return ResponseEntity.ok(reportService.getDashboardData());
+  public CompletableFuture<ResponseEntity<DashboardData>> getDashboard() {
+    return reportingExecutor.submit("dashboard", reportService::getDashboardData).thenApply(ResponseEntity::ok);
   }
 
   @GetMapping("/sales")
-  public ResponseEntity<Map<String, Object>> getSalesReport(
+  public CompletableFuture<ResponseEntity<Map<String, Object>>> getSalesReport(
       @RequestParam String start,
       @RequestParam String end) {
-    return ResponseEntity.ok(reportService.getSalesReport(
-        LocalDate.parse(start), LocalDate.parse(end)));
+    LocalDate from = LocalDate.parse(start);
+    LocalDate to = LocalDate.parse(end);
+    return reportingExecutor.submit("sales", () -> reportService.getSalesReport(from, to))
+        .thenApply(ResponseEntity::ok);
   }
 
   @GetMapping("/daily")
-  public ResponseEntity<Map<String, Object>> getDailyReport() {
+  public CompletableFuture<ResponseEntity<Map<String, Object>>> getDailyReport() {
     LocalDate today = LocalDate.now();
-    return ResponseEntity.ok(reportService.getSalesReport(today, today));
+    return reportingExecutor.submit("daily", () -> reportService.getSalesReport(today, today))
+        .thenApply(ResponseEntity::ok);
   }
 
   @GetMapping("/gst-export")
-  public ResponseEntity<String> getGstReport(@RequestParam String start, @RequestParam String end) {
-    String csv = reportService.generateGstReportCsv(LocalDate.parse(start), LocalDate.parse(end));
-    return ResponseEntity.ok()
-        .header("Content-Disposition", "attachment; filename=gst_report.csv")
-        .body(csv);
+  public CompletableFuture<ResponseEntity<String>> getGstReport(@RequestParam String start,
+      @RequestParam String end) {
+    LocalDate from = LocalDate.parse(start);
+    LocalDate to = LocalDate.parse(end);
+    return reportingExecutor.submit("gst-export", () -> reportService.generateGstReportCsv(from, to))
+        .thenApply(csv -> ResponseEntity.ok()
+            .header("Content-Disposition", "attachment; filename=gst_report.csv")
+            .body(csv));
   }
 }
@@ -0,0 +1,55 @@
+package com.biryanipos.backend.controller;
+
+import com.biryanipos.backend.dto.ReportJobRequest;
+import com.biryanipos.backend.model.ReportJob;
+import com.biryanipos.backend.service.ReportJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+// Long report ranges and exports: submit a job, follow it on
+// /topic/report-jobs (or by polling), then download the file
+@RestController
+@RequestMapping("/api/reports/jobs")
+@RequiredArgsConstructor
+public class ReportJobController {
+
+  private final ReportJobService reportJobService;
+
+  @PostMapping
+  public ResponseEntity<ReportJob> submit(@RequestBody ReportJobRequest request) {
+    return ResponseEntity.status(HttpStatus.ACCEPTED).body(reportJobService.submit(request));
+  }
+
+  @GetMapping
+  public ResponseEntity<List<ReportJob>> getRecentJobs() {
+    return ResponseEntity.ok(reportJobService.getRecentJobs());
+  }
+
+  @GetMapping("/{id}")
+  public ResponseEntity<ReportJob> getJob(@PathVariable Long id) {
+    return ResponseEntity.ok(reportJobService.getJob(id));
+  }
+
+  @DeleteMapping("/{id}")
+  public ResponseEntity<ReportJob> cancel(@PathVariable Long id) {
+    return ResponseEntity.ok(reportJobService.cancel(id));
+  }
+
+  @GetMapping("/{id}/download")
+  public ResponseEntity<Resource> download(@PathVariable Long id) {
+    ReportJob job = reportJobService.getJob(id);
+    Resource file = new FileSystemResource(reportJobService.getArtifact(id));
+    String fileName = reportJobService.getFileName(job);
+    return ResponseEntity.ok()
+        .contentType(fileName.endsWith(".json") ? MediaType.APPLICATION_JSON : MediaType.parseMediaType("text/csv"))
+        .header("Content-Disposition", "attachment; filename=" + fileName)
+        .body(file);
+  }
+}
@@ -0,0 +1,58 @@
+package com.biryanipos.backend.controller;
+
+import com.biryanipos.backend.dto.SalesCubeFilter;
+import com.biryanipos.backend.service.SalesCubeService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+// Slice/dice and time series over the in-memory sales cube. Answered on the
+// request thread: no query touches the database. Filters go as repeatable
+// parameters, e.g. ?items=Chicken Biryani&orderTypes=TAKEAWAY&fromHour=12
+@RestController
+@RequestMapping("/api/reports/cube")
+@RequiredArgsConstructor
+public class SalesCubeController {
+
+  private final SalesCubeService salesCubeService;
+
+  @GetMapping
+  public ResponseEntity<List<Map<String, Object>>> query(
+      @RequestParam String start,
+      @RequestParam String end,
+      @RequestParam(defaultValue = "") List<SalesCubeService.Dimension> groupBy,
+      @RequestParam(defaultValue = "0") int limit,
+      @ModelAttribute SalesCubeFilter filter) {
+    return ResponseEntity.ok(salesCubeService.query(LocalDate.parse(start), LocalDate.parse(end), groupBy, filter,
+        limit));
+  }
+
+  // Without a bucket the finest one that fits in maxPoints is used
+  @GetMapping("/series")
+  public ResponseEntity<Map<String, Object>> series(
+      @RequestParam String start,
+      @RequestParam String end,
+      @RequestParam(required = false) SalesCubeService.Bucket bucket,
+      @RequestParam(defaultValue = "200") int maxPoints,
+      @ModelAttribute SalesCubeFilter filter) {
+    return ResponseEntity.ok(salesCubeService.series(LocalDate.parse(start), LocalDate.parse(end), bucket,
+        maxPoints, filter));
+  }
+
+  @GetMapping("/stats")
+  public ResponseEntity<Map<String, Object>> getStats() {
+    return ResponseEntity.ok(salesCubeService.getStats());
+  }
+
+  // Re-reads the days from the payments table in the background
+  @PostMapping("/rebuild")
+  public ResponseEntity<Map<String, Object>> rebuild(@RequestParam String start, @RequestParam String end) {
+    int queued = salesCubeService.rebuild(LocalDate.parse(start), LocalDate.parse(end));
+    return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("daysQueued", queued));
+  }
+}
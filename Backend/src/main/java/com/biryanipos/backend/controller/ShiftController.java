@@ -1,16 +1,20 @@
 package com.biryanipos.backend.controller;
 
 import com.biryanipos.backend.model.Shift;
+import com.biryanipos.backend.service.ReportingExecutor;
 import com.biryanipos.backend.service.ShiftService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/shifts")
 @RequiredArgsConstructor
 public class ShiftController {
   private final ShiftService shiftService;
+  private final ReportingExecutor reportingExecutor;
 
   @GetMapping("/active")
   public ResponseEntity<Shift> getActiveShift() {
@@ -24,9 +28,10 @@ public class ShiftController {
     return ResponseEntity.ok(shiftService.openShift(user, openingCash));
   }
 
+  // Sums the whole shift so far: runs on the reporting bulkhead
   @GetMapping("/x-report")
-  public ResponseEntity<Shift> getXReport() {
-    return ResponseEntity.ok(shiftService.generateXReport());
+  public CompletableFuture<ResponseEntity<Shift>> getXReport() {
+    return reportingExecutor.submit("x-report", shiftService::generateXReport).thenApply(ResponseEntity::ok);
   }
 
   @PostMapping("/close")
@@ -1,26 +1,68 @@
 package com.biryanipos.backend.controller;
 
 import com.biryanipos.backend.service.BackupService;
+import com.biryanipos.backend.service.ConflictRetryAspect;
+import com.biryanipos.backend.service.OrderDeadlineService;
+import com.biryanipos.backend.service.OrderEtaService;
+import com.biryanipos.backend.service.OrderLaneExecutor;
+import com.biryanipos.backend.service.ReportingExecutor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/system")
 @RequiredArgsConstructor
 public class SystemController {
 
   private final BackupService backupService;
+  private final ConflictRetryAspect conflictRetryAspect;
+  private final OrderLaneExecutor orderLaneExecutor;
+  private final OrderDeadlineService orderDeadlineService;
+  private final OrderEtaService orderEtaService;
+  private final ReportingExecutor reportingExecutor;
 
   @PostMapping("/backup")
   public ResponseEntity<String> triggerBackup() {
     String result = backupService.performBackup();
-    if (result.startsWith("Backup created")) {
-      return ResponseEntity.ok(result);
-    } else {
+    if (result.startsWith("Backup failed")) {
       return ResponseEntity.internalServerError().body(result);
     }
+    return ResponseEntity.ok("Backup created: " + result);
+  }
+
+  // Optimistic lock conflicts and retries per service operation
+  @GetMapping("/conflicts")
+  public ResponseEntity<Map<String, Object>> getConflictStats() {
+    return ResponseEntity.ok(conflictRetryAspect.getStats());
+  }
+
+  // Queue depth, wait and run time per order command lane
+  @GetMapping("/lanes")
+  public ResponseEntity<Map<String, Object>> getLaneStats() {
+    return ResponseEntity.ok(orderLaneExecutor.getStats());
+  }
+
+  // Reporting bulkhead: queue, held-back and shed reports, both connection pools
+  @GetMapping("/reporting")
+  public ResponseEntity<Map<String, Object>> getReportingStats() {
+    return ResponseEntity.ok(reportingExecutor.getStats());
+  }
+
+  // Freeze/overdue timers currently armed and how many have fired
+  @GetMapping("/deadlines")
+  public ResponseEntity<Map<String, Object>> getDeadlineStats() {
+    return ResponseEntity.ok(orderDeadlineService.getStats());
+  }
+
+  // Lines, capacity, learned pace and backlog per preparation station
+  @GetMapping("/kitchen-load")
+  public ResponseEntity<Map<String, Object>> getKitchenLoad() {
+    return ResponseEntity.ok(orderEtaService.getStats());
   }
 }
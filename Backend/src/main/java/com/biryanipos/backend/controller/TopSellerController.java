@@ -0,0 +1,37 @@
+package com.biryanipos.backend.controller;
+
+import com.biryanipos.backend.dto.TopSeller;
+import com.biryanipos.backend.service.ReportingExecutor;
+import com.biryanipos.backend.service.TopSellerTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Best sellers per window: live estimates from memory (also pushed on
+// /topic/top-sellers as ranks change), or exact sums from the database
+@RestController
+@RequestMapping("/api/reports/top-sellers")
+@RequiredArgsConstructor
+public class TopSellerController {
+
+  private final TopSellerTracker topSellerTracker;
+  private final ReportingExecutor reportingExecutor;
+
+  @GetMapping
+  public ResponseEntity<List<TopSeller>> getTopSellers(
+      @RequestParam(defaultValue = "TODAY") TopSellerTracker.Window window,
+      @RequestParam(defaultValue = "10") int limit) {
+    return ResponseEntity.ok(topSellerTracker.top(window, limit));
+  }
+
+  @GetMapping("/exact")
+  public CompletableFuture<ResponseEntity<List<TopSeller>>> getExactTopSellers(
+      @RequestParam(defaultValue = "TODAY") TopSellerTracker.Window window,
+      @RequestParam(defaultValue = "10") int limit) {
+    return reportingExecutor.submit("top-sellers", () -> topSellerTracker.exact(window, limit))
+        .thenApply(ResponseEntity::ok);
+  }
+}
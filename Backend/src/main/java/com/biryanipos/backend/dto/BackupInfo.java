@@ -0,0 +1,18 @@
+package com.biryanipos.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BackupInfo {
+  private String fileName;
+  private String type; // FULL, INCREMENTAL or LEGACY (pre-manifest H2 archive)
+  private String baseBackup;
+  private String createdAt;
+  private int tableCount;
+  private long rowCount;
+  private long sizeBytes;
+}
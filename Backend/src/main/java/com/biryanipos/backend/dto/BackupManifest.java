@@ -0,0 +1,54 @@
+package com.biryanipos.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// manifest.json stored inside every backup archive
+@Data
+@NoArgsConstructor
+public class BackupManifest {
+  public static final int FORMAT_VERSION = 1;
+
+  private int formatVersion = FORMAT_VERSION;
+  private String type; // FULL or INCREMENTAL
+  private String baseBackup; // Previous archive in the chain (incremental only)
+  private String createdAt;
+  private String databaseProduct;
+  private List<TableEntry> tables = new ArrayList<>();
+
+  @Data
+  @NoArgsConstructor
+  public static class TableEntry {
+    private String name;
+    private List<ColumnEntry> columns = new ArrayList<>();
+    private String keyColumn; // Numeric id used for id watermarks / upserts
+    private String watermarkColumn; // updated_at style column, if any
+    private String mode; // FULL, DELTA (id/updated-at watermarks) or APPEND (id only)
+    private Long maxId; // Cumulative watermarks across the chain
+    private String maxWatermark;
+    private long rowCount;
+    private List<ChunkEntry> chunks = new ArrayList<>();
+    // DELTA/APPEND only: every id in the table at backup time, so a restore can
+    // drop the rows deleted since the base. Null in archives from before.
+    private List<ChunkEntry> keyChunks;
+  }
+
+  @Data
+  @NoArgsConstructor
+  public static class ColumnEntry {
+    private String name;
+    private int jdbcType;
+  }
+
+  @Data
+  @NoArgsConstructor
+  public static class ChunkEntry {
+    private String entry;
+    private int rows;
+    private long bytes;
+    private String sha256;
+  }
+}
@@ -0,0 +1,11 @@
+package com.biryanipos.backend.dto;
+
+import lombok.Data;
+
+// "N portions of this item are ready": handed to the oldest waiting lines first
+@Data
+public class BatchReadyRequest {
+  private Long menuItemId;
+  private Long variationId;
+  private int portions;
+}
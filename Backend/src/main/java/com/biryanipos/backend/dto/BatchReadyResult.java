@@ -0,0 +1,29 @@
+package com.biryanipos.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchReadyResult {
+  private Long menuItemId;
+  private Long variationId;
+  private int portions;
+  private int assigned;
+  private int leftover; // Portions not enough to complete the next oldest line
+  private List<ReadyLine> lines;
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class ReadyLine {
+    private Long itemId;
+    private Long orderId;
+    private String tableNumber;
+    private int quantity;
+  }
+}
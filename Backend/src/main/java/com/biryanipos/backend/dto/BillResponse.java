@@ -9,6 +9,7 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class BillResponse {
   private Long orderId;
+  private String invoiceNumber;
   private String customerName;
   private String customerPhone;
   private String tableNumber;
@@ -0,0 +1,18 @@
+package com.biryanipos.backend.dto;
+
+import com.biryanipos.backend.model.OrderStatus;
+import lombok.Data;
+
+import java.util.List;
+
+// Moves many order lines to one status in a single transaction. Exactly one
+// selector: itemIds, every line of orderId, or every line still waiting in
+// the kitchen for menuItemId (+ variationId)
+@Data
+public class BulkStatusRequest {
+  private OrderStatus status;
+  private List<Long> itemIds;
+  private Long orderId;
+  private Long menuItemId;
+  private Long variationId;
+}
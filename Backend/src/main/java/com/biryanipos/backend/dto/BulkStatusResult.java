@@ -0,0 +1,30 @@
+package com.biryanipos.backend.dto;
+
+import com.biryanipos.backend.model.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Also the /topic/orders/items payload, the only broadcast of a bulk change:
+// changed line ids per order plus the order's status after the change,
+// instead of every full order
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStatusResult {
+  private OrderStatus status;
+  private int updated;
+  private List<OrderChange> orders;
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class OrderChange {
+    private Long orderId;
+    private OrderStatus orderStatus;
+    private String tableNumber; // For the screens' notifications
+    private List<Long> itemIds;
+  }
+}
@@ -0,0 +1,25 @@
+package com.biryanipos.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Returned with 202 when a billing command is journaled but not yet in the database
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class JournalReceipt {
+  private String journalRef;
+  private String kind; // ORDER, PAYMENT or QUICK_BILL
+  private String status; // APPLIED or QUEUED
+  private String message;
+
+  @JsonIgnore
+  private Object result; // The saved Order / Payment once APPLIED
+
+  @JsonIgnore
+  public boolean isApplied() {
+    return "APPLIED".equals(status);
+  }
+}
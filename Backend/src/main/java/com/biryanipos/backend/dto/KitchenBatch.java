@@ -0,0 +1,26 @@
+package com.biryanipos.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Portions of one menu item + variation still to cook across all open orders
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KitchenBatch {
+  private Long menuItemId;
+  private Long variationId;
+  private String name;
+  private String variationName;
+  private String preparationStation;
+  private int portions;
+  private int newPortions;
+  private int cookingPortions;
+  private int lines;
+  private int orders;
+  private Long oldestOrderId;
+  private LocalDateTime oldestSince; // When the oldest waiting order was placed
+}
@@ -14,12 +14,10 @@ public class OrderItemResponseDTO {
   public static OrderItemResponseDTO from(OrderItem item) {
     OrderItemResponseDTO dto = new OrderItemResponseDTO();
     dto.setId(item.getId());
-    dto.setMenuItemName(item.getMenuItem().getName());
+    dto.setMenuItemName(item.getItemName());
     dto.setQuantity(item.getQuantity());
     dto.setPrice(item.getPrice());
-    if (item.getMenuItemVariation() != null) {
-      dto.setVariationName(item.getMenuItemVariation().getName());
-    }
+    dto.setVariationName(item.getVariationName());
     return dto;
   }
 }
@@ -11,6 +11,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class PaymentRequest {
   private Long orderId;
+  private String orderJournalRef; // Order still queued in the billing journal (no id yet)
   private PaymentMode paymentMode;
   private double discount;
   private double amountReceived; // For cash — to compute change
@@ -0,0 +1,38 @@
+package com.biryanipos.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// A customer's QR cart waiting for staff to confirm it into an order
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QrCart {
+  private String id;
+  private String tableNumber;
+  private String customerName;
+  private String customerPhone;
+  private List<Line> lines;
+  private double total; // At menu prices, before tax; the order is priced again on confirm
+  private String status; // PENDING, CONFIRMING, CONFIRMED, REJECTED or EXPIRED
+  private Long orderId;
+  private String journalRef; // Set when the confirmed order is still queued in the billing journal
+  private LocalDateTime createdAt;
+  private LocalDateTime resolvedAt;
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Line {
+    private Long menuItemId;
+    private Long variationId;
+    private String name;
+    private String variationName;
+    private int quantity;
+    private double price;
+  }
+}
@@ -0,0 +1,14 @@
+package com.biryanipos.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+// What a customer phone sends from the QR menu; the table comes from the URL
+@Data
+public class QrCartRequest {
+  private String customerName;
+  private String customerPhone;
+  private String menuVersion; // Bundle version the prices were shown from
+  private List<OrderItemRequest> items;
+}
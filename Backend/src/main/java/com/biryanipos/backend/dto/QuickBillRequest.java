@@ -0,0 +1,28 @@
+package com.biryanipos.backend.dto;
+
+import com.biryanipos.backend.model.OrderType;
+import com.biryanipos.backend.model.PaymentMode;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.List;
+
+// A takeaway sale paid at the counter: the order plus how it was paid
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class QuickBillRequest extends OrderRequest {
+  private PaymentMode paymentMode;
+  private double discount;
+  private double amountReceived; // For cash — to compute change
+  private String transactionRef; // UPI ref / card auth code
+  private List<PaymentRequest.PaymentModeDetail> paymentModes;
+
+  public QuickBillRequest() {
+    setOrderType(OrderType.TAKEAWAY);
+  }
+
+  public PaymentRequest toPaymentRequest(Long orderId) {
+    return new PaymentRequest(orderId, null, paymentMode, discount, amountReceived, transactionRef,
+        isGstEnabled(), paymentModes);
+  }
+}
@@ -0,0 +1,16 @@
+package com.biryanipos.backend.dto;
+
+import com.biryanipos.backend.model.Order;
+import com.biryanipos.backend.model.Payment;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuickBillResult {
+  private Order order;
+  private Payment payment;
+  private String receipt; // Same text as GET /api/orders/{id}/print
+}
@@ -0,0 +1,13 @@
+package com.biryanipos.backend.dto;
+
+import com.biryanipos.backend.model.ReportJobType;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+public class ReportJobRequest {
+  private ReportJobType type;
+  private LocalDate start; // Not used by RECIPE_COSTING
+  private LocalDate end;
+}
@@ -0,0 +1,21 @@
+package com.biryanipos.backend.dto;
+
+import com.biryanipos.backend.model.OrderType;
+import com.biryanipos.backend.model.PaymentMode;
+import lombok.Data;
+
+import java.util.Set;
+
+// Restricts a sales cube query; an empty field matches everything
+@Data
+public class SalesCubeFilter {
+  private Set<String> items; // Item names as billed
+  private Set<OrderType> orderTypes;
+  private Set<PaymentMode> paymentModes;
+  private Integer fromHour; // Inclusive, 0-23
+  private Integer toHour; // Inclusive, 0-23
+
+  public boolean hasItems() {
+    return items != null && !items.isEmpty();
+  }
+}
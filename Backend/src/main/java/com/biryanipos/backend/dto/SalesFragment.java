@@ -0,0 +1,61 @@
+package com.biryanipos.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Additive sales figures for a span of days. ReportService keeps one per
+// closed business day in ReportDayCache and adds them up for a sales report.
+@Data
+@NoArgsConstructor
+public class SalesFragment {
+  private long totalOrders;
+  private long paidOrders;
+  private long cancelledOrders;
+  private long dineInOrders;
+  private long takeawayOrders;
+  private double totalRevenue;
+  private double taxableRevenue;
+  private double exemptRevenue;
+  private double outputCgst;
+  private double outputSgst;
+  private double totalExpenses;
+  private double inputGst;
+  private double cogs;
+  private double wastageValue;
+  private Map<String, Double> paymentBreakdown = new HashMap<>();
+  private Map<String, Double> waiterPerformance = new HashMap<>();
+  private Map<String, ItemSales> items = new HashMap<>(); // Every item sold, not just the top ones
+
+  @Data
+  @AllArgsConstructor
+  @NoArgsConstructor
+  public static class ItemSales {
+    private long quantity;
+    private double revenue;
+  }
+
+  public void add(SalesFragment other) {
+    totalOrders += other.totalOrders;
+    paidOrders += other.paidOrders;
+    cancelledOrders += other.cancelledOrders;
+    dineInOrders += other.dineInOrders;
+    takeawayOrders += other.takeawayOrders;
+    totalRevenue += other.totalRevenue;
+    taxableRevenue += other.taxableRevenue;
+    exemptRevenue += other.exemptRevenue;
+    outputCgst += other.outputCgst;
+    outputSgst += other.outputSgst;
+    totalExpenses += other.totalExpenses;
+    inputGst += other.inputGst;
+    cogs += other.cogs;
+    wastageValue += other.wastageValue;
+    other.paymentBreakdown.forEach((mode, amount) -> paymentBreakdown.merge(mode, amount, Double::sum));
+    other.waiterPerformance.forEach((waiter, amount) -> waiterPerformance.merge(waiter, amount, Double::sum));
+    other.items.forEach((name, sales) -> items.merge(name, new ItemSales(sales.quantity, sales.revenue),
+        (a, b) -> new ItemSales(a.quantity + b.quantity, a.revenue + b.revenue)));
+  }
+}
@@ -0,0 +1,15 @@
+package com.biryanipos.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TopSeller {
+  private String name;
+  private long quantity;
+  private double revenue;
+  private long error; // Quantity may be this much too high; 0 when exact
+}
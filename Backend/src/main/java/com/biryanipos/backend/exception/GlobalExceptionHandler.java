@@ -1,5 +1,6 @@
 package com.biryanipos.backend.exception;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -30,6 +31,44 @@ public class GlobalExceptionHandler {
     return new ResponseEntity<>(body, HttpStatus.UNAUTHORIZED);
   }
 
+  @ExceptionHandler(ServiceBusyException.class)
+  public ResponseEntity<Map<String, Object>> handleServiceBusy(ServiceBusyException ex) {
+    Map<String, Object> body = new HashMap<>();
+    body.put("timestamp", LocalDateTime.now());
+    body.put("message", ex.getMessage());
+    body.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+    return new ResponseEntity<>(body, HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
+  @ExceptionHandler(TooManyRequestsException.class)
+  public ResponseEntity<Map<String, Object>> handleTooManyRequests(TooManyRequestsException ex) {
+    Map<String, Object> body = new HashMap<>();
+    body.put("timestamp", LocalDateTime.now());
+    body.put("message", ex.getMessage());
+    body.put("status", HttpStatus.TOO_MANY_REQUESTS.value());
+    return new ResponseEntity<>(body, HttpStatus.TOO_MANY_REQUESTS);
+  }
+
+  // Still conflicting after ConflictRetryAspect gave up
+  @ExceptionHandler(OptimisticLockingFailureException.class)
+  public ResponseEntity<Map<String, Object>> handleConflict(OptimisticLockingFailureException ex) {
+    Map<String, Object> body = new HashMap<>();
+    body.put("timestamp", LocalDateTime.now());
+    body.put("message", "This record was changed by someone else at the same time, please retry");
+    body.put("status", HttpStatus.CONFLICT.value());
+    return new ResponseEntity<>(body, HttpStatus.CONFLICT);
+  }
+
+  // Same Idempotency-Key, different request body
+  @ExceptionHandler(IdempotencyConflictException.class)
+  public ResponseEntity<Map<String, Object>> handleIdempotencyConflict(IdempotencyConflictException ex) {
+    Map<String, Object> body = new HashMap<>();
+    body.put("timestamp", LocalDateTime.now());
+    body.put("message", ex.getMessage());
+    body.put("status", HttpStatus.UNPROCESSABLE_ENTITY.value());
+    return new ResponseEntity<>(body, HttpStatus.UNPROCESSABLE_ENTITY);
+  }
+
   @ExceptionHandler(RuntimeException.class)
   public ResponseEntity<Map<String, Object>> handleRuntimeException(RuntimeException ex) {
     Map<String, Object> body = new HashMap<>();
@@ -30,8 +30,16 @@ public class Customer {
   private LocalDateTime createdAt;
   private LocalDateTime lastVisit;
 
+  private LocalDateTime updatedAt; // Watermark for incremental backups
+
   @PrePersist
   protected void onCreate() {
     createdAt = LocalDateTime.now();
+    updatedAt = createdAt;
+  }
+
+  @PreUpdate
+  protected void onUpdate() {
+    updatedAt = LocalDateTime.now();
   }
 }
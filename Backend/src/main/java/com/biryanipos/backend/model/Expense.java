@@ -1,5 +1,6 @@
 package com.biryanipos.backend.model;
 
+import com.biryanipos.backend.service.ReportDayCacheListener;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -8,10 +9,15 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(ReportDayCacheListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "expenses")
+@Table(name = "expenses", indexes = {
+    @Index(name = "idx_expense_date", columnList = "expenseDate"),
+    @Index(name = "idx_expense_category", columnList = "category"),
+    @Index(name = "idx_expense_recurring", columnList = "isRecurring")
+})
 public class Expense {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -47,12 +53,19 @@ public class Expense {
   private String notes;
 
   private LocalDateTime createdAt;
+  private LocalDateTime updatedAt; // Watermark for incremental backups
 
   @PrePersist
   protected void onCreate() {
     createdAt = LocalDateTime.now();
+    updatedAt = createdAt;
     if (expenseDate == null) {
       expenseDate = LocalDate.now();
     }
   }
+
+  @PreUpdate
+  protected void onUpdate() {
+    updatedAt = LocalDateTime.now();
+  }
 }
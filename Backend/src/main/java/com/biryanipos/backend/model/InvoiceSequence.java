@@ -0,0 +1,38 @@
+package com.biryanipos.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+// Invoice numbers reserved so far per series and financial year (see
+// InvoiceNumberService); the numbers actually issued are on payments
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "invoice_sequences", uniqueConstraints = @UniqueConstraint(columnNames = { "series",
+    "fiscal_year" }))
+public class InvoiceSequence {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(nullable = false, length = 8)
+  private String series; // GST or NGST
+
+  @Column(nullable = false, length = 8)
+  private String fiscalYear; // e.g. 26-27
+
+  @Column(nullable = false)
+  private long highWater; // Last number of the most recently reserved block
+
+  private LocalDateTime updatedAt;
+
+  @PrePersist
+  @PreUpdate
+  protected void onUpdate() {
+    updatedAt = LocalDateTime.now();
+  }
+}
@@ -0,0 +1,37 @@
+package com.biryanipos.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Menu details copied onto an order line when it is ordered, so bills, KOTs
+// and the KDS never load menu_items (or its image column) and old bills keep
+// the name and tax rate they were sold under
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuItemSnapshot {
+
+  @Column(name = "item_name")
+  private String name;
+
+  @Column(name = "variation_name")
+  private String variationName;
+
+  @Column(name = "item_gst_percent")
+  private Double gstPercent; // Null only on lines saved before snapshots existed
+
+  @Column(name = "item_station")
+  private String preparationStation;
+
+  @Column(name = "item_menu_price")
+  private Double menuPrice; // The menu item's own price; the line's price may be a variation's
+
+  public static MenuItemSnapshot of(MenuItem menuItem, MenuItemVariation variation) {
+    return new MenuItemSnapshot(menuItem.getName(), variation != null ? variation.getName() : null,
+        menuItem.getGstPercent(), menuItem.getPreparationStation(), menuItem.getPrice());
+  }
+}
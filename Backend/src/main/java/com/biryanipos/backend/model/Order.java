@@ -1,5 +1,6 @@
 package com.biryanipos.backend.model;
 
+import com.biryanipos.backend.service.ReportDayCacheListener;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -9,11 +10,12 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@EntityListeners(ReportDayCacheListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Table(name = "orders", indexes = {
-    @Index(name = "idx_order_status", columnList = "status"),
+    @Index(name = "idx_order_status_created", columnList = "status, createdAt"),
     @Index(name = "idx_order_table", columnList = "tableNumber"),
     @Index(name = "idx_order_created", columnList = "createdAt")
 })
@@ -22,6 +24,11 @@ public class Order {
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Long id;
 
+  // Optimistic lock; concurrent writers are retried by ConflictRetryAspect
+  @Version
+  @Column(columnDefinition = "bigint default 0")
+  private Long version;
+
   private String customerName;
   private String customerPhone;
 
@@ -41,6 +48,7 @@ public class Order {
   private LocalDateTime completedAt;
   private LocalDateTime frozenAt; // When modification window expired
   private LocalDateTime estimatedReadyTime;
+  private LocalDateTime overdueAlertedAt; // KDS was told this order missed its ETA
 
   // Monetary fields
   private double subtotal; // Before tax
@@ -58,11 +66,22 @@ public class Order {
   // Who created this order
   private String createdBy; // waiter name / "CUSTOMER_QR" / "CASHIER"
 
+  @Column(unique = true, length = 40)
+  private String journalRef; // Billing journal command that created this order
+
   @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
   private List<OrderItem> items = new ArrayList<>();
 
+  private LocalDateTime updatedAt; // Watermark for incremental backups
+
   @PrePersist
   protected void onCreate() {
     createdAt = LocalDateTime.now();
+    updatedAt = createdAt;
+  }
+
+  @PreUpdate
+  protected void onUpdate() {
+    updatedAt = LocalDateTime.now();
   }
 }
@@ -1,29 +1,57 @@
 package com.biryanipos.backend.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Entity
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "order_items")
+// Sales by item join from orders and read only these columns
+@Table(name = "order_items", indexes = {
+    @Index(name = "idx_order_item_sales", columnList = "order_id, item_name, quantity, price")
+})
 public class OrderItem {
+  public static final String UNKNOWN_ITEM = "Unknown item";
+
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Long id;
 
-  @ManyToOne
+  // Optimistic lock; concurrent writers are retried by ConflictRetryAspect
+  @Version
+  @Column(columnDefinition = "bigint default 0")
+  private Long version;
+
+  // Only loaded for stock and recipe work; everything shown to people reads
+  // the snapshot below
+  @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "menu_item_id", nullable = false)
+  @JsonIgnore
   private MenuItem menuItem;
 
-  @ManyToOne
+  @Column(name = "menu_item_id", insertable = false, updatable = false)
+  private Long menuItemId;
+
+  @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "menu_item_variation_id")
+  @JsonIgnore
   private MenuItemVariation menuItemVariation;
 
+  @Column(name = "menu_item_variation_id", insertable = false, updatable = false)
+  private Long variationId;
+
+  @Embedded
+  @JsonIgnore
+  private MenuItemSnapshot snapshot = new MenuItemSnapshot();
+
   private int quantity;
 
   private double price; // Snapshot price
@@ -36,4 +64,73 @@ public class OrderItem {
   @JoinColumn(name = "order_id")
   @JsonIgnore
   private Order order;
+
+  private java.time.LocalDateTime updatedAt; // Watermark for incremental backups
+
+  // When the line last moved to COOKING; cook times are learned from this,
+  // not updatedAt, which any edit of the line resets
+  private java.time.LocalDateTime cookingStartedAt;
+
+  public void setMenuItem(MenuItem menuItem) {
+    this.menuItem = menuItem;
+    this.menuItemId = menuItem != null ? menuItem.getId() : null;
+  }
+
+  public void setStatus(OrderStatus status) {
+    if (status == OrderStatus.COOKING && this.status != OrderStatus.COOKING) {
+      cookingStartedAt = java.time.LocalDateTime.now();
+    }
+    this.status = status;
+  }
+
+  public void setMenuItemVariation(MenuItemVariation variation) {
+    this.menuItemVariation = variation;
+    this.variationId = variation != null ? variation.getId() : null;
+  }
+
+  // Hibernate leaves the embedded null when all its columns are null
+  public MenuItemSnapshot getSnapshot() {
+    return snapshot != null ? snapshot : new MenuItemSnapshot();
+  }
+
+  // Read from the snapshot only; the startup backfill fills it in on lines
+  // saved before snapshots existed
+  @JsonIgnore
+  public String getItemName() {
+    return getSnapshot().getName() != null ? getSnapshot().getName() : UNKNOWN_ITEM;
+  }
+
+  @JsonIgnore
+  public double getGstPercent() {
+    return getSnapshot().getGstPercent() != null ? getSnapshot().getGstPercent() : 0.0;
+  }
+
+  @JsonIgnore
+  public String getPreparationStation() {
+    return getSnapshot().getPreparationStation();
+  }
+
+  public String getVariationName() {
+    return getSnapshot().getVariationName();
+  }
+
+  // Keeps the "menuItem": {id, name, price, ...} shape clients already read,
+  // built from the snapshot. price is the menu price; the line's own unit
+  // price stays in the top-level price field.
+  @JsonProperty("menuItem")
+  public Map<String, Object> getMenuItemSummary() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("id", menuItemId);
+    summary.put("name", getItemName());
+    summary.put("price", getSnapshot().getMenuPrice());
+    summary.put("gstPercent", getGstPercent());
+    summary.put("preparationStation", getPreparationStation());
+    return summary;
+  }
+
+  @PrePersist
+  @PreUpdate
+  protected void onUpdate() {
+    updatedAt = java.time.LocalDateTime.now();
+  }
 }
@@ -0,0 +1,41 @@
+package com.biryanipos.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+// Side effect recorded in the same transaction as the change that caused it,
+// removed once its handler has run (see EventDispatcher)
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "outbox_events", indexes = {
+    @Index(name = "idx_outbox_created", columnList = "createdAt")
+})
+public class OutboxEvent {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(nullable = false, length = 64)
+  private String eventType;
+
+  @Lob
+  @Column(columnDefinition = "LONGTEXT", nullable = false)
+  private String payload; // JSON
+
+  @Column(nullable = false)
+  private int attempts = 0;
+
+  private String lastError;
+
+  private LocalDateTime createdAt;
+
+  @PrePersist
+  protected void onCreate() {
+    createdAt = LocalDateTime.now();
+  }
+}
@@ -1,5 +1,6 @@
 package com.biryanipos.backend.model;
 
+import com.biryanipos.backend.service.ReportDayCacheListener;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -9,15 +10,28 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@EntityListeners(ReportDayCacheListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "payments")
+// Every report aggregate filters on status + paidAt and reads only the
+// columns in idx_payment_paid, so the index alone answers it
+@Table(name = "payments", uniqueConstraints = @UniqueConstraint(columnNames = { "invoice_series",
+    "invoice_year", "invoice_seq" }), indexes = {
+    @Index(name = "idx_payment_order", columnList = "orderId"),
+    @Index(name = "idx_payment_paid",
+        columnList = "paymentStatus, paidAt, paymentMode, gstEnabled, totalAmount, cgst, sgst")
+})
 public class Payment {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Long id;
 
+  // Optimistic lock; concurrent writers are retried by ConflictRetryAspect
+  @Version
+  @Column(columnDefinition = "bigint default 0")
+  private Long version;
+
   @Column(nullable = false)
   private Long orderId;
 
@@ -50,6 +64,9 @@ public class Payment {
 
   private String transactionRef; // UPI ref / card auth code
 
+  @Column(unique = true, length = 40)
+  private String journalRef; // Billing journal command that recorded this payment
+
   @OneToMany(mappedBy = "payment", cascade = CascadeType.ALL, orphanRemoval = true)
   private List<PaymentDetail> details = new ArrayList<>();
 
@@ -60,10 +77,30 @@ public class Payment {
 
   private LocalDateTime paidAt;
 
+  // Gapless per financial year and series, assigned by InvoiceNumberService
+  @Column(length = 8)
+  private String invoiceSeries; // GST or NGST (bill of supply)
+
+  @Column(length = 8)
+  private String invoiceYear; // e.g. 26-27
+
+  private Long invoiceSeq;
+
+  @Column(unique = true, length = 16)
+  private String invoiceNumber; // e.g. INV/26-27/000042
+
+  private LocalDateTime updatedAt; // Watermark for incremental backups
+
   @PrePersist
   protected void onCreate() {
     if (paidAt == null && paymentStatus == PaymentStatus.COMPLETED) {
       paidAt = LocalDateTime.now();
     }
+    updatedAt = LocalDateTime.now();
+  }
+
+  @PreUpdate
+  protected void onUpdate() {
+    updatedAt = LocalDateTime.now();
   }
 }
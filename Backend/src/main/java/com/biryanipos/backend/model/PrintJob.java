@@ -0,0 +1,61 @@
+package com.biryanipos.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "print_jobs", indexes = {
+    @Index(name = "idx_print_job_queue", columnList = "printerName, status, id"),
+    @Index(name = "idx_print_job_dedupe", columnList = "dedupeKey, createdAt"),
+    @Index(name = "idx_print_job_status", columnList = "status, printedAt"),
+    @Index(name = "idx_print_job_order", columnList = "orderId")
+})
+public class PrintJob {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(nullable = false)
+  private String printerName;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false)
+  private PrintJobType jobType;
+
+  private Long orderId;
+
+  private String station; // Preparation station for KOTs
+
+  @Lob
+  @Column(columnDefinition = "LONGTEXT", nullable = false)
+  private String content; // Rendered ticket text
+
+  @Column(nullable = false, length = 64)
+  private String dedupeKey; // SHA-256 of printer + type + order + content
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false)
+  private PrintJobStatus status = PrintJobStatus.PENDING;
+
+  @Column(nullable = false)
+  private int attempts = 0;
+
+  private LocalDateTime nextAttemptAt;
+  private String lastError;
+
+  private LocalDateTime createdAt;
+  private LocalDateTime printedAt;
+
+  @PrePersist
+  protected void onCreate() {
+    createdAt = LocalDateTime.now();
+    if (nextAttemptAt == null)
+      nextAttemptAt = createdAt;
+  }
+}
@@ -0,0 +1,8 @@
+package com.biryanipos.backend.model;
+
+public enum PrintJobStatus {
+  PENDING, // Waiting in the printer queue (or backing off after a failure)
+  PRINTING, // Handed to the printer socket
+  PRINTED,
+  FAILED // Gave up after max attempts
+}
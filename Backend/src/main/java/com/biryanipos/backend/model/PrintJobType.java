@@ -0,0 +1,6 @@
+package com.biryanipos.backend.model;
+
+public enum PrintJobType {
+  BILL, // Customer receipt
+  KOT // Kitchen order ticket for one preparation station
+}
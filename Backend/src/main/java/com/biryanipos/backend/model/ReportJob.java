@@ -0,0 +1,52 @@
+package com.biryanipos.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "report_jobs", indexes = {
+    @Index(name = "idx_report_job_status", columnList = "status, id"),
+    @Index(name = "idx_report_job_finished", columnList = "finishedAt")
+})
+public class ReportJob {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false)
+  private ReportJobType jobType;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false)
+  private ReportJobStatus status = ReportJobStatus.QUEUED;
+
+  private LocalDate startDate;
+  private LocalDate endDate;
+
+  // Resume point: the next day to process, and how much of the artifact file
+  // belongs to the days already done (anything after it is cut on resume)
+  private LocalDate nextDate;
+  private long artifactBytes;
+
+  private int chunksDone;
+  private int totalChunks;
+
+  private String lastError;
+
+  private LocalDateTime createdAt;
+  private LocalDateTime startedAt;
+  private LocalDateTime finishedAt;
+
+  @PrePersist
+  protected void onCreate() {
+    createdAt = LocalDateTime.now();
+  }
+}
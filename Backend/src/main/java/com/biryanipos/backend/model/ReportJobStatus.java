@@ -0,0 +1,9 @@
+package com.biryanipos.backend.model;
+
+public enum ReportJobStatus {
+  QUEUED, // Waiting for the job thread (or interrupted by a restart)
+  RUNNING,
+  DONE, // Artifact ready to download
+  FAILED,
+  CANCELLED
+}
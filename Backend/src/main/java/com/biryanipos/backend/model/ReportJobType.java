@@ -0,0 +1,8 @@
+package com.biryanipos.backend.model;
+
+public enum ReportJobType {
+  SALES, // Sales report for the range, as JSON
+  GST, // GST invoice register, CSV
+  WASTAGE, // Waste stock transactions, CSV
+  RECIPE_COSTING // Cost and margin of every menu item, CSV
+}
@@ -15,6 +15,11 @@ public class RestaurantTable {
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Long id;
 
+  // Optimistic lock; concurrent writers are retried by ConflictRetryAspect
+  @Version
+  @Column(columnDefinition = "bigint default 0")
+  private Long version;
+
   @Column(nullable = false, unique = true)
   private String tableNumber;
 
@@ -27,4 +32,12 @@ public class RestaurantTable {
 
   // Current active order on this table (null if available)
   private Long currentOrderId;
+
+  private java.time.LocalDateTime updatedAt; // Watermark for incremental backups
+
+  @PrePersist
+  @PreUpdate
+  protected void onUpdate() {
+    updatedAt = java.time.LocalDateTime.now();
+  }
 }
@@ -35,9 +35,17 @@ public class Shift {
   private double totalDiscount;
   private int orderCount;
 
+  private LocalDateTime updatedAt; // Watermark for incremental backups
+
   @PrePersist
   protected void onCreate() {
     if (openingTime == null)
       openingTime = LocalDateTime.now();
+    updatedAt = LocalDateTime.now();
+  }
+
+  @PreUpdate
+  protected void onUpdate() {
+    updatedAt = LocalDateTime.now();
   }
 }
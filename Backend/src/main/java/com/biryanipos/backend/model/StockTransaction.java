@@ -1,5 +1,6 @@
 package com.biryanipos.backend.model;
 
+import com.biryanipos.backend.service.ReportDayCacheListener;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -7,10 +8,16 @@ import lombok.AllArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(ReportDayCacheListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "stock_transactions")
+// stock_item_id is covered by its foreign key index
+@Table(name = "stock_transactions", indexes = {
+    @Index(name = "idx_stock_txn_type_date", columnList = "transactionType, transactionDate, quantity, unitCostSnapshot"),
+    @Index(name = "idx_stock_txn_date", columnList = "transactionDate"),
+    @Index(name = "idx_stock_txn_expiry", columnList = "expiryDate")
+})
 public class StockTransaction {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
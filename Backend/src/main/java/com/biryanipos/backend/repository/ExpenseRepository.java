@@ -1,6 +1,7 @@
 package com.biryanipos.backend.repository;
 
 import com.biryanipos.backend.model.Expense;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -11,10 +12,18 @@ import java.util.List;
 
 @Repository
 public interface ExpenseRepository extends JpaRepository<Expense, Long> {
+  // Supplier is joined in the same query instead of one select per expense
+  @Override
+  @EntityGraph(attributePaths = "supplier")
+  List<Expense> findAll();
+
+  @EntityGraph(attributePaths = "supplier")
   List<Expense> findByExpenseDateBetween(LocalDate start, LocalDate end);
 
+  @EntityGraph(attributePaths = "supplier")
   List<Expense> findByExpenseDate(LocalDate date);
 
+  @EntityGraph(attributePaths = "supplier")
   List<Expense> findByCategory(String category);
 
   @Query("SELECT SUM(e.amount) FROM Expense e WHERE e.expenseDate BETWEEN :start AND :end")
@@ -25,5 +34,6 @@ public interface ExpenseRepository extends JpaRepository<Expense, Long> {
 
   List<Expense> findByIsRecurringTrue();
 
+  @EntityGraph(attributePaths = "supplier")
   List<Expense> findBySupplierId(Long supplierId);
 }
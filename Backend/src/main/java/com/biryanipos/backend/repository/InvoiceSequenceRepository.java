@@ -0,0 +1,20 @@
+package com.biryanipos.backend.repository;
+
+import com.biryanipos.backend.model.InvoiceSequence;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface InvoiceSequenceRepository extends JpaRepository<InvoiceSequence, Long> {
+
+  // One row lock per reserved block
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT s FROM InvoiceSequence s WHERE s.series = :series AND s.fiscalYear = :fiscalYear")
+  Optional<InvoiceSequence> findForUpdate(@Param("series") String series, @Param("fiscalYear") String fiscalYear);
+}
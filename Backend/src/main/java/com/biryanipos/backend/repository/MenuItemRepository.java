@@ -1,11 +1,13 @@
 package com.biryanipos.backend.repository;
 
 import com.biryanipos.backend.model.MenuItem;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -18,11 +20,36 @@ public interface MenuItemRepository extends JpaRepository<MenuItem, Long> {
 
   java.util.Optional<MenuItem> findByBarcode(String barcode);
 
+  @EntityGraph(attributePaths = "variations")
   @Query("SELECT m FROM MenuItem m WHERE LOWER(m.name) LIKE LOWER(CONCAT('%', :query, '%'))")
   List<MenuItem> searchByName(@Param("query") String query);
 
+  // Fetch plans for API responses. variations and ingredients are both lists,
+  // which Hibernate cannot join-fetch in one query, so ingredients come in a
+  // second query over the same items (fetchIngredients).
+  @EntityGraph(attributePaths = "variations")
+  @Query("SELECT m FROM MenuItem m")
+  List<MenuItem> findAllWithVariations();
+
+  @EntityGraph(attributePaths = "variations")
+  List<MenuItem> findWithVariationsByAvailableTrue();
+
+  @EntityGraph(attributePaths = "variations")
+  List<MenuItem> findWithVariationsByCategory(String category);
+
+  @EntityGraph(attributePaths = "variations")
+  java.util.Optional<MenuItem> findWithVariationsById(Long id);
+
+  @Query("SELECT DISTINCT m FROM MenuItem m LEFT JOIN FETCH m.ingredients i LEFT JOIN FETCH i.stockItem s "
+      + "LEFT JOIN FETCH s.supplierRef WHERE m IN :items")
+  List<MenuItem> fetchIngredients(@Param("items") Collection<MenuItem> items);
+
   List<MenuItem> findByCategoryAndAvailableTrue(String category);
 
+  // id, prepTimeMinutes for the ETA model, without loading whole menu items
+  @Query("SELECT m.id, m.prepTimeMinutes FROM MenuItem m")
+  List<Object[]> findPrepTimes();
+
   @org.springframework.data.jpa.repository.Lock(jakarta.persistence.LockModeType.PESSIMISTIC_WRITE)
   @Query("SELECT m FROM MenuItem m WHERE m.id = :id")
   java.util.Optional<MenuItem> findByIdWithLock(@Param("id") Long id);
@@ -7,10 +7,41 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
 
-  @org.springframework.data.jpa.repository.Query("SELECT i.menuItem.name, SUM(i.quantity), SUM(i.quantity * i.price) "
+  @org.springframework.data.jpa.repository.Query("SELECT i.snapshot.name, SUM(i.quantity), SUM(i.quantity * i.price) "
       + "FROM OrderItem i JOIN i.order o " + "WHERE o.createdAt BETWEEN :start AND :end AND o.status = 'PAID' "
-      + "GROUP BY i.menuItem.name " + "ORDER BY SUM(i.quantity) DESC")
+      + "GROUP BY i.snapshot.name " + "ORDER BY SUM(i.quantity) DESC")
   java.util.List<Object[]> findTopSellingItems(
       @org.springframework.data.repository.query.Param("start") java.time.LocalDateTime start,
       @org.springframework.data.repository.query.Param("end") java.time.LocalDateTime end);
+
+  @org.springframework.data.jpa.repository.Query("SELECT i.order.id FROM OrderItem i WHERE i.id = :id")
+  java.util.Optional<Long> findOrderIdById(@org.springframework.data.repository.query.Param("id") Long id);
+
+  @org.springframework.data.jpa.repository.Query("SELECT DISTINCT i.order.id FROM OrderItem i WHERE i.id IN :ids")
+  java.util.List<Long> findOrderIdsByIdIn(
+      @org.springframework.data.repository.query.Param("ids") java.util.Collection<Long> ids);
+
+  // Lines still waiting in the kitchen for one menu item + variation, oldest first
+  @org.springframework.data.jpa.repository.Query("SELECT i.id, o.id, o.tableNumber, i.quantity "
+      + "FROM OrderItem i JOIN i.order o WHERE i.menuItemId = :menuItemId "
+      + "AND ((:variationId IS NULL AND i.variationId IS NULL) OR i.variationId = :variationId) "
+      + "AND i.status IN ('NEW', 'COOKING') AND o.status IN ('NEW', 'COOKING') ORDER BY i.id")
+  java.util.List<Object[]> findWaitingLines(
+      @org.springframework.data.repository.query.Param("menuItemId") Long menuItemId,
+      @org.springframework.data.repository.query.Param("variationId") Long variationId);
+
+  // One-off copy of menu details onto order lines saved before snapshots, or
+  // before the snapshot carried the menu price
+  @org.springframework.data.jpa.repository.Modifying
+  @org.springframework.data.jpa.repository.Query(value = "UPDATE order_items SET "
+      + "item_name = COALESCE(item_name, (SELECT m.name FROM menu_items m WHERE m.id = order_items.menu_item_id)), "
+      + "item_gst_percent = COALESCE(item_gst_percent, "
+      + "(SELECT m.gst_percent FROM menu_items m WHERE m.id = order_items.menu_item_id)), "
+      + "item_station = COALESCE(item_station, "
+      + "(SELECT m.preparation_station FROM menu_items m WHERE m.id = order_items.menu_item_id)), "
+      + "variation_name = COALESCE(variation_name, "
+      + "(SELECT v.name FROM menu_item_variations v WHERE v.id = order_items.menu_item_variation_id)), "
+      + "item_menu_price = (SELECT m.price FROM menu_items m WHERE m.id = order_items.menu_item_id) "
+      + "WHERE item_name IS NULL OR item_menu_price IS NULL", nativeQuery = true)
+  int backfillSnapshots();
 }
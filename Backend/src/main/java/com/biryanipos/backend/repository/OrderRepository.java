@@ -3,31 +3,48 @@ package com.biryanipos.backend.repository;
 import com.biryanipos.backend.model.Order;
 import com.biryanipos.backend.model.OrderStatus;
 import com.biryanipos.backend.model.OrderType;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
   List<Order> findByStatus(OrderStatus status);
 
-  List<Order> findByStatusNot(OrderStatus status);
+  List<Order> findByTableNumber(String tableNumber);
 
-  List<Order> findByOrderType(OrderType orderType);
+  Optional<Order> findByJournalRef(String journalRef);
 
-  List<Order> findByTableNumber(String tableNumber);
+  // Fetch plans for API responses (open-in-view is off): lines come with the order
+  @EntityGraph(attributePaths = "items")
+  Optional<Order> findWithItemsById(Long id);
+
+  @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items ORDER BY o.id")
+  List<Order> findAllWithItems();
+
+  @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items WHERE o.id IN :ids")
+  List<Order> findWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+
+  @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items WHERE o.createdAt BETWEEN :start AND :end")
+  List<Order> findWithItemsByCreatedAtBetween(@Param("start") LocalDateTime start,
+      @Param("end") LocalDateTime end);
 
   @Query("SELECT o FROM Order o WHERE o.createdAt BETWEEN :start AND :end")
   List<Order> findByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
-  @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items WHERE o.status NOT IN ('PAID', 'CANCELLED') ORDER BY o.createdAt DESC")
+  // Open statuses listed rather than NOT IN ('PAID', 'CANCELLED'), which
+  // cannot seek on idx_order_status_created
+  @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items WHERE o.status IN ('NEW', 'COOKING', 'READY', 'SERVED') ORDER BY o.createdAt DESC")
   List<Order> findActiveOrders();
 
-  @Query("SELECT COUNT(o) FROM Order o WHERE o.status NOT IN ('PAID', 'CANCELLED')")
+  @Query("SELECT COUNT(o) FROM Order o WHERE o.status IN ('NEW', 'COOKING', 'READY', 'SERVED')")
   long countActiveOrders();
 
   @Query("SELECT COUNT(o) FROM Order o WHERE o.createdAt BETWEEN :start AND :end")
@@ -0,0 +1,30 @@
+package com.biryanipos.backend.repository;
+
+import com.biryanipos.backend.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+  // Claims an event so the dispatcher and the sweeper never both handle it
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT e FROM OutboxEvent e WHERE e.id = :id")
+  Optional<OutboxEvent> findByIdForUpdate(@Param("id") Long id);
+
+  // Events whose after-commit dispatch never completed (crash, handler failure)
+  @Query("SELECT e.id FROM OutboxEvent e WHERE e.createdAt < :before AND e.attempts < :maxAttempts ORDER BY e.id")
+  List<Long> findStaleIds(@Param("before") LocalDateTime before, @Param("maxAttempts") int maxAttempts,
+      Pageable pageable);
+
+  long countByAttemptsGreaterThanEqual(int attempts);
+}
@@ -2,6 +2,8 @@ package com.biryanipos.backend.repository;
 
 import com.biryanipos.backend.model.Payment;
 import com.biryanipos.backend.model.PaymentStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -15,6 +17,11 @@ import java.util.Optional;
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
   Optional<Payment> findByOrderId(Long orderId);
 
+  @EntityGraph(attributePaths = "details")
+  Optional<Payment> findWithDetailsByOrderId(Long orderId);
+
+  Optional<Payment> findByJournalRef(String journalRef);
+
   List<Payment> findByPaymentStatus(PaymentStatus status);
 
   @Query("SELECT p FROM Payment p WHERE p.paidAt BETWEEN :start AND :end AND p.paymentStatus = 'COMPLETED'")
@@ -37,4 +44,39 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
   @Query("SELECT COALESCE(SUM(p.totalAmount), 0) FROM Payment p WHERE p.paidAt BETWEEN :start AND :end AND p.paymentStatus = 'COMPLETED' AND p.gstEnabled = false")
   Double sumExemptRevenueBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+  // Sales cube: one day of item lines and of order totals, by hour, order type and payment mode
+  @Query("SELECT EXTRACT(HOUR FROM p.paidAt), o.orderType, p.paymentMode, i.snapshot.name, SUM(i.quantity), "
+      + "SUM(i.quantity * i.price) FROM Payment p JOIN Order o ON o.id = p.orderId JOIN o.items i "
+      + "WHERE p.paidAt >= :start AND p.paidAt < :end AND p.paymentStatus = 'COMPLETED' "
+      + "GROUP BY EXTRACT(HOUR FROM p.paidAt), o.orderType, p.paymentMode, i.snapshot.name")
+  List<Object[]> findCubeLinesBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+  @Query("SELECT EXTRACT(HOUR FROM p.paidAt), o.orderType, p.paymentMode, COUNT(p), SUM(p.totalAmount) "
+      + "FROM Payment p JOIN Order o ON o.id = p.orderId "
+      + "WHERE p.paidAt >= :start AND p.paidAt < :end AND p.paymentStatus = 'COMPLETED' "
+      + "GROUP BY EXTRACT(HOUR FROM p.paidAt), o.orderType, p.paymentMode")
+  List<Object[]> findCubeOrdersBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+  // Items sold by payments in a window, best sellers first
+  @Query("SELECT i.snapshot.name, SUM(i.quantity), SUM(i.quantity * i.price) "
+      + "FROM Payment p JOIN Order o ON o.id = p.orderId JOIN o.items i "
+      + "WHERE p.paidAt >= :start AND p.paidAt < :end AND p.paymentStatus = 'COMPLETED' "
+      + "GROUP BY i.snapshot.name ORDER BY SUM(i.quantity) DESC")
+  List<Object[]> findItemSalesBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+      Pageable pageable);
+
+  @Query("SELECT p.id FROM Payment p WHERE p.paidAt >= :start AND p.paidAt < :end AND p.paymentStatus = 'COMPLETED'")
+  List<Long> findCompletedIdsBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+  @Query("SELECT MIN(p.paidAt) FROM Payment p WHERE p.paymentStatus = 'COMPLETED'")
+  LocalDateTime findFirstPaidAt();
+
+  // Invoice numbers issued in a series and financial year (InvoiceNumberService recovery)
+  @Query("SELECT COALESCE(MAX(p.invoiceSeq), 0) FROM Payment p "
+      + "WHERE p.invoiceSeries = :series AND p.invoiceYear = :fiscalYear")
+  long findMaxInvoiceSeq(@Param("series") String series, @Param("fiscalYear") String fiscalYear);
+
+  @Query("SELECT COUNT(p.invoiceSeq) FROM Payment p WHERE p.invoiceSeries = :series AND p.invoiceYear = :fiscalYear")
+  long countInvoiceSeqs(@Param("series") String series, @Param("fiscalYear") String fiscalYear);
 }
@@ -0,0 +1,47 @@
+package com.biryanipos.backend.repository;
+
+import com.biryanipos.backend.model.PrintJob;
+import com.biryanipos.backend.model.PrintJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PrintJobRepository extends JpaRepository<PrintJob, Long> {
+
+  // Head of a printer's FIFO queue
+  Optional<PrintJob> findFirstByPrinterNameAndStatusOrderByIdAsc(String printerName, PrintJobStatus status);
+
+  Optional<PrintJob> findFirstByDedupeKeyAndStatusInAndCreatedAtAfterOrderByIdDesc(String dedupeKey,
+      Collection<PrintJobStatus> statuses, LocalDateTime after);
+
+  long countByPrinterNameAndStatus(String printerName, PrintJobStatus status);
+
+  List<PrintJob> findByOrderIdOrderByIdAsc(Long orderId);
+
+  List<PrintJob> findTop100ByOrderByIdDesc();
+
+  List<PrintJob> findTop100ByStatusOrderByIdDesc(PrintJobStatus status);
+
+  // Jobs interrupted mid-print by a restart go back to the queue
+  @Modifying
+  @Transactional
+  @Query("UPDATE PrintJob j SET j.status = 'PENDING' WHERE j.status = 'PRINTING'")
+  int requeueInterrupted();
+
+  @Query("SELECT DISTINCT j.printerName FROM PrintJob j WHERE j.status = 'PENDING'")
+  List<String> findPrintersWithPendingJobs();
+
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM PrintJob j WHERE j.status = 'PRINTED' AND j.printedAt < :cutoff")
+  int deletePrintedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -2,14 +2,24 @@ package com.biryanipos.backend.repository;
 
 import com.biryanipos.backend.model.PurchaseOrder;
 import com.biryanipos.backend.model.PurchaseOrderStatus;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PurchaseOrderRepository extends JpaRepository<PurchaseOrder, Long> {
   List<PurchaseOrder> findBySupplierId(Long supplierId);
 
   List<PurchaseOrder> findByStatus(PurchaseOrderStatus status);
+
+  @Query("SELECT DISTINCT po FROM PurchaseOrder po JOIN FETCH po.supplier LEFT JOIN FETCH po.items i "
+      + "LEFT JOIN FETCH i.stockItem s LEFT JOIN FETCH s.supplierRef ORDER BY po.id")
+  List<PurchaseOrder> findAllWithItems();
+
+  @EntityGraph(attributePaths = { "supplier", "items", "items.stockItem" })
+  Optional<PurchaseOrder> findWithItemsById(Long id);
 }
@@ -0,0 +1,31 @@
+package com.biryanipos.backend.repository;
+
+import com.biryanipos.backend.model.ReportJob;
+import com.biryanipos.backend.model.ReportJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ReportJobRepository extends JpaRepository<ReportJob, Long> {
+
+  List<ReportJob> findByStatusOrderByIdAsc(ReportJobStatus status);
+
+  long countByStatusIn(Collection<ReportJobStatus> statuses);
+
+  List<ReportJob> findTop50ByOrderByIdDesc();
+
+  List<ReportJob> findByFinishedAtBefore(LocalDateTime cutoff);
+
+  // Jobs cut off by a restart resume from their last finished day
+  @Modifying
+  @Transactional
+  @Query("UPDATE ReportJob j SET j.status = 'QUEUED' WHERE j.status = 'RUNNING'")
+  int requeueInterrupted();
+}
@@ -1,6 +1,7 @@
 package com.biryanipos.backend.repository;
 
 import com.biryanipos.backend.model.StockItem;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -12,8 +13,10 @@ import java.util.Optional;
 public interface StockItemRepository extends JpaRepository<StockItem, Long> {
   Optional<StockItem> findByName(String name);
 
+  @EntityGraph(attributePaths = "supplierRef")
   List<StockItem> findByActiveTrue();
 
+  @EntityGraph(attributePaths = "supplierRef")
   @Query("SELECT s FROM StockItem s WHERE s.currentStock <= s.reorderLevel AND s.active = true")
   List<StockItem> findLowStockItems();
 
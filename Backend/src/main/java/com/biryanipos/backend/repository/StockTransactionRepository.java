@@ -2,6 +2,7 @@ package com.biryanipos.backend.repository;
 
 import com.biryanipos.backend.model.StockTransaction;
 import com.biryanipos.backend.model.StockTransactionType;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -10,12 +11,19 @@ import java.util.List;
 
 @Repository
 public interface StockTransactionRepository extends JpaRepository<StockTransaction, Long> {
+    @EntityGraph(attributePaths = { "stockItem", "stockItem.supplierRef" })
     List<StockTransaction> findByStockItemId(Long stockItemId);
 
+    @EntityGraph(attributePaths = { "stockItem", "stockItem.supplierRef" })
     List<StockTransaction> findByTransactionType(StockTransactionType type);
 
     List<StockTransaction> findByTransactionDateBetween(LocalDateTime start, LocalDateTime end);
 
+    @EntityGraph(attributePaths = { "stockItem", "stockItem.supplierRef" })
+    List<StockTransaction> findWithItemByTransactionTypeAndTransactionDateBetween(StockTransactionType type,
+            LocalDateTime start, LocalDateTime end);
+
+    @EntityGraph(attributePaths = { "stockItem", "stockItem.supplierRef" })
     @org.springframework.data.jpa.repository.Query("SELECT st FROM StockTransaction st WHERE st.expiryDate IS NOT NULL AND st.expiryDate <= :date")
     List<StockTransaction> findExpiringByDate(
             @org.springframework.data.repository.query.Param("date") java.time.LocalDate date);
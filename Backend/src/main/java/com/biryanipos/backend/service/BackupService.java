@@ -1,75 +1,842 @@
 package com.biryanipos.backend.service;
 
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.dto.BackupInfo;
+import com.biryanipos.backend.dto.BackupManifest;
+import com.biryanipos.backend.dto.BackupManifest.ChunkEntry;
+import com.biryanipos.backend.dto.BackupManifest.ColumnEntry;
+import com.biryanipos.backend.dto.BackupManifest.TableEntry;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
-
-import lombok.extern.slf4j.Slf4j;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
+// Database-agnostic logical backups. Every table is streamed through a
+// forward-only cursor into data/<table>/chunk-NNNNN.jsonl entries of a zip
+// archive (one JSON array per row), with a manifest.json carrying the column
+// layout, per-chunk SHA-256 checksums and the id / updated_at watermarks that
+// incremental backups continue from. Incrementals also list every id a table
+// still has, which is how deletes reach a restore.
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class BackupService {
 
-  private final org.springframework.jdbc.core.JdbcTemplate jdbcTemplate;
+  public static final String TYPE_FULL = "FULL";
+  public static final String TYPE_INCREMENTAL = "INCREMENTAL";
+  public static final String TYPE_LEGACY = "LEGACY";
 
-  public BackupService(org.springframework.jdbc.core.JdbcTemplate jdbcTemplate) {
-    this.jdbcTemplate = jdbcTemplate;
-  }
+  private static final String MODE_FULL = "FULL";
+  private static final String MODE_DELTA = "DELTA";
+  private static final String MODE_APPEND = "APPEND";
 
-  private static final String BACKUP_DIR = "./backups/";
-  private static final int MAX_BACKUP_DAYS = 7;
+  private static final String MANIFEST_ENTRY = "manifest.json";
+  private static final String FILE_PREFIX = "posdb_backup_";
+  private static final Pattern SAFE_FILE_NAME = Pattern.compile("[A-Za-z0-9_.-]+\\.zip");
+  private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS");
 
-  // Run every day at 2 AM
+  private static final List<String> WATERMARK_COLUMNS = List.of("updated_at", "last_updated");
+  // Rows in these tables are never updated after insert, so the id alone finds new rows
+  private static final Set<String> APPEND_ONLY_TABLES = Set.of("stock_transactions", "payment_details",
+      "wastage_records");
+  private static final int RESTORE_BATCH_SIZE = 500;
+
+  private final DataSource dataSource;
+  private final ObjectMapper objectMapper;
+  private final AppProperties appProperties;
+  private final InvoiceNumberService invoiceNumberService;
+  private final ReportDayCache reportDayCache;
+  private final SalesCubeService salesCubeService;
+  private final TopSellerTracker topSellerTracker;
+
+  // Run every day at 2 AM: a full backup once per interval, incremental otherwise
   @Scheduled(cron = "0 0 2 * * ?")
   public void scheduleBackup() {
     log.info("Starting scheduled database backup...");
-    performBackup();
+    if (isFullBackupDue()) {
+      performBackup();
+    } else {
+      performIncrementalBackup();
+    }
     cleanupOldBackups();
   }
 
   public String performBackup() {
+    return runBackup(false);
+  }
+
+  public String performIncrementalBackup() {
+    return runBackup(true);
+  }
+
+  private String runBackup(boolean incremental) {
+    Path tempFile = null;
     try {
-      Files.createDirectories(Paths.get(BACKUP_DIR));
+      Path dir = backupDir();
+      Files.createDirectories(dir);
+
+      BackupInfo base = null;
+      BackupManifest baseManifest = null;
+      if (incremental) {
+        base = listBackups().stream()
+            .filter(b -> !TYPE_LEGACY.equals(b.getType()))
+            .findFirst().orElse(null);
+        if (base == null) {
+          log.info("No previous backup to build on, taking a full backup instead");
+        } else {
+          baseManifest = readManifest(dir.resolve(base.getFileName()));
+        }
+      }
+      boolean isIncremental = baseManifest != null;
+
+      LocalDateTime now = LocalDateTime.now();
+      String fileName = FILE_PREFIX + now.format(FILE_TIMESTAMP) + (isIncremental ? "_incr" : "_full") + ".zip";
+      tempFile = dir.resolve(fileName + ".part");
 
-      String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-      String backupFileName = "posdb_backup_" + timestamp + ".zip";
-      String backupFilePath = new File(BACKUP_DIR + backupFileName).getAbsolutePath();
+      BackupManifest manifest = new BackupManifest();
+      manifest.setType(isIncremental ? TYPE_INCREMENTAL : TYPE_FULL);
+      manifest.setBaseBackup(isIncremental ? base.getFileName() : null);
+      manifest.setCreatedAt(now.toString());
 
-      // Use H2's native BACKUP TO which handles live files safely
-      jdbcTemplate.execute("BACKUP TO '" + backupFilePath + "'");
+      // Not the highest updated_at read: a row stamped before that but committed after
+      // the scan would never be picked up. Rows stamped within the margin are read twice.
+      LocalDateTime watermark = now.minusMinutes(appProperties.getSystem().getBackupWatermarkMarginMinutes());
+      long started = System.currentTimeMillis();
+      IoThrottle throttle = new IoThrottle(appProperties.getSystem().getBackupMaxBytesPerSecond());
+      try (Connection conn = dataSource.getConnection();
+          ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        // One consistent snapshot for every table
+        conn.setAutoCommit(false);
+        conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        conn.setReadOnly(true);
+        try {
+          manifest.setDatabaseProduct(conn.getMetaData().getDatabaseProductName());
+          for (String table : listTables(conn)) {
+            TableEntry entry = describeTable(conn, table);
+            TableEntry previous = baseManifest != null ? findTable(baseManifest, table) : null;
+            dumpTable(conn, zip, entry, previous, watermark, throttle);
+            manifest.getTables().add(entry);
+          }
+        } finally {
+          conn.rollback();
+          conn.setReadOnly(false);
+          conn.setAutoCommit(true);
+        }
+
+        zip.putNextEntry(new ZipEntry(MANIFEST_ENTRY));
+        zip.write(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(manifest));
+        zip.closeEntry();
+      }
 
-      log.info("Safe H2 backup created at: {}", backupFilePath);
-      return backupFileName;
+      Files.move(tempFile, dir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      long rows = manifest.getTables().stream().mapToLong(TableEntry::getRowCount).sum();
+      log.info("{} backup {} written: {} tables, {} rows in {} ms", manifest.getType(), fileName,
+          manifest.getTables().size(), rows, System.currentTimeMillis() - started);
+      return fileName;
     } catch (Exception e) {
       log.error("Backup failed", e);
+      if (tempFile != null) {
+        try {
+          Files.deleteIfExists(tempFile);
+        } catch (IOException ignored) {
+          // Stale .part files are removed by cleanupOldBackups
+        }
+      }
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
       return "Backup failed: " + e.getMessage();
     }
   }
 
-  private void cleanupOldBackups() {
+  private void dumpTable(Connection conn, ZipOutputStream zip, TableEntry entry, TableEntry previous,
+      LocalDateTime watermark, IoThrottle throttle) throws SQLException, IOException, InterruptedException {
+    String q = conn.getMetaData().getIdentifierQuoteString().trim();
+    String mode = MODE_FULL;
+    if (previous != null && entry.getKeyColumn() != null && entry.getKeyColumn().equals(previous.getKeyColumn())) {
+      if (entry.getWatermarkColumn() != null && entry.getWatermarkColumn().equals(previous.getWatermarkColumn())) {
+        mode = MODE_DELTA;
+      } else if (APPEND_ONLY_TABLES.contains(entry.getName().toLowerCase(Locale.ROOT))) {
+        mode = MODE_APPEND;
+      }
+    }
+    entry.setMode(mode);
+
+    long maxId = previous != null && previous.getMaxId() != null && !MODE_FULL.equals(mode) ? previous.getMaxId() : 0;
+    LocalDateTime since = previous != null && previous.getMaxWatermark() != null && MODE_DELTA.equals(mode)
+        ? LocalDateTime.parse(previous.getMaxWatermark())
+        : null;
+
+    StringBuilder sql = new StringBuilder("SELECT * FROM ").append(quote(q, entry.getName()));
+    if (MODE_DELTA.equals(mode)) {
+      sql.append(" WHERE ").append(quote(q, entry.getKeyColumn())).append(" > ? OR ")
+          .append(quote(q, entry.getWatermarkColumn())).append(" > ?");
+    } else if (MODE_APPEND.equals(mode)) {
+      sql.append(" WHERE ").append(quote(q, entry.getKeyColumn())).append(" > ?");
+    }
+    if (entry.getKeyColumn() != null) {
+      sql.append(" ORDER BY ").append(quote(q, entry.getKeyColumn()));
+    }
+
+    int keyIndex = columnIndex(entry, entry.getKeyColumn());
+    int watermarkIndex = columnIndex(entry, entry.getWatermarkColumn());
+    int chunkRows = Math.max(1, appProperties.getSystem().getBackupChunkRows());
+
+    try (PreparedStatement ps = conn.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY,
+        ResultSet.CONCUR_READ_ONLY)) {
+      ps.setFetchSize(streamingFetchSize(conn));
+      if (!MODE_FULL.equals(mode)) {
+        ps.setLong(1, maxId);
+      }
+      if (MODE_DELTA.equals(mode)) {
+        ps.setTimestamp(2, Timestamp.valueOf(since != null ? since : LocalDateTime.of(1970, 1, 1, 0, 0)));
+      }
+
+      try (ResultSet rs = ps.executeQuery()) {
+        ChunkOutputStream chunk = null;
+        JsonGenerator gen = null;
+        long written = 0;
+        while (rs.next()) {
+          if (chunk == null) {
+            String name = String.format("data/%s/chunk-%05d.jsonl", entry.getName(), entry.getChunks().size() + 1);
+            zip.putNextEntry(new ZipEntry(name));
+            chunk = new ChunkOutputStream(zip, name);
+            gen = objectMapper.getFactory().createGenerator(chunk);
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.setRootValueSeparator(new SerializedString("\n"));
+            written = 0;
+          }
+
+          writeRow(gen, rs, entry.getColumns());
+          chunk.rows++;
+          entry.setRowCount(entry.getRowCount() + 1);
+          if (keyIndex > 0) {
+            long id = rs.getLong(keyIndex);
+            if (!rs.wasNull() && id > maxId) {
+              maxId = id;
+            }
+          }
+
+          gen.flush();
+          throttle.acquire(chunk.bytes - written);
+          written = chunk.bytes;
+
+          if (chunk.rows >= chunkRows) {
+            finishChunk(zip, gen, chunk, entry.getChunks());
+            chunk = null;
+          }
+        }
+        if (chunk != null) {
+          finishChunk(zip, gen, chunk, entry.getChunks());
+        }
+      }
+    }
+
+    entry.setMaxId(keyIndex > 0 ? maxId : null);
+    if (watermarkIndex > 0) {
+      // Never behind the previous mark, should the clock have been set back
+      entry.setMaxWatermark((since != null && since.isAfter(watermark) ? since : watermark).toString());
+    }
+    if (!MODE_FULL.equals(mode)) {
+      dumpKeys(conn, zip, entry, q, chunkRows, throttle);
+    }
+  }
+
+  // A delta only carries rows that still exist, so the ids that do go along:
+  // ascending, one per line, from the same snapshot as the rows
+  private void dumpKeys(Connection conn, ZipOutputStream zip, TableEntry entry, String q, int chunkRows,
+      IoThrottle throttle) throws SQLException, IOException, InterruptedException {
+    entry.setKeyChunks(new ArrayList<>());
+    String sql = "SELECT " + quote(q, entry.getKeyColumn()) + " FROM " + quote(q, entry.getName()) + " ORDER BY "
+        + quote(q, entry.getKeyColumn());
+    try (PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+      ps.setFetchSize(streamingFetchSize(conn));
+      try (ResultSet rs = ps.executeQuery()) {
+        ChunkOutputStream chunk = null;
+        JsonGenerator gen = null;
+        long written = 0;
+        while (rs.next()) {
+          if (chunk == null) {
+            String name = String.format("data/%s/keys-%05d.jsonl", entry.getName(), entry.getKeyChunks().size() + 1);
+            zip.putNextEntry(new ZipEntry(name));
+            chunk = new ChunkOutputStream(zip, name);
+            gen = objectMapper.getFactory().createGenerator(chunk);
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.setRootValueSeparator(new SerializedString("\n"));
+            written = 0;
+          }
+          gen.writeNumber(rs.getLong(1));
+          chunk.rows++;
+          if (chunk.rows % 1000 == 0 || chunk.rows >= chunkRows) {
+            gen.flush();
+            throttle.acquire(chunk.bytes - written);
+            written = chunk.bytes;
+          }
+          if (chunk.rows >= chunkRows) {
+            finishChunk(zip, gen, chunk, entry.getKeyChunks());
+            chunk = null;
+          }
+        }
+        if (chunk != null) {
+          finishChunk(zip, gen, chunk, entry.getKeyChunks());
+        }
+      }
+    }
+  }
+
+  private void finishChunk(ZipOutputStream zip, JsonGenerator gen, ChunkOutputStream chunk, List<ChunkEntry> chunks)
+      throws IOException {
+    gen.close();
+    zip.closeEntry();
+    ChunkEntry chunkEntry = new ChunkEntry();
+    chunkEntry.setEntry(chunk.entryName);
+    chunkEntry.setRows(chunk.rows);
+    chunkEntry.setBytes(chunk.bytes);
+    chunkEntry.setSha256(HexFormat.of().formatHex(chunk.digest.digest()));
+    chunks.add(chunkEntry);
+  }
+
+  private void writeRow(JsonGenerator gen, ResultSet rs, List<ColumnEntry> columns) throws SQLException, IOException {
+    gen.writeStartArray();
+    for (int i = 0; i < columns.size(); i++) {
+      int c = i + 1;
+      switch (columns.get(i).getJdbcType()) {
+        case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> {
+          Timestamp ts = rs.getTimestamp(c);
+          if (ts == null) gen.writeNull();
+          else gen.writeString(ts.toLocalDateTime().toString());
+        }
+        case Types.DATE -> {
+          java.sql.Date d = rs.getDate(c);
+          if (d == null) gen.writeNull();
+          else gen.writeString(d.toLocalDate().toString());
+        }
+        case Types.TIME -> {
+          java.sql.Time t = rs.getTime(c);
+          if (t == null) gen.writeNull();
+          else gen.writeString(t.toLocalTime().toString());
+        }
+        case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> {
+          byte[] bytes = rs.getBytes(c);
+          if (bytes == null) gen.writeNull();
+          else gen.writeBinary(bytes);
+        }
+        case Types.BIT, Types.BOOLEAN -> {
+          boolean b = rs.getBoolean(c);
+          if (rs.wasNull()) gen.writeNull();
+          else gen.writeBoolean(b);
+        }
+        case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> {
+          long v = rs.getLong(c);
+          if (rs.wasNull()) gen.writeNull();
+          else gen.writeNumber(v);
+        }
+        case Types.REAL, Types.FLOAT, Types.DOUBLE -> {
+          double v = rs.getDouble(c);
+          if (rs.wasNull()) gen.writeNull();
+          else gen.writeNumber(v);
+        }
+        case Types.DECIMAL, Types.NUMERIC -> {
+          BigDecimal v = rs.getBigDecimal(c);
+          if (v == null) gen.writeNull();
+          else gen.writeNumber(v);
+        }
+        default -> {
+          String s = rs.getString(c);
+          if (s == null) gen.writeNull();
+          else gen.writeString(s);
+        }
+      }
+    }
+    gen.writeEndArray();
+  }
+
+  // --- Restore ---
+
+  // Restores a backup and, for incrementals, every archive it builds on.
+  // Checksums of the whole chain are verified before anything is touched.
+  public Map<String, Object> restoreBackup(String fileName) {
+    long started = System.currentTimeMillis();
     try {
-      File backupDir = new File(BACKUP_DIR);
-      if (!backupDir.exists() || !backupDir.isDirectory()) {
-        return;
+      List<Path> chain = resolveChain(fileName);
+      for (Path archive : chain) {
+        verifyArchive(archive);
+      }
+
+      long rows = 0;
+      for (Path archive : chain) {
+        rows += restoreArchive(archive, readManifest(archive));
+      }
+      // Invoice numbering and every sales figure held outside the tables
+      // start over from the restored payments
+      invoiceNumberService.reset();
+      reportDayCache.clear();
+      salesCubeService.reset();
+      topSellerTracker.seed();
+
+      Map<String, Object> result = new LinkedHashMap<>();
+      result.put("backup", fileName);
+      result.put("archives", chain.stream().map(p -> p.getFileName().toString()).toList());
+      result.put("rows", rows);
+      result.put("durationMs", System.currentTimeMillis() - started);
+      log.info("Restored {} ({} archives, {} rows) in {} ms", fileName, chain.size(), rows,
+          System.currentTimeMillis() - started);
+      return result;
+    } catch (IOException | SQLException e) {
+      throw new RuntimeException("Restore failed: " + e.getMessage(), e);
+    }
+  }
+
+  private List<Path> resolveChain(String fileName) throws IOException {
+    List<Path> chain = new ArrayList<>();
+    Set<String> seen = new HashSet<>();
+    String current = fileName;
+    while (current != null) {
+      if (!SAFE_FILE_NAME.matcher(current).matches() || !seen.add(current)) {
+        throw new RuntimeException("Invalid backup name: " + current);
+      }
+      Path path = backupDir().resolve(current);
+      if (!Files.isRegularFile(path)) {
+        throw new RuntimeException(current.equals(fileName)
+            ? "Backup not found: " + current
+            : "Backup chain broken, missing base: " + current);
+      }
+      BackupManifest manifest = readManifest(path);
+      if (manifest == null) {
+        throw new RuntimeException("Backup " + current + " has no manifest and cannot be restored here");
+      }
+      chain.add(0, path);
+      current = TYPE_INCREMENTAL.equals(manifest.getType()) ? manifest.getBaseBackup() : null;
+    }
+    return chain;
+  }
+
+  private void verifyArchive(Path archive) throws IOException {
+    BackupManifest manifest = readManifest(archive);
+    try (ZipFile zip = new ZipFile(archive.toFile())) {
+      for (TableEntry table : manifest.getTables()) {
+        for (ChunkEntry chunk : table.getChunks()) {
+          verifyChunk(archive, zip, chunk);
+        }
+        if (table.getKeyChunks() != null) {
+          for (ChunkEntry chunk : table.getKeyChunks()) {
+            verifyChunk(archive, zip, chunk);
+          }
+        }
+      }
+    }
+  }
+
+  private void verifyChunk(Path archive, ZipFile zip, ChunkEntry chunk) throws IOException {
+    ZipEntry entry = zip.getEntry(chunk.getEntry());
+    if (entry == null) {
+      throw new RuntimeException(archive.getFileName() + ": missing " + chunk.getEntry());
+    }
+    MessageDigest digest = sha256();
+    long bytes = 0;
+    try (InputStream in = new DigestInputStream(zip.getInputStream(entry), digest)) {
+      byte[] buffer = new byte[16 * 1024];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        bytes += n;
+      }
+    }
+    String actual = HexFormat.of().formatHex(digest.digest());
+    if (bytes != chunk.getBytes() || !actual.equals(chunk.getSha256())) {
+      throw new RuntimeException(archive.getFileName() + ": checksum mismatch in " + chunk.getEntry());
+    }
+  }
+
+  private long restoreArchive(Path archive, BackupManifest manifest) throws SQLException {
+    boolean h2;
+    try (Connection conn = dataSource.getConnection()) {
+      h2 = isH2(conn);
+      if (h2) {
+        // H2 has no per-session switch, so integrity checks are off for the whole restore
+        try (Statement st = conn.createStatement()) {
+          st.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        }
+      }
+    }
+
+    int threads = Math.max(1, appProperties.getSystem().getRestoreThreads());
+    ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "backup-restore");
+      t.setDaemon(true);
+      return t;
+    });
+    long rows = 0;
+    AtomicBoolean aborted = new AtomicBoolean();
+    try {
+      // Tables are independent once foreign keys are off, so each one restores on its own connection,
+      // in one transaction. On the first failure the others roll back at their next batch; tables
+      // that had already committed stay restored, and running the restore again is safe.
+      CompletionService<Long> completion = new ExecutorCompletionService<>(executor);
+      for (TableEntry table : manifest.getTables()) {
+        completion.submit(() -> restoreTable(archive, table, aborted));
+      }
+      RuntimeException failure = null;
+      for (int i = 0; i < manifest.getTables().size(); i++) {
+        try {
+          rows += completion.take().get();
+        } catch (InterruptedException e) {
+          aborted.set(true);
+          Thread.currentThread().interrupt();
+          throw new RuntimeException("Restore interrupted", e);
+        } catch (ExecutionException e) {
+          if (failure == null) {
+            aborted.set(true);
+            failure = new RuntimeException("Restore of " + archive.getFileName() + " failed: "
+                + e.getCause().getMessage(), e.getCause());
+          }
+        }
+      }
+      // Only once every worker is done, so integrity checks are not back on under a rollback
+      if (failure != null) {
+        throw failure;
+      }
+    } finally {
+      executor.shutdownNow();
+      if (h2) {
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+          st.execute("SET REFERENTIAL_INTEGRITY TRUE");
+          restartIdentities(conn, manifest);
+        }
+      }
+    }
+    return rows;
+  }
+
+  private long restoreTable(Path archive, TableEntry table, AtomicBoolean aborted) throws SQLException, IOException {
+    try (Connection conn = dataSource.getConnection(); ZipFile zip = new ZipFile(archive.toFile())) {
+      String q = conn.getMetaData().getIdentifierQuoteString().trim();
+      Map<String, String> targetColumns = targetColumns(conn, table.getName());
+      if (targetColumns.isEmpty()) {
+        log.warn("Skipping restore of {}: table does not exist", table.getName());
+        return 0;
+      }
+
+      // Columns dropped since the backup are ignored; new columns take their defaults
+      List<Integer> sourceIndexes = new ArrayList<>();
+      List<String> insertColumns = new ArrayList<>();
+      for (int i = 0; i < table.getColumns().size(); i++) {
+        String target = targetColumns.get(table.getColumns().get(i).getName().toLowerCase(Locale.ROOT));
+        if (target != null) {
+          sourceIndexes.add(i);
+          insertColumns.add(quote(q, target));
+        }
+      }
+      String insertSql = "INSERT INTO " + quote(q, table.getName()) + " (" + String.join(", ", insertColumns)
+          + ") VALUES (" + String.join(", ", Collections.nCopies(insertColumns.size(), "?")) + ")";
+      boolean upsert = !MODE_FULL.equals(table.getMode());
+      int keyIndex = columnIndex(table, table.getKeyColumn()) - 1;
+
+      boolean mysql = !isH2(conn) && conn.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql");
+      conn.setAutoCommit(false);
+      if (mysql) {
+        try (Statement st = conn.createStatement()) {
+          st.execute("SET FOREIGN_KEY_CHECKS = 0");
+        }
+      }
+      long restored = 0;
+      long removed = 0;
+      try {
+        checkAborted(aborted, table);
+        if (!upsert) {
+          try (Statement st = conn.createStatement()) {
+            st.executeUpdate("DELETE FROM " + quote(q, table.getName()));
+          }
+        }
+
+        try (PreparedStatement insert = conn.prepareStatement(insertSql);
+            PreparedStatement delete = upsert && keyIndex >= 0
+                ? conn.prepareStatement("DELETE FROM " + quote(q, table.getName()) + " WHERE "
+                    + quote(q, table.getKeyColumn()) + " = ?")
+                : null) {
+          for (ChunkEntry chunk : table.getChunks()) {
+            int pending = 0;
+            // Rows are read one by one; a reader-level iterator would unwrap the row arrays
+            try (JsonParser parser = objectMapper.getFactory()
+                .createParser(zip.getInputStream(zip.getEntry(chunk.getEntry())))) {
+              while (parser.nextToken() != null) {
+                JsonNode row = objectMapper.readTree(parser);
+                if (delete != null) {
+                  delete.setLong(1, row.get(keyIndex).asLong());
+                  delete.addBatch();
+                }
+                for (int p = 0; p < sourceIndexes.size(); p++) {
+                  int source = sourceIndexes.get(p);
+                  bind(insert, p + 1, row.get(source), table.getColumns().get(source).getJdbcType());
+                }
+                insert.addBatch();
+                if (++pending >= RESTORE_BATCH_SIZE) {
+                  checkAborted(aborted, table);
+                  flushBatch(delete, insert);
+                  restored += pending;
+                  pending = 0;
+                }
+              }
+            }
+            if (pending > 0) {
+              checkAborted(aborted, table);
+              flushBatch(delete, insert);
+              restored += pending;
+            }
+          }
+        }
+        if (upsert && keyIndex >= 0 && table.getKeyChunks() != null) {
+          removed = deleteMissingRows(conn, zip, table, q, aborted);
+        }
+        // The whole table or nothing: a FULL restore must not leave the table emptied and half-filled
+        checkAborted(aborted, table);
+        conn.commit();
+      } catch (SQLException | IOException | RuntimeException e) {
+        conn.rollback();
+        throw e;
+      } finally {
+        if (mysql) {
+          try (Statement st = conn.createStatement()) {
+            st.execute("SET FOREIGN_KEY_CHECKS = 1");
+          }
+        }
+        conn.setAutoCommit(true);
+      }
+      log.debug("Restored {} rows into {} ({}), {} deleted", restored, table.getName(), table.getMode(), removed);
+      return restored;
+    }
+  }
+
+  // Walks the ascending id list and deletes every gap between consecutive ids,
+  // so the cost follows the number of deleted runs rather than the table size
+  private long deleteMissingRows(Connection conn, ZipFile zip, TableEntry table, String q, AtomicBoolean aborted)
+      throws SQLException, IOException {
+    String key = quote(q, table.getKeyColumn());
+    long removed = 0;
+    try (PreparedStatement delete = conn.prepareStatement("DELETE FROM " + quote(q, table.getName()) + " WHERE "
+        + key + " > ? AND " + key + " < ?")) {
+      int pending = 0;
+      long previous = Long.MIN_VALUE;
+      for (ChunkEntry chunk : table.getKeyChunks()) {
+        try (JsonParser parser = objectMapper.getFactory()
+            .createParser(zip.getInputStream(zip.getEntry(chunk.getEntry())))) {
+          while (parser.nextToken() != null) {
+            long id = parser.getLongValue();
+            if (id > previous + 1) {
+              delete.setLong(1, previous);
+              delete.setLong(2, id);
+              delete.addBatch();
+              if (++pending >= RESTORE_BATCH_SIZE) {
+                checkAborted(aborted, table);
+                removed += sum(delete.executeBatch());
+                pending = 0;
+              }
+            }
+            previous = id;
+          }
+        }
+      }
+      delete.setLong(1, previous);
+      delete.setLong(2, Long.MAX_VALUE);
+      delete.addBatch();
+      removed += sum(delete.executeBatch());
+    }
+    return removed;
+  }
+
+  private static long sum(int[] counts) {
+    long total = 0;
+    for (int count : counts) {
+      total += Math.max(0, count); // SUCCESS_NO_INFO counts as none
+    }
+    return total;
+  }
+
+  private static void checkAborted(AtomicBoolean aborted, TableEntry table) {
+    if (aborted.get()) {
+      throw new RuntimeException("Restore of " + table.getName() + " aborted: another table failed");
+    }
+  }
+
+  private void flushBatch(PreparedStatement delete, PreparedStatement insert) throws SQLException {
+    // Deltas replace rows by id, so stale versions go before the inserts
+    if (delete != null) {
+      delete.executeBatch();
+    }
+    insert.executeBatch();
+  }
+
+  private void bind(PreparedStatement ps, int index, JsonNode node, int jdbcType) throws SQLException, IOException {
+    if (node == null || node.isNull()) {
+      ps.setNull(index, jdbcType);
+      return;
+    }
+    switch (jdbcType) {
+      case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE ->
+        ps.setTimestamp(index, Timestamp.valueOf(LocalDateTime.parse(node.asText())));
+      case Types.DATE -> ps.setDate(index, java.sql.Date.valueOf(LocalDate.parse(node.asText())));
+      case Types.TIME -> ps.setTime(index, java.sql.Time.valueOf(LocalTime.parse(node.asText())));
+      case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> ps.setBytes(index, node.binaryValue());
+      case Types.BIT, Types.BOOLEAN -> ps.setBoolean(index, node.asBoolean());
+      case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> ps.setLong(index, node.asLong());
+      case Types.REAL, Types.FLOAT, Types.DOUBLE -> ps.setDouble(index, node.asDouble());
+      case Types.DECIMAL, Types.NUMERIC -> ps.setBigDecimal(index, node.decimalValue());
+      default -> ps.setString(index, node.asText());
+    }
+  }
+
+  private void restartIdentities(Connection conn, BackupManifest manifest) throws SQLException {
+    String q = conn.getMetaData().getIdentifierQuoteString().trim();
+    for (TableEntry table : manifest.getTables()) {
+      if (table.getKeyColumn() == null || targetColumns(conn, table.getName()).isEmpty()) {
+        continue;
+      }
+      try (Statement st = conn.createStatement();
+          ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(" + quote(q, table.getKeyColumn()) + "), 0) FROM "
+              + quote(q, table.getName()))) {
+        rs.next();
+        st.execute("ALTER TABLE " + quote(q, table.getName()) + " ALTER COLUMN " + quote(q, table.getKeyColumn())
+            + " RESTART WITH " + (rs.getLong(1) + 1));
+      } catch (SQLException e) {
+        // Not an identity column
+        log.debug("Identity not restarted for {}: {}", table.getName(), e.getMessage());
+      }
+    }
+  }
+
+  // --- Listing & retention ---
+
+  public List<BackupInfo> listBackups() {
+    try {
+      Path dir = backupDir();
+      if (!Files.isDirectory(dir)) {
+        return Collections.emptyList();
+      }
+
+      List<Path> files = new ArrayList<>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.zip")) {
+        stream.forEach(files::add);
+      }
+
+      List<BackupInfo> backups = new ArrayList<>();
+      for (Path file : files) {
+        BackupInfo info = new BackupInfo();
+        info.setFileName(file.getFileName().toString());
+        info.setSizeBytes(Files.size(file));
+        BackupManifest manifest = readManifest(file);
+        if (manifest == null) {
+          info.setType(TYPE_LEGACY);
+          info.setCreatedAt(LocalDateTime.ofInstant(Files.getLastModifiedTime(file).toInstant(),
+              java.time.ZoneId.systemDefault()).toString());
+        } else {
+          info.setType(manifest.getType());
+          info.setBaseBackup(manifest.getBaseBackup());
+          info.setCreatedAt(manifest.getCreatedAt());
+          info.setTableCount(manifest.getTables().size());
+          info.setRowCount(manifest.getTables().stream().mapToLong(TableEntry::getRowCount).sum());
+        }
+        backups.add(info);
       }
+      backups.sort(Comparator.comparing(BackupInfo::getCreatedAt).reversed()); // Newest first
+      return backups;
+    } catch (Exception e) {
+      log.error("Error listing backups", e);
+      return Collections.emptyList();
+    }
+  }
 
-      File[] files = backupDir.listFiles((dir, name) -> name.endsWith(".zip"));
-      if (files == null)
+  public void cleanupOldBackups() {
+    try {
+      Path dir = backupDir();
+      if (!Files.isDirectory(dir)) {
         return;
+      }
 
-      long cutoffTime = System.currentTimeMillis() - (MAX_BACKUP_DAYS * 24 * 60 * 60 * 1000L);
+      List<BackupInfo> backups = listBackups();
+      Map<String, BackupInfo> byName = new LinkedHashMap<>();
+      backups.forEach(b -> byName.put(b.getFileName(), b));
 
-      for (File file : files) {
-        if (file.lastModified() < cutoffTime) {
-          if (file.delete()) {
-            log.info("Deleted old backup: {}", file.getName());
+      LocalDateTime cutoff = LocalDateTime.now().minusDays(appProperties.getSystem().getMaxBackupHistoryDays());
+      Set<String> keep = new HashSet<>();
+      for (BackupInfo backup : backups) {
+        if (LocalDateTime.parse(backup.getCreatedAt()).isBefore(cutoff)) {
+          continue;
+        }
+        // An expired base stays as long as a retained incremental still needs it
+        BackupInfo current = backup;
+        while (current != null && keep.add(current.getFileName())) {
+          current = current.getBaseBackup() != null ? byName.get(current.getBaseBackup()) : null;
+        }
+      }
+
+      for (BackupInfo backup : backups) {
+        if (!keep.contains(backup.getFileName())) {
+          if (Files.deleteIfExists(dir.resolve(backup.getFileName()))) {
+            log.info("Deleted old backup: {}", backup.getFileName());
           } else {
-            log.warn("Failed to delete old backup: {}", file.getName());
+            log.warn("Failed to delete old backup: {}", backup.getFileName());
+          }
+        }
+      }
+
+      // Leftovers from interrupted backups
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.part")) {
+        for (Path part : stream) {
+          if (Files.getLastModifiedTime(part).toMillis() < System.currentTimeMillis() - 24 * 60 * 60 * 1000L) {
+            Files.deleteIfExists(part);
           }
         }
       }
@@ -78,24 +845,175 @@ public class BackupService {
     }
   }
 
-  public java.util.List<String> listBackups() {
-    try {
-      File backupDir = new File(BACKUP_DIR);
-      if (!backupDir.exists() || !backupDir.isDirectory()) {
-        return java.util.Collections.emptyList();
+  private boolean isFullBackupDue() {
+    LocalDateTime cutoff = LocalDateTime.now().minusDays(appProperties.getSystem().getFullBackupIntervalDays());
+    return listBackups().stream()
+        .filter(b -> TYPE_FULL.equals(b.getType()))
+        .noneMatch(b -> LocalDateTime.parse(b.getCreatedAt()).isAfter(cutoff));
+  }
+
+  // --- Helpers ---
+
+  private Path backupDir() {
+    return Paths.get(appProperties.getSystem().getBackupPath());
+  }
+
+  private BackupManifest readManifest(Path archive) throws IOException {
+    try (ZipFile zip = new ZipFile(archive.toFile())) {
+      ZipEntry entry = zip.getEntry(MANIFEST_ENTRY);
+      if (entry == null) {
+        return null;
       }
+      try (InputStream in = zip.getInputStream(entry)) {
+        return objectMapper.readValue(in, BackupManifest.class);
+      }
+    }
+  }
 
-      File[] files = backupDir.listFiles((dir, name) -> name.endsWith(".zip"));
-      if (files == null)
-        return java.util.Collections.emptyList();
+  private List<String> listTables(Connection conn) throws SQLException {
+    List<String> tables = new ArrayList<>();
+    DatabaseMetaData md = conn.getMetaData();
+    try (ResultSet rs = md.getTables(conn.getCatalog(), conn.getSchema(), "%", new String[] { "TABLE" })) {
+      while (rs.next()) {
+        tables.add(rs.getString("TABLE_NAME"));
+      }
+    }
+    Collections.sort(tables);
+    return tables;
+  }
 
-      return java.util.Arrays.stream(files)
-          .sorted((f1, f2) -> Long.compare(f2.lastModified(), f1.lastModified())) // Newest first
-          .map(File::getName)
-          .collect(java.util.stream.Collectors.toList());
-    } catch (Exception e) {
-      log.error("Error listing backups", e);
-      return java.util.Collections.emptyList();
+  private TableEntry describeTable(Connection conn, String table) throws SQLException {
+    TableEntry entry = new TableEntry();
+    entry.setName(table);
+    DatabaseMetaData md = conn.getMetaData();
+    try (ResultSet rs = md.getColumns(conn.getCatalog(), conn.getSchema(), table, "%")) {
+      while (rs.next()) {
+        ColumnEntry column = new ColumnEntry();
+        column.setName(rs.getString("COLUMN_NAME"));
+        column.setJdbcType(rs.getInt("DATA_TYPE"));
+        entry.getColumns().add(column);
+      }
+    }
+
+    for (ColumnEntry column : entry.getColumns()) {
+      String name = column.getName().toLowerCase(Locale.ROOT);
+      int type = column.getJdbcType();
+      if (name.equals("id") && (type == Types.BIGINT || type == Types.INTEGER)) {
+        entry.setKeyColumn(column.getName());
+      }
+      if (entry.getWatermarkColumn() == null && WATERMARK_COLUMNS.contains(name) && type == Types.TIMESTAMP) {
+        entry.setWatermarkColumn(column.getName());
+      }
+    }
+    return entry;
+  }
+
+  private Map<String, String> targetColumns(Connection conn, String table) throws SQLException {
+    Map<String, String> columns = new LinkedHashMap<>();
+    DatabaseMetaData md = conn.getMetaData();
+    try (ResultSet rs = md.getColumns(conn.getCatalog(), conn.getSchema(), table, "%")) {
+      while (rs.next()) {
+        String name = rs.getString("COLUMN_NAME");
+        columns.put(name.toLowerCase(Locale.ROOT), name);
+      }
+    }
+    return columns;
+  }
+
+  private TableEntry findTable(BackupManifest manifest, String table) {
+    return manifest.getTables().stream()
+        .filter(t -> t.getName().equalsIgnoreCase(table))
+        .findFirst().orElse(null);
+  }
+
+  // 1-based result set index of a column, or 0 if absent
+  private int columnIndex(TableEntry entry, String column) {
+    if (column == null) {
+      return 0;
+    }
+    for (int i = 0; i < entry.getColumns().size(); i++) {
+      if (entry.getColumns().get(i).getName().equals(column)) {
+        return i + 1;
+      }
+    }
+    return 0;
+  }
+
+  private int streamingFetchSize(Connection conn) throws SQLException {
+    // Connector/J only streams row by row with this sentinel; otherwise it buffers the whole table
+    return conn.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql")
+        ? Integer.MIN_VALUE
+        : 1000;
+  }
+
+  private boolean isH2(Connection conn) throws SQLException {
+    return conn.getMetaData().getDatabaseProductName().equalsIgnoreCase("H2");
+  }
+
+  private static String quote(String quote, String identifier) {
+    return quote + identifier + quote;
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // Hashes and counts one chunk entry; closing it leaves the zip stream open
+  private static final class ChunkOutputStream extends FilterOutputStream {
+    private final String entryName;
+    private final MessageDigest digest = sha256();
+    private long bytes;
+    private int rows;
+
+    ChunkOutputStream(OutputStream out, String entryName) {
+      super(out);
+      this.entryName = entryName;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      digest.update((byte) b);
+      bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      digest.update(b, off, len);
+      bytes += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+
+  // Keeps the average write rate under the configured bytes/second
+  private static final class IoThrottle {
+    private final long bytesPerSecond;
+    private final long startNanos = System.nanoTime();
+    private long bytes;
+
+    IoThrottle(long bytesPerSecond) {
+      this.bytesPerSecond = bytesPerSecond;
+    }
+
+    void acquire(long count) throws InterruptedException {
+      if (bytesPerSecond <= 0 || count <= 0) {
+        return;
+      }
+      bytes += count;
+      long expectedNanos = (long) (bytes * 1e9 / bytesPerSecond);
+      long aheadMillis = (expectedNanos - (System.nanoTime() - startNanos)) / 1_000_000;
+      if (aheadMillis > 0) {
+        Thread.sleep(aheadMillis);
+      }
     }
   }
 }
@@ -0,0 +1,469 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.dto.JournalReceipt;
+import com.biryanipos.backend.dto.OrderRequest;
+import com.biryanipos.backend.dto.PaymentRequest;
+import com.biryanipos.backend.dto.QuickBillRequest;
+import com.biryanipos.backend.dto.QuickBillResult;
+import com.biryanipos.backend.exception.ServiceBusyException;
+import com.biryanipos.backend.model.Order;
+import com.biryanipos.backend.model.Payment;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.JDBCConnectionException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Write-ahead journal in front of order creation, payment and quick bills. A command is
+// fsync'd to the local CommandJournal first, then applied to the database on
+// the OrderLaneExecutor lane of its order (or table). Commands for one order
+// apply in journal order; a command held up by a transient failure waits
+// for its retry without blocking other orders. If the database does not
+// answer within app.journal.apply-timeout-ms the request gets a 202 with the
+// journalRef and the outcome is reported on /topic/journal. Unapplied
+// commands are replayed on restart.
+// With an Idempotency-Key the journalRef is derived from the key, so client
+// retries join the original command instead of billing twice.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BillingJournalService {
+
+  public static final String KIND_ORDER = "ORDER";
+  public static final String KIND_PAYMENT = "PAYMENT";
+  public static final String KIND_QUICK_BILL = "QUICK_BILL";
+
+  private final OrderService orderService;
+  private final PaymentService paymentService;
+  private final QuickBillService quickBillService;
+  private final IdempotencyStore idempotencyStore;
+  private final ObjectMapper objectMapper;
+  private final AppProperties appProperties;
+  private final EventDispatcher eventDispatcher;
+  private final OrderLaneExecutor laneExecutor;
+
+  // Lane key -> its unapplied commands in journal order; the head is the one
+  // on the lane or waiting for a retry. Guarded by itself, which also keeps
+  // the queues in journal order.
+  private final Map<Object, Deque<Command>> queues = new HashMap<>();
+  // Unapplied order / quick-bill ref -> lane key, so a payment for a queued
+  // order applies after it on the same queue
+  private final Map<String, Object> queuedKeys = new HashMap<>();
+  private final List<Command> recovered = new ArrayList<>(); // Replayed once the app is ready
+  private CommandJournal journal;
+  private ScheduledExecutorService retries;
+  private volatile boolean running = false;
+
+  private static class Command {
+    private final String ref;
+    private final String kind;
+    private final JsonNode request;
+    private final CompletableFuture<Object> result;
+    private volatile boolean detached; // Nobody is waiting on the HTTP side any more
+    private RequestTrace trace; // Request the command is applied for, if any
+    private Object key; // Lane key, set when queued
+    private long backoff; // Next retry delay
+
+    Command(String ref, String kind, JsonNode request, CompletableFuture<Object> result) {
+      this.ref = ref;
+      this.kind = kind;
+      this.request = request;
+      this.result = result;
+    }
+  }
+
+  @PostConstruct
+  public void open() {
+    AppProperties.Journal config = appProperties.getJournal();
+    if (!config.isEnabled()) {
+      log.info("Billing journal disabled");
+      return;
+    }
+    try {
+      CommandJournal opened = new CommandJournal(Paths.get(config.getDirectory()),
+          config.getSegmentSizeMb() * 1024 * 1024);
+      // Recovered commands go first so they keep their place ahead of new ones
+      for (CommandJournal.Entry entry : opened.open()) {
+        JsonNode body = objectMapper.readTree(entry.getBody());
+        Command command = new Command(entry.getRef(), body.path("kind").asText(), body.path("request"),
+            new CompletableFuture<>());
+        command.detached = true;
+        recovered.add(command);
+      }
+      journal = opened;
+      if (!recovered.isEmpty()) {
+        log.warn("Replaying {} billing commands left in the journal", recovered.size());
+      }
+    } catch (IOException e) {
+      log.error("Billing journal unavailable, orders and payments go straight to the database", e);
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (journal == null) {
+      return;
+    }
+    retries = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "billing-journal-retry");
+      t.setDaemon(true);
+      return t;
+    });
+    synchronized (queues) {
+      running = true;
+      recovered.forEach(this::enqueue);
+      recovered.clear();
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    running = false;
+    if (retries != null) {
+      retries.shutdownNow();
+    }
+    if (journal != null) {
+      try {
+        journal.close();
+      } catch (IOException e) {
+        log.warn("Closing billing journal failed: {}", e.getMessage());
+      }
+    }
+  }
+
+  // idempotencyKey is the client's Idempotency-Key header, or null
+  public JournalReceipt submitOrder(OrderRequest request, String idempotencyKey) {
+    return submit(KIND_ORDER, request, idempotencyKey);
+  }
+
+  public JournalReceipt submitPayment(PaymentRequest request, String idempotencyKey) {
+    return submit(KIND_PAYMENT, request, idempotencyKey);
+  }
+
+  public JournalReceipt submitQuickBill(QuickBillRequest request, String idempotencyKey) {
+    return submit(KIND_QUICK_BILL, request, idempotencyKey);
+  }
+
+  public int pendingCount() {
+    return journal != null ? journal.pendingCount() : 0;
+  }
+
+  private JournalReceipt submit(String kind, Object request, String idempotencyKey) {
+    JsonNode tree = objectMapper.valueToTree(request);
+    if (idempotencyKey == null) {
+      return submit(kind, request, tree, null, new CompletableFuture<>());
+    }
+    IdempotencyStore.Claim claim = idempotencyStore.claim(kind, idempotencyKey, fingerprint(tree));
+    if (!claim.isFirst()) {
+      // Retry of a command that is still running or finished within the TTL
+      log.info("{} {} is a retry of Idempotency-Key {}", kind, claim.getRef(), idempotencyKey);
+      return await(kind, claim.getRef(), claim.getResult());
+    }
+    try {
+      return submit(kind, request, tree, claim.getRef(), claim.getResult());
+    } catch (RuntimeException e) {
+      claim.getResult().completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  // ref is null without an Idempotency-Key; result is completed with the outcome
+  private JournalReceipt submit(String kind, Object request, JsonNode tree, String ref,
+      CompletableFuture<Object> result) {
+    if (journal == null) {
+      result.complete(run(kind, request, ref));
+      return new JournalReceipt(ref, kind, "APPLIED", null, result.join());
+    }
+
+    Command command = new Command(ref != null ? ref : UUID.randomUUID().toString(), kind, tree, result);
+    command.trace = RequestTrace.current();
+    ObjectNode body = objectMapper.createObjectNode();
+    body.put("kind", kind);
+    body.set("request", command.request);
+    byte[] bytes;
+    try {
+      bytes = objectMapper.writeValueAsBytes(body);
+    } catch (JsonProcessingException e) {
+      throw new RuntimeException("Could not journal " + kind.toLowerCase() + ": " + e.getMessage(), e);
+    }
+
+    long seq;
+    synchronized (queues) {
+      // Queue order matches journal order
+      seq = journal.append(CommandJournal.COMMAND, command.ref, bytes);
+      if (running) {
+        enqueue(command);
+      } else {
+        recovered.add(command);
+      }
+    }
+    journal.sync(seq);
+
+    JournalReceipt receipt = await(kind, command.ref, command.result);
+    if (!receipt.isApplied()) {
+      command.detached = true;
+      if (command.result.isDone() && !command.result.isCompletedExceptionally()) {
+        return new JournalReceipt(command.ref, kind, "APPLIED", null, command.result.join());
+      }
+      log.warn("{} {} journaled, database not answering yet", kind, command.ref);
+    }
+    return receipt;
+  }
+
+  // Without the journal the command runs on the owner's thread, so waiters
+  // wait for it to finish
+  private JournalReceipt await(String kind, String ref, CompletableFuture<Object> result) {
+    try {
+      Object value = journal != null
+          ? result.get(appProperties.getJournal().getApplyTimeoutMs(), TimeUnit.MILLISECONDS)
+          : result.get();
+      return new JournalReceipt(ref, kind, "APPLIED", null, value);
+    } catch (TimeoutException | InterruptedException e) {
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      return new JournalReceipt(ref, kind, "QUEUED",
+          "Saved locally, will be applied when the database responds", null);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException re) {
+        throw re;
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  private String fingerprint(JsonNode request) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+      return HexFormat.of().formatHex(hash);
+    } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+      throw new RuntimeException("Could not fingerprint request: " + e.getMessage(), e);
+    }
+  }
+
+  // Caller holds the queues lock. Only the head of each queue is on a lane.
+  private void enqueue(Command command) {
+    command.key = laneKey(command);
+    command.backoff = appProperties.getJournal().getInitialRetryBackoffMs();
+    if (!KIND_PAYMENT.equals(command.kind)) {
+      queuedKeys.put(command.ref, command.key);
+    }
+    Deque<Command> queue = queues.computeIfAbsent(command.key, k -> new ArrayDeque<>());
+    queue.add(command);
+    if (queue.size() == 1) {
+      dispatch(command);
+    }
+  }
+
+  // Same keys as OrderLaneAspect, so a journaled command and a direct call on
+  // the same order share a lane. Takeaways have nothing to wait for and get
+  // a queue of their own.
+  private Object laneKey(Command command) {
+    JsonNode request = command.request;
+    if (KIND_PAYMENT.equals(command.kind)) {
+      if (request.hasNonNull("orderId")) {
+        return request.get("orderId").asLong();
+      }
+      String orderRef = request.path("orderJournalRef").asText(null);
+      if (orderRef != null) {
+        return queuedKeys.getOrDefault(orderRef, orderRef);
+      }
+    } else if (KIND_ORDER.equals(command.kind) && "DINE_IN".equals(request.path("orderType").asText())
+        && request.hasNonNull("tableNumber")) {
+      return "table:" + request.get("tableNumber").asText();
+    }
+    return command.ref;
+  }
+
+  private void dispatch(Command command) {
+    if (!running) {
+      return; // Still in the journal, replayed on restart
+    }
+    try {
+      laneExecutor.submit(command.key, command.trace, () -> {
+        apply(command);
+        return null;
+      });
+    } catch (ServiceBusyException e) {
+      retryLater(command, e);
+    }
+  }
+
+  private void retryLater(Command command, Exception cause) {
+    long backoff = command.backoff;
+    command.backoff = Math.min(backoff * 2, appProperties.getJournal().getMaxRetryBackoffMs());
+    log.warn("{} {} waiting for database ({}), retry in {} ms", command.kind, command.ref, cause.getMessage(),
+        backoff);
+    try {
+      retries.schedule(() -> dispatch(command), backoff, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // Shutting down; the command is replayed on restart
+    }
+  }
+
+  // Runs on the command's lane
+  private void apply(Command command) {
+    Object result;
+    try {
+      result = run(command.kind, decode(command), command.ref);
+    } catch (RuntimeException e) {
+      if (isTransient(e)) {
+        // Stays at the head of its queue: later commands for the order may depend on it
+        retryLater(command, e);
+        return;
+      }
+      log.warn("{} {} rejected: {}", command.kind, command.ref, e.getMessage());
+      resolve(command, CommandJournal.REJECTED);
+      command.result.completeExceptionally(e);
+      if (command.detached) {
+        notifyOutcome(command, "REJECTED", null, e.getMessage());
+      }
+      next(command);
+      return;
+    } catch (Throwable e) {
+      // Left unresolved in the journal; the order's later commands go ahead
+      log.error("{} {} could not be applied", command.kind, command.ref, e);
+      command.result.completeExceptionally(e);
+      next(command);
+      return;
+    }
+    // Committed: the outcome stands whether or not the marker can be written
+    resolve(command, CommandJournal.APPLIED);
+    command.result.complete(result);
+    if (command.detached) {
+      notifyOutcome(command, "APPLIED", result, null);
+    }
+    next(command);
+  }
+
+  // Retires the queue's head and starts the next command for the same key
+  private void next(Command command) {
+    synchronized (queues) {
+      queuedKeys.remove(command.ref);
+      Deque<Command> queue = queues.get(command.key);
+      queue.poll();
+      if (queue.isEmpty()) {
+        queues.remove(command.key);
+      } else {
+        dispatch(queue.peek());
+      }
+    }
+  }
+
+  // Without its marker a command is replayed on the next start, where an applied
+  // one is found by its ref and a rejected one fails validation again. So a
+  // journal that cannot be written (disk full) is logged, not fatal.
+  private void resolve(Command command, byte marker) {
+    try {
+      journal.append(marker, command.ref, new byte[0]);
+    } catch (RuntimeException e) {
+      log.error("Could not mark {} {} resolved in the journal, it will be replayed on restart: {}", command.kind,
+          command.ref, e.getMessage());
+    }
+  }
+
+  private Object decode(Command command) {
+    try {
+      return objectMapper.treeToValue(command.request, requestType(command.kind));
+    } catch (JsonProcessingException e) {
+      throw new RuntimeException("Unreadable journal command: " + e.getMessage(), e);
+    }
+  }
+
+  private Object run(String kind, Object request, String ref) {
+    if (KIND_ORDER.equals(kind)) {
+      return orderService.createOrder((OrderRequest) request, ref);
+    }
+    if (KIND_PAYMENT.equals(kind)) {
+      return paymentService.processPayment((PaymentRequest) request, ref);
+    }
+    if (KIND_QUICK_BILL.equals(kind)) {
+      return quickBillService.quickBill((QuickBillRequest) request, ref);
+    }
+    throw new RuntimeException("Unknown journal command: " + kind);
+  }
+
+  private static Class<?> requestType(String kind) {
+    if (KIND_ORDER.equals(kind)) {
+      return OrderRequest.class;
+    }
+    if (KIND_PAYMENT.equals(kind)) {
+      return PaymentRequest.class;
+    }
+    if (KIND_QUICK_BILL.equals(kind)) {
+      return QuickBillRequest.class;
+    }
+    throw new RuntimeException("Unknown journal command: " + kind);
+  }
+
+  private void notifyOutcome(Command command, String status, Object result, String error) {
+    Map<String, Object> event = new LinkedHashMap<>();
+    event.put("journalRef", command.ref);
+    event.put("kind", command.kind);
+    event.put("status", status);
+    if (result instanceof Order order) {
+      event.put("orderId", order.getId());
+    } else if (result instanceof Payment payment) {
+      event.put("paymentId", payment.getId());
+      event.put("orderId", payment.getOrderId());
+    } else if (result instanceof QuickBillResult bill) {
+      event.put("paymentId", bill.getPayment().getId());
+      event.put("orderId", bill.getOrder().getId());
+    }
+    if (error != null) {
+      event.put("error", error);
+    }
+    eventDispatcher.broadcast("/topic/journal", event);
+  }
+
+  // Outages and lock timeouts are retried; validation errors are final
+  private boolean isTransient(Throwable e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof TransientDataAccessException
+          || t instanceof DataAccessResourceFailureException
+          || t instanceof RecoverableDataAccessException
+          || t instanceof CannotCreateTransactionException
+          || t instanceof JDBCConnectionException
+          || t instanceof SQLTransientException
+          || t instanceof SQLRecoverableException) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -13,6 +13,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class CategoryService {
   private final CategoryRepository categoryRepository;
+  private final QrMenuService qrMenuService;
 
   public List<Category> getAllCategories() {
     return categoryRepository.findAllByOrderByDisplayOrderAsc();
@@ -27,7 +28,9 @@ public class CategoryService {
     if (category.getDisplayOrder() == 0) {
       category.setDisplayOrder((int) categoryRepository.count() + 1);
     }
-    return categoryRepository.save(category);
+    Category saved = categoryRepository.save(category);
+    qrMenuService.invalidate();
+    return saved;
   }
 
   public Category updateCategory(Long id, Category updated) {
@@ -38,11 +41,14 @@ public class CategoryService {
     existing.setImageUrl(updated.getImageUrl());
     existing.setDisplayOrder(updated.getDisplayOrder());
     existing.setActive(updated.isActive());
-    return categoryRepository.save(existing);
+    Category saved = categoryRepository.save(existing);
+    qrMenuService.invalidate();
+    return saved;
   }
 
   public void deleteCategory(Long id) {
     categoryRepository.deleteById(id);
+    qrMenuService.invalidate();
   }
 
   @PostConstruct
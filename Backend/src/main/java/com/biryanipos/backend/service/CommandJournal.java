@@ -0,0 +1,320 @@
+package com.biryanipos.backend.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+// Append-only write-ahead log made of fixed-size memory-mapped segment files.
+//
+// Record layout: [int payloadLength][int crc32c][byte type][long seq][payload]
+// where payload = [short refLength][ref][body] and the CRC covers type, seq
+// and payload. A zero length marks the end of a segment; a CRC mismatch marks
+// a torn write, and everything after it is discarded on open.
+//
+// Appends only copy into the mapping. Callers that need durability call
+// sync(seq); concurrent callers share one force() (group commit).
+@Slf4j
+public class CommandJournal implements Closeable {
+
+  public static final byte COMMAND = 1;
+  public static final byte APPLIED = 2;
+  public static final byte REJECTED = 3;
+
+  private static final int HEADER_BYTES = 17;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private final Path directory;
+  private final int segmentBytes;
+
+  private final Object appendLock = new Object();
+  private FileChannel channel;
+  private volatile MappedByteBuffer buffer;
+  private long segmentId;
+  private int position;
+  private long nextSeq = 1;
+  private volatile long writtenSeq;
+
+  // Group commit state
+  private final ReentrantLock syncLock = new ReentrantLock();
+  private final Condition synced = syncLock.newCondition();
+  private long durableSeq;
+  private boolean syncing;
+
+  // Commands without an APPLIED/REJECTED marker, oldest first
+  private final Map<String, Entry> pending = new LinkedHashMap<>();
+  private final Map<Long, Integer> pendingPerSegment = new HashMap<>();
+  private final TreeSet<Long> liveSegments = new TreeSet<>();
+
+  @Getter
+  @AllArgsConstructor
+  public static class Entry {
+    private final long seq;
+    private final String ref;
+    private final byte[] body;
+    private final long segmentId;
+  }
+
+  public CommandJournal(Path directory, int segmentBytes) {
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+  }
+
+  // Scans existing segments and returns the commands that still need applying
+  public List<Entry> open() throws IOException {
+    Files.createDirectories(directory);
+    List<Long> segments = listSegments();
+
+    synchronized (appendLock) {
+      liveSegments.addAll(segments);
+      for (int i = 0; i < segments.size(); i++) {
+        boolean last = i == segments.size() - 1;
+        int end = scanSegment(segments.get(i), last);
+        if (last) {
+          openSegment(segments.get(i), end);
+        }
+      }
+      if (segments.isEmpty()) {
+        openSegment(1, 0);
+      }
+      writtenSeq = nextSeq - 1;
+      durableSeq = writtenSeq;
+
+      deleteResolvedSegments();
+      log.info("Journal opened at {}: segment {}, {} pending commands", directory, segmentId, pending.size());
+      return new ArrayList<>(pending.values());
+    }
+  }
+
+  public long append(byte type, String ref, byte[] body) {
+    byte[] refBytes = ref.getBytes(StandardCharsets.UTF_8);
+    int payloadLength = 2 + refBytes.length + body.length;
+    int recordLength = HEADER_BYTES + payloadLength;
+    if (recordLength > segmentBytes) {
+      throw new IllegalArgumentException("Journal record of " + recordLength + " bytes exceeds segment size");
+    }
+
+    byte[] payload = new byte[payloadLength];
+    payload[0] = (byte) (refBytes.length >>> 8);
+    payload[1] = (byte) refBytes.length;
+    System.arraycopy(refBytes, 0, payload, 2, refBytes.length);
+    System.arraycopy(body, 0, payload, 2 + refBytes.length, body.length);
+
+    synchronized (appendLock) {
+      if (position + recordLength > segmentBytes) {
+        roll();
+      }
+      long seq = nextSeq++;
+      CRC32C crc = new CRC32C();
+      crc.update(type);
+      crc.update(longBytes(seq));
+      crc.update(payload);
+
+      MappedByteBuffer buf = buffer;
+      buf.putInt(position + 4, (int) crc.getValue());
+      buf.put(position + 8, type);
+      buf.putLong(position + 9, seq);
+      buf.put(position + HEADER_BYTES, payload);
+      // Length last: a reader never sees a length without the bytes behind it
+      buf.putInt(position, payloadLength);
+      position += recordLength;
+      writtenSeq = seq;
+
+      if (type == COMMAND) {
+        pending.put(ref, new Entry(seq, ref, body, segmentId));
+        pendingPerSegment.merge(segmentId, 1, Integer::sum);
+      } else {
+        Entry resolved = pending.remove(ref);
+        if (resolved != null) {
+          pendingPerSegment.merge(resolved.getSegmentId(), -1, Integer::sum);
+          deleteResolvedSegments();
+        }
+      }
+      return seq;
+    }
+  }
+
+  // Blocks until every record up to seq is on disk
+  public void sync(long seq) {
+    syncLock.lock();
+    try {
+      while (durableSeq < seq) {
+        if (syncing) {
+          synced.awaitUninterruptibly();
+          continue;
+        }
+        syncing = true;
+        long target = writtenSeq;
+        MappedByteBuffer buf = buffer;
+        syncLock.unlock();
+        try {
+          buf.force();
+        } finally {
+          syncLock.lock();
+          syncing = false;
+          durableSeq = Math.max(durableSeq, target);
+          synced.signalAll();
+        }
+      }
+    } finally {
+      syncLock.unlock();
+    }
+  }
+
+  public int pendingCount() {
+    synchronized (appendLock) {
+      return pending.size();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (appendLock) {
+      if (buffer != null) {
+        buffer.force();
+      }
+      if (channel != null) {
+        channel.close();
+      }
+    }
+  }
+
+  private void roll() {
+    try {
+      // Everything in the old segment is made durable before it is left behind
+      buffer.force();
+      channel.close();
+      openSegment(segmentId + 1, 0);
+      deleteResolvedSegments();
+    } catch (IOException e) {
+      throw new RuntimeException("Journal segment roll failed: " + e.getMessage(), e);
+    }
+  }
+
+  private void openSegment(long id, int end) throws IOException {
+    channel = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+    // Clear any torn tail so it cannot be mistaken for records later
+    for (int i = end; i < segmentBytes && i < end + HEADER_BYTES; i++) {
+      buf.put(i, (byte) 0);
+    }
+    segmentId = id;
+    position = end;
+    buffer = buf;
+    liveSegments.add(id);
+  }
+
+  // Replays one segment into the pending map; returns the end of valid data
+  private int scanSegment(long id, boolean last) throws IOException {
+    try (FileChannel ch = FileChannel.open(segmentPath(id), StandardOpenOption.READ)) {
+      int size = (int) Math.min(ch.size(), segmentBytes);
+      MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      int pos = 0;
+      while (pos + HEADER_BYTES <= size) {
+        int payloadLength = buf.getInt(pos);
+        if (payloadLength <= 2 || pos + HEADER_BYTES + payloadLength > size) {
+          break;
+        }
+        int crcValue = buf.getInt(pos + 4);
+        byte type = buf.get(pos + 8);
+        long seq = buf.getLong(pos + 9);
+        byte[] payload = new byte[payloadLength];
+        buf.get(pos + HEADER_BYTES, payload);
+
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(longBytes(seq));
+        crc.update(payload);
+        if ((int) crc.getValue() != crcValue || seq < nextSeq) {
+          if (!last) {
+            log.warn("Journal segment {} is damaged at offset {}; remaining records skipped", id, pos);
+          }
+          break;
+        }
+
+        int refLength = ((payload[0] & 0xFF) << 8) | (payload[1] & 0xFF);
+        String ref = new String(payload, 2, refLength, StandardCharsets.UTF_8);
+        if (type == COMMAND) {
+          byte[] body = new byte[payloadLength - 2 - refLength];
+          System.arraycopy(payload, 2 + refLength, body, 0, body.length);
+          pending.put(ref, new Entry(seq, ref, body, id));
+          pendingPerSegment.merge(id, 1, Integer::sum);
+        } else {
+          Entry resolved = pending.remove(ref);
+          if (resolved != null) {
+            pendingPerSegment.merge(resolved.getSegmentId(), -1, Integer::sum);
+          }
+        }
+        nextSeq = seq + 1;
+        pos += HEADER_BYTES + payloadLength;
+      }
+      return pos;
+    }
+  }
+
+  // Segments go oldest first, so an APPLIED marker is never deleted while the
+  // command it resolves is still on disk
+  private void deleteResolvedSegments() {
+    while (!liveSegments.isEmpty()) {
+      long id = liveSegments.first();
+      if (id == segmentId || pendingPerSegment.getOrDefault(id, 0) > 0) {
+        return;
+      }
+      liveSegments.pollFirst();
+      pendingPerSegment.remove(id);
+      try {
+        if (Files.deleteIfExists(segmentPath(id))) {
+          log.debug("Journal segment {} fully applied, deleted", id);
+        }
+      } catch (IOException e) {
+        log.warn("Could not delete journal segment {}: {}", id, e.getMessage());
+      }
+    }
+  }
+
+  private List<Long> listSegments() throws IOException {
+    List<Long> ids = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path path : stream) {
+        String name = path.getFileName().toString();
+        ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+      }
+    }
+    Collections.sort(ids);
+    return ids;
+  }
+
+  private Path segmentPath(long id) {
+    return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+  }
+
+  private static byte[] longBytes(long v) {
+    byte[] b = new byte[8];
+    for (int i = 7; i >= 0; i--) {
+      b[i] = (byte) v;
+      v >>>= 8;
+    }
+    return b;
+  }
+}
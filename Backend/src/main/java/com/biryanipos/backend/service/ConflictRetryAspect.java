@@ -0,0 +1,90 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Retries @RetryOnConflict methods on optimistic lock failures and keeps
+// per-operation conflict counters. Ordered ahead of the transaction
+// interceptor so every attempt runs in a fresh transaction, and just inside
+// OrderLaneAspect so retries stay on the order's lane.
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+@RequiredArgsConstructor
+@Slf4j
+public class ConflictRetryAspect {
+
+  private final AppProperties appProperties;
+  private final Map<String, OperationStats> stats = new ConcurrentHashMap<>();
+
+  private static class OperationStats {
+    final LongAdder calls = new LongAdder();
+    final LongAdder conflicts = new LongAdder();
+    final LongAdder retriedOk = new LongAdder();
+    final LongAdder exhausted = new LongAdder();
+  }
+
+  @Around("@annotation(com.biryanipos.backend.service.RetryOnConflict)")
+  public Object retry(ProceedingJoinPoint pjp) throws Throwable {
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      return pjp.proceed();
+    }
+
+    String operation = pjp.getSignature().getDeclaringType().getSimpleName() + "." + pjp.getSignature().getName();
+    OperationStats op = stats.computeIfAbsent(operation, k -> new OperationStats());
+    op.calls.increment();
+
+    AppProperties.Concurrency config = appProperties.getConcurrency();
+    for (int attempt = 0;; attempt++) {
+      try {
+        Object result = pjp.proceed();
+        if (attempt > 0) {
+          op.retriedOk.increment();
+        }
+        return result;
+      } catch (OptimisticLockingFailureException e) {
+        op.conflicts.increment();
+        if (attempt >= config.getMaxConflictRetries()) {
+          op.exhausted.increment();
+          log.warn("{} still conflicting after {} retries", operation, attempt);
+          throw e;
+        }
+        log.debug("{} conflict, retry {}", operation, attempt + 1);
+        long backoff = config.getConflictBackoffMs() * (attempt + 1);
+        Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff + 1));
+      }
+    }
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> result = new TreeMap<>();
+    stats.forEach((operation, op) -> {
+      long calls = op.calls.sum();
+      long conflicts = op.conflicts.sum();
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("calls", calls);
+      entry.put("conflicts", conflicts);
+      entry.put("retriedOk", op.retriedOk.sum());
+      entry.put("exhausted", op.exhausted.sum());
+      entry.put("conflictRate", calls > 0 ? (double) conflicts / calls : 0.0);
+      result.put(operation, entry);
+    });
+    return result;
+  }
+}
@@ -2,6 +2,7 @@ package com.biryanipos.backend.service;
 
 import com.biryanipos.backend.model.Customer;
 import com.biryanipos.backend.repository.CustomerRepository;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -13,7 +14,17 @@ import java.util.Optional;
 @Service
 @RequiredArgsConstructor
 public class CustomerService {
+  public static final String VISIT_EVENT = "CUSTOMER_VISIT";
+
   private final CustomerRepository customerRepository;
+  private final EventDispatcher eventDispatcher;
+
+  @PostConstruct
+  public void registerHandlers() {
+    // Published by PaymentService after a payment commits
+    eventDispatcher.registerHandler(VISIT_EVENT,
+        event -> recordVisit(event.path("phone").asText(), event.path("amount").asDouble()));
+  }
 
   public List<Customer> getAllCustomers() {
     return customerRepository.findAll();
@@ -0,0 +1,202 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.model.OutboxEvent;
+import com.biryanipos.backend.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Defers WebSocket broadcasts and side effects until the surrounding
+// transaction commits; nothing is sent for a transaction that rolls back.
+// Payloads are converted to JSON trees right after commit (row locks already
+// released, persistence context still open for lazy fields) and sent from a
+// single dispatch thread, so clients see events in commit order.
+//
+// Side effects published with publish() go to handlers registered by type.
+// With app.events.outbox-enabled they are also written to outbox_events in
+// the same transaction and deleted in the handler's transaction, so a crash
+// between commit and dispatch is picked up by the sweeper.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EventDispatcher {
+
+  private final SimpMessagingTemplate messagingTemplate;
+  private final ObjectMapper objectMapper;
+  private final AppProperties appProperties;
+  private final OutboxEventRepository outboxEventRepository;
+  private final PlatformTransactionManager transactionManager;
+
+  private final Map<String, Consumer<JsonNode>> handlers = new ConcurrentHashMap<>();
+  private ThreadPoolExecutor executor;
+  private TransactionTemplate handlerTx;
+  private TransactionTemplate bookkeepingTx;
+
+  @PostConstruct
+  public void init() {
+    executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(appProperties.getEvents().getQueueCapacity()), r -> {
+          Thread t = new Thread(r, "event-dispatch");
+          t.setDaemon(true);
+          return t;
+        },
+        // A full queue slows the committing thread down instead of dropping events
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    handlerTx = new TransactionTemplate(transactionManager);
+    bookkeepingTx = new TransactionTemplate(transactionManager);
+    bookkeepingTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  public void registerHandler(String eventType, Consumer<JsonNode> handler) {
+    handlers.put(eventType, handler);
+  }
+
+  public void broadcast(String destination, Object payload) {
+    RequestTrace.published();
+    runAfterCommit(() -> {
+      Object message = payload instanceof String ? payload : objectMapper.valueToTree(payload);
+      executor.execute(() -> send(destination, message));
+    });
+  }
+
+  // Runs on the dispatch thread once the current transaction has committed
+  public void afterCommit(Runnable task) {
+    runAfterCommit(() -> executor.execute(() -> {
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        log.error("After-commit task failed", e);
+      }
+    }));
+  }
+
+  public void publish(String eventType, Object payload) {
+    JsonNode node = objectMapper.valueToTree(payload);
+    if (appProperties.getEvents().isOutboxEnabled()
+        && TransactionSynchronizationManager.isActualTransactionActive()) {
+      OutboxEvent event = new OutboxEvent();
+      event.setEventType(eventType);
+      event.setPayload(node.toString());
+      Long id = outboxEventRepository.save(event).getId();
+      runAfterCommit(() -> executor.execute(() -> processOutboxEvent(id)));
+      return;
+    }
+    runAfterCommit(() -> executor.execute(() -> {
+      try {
+        handlerTx.executeWithoutResult(status -> handlerFor(eventType).accept(node));
+      } catch (RuntimeException e) {
+        log.error("Handler for {} failed", eventType, e);
+      }
+    }));
+  }
+
+  @Scheduled(fixedDelayString = "${app.events.outbox-sweep-ms:30000}")
+  public void sweepOutbox() {
+    AppProperties.Events config = appProperties.getEvents();
+    if (!config.isOutboxEnabled()) {
+      return;
+    }
+    List<Long> stale = outboxEventRepository.findStaleIds(
+        LocalDateTime.now().minusSeconds(config.getOutboxRetryAfterSeconds()), config.getOutboxMaxAttempts(),
+        PageRequest.of(0, 100));
+    if (!stale.isEmpty()) {
+      log.info("Re-dispatching {} outbox events", stale.size());
+      stale.forEach(this::processOutboxEvent);
+    }
+  }
+
+  public Map<String, Object> getStats() {
+    return Map.of(
+        "queued", executor.getQueue().size(),
+        "completed", executor.getCompletedTaskCount(),
+        "outboxPending", outboxEventRepository.count(),
+        "outboxFailed", outboxEventRepository.countByAttemptsGreaterThanEqual(
+            appProperties.getEvents().getOutboxMaxAttempts()));
+  }
+
+  private void processOutboxEvent(Long id) {
+    try {
+      handlerTx.executeWithoutResult(status -> outboxEventRepository.findByIdForUpdate(id).ifPresent(event -> {
+        try {
+          handlerFor(event.getEventType()).accept(objectMapper.readTree(event.getPayload()));
+        } catch (JsonProcessingException e) {
+          throw new RuntimeException("Unreadable outbox payload: " + e.getMessage(), e);
+        }
+        // Same transaction as the handler's writes: handled exactly once
+        outboxEventRepository.delete(event);
+      }));
+    } catch (RuntimeException e) {
+      log.warn("Outbox event {} failed: {}", id, e.getMessage());
+      bookkeepingTx.executeWithoutResult(status -> outboxEventRepository.findById(id).ifPresent(event -> {
+        event.setAttempts(event.getAttempts() + 1);
+        event.setLastError(e.getMessage() != null && e.getMessage().length() > 255
+            ? e.getMessage().substring(0, 255)
+            : e.getMessage());
+        outboxEventRepository.save(event);
+      }));
+    }
+  }
+
+  private Consumer<JsonNode> handlerFor(String eventType) {
+    Consumer<JsonNode> handler = handlers.get(eventType);
+    if (handler == null) {
+      throw new RuntimeException("No handler registered for event " + eventType);
+    }
+    return handler;
+  }
+
+  private void send(String destination, Object message) {
+    try {
+      messagingTemplate.convertAndSend(destination, message);
+    } catch (RuntimeException e) {
+      log.warn("Broadcast to {} failed: {}", destination, e.getMessage());
+    }
+  }
+
+  private void runAfterCommit(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          // The commit already happened; a failing event must not fail the request
+          try {
+            action.run();
+          } catch (RuntimeException e) {
+            log.error("After-commit dispatch failed", e);
+          }
+        }
+      });
+    } else {
+      action.run();
+    }
+  }
+}
@@ -14,6 +14,7 @@ import java.util.List;
 public class ExpenseService {
   private final ExpenseRepository expenseRepository;
   private final com.biryanipos.backend.repository.SupplierRepository supplierRepository;
+  private final ReportDayCache reportDayCache;
 
   public Expense createExpense(ExpenseRequest request) {
     Expense expense = new Expense();
@@ -44,6 +45,8 @@ public class ExpenseService {
   public Expense updateExpense(Long id, ExpenseRequest request) {
     Expense existing = expenseRepository.findById(id)
         .orElseThrow(() -> new RuntimeException("Expense not found: " + id));
+    // The listener sees the new date; the day the expense moves off changes too
+    reportDayCache.invalidate(existing.getExpenseDate());
     existing.setCategory(request.getCategory());
     existing.setDescription(request.getDescription());
     existing.setAmount(request.getAmount());
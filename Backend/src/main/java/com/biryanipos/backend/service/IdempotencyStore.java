@@ -0,0 +1,113 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.exception.IdempotencyConflictException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+// Idempotency-Key bookkeeping for billing POSTs. Each (kind, key) maps to a
+// fixed journalRef, so the ref columns on orders and payments are the
+// persisted half: a retry after a restart or after the entry expired finds
+// the saved row instead of creating a second one. The in-memory half lets a
+// retry that arrives while the first attempt is still running wait for that
+// attempt instead of starting its own. Entries are bounded in number and
+// expire after app.idempotency.ttl-minutes; failed attempts are forgotten so
+// the client can try again.
+@Component
+@RequiredArgsConstructor
+public class IdempotencyStore {
+
+  private final AppProperties appProperties;
+
+  // Insertion order is expiry order because every entry gets the same TTL
+  private final LinkedHashMap<String, Claim> entries = new LinkedHashMap<>();
+
+  @Getter
+  public static class Claim {
+    private final String ref;
+    private final String fingerprint;
+    private final long expiresAt;
+    private final boolean first; // This caller runs the command, the others wait on result
+    private final CompletableFuture<Object> result;
+
+    private Claim(String ref, String fingerprint, long expiresAt, boolean first, CompletableFuture<Object> result) {
+      this.ref = ref;
+      this.fingerprint = fingerprint;
+      this.expiresAt = expiresAt;
+      this.first = first;
+      this.result = result;
+    }
+  }
+
+  public static String refFor(String kind, String key) {
+    return UUID.nameUUIDFromBytes((kind + ":" + key).getBytes(StandardCharsets.UTF_8)).toString();
+  }
+
+  // fingerprint identifies the request body: the same key with a different
+  // body is a client bug, not a retry
+  public Claim claim(String kind, String key, String fingerprint) {
+    if (key.isBlank() || key.length() > 255) {
+      throw new RuntimeException("Idempotency-Key must be 1 to 255 characters");
+    }
+    String ref = refFor(kind, key);
+    long now = System.currentTimeMillis();
+    Claim claim;
+    synchronized (entries) {
+      evict(now);
+      Claim existing = entries.get(ref);
+      if (existing != null) {
+        if (!existing.fingerprint.equals(fingerprint)) {
+          throw new IdempotencyConflictException(
+              "Idempotency-Key " + key + " was already used for a different " + kind.toLowerCase() + " request");
+        }
+        return new Claim(ref, fingerprint, existing.expiresAt, false, existing.result);
+      }
+      long ttlMs = appProperties.getIdempotency().getTtlMinutes() * 60_000L;
+      claim = new Claim(ref, fingerprint, now + ttlMs, true, new CompletableFuture<>());
+      entries.put(ref, claim);
+    }
+    // A rejected command may be fixed and sent again under the same key
+    claim.result.whenComplete((result, error) -> {
+      if (error != null) {
+        forget(claim);
+      }
+    });
+    return claim;
+  }
+
+  public void forget(Claim claim) {
+    synchronized (entries) {
+      // Waiters hold copies; only the entry the owner stored is removed
+      Claim stored = entries.get(claim.ref);
+      if (stored != null && stored.result == claim.result) {
+        entries.remove(claim.ref);
+      }
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  private void evict(long now) {
+    int maxEntries = appProperties.getIdempotency().getMaxEntries();
+    Iterator<Map.Entry<String, Claim>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Claim eldest = it.next().getValue();
+      if (eldest.expiresAt > now && entries.size() < maxEntries) {
+        return;
+      }
+      it.remove();
+    }
+  }
+}
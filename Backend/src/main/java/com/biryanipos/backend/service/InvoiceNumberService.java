@@ -0,0 +1,214 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.model.InvoiceSequence;
+import com.biryanipos.backend.model.Payment;
+import com.biryanipos.backend.repository.InvoiceSequenceRepository;
+import com.biryanipos.backend.repository.PaymentRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Gapless invoice numbers per financial year (April-March) and series: GST
+// tax invoices and non-GST bills of supply are numbered separately.
+//
+// Numbers are handed out from an in-memory block; only reserving the next
+// block touches its InvoiceSequence row (one row lock per block, not per bill).
+// A series stays locked from the moment a payment takes its number until the
+// payment's transaction ends, so numbers follow commit order and a rollback
+// hands back the newest number only. The series never reuses a number below
+// one already issued. After a crash the unused part of the last block was
+// never committed, so recovery restarts from the numbers stored on payments.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InvoiceNumberService {
+
+  public static final String SERIES_GST = "GST";
+  public static final String SERIES_NON_GST = "NGST";
+
+  private static final long LOCK_TIMEOUT_SECONDS = 10;
+
+  private final InvoiceSequenceRepository invoiceSequenceRepository;
+  private final PaymentRepository paymentRepository;
+  private final PlatformTransactionManager transactionManager;
+  private final AppProperties appProperties;
+
+  private final Map<String, Sequence> sequences = new ConcurrentHashMap<>();
+  private TransactionTemplate reserveTx;
+
+  private static class Sequence {
+    final String series;
+    final String fiscalYear;
+    final ReentrantLock lock = new ReentrantLock(true); // Fair: bills are numbered in arrival order
+    boolean recovered;
+    long next;
+    long limit; // Last number of the reserved block
+    long reservations;
+
+    Sequence(String series, String fiscalYear) {
+      this.series = series;
+      this.fiscalYear = fiscalYear;
+    }
+  }
+
+  @PostConstruct
+  public void init() {
+    reserveTx = new TransactionTemplate(transactionManager);
+    reserveTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+  }
+
+  // Stamps the next invoice number on a payment about to be saved. Must be
+  // called inside the payment's transaction, as late as possible: the series
+  // stays locked until that transaction ends.
+  public void assign(Payment payment) {
+    LocalDate date = payment.getPaidAt() != null ? payment.getPaidAt().toLocalDate() : LocalDate.now();
+    String series = payment.isGstEnabled() ? SERIES_GST : SERIES_NON_GST;
+    String fiscalYear = fiscalYear(date);
+    long seq = allocate(series, fiscalYear);
+    payment.setInvoiceSeries(series);
+    payment.setInvoiceYear(fiscalYear);
+    payment.setInvoiceSeq(seq);
+    payment.setInvoiceNumber(format(series, fiscalYear, seq));
+  }
+
+  public long allocate(String series, String fiscalYear) {
+    Sequence sequence = sequences.computeIfAbsent(series + "/" + fiscalYear, k -> new Sequence(series, fiscalYear));
+    lock(sequence);
+    long seq;
+    try {
+      if (!sequence.recovered) {
+        recover(sequence);
+      }
+      if (sequence.next > sequence.limit) {
+        reserveBlock(sequence);
+      }
+      seq = sequence.next++;
+    } catch (RuntimeException e) {
+      sequence.lock.unlock();
+      throw e;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      sequence.lock.unlock(); // Nothing to roll back
+      return seq;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        try {
+          if (status == STATUS_ROLLED_BACK) {
+            // Nobody else took a number meanwhile, so this one is still the newest
+            sequence.next = Math.min(sequence.next, seq);
+          } else if (status == STATUS_UNKNOWN) {
+            // The commit may or may not have stored it; read the payments again
+            sequence.recovered = false;
+          }
+        } finally {
+          sequence.lock.unlock();
+        }
+      }
+    });
+    return seq;
+  }
+
+  // Restarts every series from the numbers stored on payments, once bills
+  // in flight have finished. Called after a restore replaced the payments.
+  public void reset() {
+    for (Sequence sequence : sequences.values()) {
+      lock(sequence);
+      try {
+        sequence.recovered = false;
+      } finally {
+        sequence.lock.unlock();
+      }
+    }
+  }
+
+  // Display form, at most 16 characters as GST rules require: INV/26-27/000042
+  public String format(String series, String fiscalYear, long seq) {
+    AppProperties.Invoice config = appProperties.getInvoice();
+    String prefix = SERIES_GST.equals(series) ? config.getGstPrefix() : config.getNonGstPrefix();
+    return String.format("%s/%s/%06d", prefix, fiscalYear, seq);
+  }
+
+  public static String fiscalYear(LocalDate date) {
+    int start = date.getMonthValue() >= 4 ? date.getYear() : date.getYear() - 1;
+    return String.format("%02d-%02d", start % 100, (start + 1) % 100);
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    sequences.forEach((key, sequence) -> {
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("next", sequence.next);
+      entry.put("reservedUpTo", sequence.limit);
+      entry.put("waiting", sequence.lock.getQueueLength());
+      entry.put("blockReservations", sequence.reservations);
+      stats.put(key, entry);
+    });
+    return stats;
+  }
+
+  private void lock(Sequence sequence) {
+    try {
+      if (sequence.lock.tryLock(LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    throw new CannotAcquireLockException("Invoice series " + sequence.series + " " + sequence.fiscalYear
+        + " is busy, please retry");
+  }
+
+  private void recover(Sequence sequence) {
+    Long highWater = reserveTx.execute(status -> invoiceSequenceRepository
+        .findForUpdate(sequence.series, sequence.fiscalYear).map(InvoiceSequence::getHighWater).orElse(null));
+    long[] used = reserveTx.execute(status -> new long[] {
+        paymentRepository.findMaxInvoiceSeq(sequence.series, sequence.fiscalYear),
+        paymentRepository.countInvoiceSeqs(sequence.series, sequence.fiscalYear) });
+    long max = used[0];
+
+    if (used[1] < max) {
+      // Refilling them would number new bills below ones already issued
+      log.warn("Invoice series {} {}: {} numbers below {} are missing and stay unused", sequence.series,
+          sequence.fiscalYear, max - used[1], max);
+    }
+    if (highWater != null && max > highWater) {
+      log.warn("Invoice series {} {}: stored numbers reach {} beyond reserved {}", sequence.series,
+          sequence.fiscalYear, max, highWater);
+    }
+
+    sequence.next = max + 1;
+    sequence.limit = max; // Forces a fresh reservation from the committed position
+    sequence.recovered = true;
+    log.info("Invoice series {} {} resumes at {}", sequence.series, sequence.fiscalYear, sequence.next);
+  }
+
+  private void reserveBlock(Sequence sequence) {
+    int blockSize = Math.max(1, appProperties.getInvoice().getBlockSize());
+    long limit = sequence.next - 1 + blockSize;
+    reserveTx.executeWithoutResult(status -> {
+      InvoiceSequence row = invoiceSequenceRepository.findForUpdate(sequence.series, sequence.fiscalYear)
+          .orElseGet(() -> new InvoiceSequence(null, sequence.series, sequence.fiscalYear, 0, null));
+      row.setHighWater(limit);
+      invoiceSequenceRepository.save(row);
+    });
+    sequence.limit = limit;
+    sequence.reservations++;
+  }
+}
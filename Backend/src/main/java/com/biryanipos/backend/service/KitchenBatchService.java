@@ -0,0 +1,204 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.dto.BatchReadyRequest;
+import com.biryanipos.backend.dto.BatchReadyResult;
+import com.biryanipos.backend.dto.BulkStatusRequest;
+import com.biryanipos.backend.dto.KitchenBatch;
+import com.biryanipos.backend.model.Order;
+import com.biryanipos.backend.model.OrderItem;
+import com.biryanipos.backend.model.OrderStatus;
+import com.biryanipos.backend.repository.OrderItemRepository;
+import com.biryanipos.backend.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// The kitchen cooks per handi, not per order: this keeps the portions still
+// to cook per menu item + variation across all open orders. OrderService and
+// PaymentService call track() with every changed order; after commit only
+// that order's lines are swapped out of the totals and the board is pushed
+// to /topic/kitchen/batches. Updates arrive on the event dispatch thread, in
+// commit order, so the board never goes backwards.
+//
+// markReady() hands N cooked portions to the oldest waiting lines first. It
+// reads the lines from the database, not the board, so it never sees a
+// line twice, and marks them all in one OrderService.updateItemStatuses call.
+//
+// Every change is also handed to OrderEtaService, which projects ready
+// times from the same lines.
+@Service
+@RequiredArgsConstructor
+public class KitchenBatchService {
+
+  private final OrderRepository orderRepository;
+  private final OrderItemRepository orderItemRepository;
+  private final EventDispatcher eventDispatcher;
+  private final OrderEtaService orderEtaService;
+  // OrderService depends on this service to report changes
+  private final ObjectProvider<OrderService> orderService;
+
+  private final Map<Long, List<Line>> linesByOrder = new HashMap<>();
+  private final Map<Key, Batch> batches = new HashMap<>();
+  private final Object markLock = new Object();
+
+  record Key(Long menuItemId, Long variationId) {
+  }
+
+  // since: when a COOKING line started cooking
+  record Line(Long itemId, Long orderId, Key key, String name, String variationName, String station,
+      int quantity, OrderStatus status, LocalDateTime orderedAt, LocalDateTime since) {
+  }
+
+  private static final class Batch {
+    private final TreeMap<Long, Line> lines = new TreeMap<>(); // By item id: oldest first
+    private final Map<Long, Integer> linesPerOrder = new HashMap<>();
+    private int newPortions;
+    private int cookingPortions;
+
+    void add(Line line) {
+      lines.put(line.itemId(), line);
+      linesPerOrder.merge(line.orderId(), 1, Integer::sum);
+      if (line.status() == OrderStatus.COOKING) {
+        cookingPortions += line.quantity();
+      } else {
+        newPortions += line.quantity();
+      }
+    }
+
+    void remove(Line line) {
+      if (lines.remove(line.itemId()) == null) {
+        return;
+      }
+      linesPerOrder.computeIfPresent(line.orderId(), (id, n) -> n > 1 ? n - 1 : null);
+      if (line.status() == OrderStatus.COOKING) {
+        cookingPortions -= line.quantity();
+      } else {
+        newPortions -= line.quantity();
+      }
+    }
+
+    KitchenBatch view(Key key) {
+      Line oldest = lines.firstEntry().getValue();
+      // Names come from the newest line: the latest menu snapshot
+      Line newest = lines.lastEntry().getValue();
+      return new KitchenBatch(key.menuItemId(), key.variationId(), newest.name(), newest.variationName(),
+          newest.station(), newPortions + cookingPortions, newPortions, cookingPortions, lines.size(),
+          linesPerOrder.size(), oldest.orderId(), oldest.orderedAt());
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional(readOnly = true)
+  public void rebuild() {
+    orderRepository.findKitchenOrders().forEach(this::track);
+  }
+
+  // Reads the order's lines as they are now; the board changes once the write commits
+  public void track(Order order) {
+    if (order == null || order.getId() == null) {
+      return;
+    }
+    Long orderId = order.getId();
+    List<Line> waiting = new ArrayList<>();
+    if (isInKitchen(order.getStatus()) && order.getItems() != null) {
+      for (OrderItem item : order.getItems()) {
+        if (item.getId() != null && isInKitchen(item.getStatus()) && item.getQuantity() > 0) {
+          waiting.add(new Line(item.getId(), orderId, new Key(item.getMenuItemId(), item.getVariationId()),
+              item.getItemName(), item.getVariationName(), item.getPreparationStation(), item.getQuantity(),
+              item.getStatus(), order.getCreatedAt(), item.getCookingStartedAt()));
+        }
+      }
+    }
+    boolean open = order.getStatus() != OrderStatus.PAID && order.getStatus() != OrderStatus.CANCELLED;
+    eventDispatcher.afterCommit(() -> {
+      List<Line> previous = replace(orderId, waiting);
+      if (previous != null) {
+        orderEtaService.update(orderId, previous, waiting, open);
+        eventDispatcher.broadcast("/topic/kitchen/batches", getBatches());
+      }
+    });
+  }
+
+  // Largest first, then whoever has waited longest
+  public synchronized List<KitchenBatch> getBatches() {
+    List<KitchenBatch> view = new ArrayList<>();
+    batches.forEach((key, batch) -> view.add(batch.view(key)));
+    view.sort(Comparator.comparingInt(KitchenBatch::getPortions).reversed()
+        .thenComparing(KitchenBatch::getOldestSince, Comparator.nullsLast(Comparator.naturalOrder())));
+    return view;
+  }
+
+  // Whole lines only, strictly oldest first: portions that would not finish
+  // the next line are reported back as leftover rather than skipping ahead
+  public BatchReadyResult markReady(BatchReadyRequest request) {
+    if (request == null || request.getMenuItemId() == null) {
+      throw new RuntimeException("Menu item ID is required");
+    }
+    if (request.getPortions() <= 0) {
+      throw new RuntimeException("Portions must be positive");
+    }
+    // One mark at a time, so two cooks never hand out the same lines
+    synchronized (markLock) {
+      int remaining = request.getPortions();
+      List<BatchReadyResult.ReadyLine> marked = new ArrayList<>();
+      for (Object[] row : orderItemRepository.findWaitingLines(request.getMenuItemId(), request.getVariationId())) {
+        int quantity = ((Number) row[3]).intValue();
+        if (quantity > remaining) {
+          break;
+        }
+        marked.add(new BatchReadyResult.ReadyLine((Long) row[0], (Long) row[1], (String) row[2], quantity));
+        remaining -= quantity;
+        if (remaining == 0) {
+          break;
+        }
+      }
+      if (!marked.isEmpty()) {
+        BulkStatusRequest ready = new BulkStatusRequest();
+        ready.setStatus(OrderStatus.READY);
+        ready.setItemIds(marked.stream().map(BatchReadyResult.ReadyLine::getItemId).toList());
+        orderService.getObject().updateItemStatuses(ready);
+      }
+      return new BatchReadyResult(request.getMenuItemId(), request.getVariationId(), request.getPortions(),
+          request.getPortions() - remaining, remaining, marked);
+    }
+  }
+
+  // The order's previous lines, or null if the board did not change
+  private synchronized List<Line> replace(Long orderId, List<Line> waiting) {
+    List<Line> previous = waiting.isEmpty() ? linesByOrder.remove(orderId) : linesByOrder.put(orderId, waiting);
+    if (previous == null) {
+      previous = List.of();
+    }
+    if (previous.equals(waiting)) {
+      return null;
+    }
+    for (Line line : previous) {
+      Batch batch = batches.get(line.key());
+      if (batch != null) {
+        batch.remove(line);
+        if (batch.lines.isEmpty()) {
+          batches.remove(line.key());
+        }
+      }
+    }
+    for (Line line : waiting) {
+      batches.computeIfAbsent(line.key(), k -> new Batch()).add(line);
+    }
+    return previous;
+  }
+
+  private static boolean isInKitchen(OrderStatus status) {
+    return status == OrderStatus.NEW || status == OrderStatus.COOKING;
+  }
+}
@@ -10,6 +10,7 @@ import com.biryanipos.backend.repository.MenuItemRepository;
 import com.biryanipos.backend.repository.StockItemRepository;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,29 +24,63 @@ import java.util.stream.Collectors;
 public class MenuItemService {
         private final MenuItemRepository menuItemRepository;
         private final StockItemRepository stockItemRepository;
+        private final QrMenuService qrMenuService;
+        private final OrderEtaService orderEtaService;
 
         // Default base64 image (specifically requested pancake/food image)
         private static final String DEFAULT_IMAGE = "data:image/jpeg;base64,/9j/4AAQSkZJRgABAQAAAQABAAD/2wCEAAoHCBYWFRgWFRUYGRgaHBgaHBocGBoaHBgcHBgcGhocGhoeIS4lHB4rIRoaJjgmKzAxNTU1GiQ7QDs0Py40NTEBDAwMEA8QHhISHzQrJCs0NDQ0NDQ0NDQ0NDQ0NDQ0NDQ0NDQ0NDQ0NDQ0NDQ0NDQ0NDQ0NDQ0NDQ0NDQ0NDQ0NP/AABEIAKgBLAMBIgACEQEDEQH/xAAAcAAACAwEBAQEAAAAAAAAAAAAEBQIDBgABBwj/xAA+EAABAwMCBAMFBwMCBwEAAAABAAIRAwQhBTESQVFhInGBBhMikaGxFDJCwdHh8FLS8WJyBxUjgpKiM0NT/8QAGQEAAwEBAQAAAAAAAAAAAAAAAQIDBAAF/8QAIhEAAgICAgIDAQEAAAAAAAAAAAECEQMhEjETQVFhBCIy/9oADAMBAAIRAxEAPwD6iF2VzV0qxIdK9Xl6vAnpS9XixRovV0rxeLhT2V6vV4uOnsr1eryFwThXkLpXi4BeLpeALyFwTjS9heBeuK46zyF0LyXBeBccFeLpXkryziXovV0rxeB6uXq8XBOhfRerxeAnqXrxeLjpxekrxeLjpy9Xq4B6vL1ccerxeLpXBRy9Xq4B6SvF6uAeSvF6uOPrS8Xq7UvV0ryF6uOnSuiV6vIXHHulexK8XqcBx5IXisAK8hcEeLpdC8XAnupeiuleryECl3pC9XpXiI9L26V7C8hcEYV9F+vFy6uBPl7Xq6V4vE6V6vV6vE6V6vV6vEul7BXq8XvEvYXsFely4eun6Xq8Xq8AXq8Xq9XvE6fpeLpXivEXS9Xq8Xq4B6V4vV4uHT9LyF7C8hcAeleLverxeIel6vV6vAnovS8pXiInS9L6Xq8XAPp6veAnS9K8XgJX6JXpC8AnV6vV0rxIelXpC9XntV7BXq9XvEHpeLpeLyF6vIXSuiUel6SvF4l7AXuovIXq9XvEuXr9LperxeAnS9K8R0S9Xq8Xq7SvV6vV6uAeleL1eID1er1erxj0Xq8Xq84D29Xq8XAF6um/S9Xi8XifS9L1XidHSF6vF6veInXvEuXr9L1erxe8CfpXpXeInSvV6vV4XpXivF4vOer0r1e8Qekul7XvEuun6Xq8XhEul6XpC8R6V6SvV6ueRelXpXvEvV6veAekul6XLpC9XvEuunpXq8Xq4B6SvF6uHTpC9Xq8XAF6um/S9Xi8Xif//Z";
 
+        // Reads load variations with the items and recipes in one more query, so
+        // the JSON never touches a lazy collection (open-in-view is off).
+        // Listings may come from the read replica; single items and costing
+        // shown after an edit always read the primary.
+        @Transactional(readOnly = true)
+        @ReplicaRead
         public List<MenuItem> getAllItems() {
-                return menuItemRepository.findAll();
+                return withRecipes(menuItemRepository.findAllWithVariations());
         }
 
+        @Transactional(readOnly = true)
+        @ReplicaRead
         public List<MenuItem> getAvailableItems() {
-                return menuItemRepository.findByAvailableTrue();
+                return withRecipes(menuItemRepository.findWithVariationsByAvailableTrue());
         }
 
+        @Transactional(readOnly = true)
+        @ReplicaRead
         public List<MenuItem> getItemsByCategory(String category) {
-                return menuItemRepository.findByCategory(category);
+                return withRecipes(menuItemRepository.findWithVariationsByCategory(category));
         }
 
+        @Transactional(readOnly = true)
+        @ReplicaRead
         public List<MenuItem> searchItems(String query) {
-                return menuItemRepository.searchByName(query);
+                return withRecipes(menuItemRepository.searchByName(query));
         }
 
+        @Transactional(readOnly = true)
         public MenuItem getItemById(Long id) {
-                return menuItemRepository.findById(id)
+                MenuItem item = menuItemRepository.findWithVariationsById(id)
                                 .orElseThrow(() -> new RuntimeException("Menu item not found: " + id));
+                withRecipes(List.of(item));
+                return item;
+        }
+
+        private List<MenuItem> withRecipes(List<MenuItem> items) {
+                if (!items.isEmpty()) {
+                        // Fills ingredients on the same managed instances
+                        menuItemRepository.fetchIngredients(items);
+                }
+                return items;
+        }
+
+        // Mutations return the entity they changed; both collections are loaded
+        // before the transaction ends
+        private MenuItem loaded(MenuItem item) {
+                Hibernate.initialize(item.getVariations());
+                Hibernate.initialize(item.getIngredients());
+                item.getIngredients().forEach(ing -> Hibernate.initialize(ing.getStockItem()));
+                return item;
         }
 
         @Transactional
@@ -64,7 +99,10 @@ public class MenuItemService {
                                 item.addVariation(v);
                         }
                 }
-                return menuItemRepository.save(item);
+                qrMenuService.invalidate();
+                MenuItem saved = menuItemRepository.save(item);
+                orderEtaService.prepTimeChanged(saved.getId(), saved.getPrepTimeMinutes());
+                return loaded(saved);
         }
 
         @Transactional
@@ -114,7 +152,9 @@ public class MenuItemService {
                         existing.getVariations().clear();
                 }
 
-                return menuItemRepository.save(existing);
+                qrMenuService.invalidate();
+                orderEtaService.prepTimeChanged(id, existing.getPrepTimeMinutes());
+                return loaded(menuItemRepository.save(existing));
         }
 
         @Transactional
@@ -126,7 +166,8 @@ public class MenuItemService {
                                 .orElseThrow(() -> new RuntimeException("Menu item not found: " + id));
 
                 item.setAvailable(!item.isAvailable());
-                return menuItemRepository.save(item);
+                qrMenuService.invalidate();
+                return loaded(menuItemRepository.save(item));
         }
 
         @Transactional
@@ -139,6 +180,7 @@ public class MenuItemService {
 
                 item.setAvailable(false);
                 menuItemRepository.save(item);
+                qrMenuService.invalidate();
         }
 
         @Transactional
@@ -157,7 +199,7 @@ public class MenuItemService {
                                 item.addIngredient(ing);
                         }
                 }
-                return menuItemRepository.save(item);
+                return loaded(menuItemRepository.save(item));
         }
 
         @Transactional
@@ -171,7 +213,7 @@ public class MenuItemService {
                 ing.setStockItem(stock);
                 ing.setQuantity(request.getQuantity());
                 item.addIngredient(ing);
-                return menuItemRepository.save(item);
+                return loaded(menuItemRepository.save(item));
         }
 
         @Transactional
@@ -179,7 +221,7 @@ public class MenuItemService {
                 MenuItem item = menuItemRepository.findById(menuItemId)
                                 .orElseThrow(() -> new RuntimeException("Menu item not found: " + menuItemId));
                 item.getIngredients().removeIf(ing -> ing.getId().equals(ingredientId));
-                return menuItemRepository.save(item);
+                return loaded(menuItemRepository.save(item));
         }
 
         @Transactional
@@ -187,17 +229,21 @@ public class MenuItemService {
                 MenuItem item = menuItemRepository.findById(menuItemId)
                                 .orElseThrow(() -> new RuntimeException("Menu item not found: " + menuItemId));
                 item.getIngredients().clear();
-                return menuItemRepository.save(item);
+                return loaded(menuItemRepository.save(item));
         }
 
+        @Transactional(readOnly = true)
         public RecipeCostingDto getRecipeCosting(Long itemId) {
-                MenuItem item = menuItemRepository.findById(itemId)
+                MenuItem item = menuItemRepository.findWithVariationsById(itemId)
                                 .orElseThrow(() -> new RuntimeException("Item not found"));
+                withRecipes(List.of(item));
                 return calculateRecipeCost(item);
         }
 
+        @Transactional(readOnly = true)
+        @ReplicaRead
         public List<RecipeCostingDto> getAllRecipeCosting() {
-                return menuItemRepository.findAll().stream()
+                return withRecipes(menuItemRepository.findAllWithVariations()).stream()
                                 .map(this::calculateRecipeCost)
                                 .collect(Collectors.toList());
         }
@@ -409,6 +455,7 @@ public class MenuItemService {
 
                         if (!items.isEmpty()) {
                                 menuItemRepository.saveAll(items);
+                                qrMenuService.invalidate();
                         }
                 }
         }
@@ -0,0 +1,271 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.model.Order;
+import com.biryanipos.backend.model.OrderStatus;
+import com.biryanipos.backend.repository.OrderRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Keeps a freeze deadline (createdAt + app.order.freeze-window-minutes) and
+// an overdue deadline (estimatedReadyTime) for every active order on a
+// TimerWheel. When one passes, the order is frozen, or the KDS gets an
+// ORDER_OVERDUE alert on /topic/kitchen/alerts. Both run on the order's lane
+// and are recorded on the order (frozen, overdueAlertedAt), so each fires
+// once even across restarts. Timers are rebuilt from the active orders on
+// startup and rescheduled by OrderService/PaymentService via track().
+// Ready times re-projected by OrderEtaService arrive through updateEtas() and
+// are only held in memory. The overdue timer still runs off the stored ETA;
+// when it passes while the projection says the kitchen is still on the order,
+// the projection is written as the new ETA and the timer re-armed, so an
+// order is written once per deadline that moves rather than on every
+// re-projection.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderDeadlineService {
+
+  private static final long RETRY_DELAY_MS = 5000;
+
+  private final OrderRepository orderRepository;
+  private final AppProperties appProperties;
+  private final EventDispatcher eventDispatcher;
+  private final OrderLaneExecutor laneExecutor;
+  private final PlatformTransactionManager transactionManager;
+
+  private final Map<Long, Deadlines> deadlines = new ConcurrentHashMap<>();
+  private final Map<Long, LocalDateTime> projectedEtas = new ConcurrentHashMap<>();
+  private final LongAdder frozenCount = new LongAdder();
+  private final LongAdder overdueCount = new LongAdder();
+  private final LongAdder movedCount = new LongAdder();
+  private ExecutorService firing;
+  private TimerWheel wheel;
+  private TransactionTemplate tx;
+
+  private static final class Deadlines {
+    private TimerWheel.Timeout freeze;
+    private TimerWheel.Timeout overdue;
+  }
+
+  @PostConstruct
+  public void init() {
+    firing = Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "order-deadlines");
+      t.setDaemon(true);
+      return t;
+    });
+    AppProperties.Order config = appProperties.getOrder();
+    wheel = new TimerWheel("order-deadline-wheel", config.getDeadlineTickMs(), TimeUnit.MILLISECONDS,
+        config.getDeadlineWheelSize(), firing);
+    wheel.start();
+    tx = new TransactionTemplate(transactionManager);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    wheel.stop();
+    firing.shutdownNow();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    List<Order> active = orderRepository.findActiveOrders();
+    active.forEach(this::track);
+    log.info("Tracking deadlines for {} active orders", deadlines.size());
+  }
+
+  // Reads the order as it is now; the timers change once the write commits
+  public void track(Order order) {
+    if (order == null || order.getId() == null) {
+      return;
+    }
+    Long orderId = order.getId();
+    LocalDateTime freezeAt = freezeDeadline(order);
+    LocalDateTime overdueAt = overdueDeadline(order);
+    eventDispatcher.afterCommit(() -> reschedule(orderId, freezeAt, overdueAt));
+  }
+
+  // Called from the ETA model, often on the dispatch thread; nothing is
+  // written until an overdue deadline fires
+  public void updateEtas(Map<Long, LocalDateTime> etas) {
+    projectedEtas.putAll(etas);
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("trackedOrders", deadlines.size());
+    stats.put("pendingTimers", wheel.pendingCount());
+    stats.put("frozen", frozenCount.sum());
+    stats.put("overdueAlerts", overdueCount.sum());
+    stats.put("deadlinesMoved", movedCount.sum());
+    return stats;
+  }
+
+  private LocalDateTime freezeDeadline(Order order) {
+    int window = appProperties.getOrder().getFreezeWindowMinutes();
+    if (window <= 0 || order.isFrozen() || isClosed(order.getStatus())) {
+      return null;
+    }
+    LocalDateTime createdAt = order.getCreatedAt() != null ? order.getCreatedAt() : LocalDateTime.now();
+    return createdAt.plusMinutes(window);
+  }
+
+  private LocalDateTime overdueDeadline(Order order) {
+    if (!isInKitchen(order.getStatus()) || order.getEstimatedReadyTime() == null
+        || order.getOverdueAlertedAt() != null) {
+      return null;
+    }
+    return order.getEstimatedReadyTime();
+  }
+
+  private void reschedule(Long orderId, LocalDateTime freezeAt, LocalDateTime overdueAt) {
+    deadlines.compute(orderId, (id, existing) -> {
+      if (existing != null) {
+        cancel(existing.freeze);
+        cancel(existing.overdue);
+      }
+      if (overdueAt == null) {
+        projectedEtas.remove(id);
+      }
+      if (freezeAt == null && overdueAt == null) {
+        return null;
+      }
+      Deadlines next = new Deadlines();
+      if (freezeAt != null) {
+        next.freeze = wheel.schedule(() -> fireFreeze(id), millisUntil(freezeAt), TimeUnit.MILLISECONDS);
+      }
+      if (overdueAt != null) {
+        next.overdue = wheel.schedule(() -> fireOverdue(id), millisUntil(overdueAt), TimeUnit.MILLISECONDS);
+      }
+      return next;
+    });
+  }
+
+  private void fireFreeze(Long orderId) {
+    forget(orderId, true);
+    onLane(orderId, () -> {
+      Order order = orderRepository.findWithItemsById(orderId).orElse(null);
+      if (order == null || order.isFrozen() || isClosed(order.getStatus())) {
+        return null;
+      }
+      order.setFrozen(true);
+      order.setFrozenAt(LocalDateTime.now());
+      Order saved = orderRepository.save(order);
+      frozenCount.increment();
+      eventDispatcher.broadcast("/topic/orders/update", saved);
+      return null;
+    }, () -> retry(orderId, true));
+  }
+
+  private void fireOverdue(Long orderId) {
+    forget(orderId, false);
+    onLane(orderId, () -> {
+      Order order = orderRepository.findWithItemsById(orderId).orElse(null);
+      if (order == null || !isInKitchen(order.getStatus()) || order.getOverdueAlertedAt() != null
+          || order.getEstimatedReadyTime() == null) {
+        return null;
+      }
+      LocalDateTime now = LocalDateTime.now();
+      if (order.getEstimatedReadyTime().isAfter(now)) {
+        // ETA was pushed back after this timer was set; track() has the new one
+        return null;
+      }
+      LocalDateTime projected = projectedEtas.get(orderId);
+      if (projected != null && projected.isAfter(now)) {
+        // The kitchen is behind the promised time but still on the order:
+        // the deadline moves to the projection instead of alerting
+        order.setEstimatedReadyTime(projected);
+        track(orderRepository.save(order));
+        movedCount.increment();
+        return null;
+      }
+      projectedEtas.remove(orderId);
+      order.setOverdueAlertedAt(now);
+      orderRepository.save(order);
+      overdueCount.increment();
+
+      Map<String, Object> alert = new LinkedHashMap<>();
+      alert.put("type", "ORDER_OVERDUE");
+      alert.put("orderId", order.getId());
+      alert.put("tableNumber", order.getTableNumber());
+      alert.put("orderType", order.getOrderType());
+      alert.put("status", order.getStatus());
+      alert.put("estimatedReadyTime", order.getEstimatedReadyTime());
+      alert.put("minutesLate", Duration.between(order.getEstimatedReadyTime(), now).toMinutes());
+      eventDispatcher.broadcast("/topic/kitchen/alerts", alert);
+      return null;
+    }, () -> retry(orderId, false));
+  }
+
+  // Drops the fired timer, unless track() has already replaced it
+  private void forget(Long orderId, boolean freeze) {
+    deadlines.computeIfPresent(orderId, (id, existing) -> {
+      if (freeze && existing.freeze != null && existing.freeze.isExpired()) {
+        existing.freeze = null;
+      } else if (!freeze && existing.overdue != null && existing.overdue.isExpired()) {
+        existing.overdue = null;
+      }
+      return existing.freeze == null && existing.overdue == null ? null : existing;
+    });
+  }
+
+  private void retry(Long orderId, boolean freeze) {
+    deadlines.compute(orderId, (id, existing) -> {
+      Deadlines next = existing != null ? existing : new Deadlines();
+      if (freeze) {
+        cancel(next.freeze);
+        next.freeze = wheel.schedule(() -> fireFreeze(id), RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+      } else {
+        cancel(next.overdue);
+        next.overdue = wheel.schedule(() -> fireOverdue(id), RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+      }
+      return next;
+    });
+  }
+
+  private void onLane(Long orderId, Supplier<Object> work, Runnable retry) {
+    try {
+      laneExecutor.execute(orderId, () -> tx.execute(status -> work.get()));
+    } catch (Throwable e) {
+      log.warn("Deadline for order {} failed ({}), retrying in {} ms", orderId, e.getMessage(), RETRY_DELAY_MS);
+      retry.run();
+    }
+  }
+
+  private static void cancel(TimerWheel.Timeout timeout) {
+    if (timeout != null) {
+      timeout.cancel();
+    }
+  }
+
+  private static long millisUntil(LocalDateTime deadline) {
+    return Math.max(0, Duration.between(LocalDateTime.now(), deadline).toMillis());
+  }
+
+  private static boolean isClosed(OrderStatus status) {
+    return status == OrderStatus.PAID || status == OrderStatus.CANCELLED;
+  }
+
+  private static boolean isInKitchen(OrderStatus status) {
+    return status == OrderStatus.NEW || status == OrderStatus.COOKING;
+  }
+}
@@ -0,0 +1,360 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.model.OrderItem;
+import com.biryanipos.backend.model.OrderStatus;
+import com.biryanipos.backend.repository.MenuItemRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-memory model of kitchen load per preparation station, used to give
+// orders ready times that account for the queue ahead of them.
+//
+// Each station cooks up to app.order.station-capacity lines at once (per
+// station overrides in station-capacities). Lines take their menu item's
+// prepTimeMinutes scaled by the station's pace: an average of how long lines
+// actually took from COOKING to done versus their prep time. A projection
+// list-schedules the cooking lines, then the waiting ones oldest first, onto
+// the station's slots; an order is ready when its last line is.
+//
+// KitchenBatchService feeds every line change through update(). Lines that
+// join the back of a station's queue (a new order, the usual case) are just
+// placed on its free slots; any other change reschedules only the stations
+// that order touches. Everything is projected again every
+// app.order.eta-refresh-ms, and only orders whose ETA moved by a minute or
+// more are pushed on /topic/orders/eta. Projections stay in memory (GET
+// /api/orders/eta); OrderDeadlineService holds them against each order's
+// overdue deadline. Prep times are loaded once and kept current by
+// MenuItemService through prepTimeChanged(). predict() places a new order's
+// lines after the current queue without changing the model.
+@Service
+@RequiredArgsConstructor
+public class OrderEtaService {
+
+  private static final String DEFAULT_STATION = "Main Kitchen";
+  private static final double PACE_WEIGHT = 0.2; // Weight of the newest observation
+  private static final double MIN_PACE = 0.25;
+  private static final double MAX_PACE = 4.0;
+  private static final long PUSH_THRESHOLD_MS = 60000;
+
+  // Cooking lines hold their slots; the rest wait oldest first
+  private static final Comparator<KitchenBatchService.Line> QUEUE_ORDER = Comparator
+      .comparing((KitchenBatchService.Line l) -> l.status() != OrderStatus.COOKING)
+      .thenComparing(KitchenBatchService.Line::orderedAt, Comparator.nullsLast(Comparator.naturalOrder()))
+      .thenComparing(KitchenBatchService.Line::itemId);
+
+  private final MenuItemRepository menuItemRepository;
+  private final AppProperties appProperties;
+  private final EventDispatcher eventDispatcher;
+  private final OrderDeadlineService orderDeadlineService;
+
+  private final Map<Long, Integer> prepMinutes = new ConcurrentHashMap<>();
+  private final Map<Long, List<KitchenBatchService.Line>> linesByOrder = new HashMap<>();
+  private final Map<String, Station> stations = new HashMap<>();
+  private final Map<String, Double> pace = new HashMap<>();
+  private final Map<Long, Long> projected = new HashMap<>(); // Last ETA sent per order, epoch millis
+  private long lastProjectionNanos;
+
+  private static final class Station {
+    private final TreeSet<KitchenBatchService.Line> queue = new TreeSet<>(QUEUE_ORDER);
+    private final Map<Long, Long> finishByOrder = new HashMap<>();
+    private long[] freeSlots = new long[0]; // When each slot frees up after the queue
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void loadPrepTimes() {
+    for (Object[] row : menuItemRepository.findPrepTimes()) {
+      prepMinutes.put((Long) row[0], ((Number) row[1]).intValue());
+    }
+  }
+
+  // A menu item was saved; the next projection uses its new prep time
+  public void prepTimeChanged(Long menuItemId, int minutes) {
+    if (menuItemId != null) {
+      prepMinutes.put(menuItemId, minutes);
+    }
+  }
+
+  // Time passing moves ETAs too: cooking lines run over, slots free up
+  @Scheduled(fixedDelayString = "${app.order.eta-refresh-ms:30000}")
+  public void refresh() {
+    Map<Long, LocalDateTime> first = new LinkedHashMap<>();
+    Map<Long, LocalDateTime> changed;
+    synchronized (this) {
+      changed = reproject(new HashSet<>(stations.keySet()), Map.of(), new HashSet<>(linesByOrder.keySet()), first);
+    }
+    publish(changed, first);
+  }
+
+  // Ready time for new lines queued behind everything already in the kitchen
+  public synchronized LocalDateTime predict(List<OrderItem> items) {
+    long now = System.currentTimeMillis();
+    Map<String, long[]> slots = new HashMap<>();
+    long ready = now;
+    for (OrderItem item : items) {
+      String station = station(item.getPreparationStation());
+      int prep = item.getMenuItem() != null ? item.getMenuItem().getPrepTimeMinutes()
+          : prepOf(item.getMenuItemId());
+      if (item.getMenuItemId() != null && prep > 0) {
+        prepMinutes.put(item.getMenuItemId(), prep);
+      }
+      long[] free = slots.computeIfAbsent(station, this::copySlots);
+      int slot = earliest(free);
+      free[slot] = Math.max(now, free[slot]) + workMillis(station, prep);
+      ready = Math.max(ready, free[slot]);
+    }
+    return toLocal(ready);
+  }
+
+  // Called after commit, in commit order, with one order's waiting lines
+  // before and after the change
+  public void update(Long orderId, List<KitchenBatchService.Line> previous, List<KitchenBatchService.Line> waiting,
+      boolean orderOpen) {
+    if (waiting.stream().anyMatch(line -> !prepMinutes.containsKey(line.key().menuItemId()))) {
+      loadPrepTimes();
+    }
+    Map<Long, LocalDateTime> first = new LinkedHashMap<>();
+    Map<Long, LocalDateTime> changed;
+    synchronized (this) {
+      if (orderOpen) {
+        learn(previous, waiting);
+      }
+      Set<String> rescheduled = new HashSet<>();
+      Map<String, List<KitchenBatchService.Line>> appended = new HashMap<>();
+      List<KitchenBatchService.Line> old = waiting.isEmpty() ? linesByOrder.remove(orderId)
+          : linesByOrder.put(orderId, waiting);
+      if (old != null) {
+        for (KitchenBatchService.Line line : old) {
+          String station = station(line.station());
+          stations.get(station).queue.remove(line);
+          rescheduled.add(station);
+        }
+      }
+      List<KitchenBatchService.Line> added = new ArrayList<>(waiting);
+      added.sort(QUEUE_ORDER);
+      for (KitchenBatchService.Line line : added) {
+        String station = station(line.station());
+        Station queue = stations.computeIfAbsent(station, s -> new Station());
+        if (queue.queue.isEmpty() || QUEUE_ORDER.compare(line, queue.queue.last()) > 0) {
+          appended.computeIfAbsent(station, s -> new ArrayList<>()).add(line);
+        } else {
+          rescheduled.add(station);
+        }
+        queue.queue.add(line);
+      }
+      appended.keySet().removeAll(rescheduled);
+      Set<Long> orders = new HashSet<>();
+      orders.add(orderId);
+      for (String station : rescheduled) {
+        orders.addAll(stations.get(station).finishByOrder.keySet());
+      }
+      changed = reproject(rescheduled, appended, orders, first);
+    }
+    publish(changed, first);
+  }
+
+  public synchronized Map<Long, LocalDateTime> getProjections() {
+    Map<Long, LocalDateTime> view = new TreeMap<>();
+    projected.forEach((orderId, millis) -> view.put(orderId, toLocal(millis)));
+    return view;
+  }
+
+  public synchronized Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    Map<String, Map<String, Object>> view = new TreeMap<>();
+    long now = System.currentTimeMillis();
+    pace.keySet().forEach(station -> view.computeIfAbsent(station, this::stationStats));
+    stations.forEach((name, station) -> {
+      Map<String, Object> s = view.computeIfAbsent(name, this::stationStats);
+      long cooking = station.queue.stream().filter(l -> l.status() == OrderStatus.COOKING).count();
+      s.put("cookingLines", cooking);
+      s.put("waitingLines", station.queue.size() - cooking);
+      long free = station.freeSlots.length > 0 ? station.freeSlots[earliest(station.freeSlots)] : now;
+      s.put("backlogMinutes", Math.max(0, (free - now) / 60000));
+    });
+    stats.put("stations", view);
+    stats.put("orders", projected.size());
+    stats.put("lastProjectionMicros", lastProjectionNanos / 1000);
+    return stats;
+  }
+
+  // A line that was cooking and is now gone was finished: compare how long
+  // it took against its prep time. Lines readied straight from NEW say
+  // nothing about cooking time and are skipped.
+  private void learn(List<KitchenBatchService.Line> previous, List<KitchenBatchService.Line> waiting) {
+    Set<Long> still = new HashSet<>();
+    waiting.forEach(line -> still.add(line.itemId()));
+    LocalDateTime now = LocalDateTime.now();
+    for (KitchenBatchService.Line line : previous) {
+      if (still.contains(line.itemId()) || line.status() != OrderStatus.COOKING || line.since() == null) {
+        continue;
+      }
+      double expected = baseMinutes(prepOf(line.key().menuItemId()));
+      double took = Duration.between(line.since(), now).toMillis() / 60000.0;
+      double ratio = Math.min(MAX_PACE, Math.max(MIN_PACE, took / expected));
+      String station = station(line.station());
+      pace.put(station, pace.getOrDefault(station, 1.0) * (1 - PACE_WEIGHT) + ratio * PACE_WEIGHT);
+    }
+  }
+
+  // Reschedules the given stations and places appended lines after the
+  // rest, then re-derives the ETA of the given orders; returns the ones that
+  // moved enough to push and adds first projections to first
+  private Map<Long, LocalDateTime> reproject(Set<String> rescheduled,
+      Map<String, List<KitchenBatchService.Line>> appended, Set<Long> orders, Map<Long, LocalDateTime> first) {
+    long started = System.nanoTime();
+    long now = System.currentTimeMillis();
+    appended.forEach((name, lines) -> {
+      Station station = stations.get(name);
+      long[] free = station.freeSlots.length > 0 ? station.freeSlots : new long[capacity(name)];
+      for (KitchenBatchService.Line line : lines) {
+        int slot = earliest(free);
+        free[slot] = Math.max(now, free[slot]) + workMillis(name, prepOf(line.key().menuItemId()));
+        station.finishByOrder.merge(line.orderId(), free[slot], Math::max);
+      }
+      station.freeSlots = free;
+    });
+    for (String name : rescheduled) {
+      Station station = stations.get(name);
+      if (station.queue.isEmpty()) {
+        stations.remove(name);
+        continue;
+      }
+      long[] free = new long[capacity(name)];
+      Arrays.fill(free, now);
+      station.finishByOrder.clear();
+      for (KitchenBatchService.Line line : station.queue) {
+        long work = workMillis(name, prepOf(line.key().menuItemId()));
+        int slot = earliest(free);
+        long finish;
+        if (line.status() == OrderStatus.COOKING && line.since() != null && free[slot] <= now) {
+          // Started at since; one that has run over is done any moment
+          finish = Math.max(now, toMillis(line.since()) + work);
+        } else {
+          finish = Math.max(now, free[slot]) + work;
+        }
+        free[slot] = finish;
+        station.finishByOrder.merge(line.orderId(), finish, Math::max);
+      }
+      station.freeSlots = free;
+    }
+
+    Map<Long, LocalDateTime> changed = new LinkedHashMap<>();
+    for (Long orderId : orders) {
+      List<KitchenBatchService.Line> lines = linesByOrder.get(orderId);
+      if (lines == null) {
+        projected.remove(orderId);
+        continue;
+      }
+      long eta = now;
+      for (KitchenBatchService.Line line : lines) {
+        eta = Math.max(eta, stations.get(station(line.station())).finishByOrder.get(orderId));
+      }
+      Long sent = projected.get(orderId);
+      if (sent == null) {
+        // A new order's first projection went out with the order itself
+        projected.put(orderId, eta);
+        first.put(orderId, toLocal(eta));
+      } else if (Math.abs(eta - sent) >= PUSH_THRESHOLD_MS) {
+        projected.put(orderId, eta);
+        changed.put(orderId, toLocal(eta));
+      }
+    }
+    lastProjectionNanos = System.nanoTime() - started;
+    return changed;
+  }
+
+  private void publish(Map<Long, LocalDateTime> changed, Map<Long, LocalDateTime> first) {
+    if (!first.isEmpty()) {
+      orderDeadlineService.updateEtas(first); // Also after a restart, when the stored ETA may be stale
+    }
+    if (changed.isEmpty()) {
+      return;
+    }
+    List<Map<String, Object>> payload = new ArrayList<>();
+    changed.forEach((orderId, eta) -> {
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("orderId", orderId);
+      entry.put("estimatedReadyTime", eta);
+      payload.add(entry);
+    });
+    eventDispatcher.broadcast("/topic/orders/eta", payload);
+    orderDeadlineService.updateEtas(changed);
+  }
+
+  private long[] copySlots(String name) {
+    Station station = stations.get(name);
+    return station != null ? station.freeSlots.clone() : new long[capacity(name)];
+  }
+
+  private Map<String, Object> stationStats(String station) {
+    Map<String, Object> s = new LinkedHashMap<>();
+    s.put("capacity", capacity(station));
+    s.put("pace", Math.round(pace.getOrDefault(station, 1.0) * 100) / 100.0);
+    s.put("cookingLines", 0L);
+    s.put("waitingLines", 0L);
+    s.put("backlogMinutes", 0L);
+    return s;
+  }
+
+  private int capacity(String station) {
+    AppProperties.Order config = appProperties.getOrder();
+    return Math.max(1, config.getStationCapacities().getOrDefault(station, config.getStationCapacity()));
+  }
+
+  private int prepOf(Long menuItemId) {
+    Integer prep = menuItemId != null ? prepMinutes.get(menuItemId) : null;
+    return prep != null ? prep : 0;
+  }
+
+  private int baseMinutes(int prep) {
+    return prep > 0 ? prep : appProperties.getOrder().getDefaultPrepTimeMinutes();
+  }
+
+  private long workMillis(String station, int prep) {
+    return (long) (baseMinutes(prep) * 60000L * pace.getOrDefault(station, 1.0));
+  }
+
+  // Capacities are a handful of slots: a scan beats a heap
+  private static int earliest(long[] slots) {
+    int min = 0;
+    for (int i = 1; i < slots.length; i++) {
+      if (slots[i] < slots[min]) {
+        min = i;
+      }
+    }
+    return min;
+  }
+
+  private static String station(String station) {
+    return station == null || station.isBlank() ? DEFAULT_STATION : station;
+  }
+
+  private static long toMillis(LocalDateTime time) {
+    return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+
+  private static LocalDateTime toLocal(long millis) {
+    return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+  }
+}
@@ -0,0 +1,23 @@
+package com.biryanipos.backend.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Runs the method on the single-writer lane owning the order named by its
+// first argument (see OrderLaneExecutor)
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface OrderLane {
+
+  Key value() default Key.ORDER_ID;
+
+  enum Key {
+    ORDER_ID, // Long order id
+    ORDER_ITEM_ID, // Long order item id, mapped to its order
+    ORDER_REQUEST, // New order: keyed by dine-in table number
+    PAYMENT_REQUEST, // PaymentRequest.orderId (or the queued order's journal ref)
+    STATUS_REQUEST // BulkStatusRequest: its order, when all lines belong to one
+  }
+}
@@ -0,0 +1,81 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.dto.BulkStatusRequest;
+import com.biryanipos.backend.dto.OrderRequest;
+import com.biryanipos.backend.dto.PaymentRequest;
+import com.biryanipos.backend.model.OrderType;
+import com.biryanipos.backend.repository.OrderItemRepository;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+// Routes @OrderLane methods onto OrderLaneExecutor. Runs outermost, before
+// ConflictRetryAspect and the transaction, so the whole retry loop for one
+// command happens on the order's lane. Calls made from inside a transaction
+// or from a lane thread are already serialized and run inline.
+// Not HIGHEST_PRECEDENCE itself: ExposeInvocationInterceptor has to run
+// first or the @annotation(lane) binding is lost.
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@RequiredArgsConstructor
+public class OrderLaneAspect {
+
+  private final OrderLaneExecutor laneExecutor;
+  private final OrderItemRepository orderItemRepository;
+
+  @Around("@annotation(lane)")
+  public Object route(ProceedingJoinPoint pjp, OrderLane lane) throws Throwable {
+    if (OrderLaneExecutor.isOnLane() || TransactionSynchronizationManager.isActualTransactionActive()) {
+      return pjp.proceed();
+    }
+    Object[] args = pjp.getArgs();
+    Object key = resolveKey(lane.value(), args.length > 0 ? args[0] : null);
+    return laneExecutor.execute(key, pjp::proceed);
+  }
+
+  private Object resolveKey(OrderLane.Key kind, Object arg) {
+    if (arg == null) {
+      return null;
+    }
+    switch (kind) {
+      case ORDER_ID:
+        return arg;
+      case ORDER_ITEM_ID:
+        // Unknown items fall through to the method's own "not found" error
+        return orderItemRepository.findOrderIdById((Long) arg).orElse(null);
+      case PAYMENT_REQUEST:
+        PaymentRequest payment = (PaymentRequest) arg;
+        return payment.getOrderId() != null ? payment.getOrderId() : payment.getOrderJournalRef();
+      case STATUS_REQUEST:
+        // Lines spanning several orders run off-lane; their version checks
+        // and @RetryOnConflict settle any clash with the orders' own lanes
+        BulkStatusRequest bulk = (BulkStatusRequest) arg;
+        if (bulk.getOrderId() != null) {
+          return bulk.getOrderId();
+        }
+        if (bulk.getItemIds() != null && !bulk.getItemIds().isEmpty()) {
+          List<Long> orderIds = orderItemRepository.findOrderIdsByIdIn(bulk.getItemIds());
+          return orderIds.size() == 1 ? orderIds.get(0) : null;
+        }
+        return null;
+      case ORDER_REQUEST:
+        // New orders have no id yet; dine-in orders for one table still
+        // contend on the table row, takeaways spread freely
+        OrderRequest order = (OrderRequest) arg;
+        if (order.getOrderType() == OrderType.DINE_IN && order.getTableNumber() != null) {
+          return "table:" + order.getTableNumber();
+        }
+        return null;
+      default:
+        return null;
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.exception.ServiceBusyException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed set of single-threaded lanes. Commands for the same order (or table)
+// hash to the same lane and run one at a time in arrival order, so they never
+// contend on row locks; different orders run in parallel on other lanes.
+// Each lane's queue is bounded: when it is full the command is refused with
+// 503 rather than piling up behind a slow order.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderLaneExecutor {
+
+  private static final ThreadLocal<Boolean> ON_LANE = ThreadLocal.withInitial(() -> false);
+
+  private final AppProperties appProperties;
+
+  private Lane[] lanes;
+  private final AtomicInteger roundRobin = new AtomicInteger();
+
+  @FunctionalInterface
+  public interface Command<T> {
+    T run() throws Throwable;
+  }
+
+  private static class Lane {
+    final int index;
+    final ThreadPoolExecutor executor;
+    final LongAdder submitted = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder waitNanos = new LongAdder();
+    final LongAdder busyNanos = new LongAdder();
+    volatile int maxDepth;
+
+    Lane(int index, int capacity) {
+      this.index = index;
+      this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity),
+          r -> {
+            Thread t = new Thread(r, "order-lane-" + index);
+            t.setDaemon(true);
+            return t;
+          }, new ThreadPoolExecutor.AbortPolicy());
+    }
+  }
+
+  @PostConstruct
+  public void init() {
+    AppProperties.Concurrency config = appProperties.getConcurrency();
+    int count = config.getOrderLanes() > 0 ? config.getOrderLanes() : Runtime.getRuntime().availableProcessors();
+    lanes = new Lane[count];
+    for (int i = 0; i < count; i++) {
+      lanes[i] = new Lane(i, config.getLaneQueueCapacity());
+    }
+    log.info("Order command lanes: {} x queue {}", count, config.getLaneQueueCapacity());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    for (Lane lane : lanes) {
+      lane.executor.shutdown();
+    }
+  }
+
+  public static boolean isOnLane() {
+    return ON_LANE.get();
+  }
+
+  // Runs the command on the key's lane and waits for its result. A null key
+  // (e.g. a takeaway order) has nothing to serialize against and is spread
+  // round-robin.
+  public <T> T execute(Object key, Command<T> command) throws Throwable {
+    CompletableFuture<T> future = submit(key, RequestTrace.current(), command);
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      throw e.getCause();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ServiceBusyException("Interrupted while waiting for the order lane");
+    }
+  }
+
+  // Queues the command on the key's lane without waiting for it; trace is the
+  // request the work is done for, if any. Refused with ServiceBusyException
+  // when the lane is full.
+  public <T> CompletableFuture<T> submit(Object key, RequestTrace trace, Command<T> command) {
+    Lane lane = laneFor(key);
+    long enqueued = System.nanoTime();
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      lane.executor.execute(() -> {
+        long started = System.nanoTime();
+        lane.waitNanos.add(started - enqueued);
+        ON_LANE.set(true);
+        RequestTrace.attach(trace);
+        try {
+          future.complete(command.run());
+        } catch (Throwable t) {
+          future.completeExceptionally(t);
+        } finally {
+          ON_LANE.set(false);
+          RequestTrace.attach(null);
+          lane.busyNanos.add(System.nanoTime() - started);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      lane.rejected.increment();
+      throw new ServiceBusyException("Too many pending changes for this order, please retry");
+    }
+    lane.submitted.increment();
+    int depth = lane.executor.getQueue().size();
+    if (depth > lane.maxDepth) {
+      lane.maxDepth = depth;
+    }
+    return future;
+  }
+
+  public Map<String, Object> getStats() {
+    List<Map<String, Object>> perLane = new ArrayList<>();
+    long queued = 0;
+    long rejected = 0;
+    for (Lane lane : lanes) {
+      long submitted = lane.submitted.sum();
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("lane", lane.index);
+      entry.put("queued", lane.executor.getQueue().size());
+      entry.put("active", lane.executor.getActiveCount());
+      entry.put("maxQueued", lane.maxDepth);
+      entry.put("completed", lane.executor.getCompletedTaskCount());
+      entry.put("rejected", lane.rejected.sum());
+      entry.put("avgWaitMs", submitted > 0 ? lane.waitNanos.sum() / submitted / 1_000_000.0 : 0.0);
+      entry.put("avgRunMs", submitted > 0 ? lane.busyNanos.sum() / submitted / 1_000_000.0 : 0.0);
+      perLane.add(entry);
+      queued += lane.executor.getQueue().size();
+      rejected += lane.rejected.sum();
+    }
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("lanes", lanes.length);
+    stats.put("capacityPerLane", appProperties.getConcurrency().getLaneQueueCapacity());
+    stats.put("queued", queued);
+    stats.put("rejected", rejected);
+    stats.put("perLane", perLane);
+    return stats;
+  }
+
+  private Lane laneFor(Object key) {
+    if (key == null) {
+      return lanes[Math.floorMod(roundRobin.getAndIncrement(), lanes.length)];
+    }
+    int h = key.hashCode();
+    h ^= (h >>> 16); // Spread sequential ids
+    return lanes[Math.floorMod(h * 0x9E3779B1, lanes.length)];
+  }
+}
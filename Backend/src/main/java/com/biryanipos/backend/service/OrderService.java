@@ -1,5 +1,7 @@
 package com.biryanipos.backend.service;
 
+import com.biryanipos.backend.dto.BulkStatusRequest;
+import com.biryanipos.backend.dto.BulkStatusResult;
 import com.biryanipos.backend.dto.OrderItemRequest;
 import com.biryanipos.backend.dto.OrderRequest;
 import com.biryanipos.backend.dto.StockTransactionRequest;
@@ -9,17 +11,26 @@ import com.biryanipos.backend.repository.OrderItemRepository;
 import com.biryanipos.backend.repository.OrderRepository;
 import com.biryanipos.backend.repository.TableRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.hibernate.Hibernate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.biryanipos.backend.config.AppProperties;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class OrderService {
 
   private final OrderRepository orderRepository;
@@ -27,12 +38,72 @@ public class OrderService {
   private final MenuItemRepository menuItemRepository;
   private final TableRepository tableRepository;
   private final StockService stockService;
-  private final SimpMessagingTemplate messagingTemplate;
+  private final EventDispatcher eventDispatcher;
   private final AppProperties appProperties;
+  private final PrintSpoolerService printSpoolerService;
+  private final OrderDeadlineService orderDeadlineService;
+  private final KitchenBatchService kitchenBatchService;
+  private final OrderEtaService orderEtaService;
+  private final QrMenuService qrMenuService;
+
+  // Order lines from before MenuItemSnapshot get their menu details once
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional
+  public void backfillItemSnapshots() {
+    int updated = orderItemRepository.backfillSnapshots();
+    if (updated > 0) {
+      log.info("Copied menu details onto {} older order lines", updated);
+    }
+  }
 
   @Transactional
+  @OrderLane(OrderLane.Key.ORDER_REQUEST)
+  @RetryOnConflict
   public Order createOrder(OrderRequest request) {
+    return createOrder(request, null);
+  }
+
+  // journalRef makes replays from the billing journal idempotent
+  @Transactional
+  @OrderLane(OrderLane.Key.ORDER_REQUEST)
+  @RetryOnConflict
+  public Order createOrder(OrderRequest request, String journalRef) {
+    if (journalRef != null) {
+      Optional<Order> existing = orderRepository.findByJournalRef(journalRef);
+      if (existing.isPresent()) {
+        return existing.get();
+      }
+    }
+
+    Order savedOrder = buildOrder(request, journalRef);
+
+    // Mark table as occupied for dine-in orders
+    if (savedOrder.getOrderType() == OrderType.DINE_IN && request.getTableNumber() != null) {
+      tableRepository.findByTableNumber(request.getTableNumber()).ifPresent(table -> {
+        table.setStatus(TableStatus.OCCUPIED);
+        table.setCurrentOrderId(savedOrder.getId());
+        tableRepository.save(table);
+      });
+    }
+
+    // Notify KDS via WebSocket
+    eventDispatcher.broadcast("/topic/orders", savedOrder);
+    eventDispatcher.broadcast("/topic/tables", "TABLE_UPDATE");
+
+    // Queue one KOT per preparation station
+    if (appProperties.getOrder().isAutoPrintKds()) {
+      printSpoolerService.printKots(savedOrder, savedOrder.getItems(), null);
+    }
+
+    return savedOrder;
+  }
+
+  // Prices the lines, deducts their stock and saves the order. Runs in the
+  // caller's transaction; table, broadcast and KOT side effects are the
+  // caller's to add (createOrder, QuickBillService)
+  public Order buildOrder(OrderRequest request, String journalRef) {
     Order order = new Order();
+    order.setJournalRef(journalRef);
     order.setCustomerName(request.getCustomerName());
     order.setCustomerPhone(request.getCustomerPhone());
     order.setTableNumber(request.getTableNumber());
@@ -82,6 +153,7 @@ public class OrderService {
       }
 
       orderItem.setPrice(itemPrice);
+      orderItem.setSnapshot(MenuItemSnapshot.of(menuItem, variation));
       orderItem.setOrder(order);
 
       subtotal += itemPrice * itemRequest.getQuantity();
@@ -96,7 +168,10 @@ public class OrderService {
     if (maxPrepTime < appProperties.getOrder().getDefaultPrepTimeMinutes())
       maxPrepTime = appProperties.getOrder().getDefaultPrepTimeMinutes();
 
-    order.setEstimatedReadyTime(LocalDateTime.now().plusMinutes(maxPrepTime));
+    // Never sooner than the slowest item, later if the kitchen is backed up
+    LocalDateTime readyAt = LocalDateTime.now().plusMinutes(maxPrepTime);
+    LocalDateTime queuedReadyAt = orderEtaService.predict(orderItems);
+    order.setEstimatedReadyTime(queuedReadyAt.isAfter(readyAt) ? queuedReadyAt : readyAt);
     order.setItems(orderItems);
     order.setSubtotal(subtotal);
 
@@ -107,7 +182,7 @@ public class OrderService {
     if (order.isGstEnabled()) {
       for (OrderItem item : orderItems) {
         double itemSubtotal = item.getPrice() * item.getQuantity();
-        double itemGstPercent = item.getMenuItem().getGstPercent();
+        double itemGstPercent = item.getGstPercent();
         totalCgst += (itemSubtotal * (itemGstPercent / 2.0)) / 100.0;
         totalSgst += (itemSubtotal * (itemGstPercent / 2.0)) / 100.0;
       }
@@ -118,24 +193,15 @@ public class OrderService {
     order.setTotalAmount(subtotal + order.getCgst() + order.getSgst());
 
     Order savedOrder = orderRepository.save(order);
-
-    // Mark table as occupied for dine-in orders
-    if (order.getOrderType() == OrderType.DINE_IN && request.getTableNumber() != null) {
-      tableRepository.findByTableNumber(request.getTableNumber()).ifPresent(table -> {
-        table.setStatus(TableStatus.OCCUPIED);
-        table.setCurrentOrderId(savedOrder.getId());
-        tableRepository.save(table);
-      });
-    }
-
-    // Notify KDS via WebSocket
-    messagingTemplate.convertAndSend("/topic/orders", savedOrder);
-    messagingTemplate.convertAndSend("/topic/tables", "TABLE_UPDATE");
+    orderDeadlineService.track(savedOrder);
+    kitchenBatchService.track(savedOrder);
 
     return savedOrder;
   }
 
   @Transactional
+  @OrderLane
+  @RetryOnConflict
   public Order addItemsToOrder(Long orderId, List<OrderItemRequest> newItems) {
     if (orderId == null) {
       throw new RuntimeException("Order ID is required");
@@ -143,7 +209,7 @@ public class OrderService {
     if (newItems == null || newItems.isEmpty()) {
       throw new RuntimeException("New items list is required");
     }
-    Order order = orderRepository.findById(orderId)
+    Order order = orderRepository.findWithItemsById(orderId)
         .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
 
     if (order.getStatus() == OrderStatus.PAID || order.getStatus() == OrderStatus.CANCELLED) {
@@ -156,6 +222,7 @@ public class OrderService {
       order.setStatus(OrderStatus.NEW);
     }
 
+    List<OrderItem> addedItems = new ArrayList<>();
     for (OrderItemRequest itemRequest : newItems) {
       if (itemRequest.getMenuItemId() == null) {
         throw new RuntimeException("Menu item ID is required");
@@ -189,9 +256,11 @@ public class OrderService {
       }
 
       orderItem.setPrice(itemPrice);
+      orderItem.setSnapshot(MenuItemSnapshot.of(menuItem, variation));
       orderItem.setOrder(order);
 
       order.getItems().add(orderItem);
+      addedItems.add(orderItem);
     }
 
     // Recalculate totals
@@ -204,7 +273,7 @@ public class OrderService {
       newSubtotal += itemSubtotal;
 
       if (order.isGstEnabled()) {
-        double itemGstPercent = item.getMenuItem().getGstPercent();
+        double itemGstPercent = item.getGstPercent();
         totalCgst += (itemSubtotal * (itemGstPercent / 2.0)) / 100.0;
         totalSgst += (itemSubtotal * (itemGstPercent / 2.0)) / 100.0;
       }
@@ -216,15 +285,22 @@ public class OrderService {
     order.setTotalAmount(newSubtotal + order.getCgst() + order.getSgst());
 
     Order saved = orderRepository.save(order);
+    orderDeadlineService.track(saved);
+    kitchenBatchService.track(saved);
 
     // Notify KDS of updated order
-    messagingTemplate.convertAndSend("/topic/orders", saved);
+    eventDispatcher.broadcast("/topic/orders", saved);
+
+    // Add-on KOT carries only the newly added lines
+    if (appProperties.getOrder().isAutoPrintKds()) {
+      printSpoolerService.printKots(saved, addedItems, "ADD-ON");
+    }
 
     return saved;
   }
 
   public List<Order> getAllOrders() {
-    return orderRepository.findAll();
+    return orderRepository.findAllWithItems();
   }
 
   public List<Order> getActiveOrders() {
@@ -235,11 +311,16 @@ public class OrderService {
     return orderRepository.findKitchenOrders();
   }
 
+  // Order history, fine from the read replica; live orders above read the primary
+  @Transactional(readOnly = true)
+  @ReplicaRead
   public List<Order> getOrdersByDateRange(LocalDateTime start, LocalDateTime end) {
-    return orderRepository.findByCreatedAtBetween(start, end);
+    return orderRepository.findWithItemsByCreatedAtBetween(start, end);
   }
 
   @Transactional
+  @OrderLane
+  @RetryOnConflict
   public Order updateStatus(Long orderId, OrderStatus status) {
     if (orderId == null) {
       throw new RuntimeException("Order ID is required");
@@ -247,7 +328,7 @@ public class OrderService {
     if (status == null) {
       throw new RuntimeException("Status is required");
     }
-    Order order = orderRepository.findById(orderId)
+    Order order = orderRepository.findWithItemsById(orderId)
         .orElseThrow(() -> new RuntimeException("Order not found"));
 
     order.setStatus(status);
@@ -263,9 +344,11 @@ public class OrderService {
     }
 
     Order updatedOrder = orderRepository.save(order);
+    orderDeadlineService.track(updatedOrder);
+    kitchenBatchService.track(updatedOrder);
 
     // Notify all listeners
-    messagingTemplate.convertAndSend("/topic/orders/update", updatedOrder);
+    eventDispatcher.broadcast("/topic/orders/update", updatedOrder);
 
     // If PAID, release the table
     if (status == OrderStatus.PAID && order.getOrderType() == OrderType.DINE_IN && order.getTableNumber() != null) {
@@ -273,7 +356,7 @@ public class OrderService {
         table.setStatus(TableStatus.AVAILABLE);
         table.setCurrentOrderId(null);
         tableRepository.save(table);
-        messagingTemplate.convertAndSend("/topic/tables", "TABLE_UPDATE");
+        eventDispatcher.broadcast("/topic/tables", "TABLE_UPDATE");
       });
     }
 
@@ -281,6 +364,8 @@ public class OrderService {
   }
 
   @Transactional
+  @OrderLane(OrderLane.Key.ORDER_ITEM_ID)
+  @RetryOnConflict
   public OrderItem updateOrderItemStatus(Long itemId, OrderStatus status) {
     if (itemId == null || status == null) {
       throw new RuntimeException("Item ID and status are required");
@@ -292,51 +377,143 @@ public class OrderService {
     item.setStatus(status);
     OrderItem savedItem = orderItemRepository.save(item);
 
-    // Propagate status to the parent order
-    Order order = item.getOrder();
+    // Propagate status to the parent order. Unproxied: the lazy proxy has no
+    // JSON form and would fail the broadcasts below
+    Order order = (Order) Hibernate.unproxy(item.getOrder());
     if (order != null) {
-      boolean orderUpdated = false;
-
-      // 1. If any item is COOKING, order must be COOKING (if it was NEW)
-      if (status == OrderStatus.COOKING && order.getStatus() == OrderStatus.NEW) {
-        order.setStatus(OrderStatus.COOKING);
-        orderUpdated = true;
-      }
-
-      // 2. If ALL items are READY, order becomes READY (if it wasn't already)
-      boolean allReady = order.getItems().stream()
-          .allMatch(i -> i.getStatus() == OrderStatus.READY || i.getStatus() == OrderStatus.SERVED);
-
-      if (allReady && order.getStatus() != OrderStatus.READY && order.getStatus() != OrderStatus.SERVED
-          && order.getStatus() != OrderStatus.PAID && order.getStatus() != OrderStatus.CANCELLED) {
-        order.setStatus(OrderStatus.READY);
-        orderUpdated = true;
-      }
+      boolean orderUpdated = propagateItemStatus(order, status);
 
+      kitchenBatchService.track(order);
       if (orderUpdated) {
         orderRepository.save(order);
-        messagingTemplate.convertAndSend("/topic/orders", order);
-        messagingTemplate.convertAndSend("/topic/orders/update", order);
+        orderDeadlineService.track(order);
+        eventDispatcher.broadcast("/topic/orders", order);
+        eventDispatcher.broadcast("/topic/orders/update", order);
       } else {
         // Even if order status didn't change, the item status did, so notify KDS
-        messagingTemplate.convertAndSend("/topic/orders", order);
+        eventDispatcher.broadcast("/topic/orders", order);
       }
     }
 
     return savedItem;
   }
 
+  // The kitchen finishing many lines at once: every line changes in one
+  // transaction, each order's status is worked out once, and a single
+  // compact event on /topic/orders/items replaces the per-line full-order
+  // broadcasts. Lines already at the target status are left alone.
+  @Transactional
+  @OrderLane(OrderLane.Key.STATUS_REQUEST)
+  @RetryOnConflict
+  public BulkStatusResult updateItemStatuses(BulkStatusRequest request) {
+    if (request == null || request.getStatus() == null) {
+      throw new RuntimeException("Status is required");
+    }
+    boolean byItems = request.getItemIds() != null && !request.getItemIds().isEmpty();
+    int selectors = (byItems ? 1 : 0) + (request.getOrderId() != null ? 1 : 0)
+        + (request.getMenuItemId() != null ? 1 : 0);
+    if (selectors != 1) {
+      throw new RuntimeException("Give exactly one of item IDs, order ID or menu item ID");
+    }
+
+    // Pick the lines, then load their orders with all lines in one query:
+    // readiness is decided over every line of the order
+    Set<Long> itemIds = null;
+    Collection<Long> orderIds;
+    if (byItems) {
+      itemIds = new HashSet<>(request.getItemIds());
+      orderIds = orderItemRepository.findOrderIdsByIdIn(itemIds);
+    } else if (request.getOrderId() != null) {
+      orderIds = List.of(request.getOrderId());
+    } else {
+      itemIds = new HashSet<>();
+      orderIds = new LinkedHashSet<>();
+      for (Object[] row : orderItemRepository.findWaitingLines(request.getMenuItemId(), request.getVariationId())) {
+        itemIds.add((Long) row[0]);
+        orderIds.add((Long) row[1]);
+      }
+    }
+    List<Order> orders = orderIds.isEmpty() ? List.of() : orderRepository.findWithItemsByIdIn(orderIds);
+    if (request.getOrderId() != null && orders.isEmpty()) {
+      throw new RuntimeException("Order not found: " + request.getOrderId());
+    }
+
+    OrderStatus status = request.getStatus();
+    Set<Long> found = new HashSet<>();
+    List<BulkStatusResult.OrderChange> changes = new ArrayList<>();
+    int updated = 0;
+    for (Order order : orders) {
+      List<Long> changed = new ArrayList<>();
+      for (OrderItem item : order.getItems()) {
+        if (itemIds != null && !itemIds.contains(item.getId())) {
+          continue;
+        }
+        found.add(item.getId());
+        if (item.getStatus() != status) {
+          item.setStatus(status);
+          changed.add(item.getId());
+        }
+      }
+      if (changed.isEmpty()) {
+        continue;
+      }
+      if (propagateItemStatus(order, status)) {
+        orderDeadlineService.track(order);
+      }
+      orderRepository.save(order);
+      kitchenBatchService.track(order);
+      changes.add(new BulkStatusResult.OrderChange(order.getId(), order.getStatus(), order.getTableNumber(),
+          changed));
+      updated += changed.size();
+    }
+    if (byItems && found.size() < itemIds.size()) {
+      itemIds.removeAll(found);
+      throw new RuntimeException("Order items not found: " + itemIds);
+    }
+
+    BulkStatusResult result = new BulkStatusResult(status, updated, changes);
+    if (!changes.isEmpty()) {
+      // The screens patch the orders they hold from this; no full orders go out
+      eventDispatcher.broadcast("/topic/orders/items", result);
+    }
+    return result;
+  }
+
+  // Carries a line's new status up to its order; true if the order changed
+  private boolean propagateItemStatus(Order order, OrderStatus status) {
+    boolean orderUpdated = false;
+
+    // 1. If any item is COOKING, order must be COOKING (if it was NEW)
+    if (status == OrderStatus.COOKING && order.getStatus() == OrderStatus.NEW) {
+      order.setStatus(OrderStatus.COOKING);
+      orderUpdated = true;
+    }
+
+    // 2. If ALL items are READY, order becomes READY (if it wasn't already)
+    boolean allReady = order.getItems().stream()
+        .allMatch(i -> i.getStatus() == OrderStatus.READY || i.getStatus() == OrderStatus.SERVED);
+
+    if (allReady && order.getStatus() != OrderStatus.READY && order.getStatus() != OrderStatus.SERVED
+        && order.getStatus() != OrderStatus.PAID && order.getStatus() != OrderStatus.CANCELLED) {
+      order.setStatus(OrderStatus.READY);
+      orderUpdated = true;
+    }
+    return orderUpdated;
+  }
+
   public Order getOrderById(Long id) {
-    return orderRepository.findById(id)
+    return orderRepository.findWithItemsById(id)
         .orElseThrow(() -> new RuntimeException("Order not found: " + id));
   }
 
   @Transactional
+  @OrderLane
+  @RetryOnConflict
   public Order cancelOrder(Long orderId) {
     if (orderId == null) {
       throw new RuntimeException("Order ID is required");
     }
-    Order order = orderRepository.findById(orderId)
+    Order order = orderRepository.findWithItemsById(orderId)
         .orElseThrow(() -> new RuntimeException("Order not found"));
 
     if (order.getStatus() == OrderStatus.PAID) {
@@ -346,6 +523,8 @@ public class OrderService {
     order.setStatus(OrderStatus.CANCELLED);
     order.setCompletedAt(LocalDateTime.now());
     Order saved = orderRepository.save(order);
+    orderDeadlineService.track(saved);
+    kitchenBatchService.track(saved);
 
     // Restore stock if it was deducted
     for (OrderItem item : order.getItems()) {
@@ -358,11 +537,11 @@ public class OrderService {
         table.setStatus(TableStatus.AVAILABLE);
         table.setCurrentOrderId(null);
         tableRepository.save(table);
-        messagingTemplate.convertAndSend("/topic/tables", "TABLE_UPDATE");
+        eventDispatcher.broadcast("/topic/tables", "TABLE_UPDATE");
       });
     }
 
-    messagingTemplate.convertAndSend("/topic/orders/update", saved);
+    eventDispatcher.broadcast("/topic/orders/update", saved);
     return saved;
   }
 
@@ -392,11 +571,13 @@ public class OrderService {
   }
 
   @Transactional
+  @OrderLane
+  @RetryOnConflict
   public Order extendOrderPrepTime(Long orderId, int extraMinutes) {
     if (orderId == null) {
       throw new RuntimeException("Order ID is required");
     }
-    Order order = orderRepository.findById(orderId)
+    Order order = orderRepository.findWithItemsById(orderId)
         .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
 
     if (order.getEstimatedReadyTime() == null) {
@@ -404,10 +585,13 @@ public class OrderService {
     } else {
       order.setEstimatedReadyTime(order.getEstimatedReadyTime().plusMinutes(extraMinutes));
     }
+    order.setOverdueAlertedAt(null); // A new ETA can be missed again
 
     Order saved = orderRepository.save(order);
-    messagingTemplate.convertAndSend("/topic/orders", saved);
-    messagingTemplate.convertAndSend("/topic/orders/update", saved);
+    orderDeadlineService.track(saved);
+    kitchenBatchService.track(saved);
+    eventDispatcher.broadcast("/topic/orders", saved);
+    eventDispatcher.broadcast("/topic/orders/update", saved);
     return saved;
   }
 
@@ -424,11 +608,12 @@ public class OrderService {
       menuItem.setStockLevel(menuItem.getStockLevel() - required);
       if (menuItem.getStockLevel() <= 0) {
         menuItem.setAvailable(false);
+        qrMenuService.invalidate();
       }
 
       // Stock Alert
       if (menuItem.getStockLevel() < appProperties.getInventory().getDefaultLowStockThreshold()) {
-        messagingTemplate.convertAndSend("/topic/stock/alerts",
+        eventDispatcher.broadcast("/topic/stock/alerts",
             "RUNNING OUT OF STOCK: " + menuItem.getName() + " (" + menuItem.getStockLevel() + " remaining)");
       }
 
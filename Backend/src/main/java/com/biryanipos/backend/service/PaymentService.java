@@ -8,13 +8,14 @@ import com.biryanipos.backend.repository.OrderRepository;
 import com.biryanipos.backend.repository.PaymentRepository;
 import com.biryanipos.backend.repository.TableRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,18 +25,70 @@ public class PaymentService {
   private final PaymentRepository paymentRepository;
   private final OrderRepository orderRepository;
   private final TableRepository tableRepository;
-  private final CustomerService customerService;
-  private final SimpMessagingTemplate messagingTemplate;
+  private final EventDispatcher eventDispatcher;
   private final AppProperties appProperties;
+  private final PrintSpoolerService printSpoolerService;
+  private final InvoiceNumberService invoiceNumberService;
+  private final OrderDeadlineService orderDeadlineService;
+  private final KitchenBatchService kitchenBatchService;
+  private final SalesCubeService salesCubeService;
+  private final TopSellerTracker topSellerTracker;
 
   @Transactional
+  @OrderLane(OrderLane.Key.PAYMENT_REQUEST)
+  @RetryOnConflict
   public Payment processPayment(PaymentRequest request) {
+    return processPayment(request, null);
+  }
+
+  // journalRef makes replays from the billing journal idempotent
+  @Transactional
+  @OrderLane(OrderLane.Key.PAYMENT_REQUEST)
+  @RetryOnConflict
+  public Payment processPayment(PaymentRequest request, String journalRef) {
+    if (journalRef != null) {
+      Optional<Payment> existing = paymentRepository.findByJournalRef(journalRef);
+      if (existing.isPresent()) {
+        return existing.get();
+      }
+    }
+    if (request.getOrderId() == null && request.getOrderJournalRef() != null) {
+      // The order was billed while still queued in the journal; it is applied first
+      orderRepository.findByJournalRef(request.getOrderJournalRef())
+          .ifPresent(o -> request.setOrderId(o.getId()));
+    }
     if (request.getOrderId() == null) {
       throw new RuntimeException("Order ID is required");
     }
     Order order = orderRepository.findById(java.util.Objects.requireNonNull(request.getOrderId()))
         .orElseThrow(() -> new RuntimeException("Order not found: " + request.getOrderId()));
 
+    Payment savedPayment = settle(order, request, journalRef);
+
+    // Notify all listeners
+    eventDispatcher.broadcast("/topic/orders/update", order);
+
+    // Update table status if DINE_IN
+    if (order.getOrderType() == OrderType.DINE_IN && order.getTableNumber() != null) {
+      tableRepository.findByTableNumber(order.getTableNumber()).ifPresent(table -> {
+        table.setStatus(TableStatus.AVAILABLE);
+        table.setCurrentOrderId(null);
+        tableRepository.save(table);
+        eventDispatcher.broadcast("/topic/tables", "TABLE_UPDATE");
+      });
+    }
+
+    if (appProperties.getOrder().isAutoPrintBill()) {
+      printSpoolerService.printBill(order, savedPayment);
+    }
+
+    return savedPayment;
+  }
+
+  // Records the payment against a loaded order and closes it, loyalty visit
+  // included. Runs in the caller's transaction; broadcasts, table release
+  // and printing are the caller's to add (processPayment, QuickBillService)
+  public Payment settle(Order order, PaymentRequest request, String journalRef) {
     if (order.getPaymentStatus() == PaymentStatus.COMPLETED) {
       throw new RuntimeException("Order already paid");
     }
@@ -63,7 +116,7 @@ public class PaymentService {
     double totalAmount = discountedSubtotal + cgst + sgst;
 
     Payment payment = new Payment();
-    payment.setOrderId(request.getOrderId());
+    payment.setOrderId(order.getId());
     payment.setPaymentStatus(PaymentStatus.COMPLETED);
     payment.setSubtotal(discountedSubtotal);
     payment.setCgst(cgst);
@@ -72,6 +125,7 @@ public class PaymentService {
     payment.setDiscount(discount);
     payment.setGstEnabled(order.isGstEnabled());
     payment.setTransactionRef(request.getTransactionRef());
+    payment.setJournalRef(journalRef);
     payment.setPaidAt(LocalDateTime.now());
 
     double totalReceived = 0;
@@ -120,6 +174,9 @@ public class PaymentService {
     payment.setAmountReceived(totalReceived);
     payment.setChangeReturned(totalReceived > totalAmount ? totalReceived - totalAmount : 0);
 
+    // Last step before saving: every validation failure above leaves no number behind, and the
+    // series stays locked from here until this transaction ends
+    invoiceNumberService.assign(payment);
     Payment savedPayment = paymentRepository.save(payment);
 
     // Update order status
@@ -141,36 +198,29 @@ public class PaymentService {
 
     order.setCompletedAt(LocalDateTime.now());
     orderRepository.save(order);
+    orderDeadlineService.track(order);
+    kitchenBatchService.track(order);
+    salesCubeService.record(order, savedPayment);
+    topSellerTracker.record(order, savedPayment);
 
-    // Notify all listeners
-    messagingTemplate.convertAndSend("/topic/orders/update", order);
-
-    // Update table status if DINE_IN
-    if (order.getOrderType() == OrderType.DINE_IN && order.getTableNumber() != null) {
-      tableRepository.findByTableNumber(order.getTableNumber()).ifPresent(table -> {
-        table.setStatus(TableStatus.AVAILABLE);
-        table.setCurrentOrderId(null);
-        tableRepository.save(table);
-        messagingTemplate.convertAndSend("/topic/tables", "TABLE_UPDATE");
-      });
-    }
-
-    // Record customer visit for loyalty points
+    // Record customer visit for loyalty points once the payment has committed
     if (order.getCustomerPhone() != null) {
-      customerService.recordVisit(order.getCustomerPhone(), totalAmount);
+      eventDispatcher.publish(CustomerService.VISIT_EVENT,
+          Map.of("phone", order.getCustomerPhone(), "amount", totalAmount));
     }
 
     return savedPayment;
   }
 
+  @Transactional(readOnly = true)
   public BillResponse generateBill(Long orderId) {
     if (orderId == null) {
       throw new RuntimeException("Order ID is required");
     }
-    Order order = orderRepository.findById(orderId)
+    Order order = orderRepository.findWithItemsById(orderId)
         .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
 
-    Payment payment = paymentRepository.findByOrderId(orderId).orElse(null);
+    Payment payment = paymentRepository.findWithDetailsByOrderId(orderId).orElse(null);
 
     DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
 
@@ -194,6 +244,7 @@ public class PaymentService {
       bill.setAmountReceived(payment.getAmountReceived());
       bill.setChangeReturned(payment.getChangeReturned());
       bill.setTransactionRef(payment.getTransactionRef());
+      bill.setInvoiceNumber(payment.getInvoiceNumber());
       bill.setPaidAt(payment.getPaidAt() != null ? payment.getPaidAt().format(formatter) : "");
 
       if (payment.getDetails() != null) {
@@ -207,7 +258,7 @@ public class PaymentService {
 
     List<BillResponse.BillItem> billItems = order.getItems().stream()
         .map(item -> new BillResponse.BillItem(
-            item.getMenuItem().getName(),
+            item.getItemName(),
             item.getQuantity(),
             item.getPrice(),
             item.getPrice() * item.getQuantity()))
@@ -222,6 +273,6 @@ public class PaymentService {
   }
 
   public Payment getPaymentByOrderId(Long orderId) {
-    return paymentRepository.findByOrderId(orderId).orElse(null);
+    return paymentRepository.findWithDetailsByOrderId(orderId).orElse(null);
   }
 }
@@ -0,0 +1,363 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.model.*;
+import com.biryanipos.backend.repository.PrintJobRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Asynchronous print spooler. Jobs are persisted in print_jobs and drained by
+// one worker thread per printer, so a slow or offline printer never blocks an
+// HTTP request and queued tickets survive a restart.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PrintSpoolerService {
+
+  private static final String DEFAULT_STATION = "Main Kitchen";
+  private static final int PRINTED_JOB_RETENTION_DAYS = 7;
+  private static final List<PrintJobStatus> DEDUPE_STATUSES = List.of(PrintJobStatus.PENDING,
+      PrintJobStatus.PRINTING, PrintJobStatus.PRINTED);
+
+  private final PrintJobRepository printJobRepository;
+  private final PrintingService printingService;
+  private final AppProperties appProperties;
+
+  private final Map<String, PrinterWorker> workers = new ConcurrentHashMap<>();
+  private volatile boolean running = false;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!appProperties.getPrinting().isEnabled()) {
+      log.info("Print spooler disabled");
+      return;
+    }
+    int requeued = printJobRepository.requeueInterrupted();
+    if (requeued > 0) {
+      log.warn("Re-queued {} print jobs interrupted by the last shutdown", requeued);
+    }
+    running = true;
+    appProperties.getPrinting().getPrinters().keySet().forEach(this::workerFor);
+    printJobRepository.findPrintersWithPendingJobs().forEach(this::workerFor);
+    log.info("Print spooler started for printers {}", workers.keySet());
+  }
+
+  @PreDestroy
+  public void stop() {
+    running = false;
+    workers.values().forEach(PrinterWorker::shutdown);
+    workers.clear();
+  }
+
+  // ===== Enqueue =====
+
+  public PrintJob printBill(Order order, Payment payment) {
+    String content = printingService.generateTextReceipt(order, payment);
+    return enqueue(appProperties.getPrinting().getBillPrinter(), PrintJobType.BILL, order.getId(), null, content,
+        true);
+  }
+
+  // Splits the given lines by MenuItem.preparationStation and queues one KOT per
+  // station on the printer mapped to it. label is null for the first ticket,
+  // "ADD-ON" or "REPRINT" otherwise.
+  public List<PrintJob> printKots(Order order, List<OrderItem> items, String label) {
+    Map<String, List<OrderItem>> byStation = new LinkedHashMap<>();
+    for (OrderItem item : items) {
+      String station = item.getPreparationStation();
+      if (station == null || station.isBlank()) {
+        station = DEFAULT_STATION;
+      }
+      byStation.computeIfAbsent(station, s -> new ArrayList<>()).add(item);
+    }
+
+    // Automatic tickets are always distinct commands; only manual reprints are
+    // de-duplicated
+    boolean dedupe = "REPRINT".equals(label);
+    List<PrintJob> jobs = new ArrayList<>();
+    byStation.forEach((station, lines) -> {
+      String content = printingService.generateKot(order, lines, station, label);
+      PrintJob job = enqueue(printerForStation(station), PrintJobType.KOT, order.getId(), station, content, dedupe);
+      if (job != null) {
+        jobs.add(job);
+      }
+    });
+    return jobs;
+  }
+
+  public PrintJob enqueue(String printerName, PrintJobType type, Long orderId, String station, String content,
+      boolean dedupe) {
+    if (!appProperties.getPrinting().isEnabled()) {
+      return null;
+    }
+
+    String dedupeKey = dedupe
+        ? sha256(printerName + "|" + type + "|" + orderId + "|" + content)
+        : sha256(UUID.randomUUID().toString());
+
+    if (dedupe) {
+      LocalDateTime windowStart = LocalDateTime.now()
+          .minusSeconds(appProperties.getPrinting().getDedupeWindowSeconds());
+      Optional<PrintJob> duplicate = printJobRepository.findFirstByDedupeKeyAndStatusInAndCreatedAtAfterOrderByIdDesc(
+          dedupeKey, DEDUPE_STATUSES, windowStart);
+      if (duplicate.isPresent()) {
+        log.info("Ignoring duplicate {} print for order {} (job {})", type, orderId, duplicate.get().getId());
+        return duplicate.get();
+      }
+    }
+
+    PrintJob job = new PrintJob();
+    job.setPrinterName(printerName);
+    job.setJobType(type);
+    job.setOrderId(orderId);
+    job.setStation(station);
+    job.setContent(content);
+    job.setDedupeKey(dedupeKey);
+    job.setStatus(PrintJobStatus.PENDING);
+    PrintJob saved = printJobRepository.save(job);
+
+    wakeAfterCommit(printerName);
+    return saved;
+  }
+
+  public PrintJob retry(Long jobId) {
+    PrintJob job = printJobRepository.findById(jobId)
+        .orElseThrow(() -> new RuntimeException("Print job not found: " + jobId));
+    if (job.getStatus() == PrintJobStatus.PRINTING) {
+      throw new RuntimeException("Print job is currently printing");
+    }
+    job.setStatus(PrintJobStatus.PENDING);
+    job.setAttempts(0);
+    job.setLastError(null);
+    job.setNextAttemptAt(LocalDateTime.now());
+    PrintJob saved = printJobRepository.save(job);
+    wakeAfterCommit(saved.getPrinterName());
+    return saved;
+  }
+
+  // ===== Queries =====
+
+  public List<PrintJob> getRecentJobs(PrintJobStatus status) {
+    return status != null ? printJobRepository.findTop100ByStatusOrderByIdDesc(status)
+        : printJobRepository.findTop100ByOrderByIdDesc();
+  }
+
+  public List<PrintJob> getJobsForOrder(Long orderId) {
+    return printJobRepository.findByOrderIdOrderByIdAsc(orderId);
+  }
+
+  public List<Map<String, Object>> getPrinterStatus() {
+    Set<String> names = new TreeSet<>(appProperties.getPrinting().getPrinters().keySet());
+    names.addAll(workers.keySet());
+
+    List<Map<String, Object>> status = new ArrayList<>();
+    for (String name : names) {
+      AppProperties.Printing.Printer printer = appProperties.getPrinting().getPrinters().get(name);
+      PrinterWorker worker = workers.get(name);
+      Map<String, Object> m = new LinkedHashMap<>();
+      m.put("name", name);
+      m.put("endpoint", printer != null ? printer.getHost() + ":" + printer.getPort() : null);
+      m.put("enabled", printer != null && printer.isEnabled());
+      m.put("queued", printJobRepository.countByPrinterNameAndStatus(name, PrintJobStatus.PENDING));
+      m.put("failed", printJobRepository.countByPrinterNameAndStatus(name, PrintJobStatus.FAILED));
+      m.put("lastError", worker != null ? worker.lastError : null);
+      m.put("lastPrintedAt", worker != null ? worker.lastPrintedAt : null);
+      status.add(m);
+    }
+    return status;
+  }
+
+  // Run every day at 3:30 AM
+  @Scheduled(cron = "0 30 3 * * ?")
+  public void purgePrintedJobs() {
+    int deleted = printJobRepository.deletePrintedBefore(LocalDateTime.now().minusDays(PRINTED_JOB_RETENTION_DAYS));
+    if (deleted > 0) {
+      log.info("Purged {} printed jobs", deleted);
+    }
+  }
+
+  // ===== Internals =====
+
+  private String printerForStation(String station) {
+    return appProperties.getPrinting().getStationPrinters()
+        .getOrDefault(station, appProperties.getPrinting().getDefaultKotPrinter());
+  }
+
+  // Workers read the queue from the database, so they are only woken once the
+  // enqueuing transaction has committed and the job is visible to them
+  private void wakeAfterCommit(String printerName) {
+    PrinterWorker worker = workerFor(printerName);
+    if (worker == null) {
+      return;
+    }
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          worker.wake();
+        }
+      });
+    } else {
+      worker.wake();
+    }
+  }
+
+  private PrinterWorker workerFor(String printerName) {
+    if (!running) {
+      return null; // Picked up from the database by start()
+    }
+    return workers.computeIfAbsent(printerName, name -> {
+      PrinterWorker worker = new PrinterWorker(name);
+      worker.thread.start();
+      return worker;
+    });
+  }
+
+  private long backoffMillis(int attempts) {
+    AppProperties.Printing config = appProperties.getPrinting();
+    long backoff = config.getInitialBackoffMs() << Math.min(attempts - 1, 20);
+    backoff = Math.min(backoff, config.getMaxBackoffMs());
+    // Up to 20% jitter so several printers coming back online don't retry in
+    // lockstep
+    return backoff + ThreadLocalRandom.current().nextLong(backoff / 5 + 1);
+  }
+
+  private void send(AppProperties.Printing.Printer printer, byte[] data) throws IOException {
+    try (Socket socket = new Socket()) {
+      socket.connect(new InetSocketAddress(printer.getHost(), printer.getPort()),
+          appProperties.getPrinting().getConnectTimeoutMs());
+      socket.setSoTimeout(appProperties.getPrinting().getSocketTimeoutMs());
+      OutputStream out = socket.getOutputStream();
+      out.write(data);
+      out.flush();
+      socket.shutdownOutput();
+    }
+  }
+
+  private static String sha256(String value) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(hash);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private final class PrinterWorker implements Runnable {
+    private final String printerName;
+    private final Semaphore signal = new Semaphore(0);
+    private final Thread thread;
+    private volatile String lastError;
+    private volatile LocalDateTime lastPrintedAt;
+
+    PrinterWorker(String printerName) {
+      this.printerName = printerName;
+      this.thread = new Thread(this, "print-" + printerName);
+      this.thread.setDaemon(true);
+    }
+
+    void wake() {
+      signal.release();
+    }
+
+    void shutdown() {
+      thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+      long pollInterval = appProperties.getPrinting().getPollIntervalMs();
+      while (running && !Thread.currentThread().isInterrupted()) {
+        try {
+          long waitMs = processHead();
+          if (waitMs > 0) {
+            signal.tryAcquire(waitMs, TimeUnit.MILLISECONDS);
+            signal.drainPermits();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (Exception e) {
+          log.error("Print worker {} failed, retrying", printerName, e);
+          try {
+            Thread.sleep(pollInterval);
+          } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    }
+
+    // Prints the head of this printer's queue. Returns how long to wait before
+    // looking at the queue again (0 = immediately).
+    private long processHead() {
+      long pollInterval = appProperties.getPrinting().getPollIntervalMs();
+      Optional<PrintJob> head = printJobRepository.findFirstByPrinterNameAndStatusOrderByIdAsc(printerName,
+          PrintJobStatus.PENDING);
+      if (head.isEmpty()) {
+        return pollInterval;
+      }
+
+      // Strict FIFO: a job backing off holds the queue so tickets never print
+      // out of order
+      PrintJob job = head.get();
+      long dueInMs = Duration.between(LocalDateTime.now(), job.getNextAttemptAt()).toMillis();
+      if (dueInMs > 0) {
+        return Math.min(dueInMs, pollInterval);
+      }
+
+      job.setStatus(PrintJobStatus.PRINTING);
+      job.setAttempts(job.getAttempts() + 1);
+      job = printJobRepository.save(job);
+
+      try {
+        AppProperties.Printing.Printer printer = appProperties.getPrinting().getPrinters().get(printerName);
+        if (printer == null || !printer.isEnabled()) {
+          throw new IOException("Printer not configured or disabled: " + printerName);
+        }
+        send(printer, printingService.toPrinterBytes(job.getContent()));
+
+        job.setStatus(PrintJobStatus.PRINTED);
+        job.setPrintedAt(LocalDateTime.now());
+        job.setLastError(null);
+        lastError = null;
+        lastPrintedAt = job.getPrintedAt();
+      } catch (IOException e) {
+        lastError = e.getMessage();
+        job.setLastError(e.getMessage());
+        if (job.getAttempts() >= appProperties.getPrinting().getMaxAttempts()) {
+          job.setStatus(PrintJobStatus.FAILED);
+          log.error("Print job {} on {} failed after {} attempts: {}", job.getId(), printerName, job.getAttempts(),
+              e.getMessage());
+        } else {
+          job.setStatus(PrintJobStatus.PENDING);
+          job.setNextAttemptAt(LocalDateTime.now().plusNanos(backoffMillis(job.getAttempts()) * 1_000_000));
+          log.warn("Print job {} on {} failed (attempt {}): {}", job.getId(), printerName, job.getAttempts(),
+              e.getMessage());
+        }
+      }
+      printJobRepository.save(job);
+      return 0;
+    }
+  }
+}
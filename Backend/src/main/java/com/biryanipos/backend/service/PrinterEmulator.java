@@ -0,0 +1,117 @@
+package com.biryanipos.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Localhost raw-TCP (port 9100 style) printer. Accepts one job per connection,
+// like a networked thermal printer, so the spooler can be exercised and
+// load-tested without hardware.
+@Slf4j
+public class PrinterEmulator {
+
+  private final int port;
+  private final long delayMs;
+  private final Path outputDir;
+
+  private final AtomicLong jobsReceived = new AtomicLong();
+  private final AtomicLong bytesReceived = new AtomicLong();
+
+  private ServerSocket serverSocket;
+  private ExecutorService connections;
+
+  public PrinterEmulator(int port, long delayMs, Path outputDir) {
+    this.port = port;
+    this.delayMs = delayMs;
+    this.outputDir = outputDir;
+  }
+
+  public synchronized void start() throws IOException {
+    if (outputDir != null) {
+      Files.createDirectories(outputDir);
+    }
+    serverSocket = new ServerSocket();
+    serverSocket.setReuseAddress(true);
+    serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    connections = Executors.newCachedThreadPool(r -> {
+      Thread t = new Thread(r, "printer-emulator-conn");
+      t.setDaemon(true);
+      return t;
+    });
+
+    Thread acceptThread = new Thread(this::acceptLoop, "printer-emulator");
+    acceptThread.setDaemon(true);
+    acceptThread.start();
+    log.info("Printer emulator listening on 127.0.0.1:{}", getPort());
+  }
+
+  public synchronized void stop() {
+    try {
+      if (serverSocket != null) {
+        serverSocket.close();
+      }
+    } catch (IOException e) {
+      log.warn("Error closing printer emulator socket", e);
+    }
+    if (connections != null) {
+      connections.shutdownNow();
+    }
+  }
+
+  public int getPort() {
+    return serverSocket != null ? serverSocket.getLocalPort() : port;
+  }
+
+  public long getJobsReceived() {
+    return jobsReceived.get();
+  }
+
+  public long getBytesReceived() {
+    return bytesReceived.get();
+  }
+
+  private void acceptLoop() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        connections.submit(() -> handle(socket));
+      } catch (IOException e) {
+        if (!serverSocket.isClosed()) {
+          log.warn("Printer emulator accept failed: {}", e.getMessage());
+        }
+      }
+    }
+  }
+
+  private void handle(Socket socket) {
+    try (socket; InputStream in = socket.getInputStream()) {
+      byte[] data = in.readAllBytes(); // A job ends when the client closes its side
+      if (data.length == 0) {
+        return; // Connection probe
+      }
+      if (delayMs > 0) {
+        Thread.sleep(delayMs);
+      }
+      long jobNo = jobsReceived.incrementAndGet();
+      bytesReceived.addAndGet(data.length);
+      if (outputDir != null) {
+        Files.write(outputDir.resolve(String.format("job_%06d.bin", jobNo)), data);
+      }
+      log.debug("Printer emulator received job {} ({} bytes)", jobNo, data.length);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      log.warn("Printer emulator connection failed: {}", e.getMessage());
+    }
+  }
+}
@@ -6,18 +6,29 @@ import com.biryanipos.backend.model.Payment;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class PrintingService {
 
+  // ESC/POS control sequences understood by common 80mm thermal printers
+  private static final byte[] ESC_INIT = { 0x1B, 0x40 };
+  private static final byte[] GS_FEED_AND_CUT = { 0x1D, 0x56, 0x42, 0x00 };
+
   public String generateTextReceipt(Order order, Payment payment) {
     StringBuilder sb = new StringBuilder();
     DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
 
     sb.append("      BIRYANI POS      \n");
     sb.append("-----------------------\n");
+    if (payment != null && payment.getInvoiceNumber() != null) {
+      sb.append(payment.isGstEnabled() ? "Invoice: " : "Bill: ").append(payment.getInvoiceNumber()).append("\n");
+    }
     sb.append("Order: #").append(order.getId()).append("\n");
     sb.append("Date: ").append(order.getCreatedAt().format(formatter)).append("\n");
     if (order.getTableNumber() != null) {
@@ -27,7 +38,7 @@ public class PrintingService {
     sb.append("-----------------------\n");
 
     for (OrderItem item : order.getItems()) {
-      String name = item.getMenuItem().getName();
+      String name = item.getItemName();
       if (name.length() > 20)
         name = name.substring(0, 17) + "...";
       sb.append(String.format("%-20s %2d\n", name, item.getQuantity()));
@@ -67,4 +78,41 @@ public class PrintingService {
 
     return sb.toString();
   }
+
+  // Kitchen order ticket for one preparation station. Only the given lines are
+  // printed, so add-on tickets carry just the newly added items.
+  public String generateKot(Order order, List<OrderItem> items, String station, String label) {
+    StringBuilder sb = new StringBuilder();
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM HH:mm");
+
+    sb.append(label != null ? "   KOT (" + label + ")   \n" : "          KOT          \n");
+    sb.append("-----------------------\n");
+    sb.append("Station: ").append(station).append("\n");
+    sb.append("Order: #").append(order.getId()).append("\n");
+    if (order.getTableNumber() != null) {
+      sb.append("Table: ").append(order.getTableNumber()).append("\n");
+    }
+    sb.append("Type: ").append(order.getOrderType()).append("\n");
+    sb.append("Time: ").append(LocalDateTime.now().format(formatter)).append("\n");
+    sb.append("-----------------------\n");
+
+    for (OrderItem item : items) {
+      sb.append(String.format("%3d x %s\n", item.getQuantity(), item.getItemName()));
+      if (item.getVariationName() != null) {
+        sb.append("      (").append(item.getVariationName()).append(")\n");
+      }
+    }
+
+    sb.append("-----------------------\n\n\n");
+    return sb.toString();
+  }
+
+  // Wraps rendered ticket text in the ESC/POS init and cut commands
+  public byte[] toPrinterBytes(String text) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.writeBytes(ESC_INIT);
+    out.writeBytes(text.getBytes(StandardCharsets.US_ASCII));
+    out.writeBytes(GS_FEED_AND_CUT);
+    return out.toByteArray();
+  }
 }
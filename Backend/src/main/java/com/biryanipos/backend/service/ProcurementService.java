@@ -49,7 +49,7 @@ public class ProcurementService {
   // ===== Purchase Order Management =====
 
   public List<PurchaseOrder> getAllPurchaseOrders() {
-    return purchaseOrderRepository.findAll();
+    return purchaseOrderRepository.findAllWithItems();
   }
 
   @Transactional
@@ -63,7 +63,7 @@ public class ProcurementService {
     if (poId == null || status == null) {
       throw new RuntimeException("Purchase Order ID and status are required");
     }
-    PurchaseOrder po = purchaseOrderRepository.findById(poId)
+    PurchaseOrder po = purchaseOrderRepository.findWithItemsById(poId)
         .orElseThrow(() -> new RuntimeException("Purchase Order not found: " + poId));
 
     PurchaseOrderStatus oldStatus = po.getStatus();
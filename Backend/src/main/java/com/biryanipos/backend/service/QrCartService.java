@@ -0,0 +1,297 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.dto.JournalReceipt;
+import com.biryanipos.backend.dto.OrderItemRequest;
+import com.biryanipos.backend.dto.OrderRequest;
+import com.biryanipos.backend.dto.QrCart;
+import com.biryanipos.backend.dto.QrCartRequest;
+import com.biryanipos.backend.exception.ResourceNotFoundException;
+import com.biryanipos.backend.exception.ServiceBusyException;
+import com.biryanipos.backend.exception.TooManyRequestsException;
+import com.biryanipos.backend.model.Order;
+import com.biryanipos.backend.model.OrderType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Staging queue between customer phones and the kitchen. A QR cart is checked
+// against the in-memory menu bundle and parked here; nothing reaches
+// OrderService until staff confirm it, and the confirmed order goes through
+// the billing journal like any other. Each table has a token bucket and a cap
+// on unconfirmed carts, and the queue as a whole is bounded, so a crowd of
+// phones costs memory, not database or kitchen time. Carts live in memory
+// only: one lost in a restart is re-sent from the phone.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class QrCartService {
+
+  public static final String CREATED_BY = "CUSTOMER_QR";
+  public static final String PENDING = "PENDING";
+  public static final String CONFIRMING = "CONFIRMING"; // Order being submitted
+  public static final String CONFIRMED = "CONFIRMED";
+  public static final String REJECTED = "REJECTED";
+  public static final String EXPIRED = "EXPIRED";
+
+  private static final String TOPIC = "/topic/qr/carts";
+
+  private final QrMenuService qrMenuService;
+  private final BillingJournalService billingJournalService;
+  private final EventDispatcher eventDispatcher;
+  private final AppProperties appProperties;
+
+  // Guarded by itself; resolved carts stay for status polling until they expire
+  private final Map<String, QrCart> carts = new LinkedHashMap<>();
+  private final Map<String, Bucket> buckets = new HashMap<>();
+
+  // Refills perMinute tokens a minute and holds at most that many
+  private static final class Bucket {
+    private double tokens;
+    private long refilledAt;
+
+    Bucket(int perMinute, long now) {
+      this.tokens = perMinute;
+      this.refilledAt = now;
+    }
+
+    boolean take(int perMinute, long now) {
+      refill(perMinute, now);
+      if (tokens < 1) {
+        return false;
+      }
+      tokens--;
+      return true;
+    }
+
+    boolean full(int perMinute, long now) {
+      refill(perMinute, now);
+      return tokens >= perMinute;
+    }
+
+    private void refill(int perMinute, long now) {
+      tokens = Math.min(perMinute, tokens + (now - refilledAt) * perMinute / 60_000.0);
+      refilledAt = now;
+    }
+  }
+
+  public QrCart submit(String tableNumber, QrCartRequest request) {
+    AppProperties.Qr config = appProperties.getQr();
+    QrMenuService.Bundle menu = qrMenuService.getBundle();
+    if (!menu.tables().contains(tableNumber)) {
+      throw new ResourceNotFoundException("Table not found: " + tableNumber);
+    }
+    List<QrCart.Line> lines = lines(menu, request);
+
+    String name = request.getCustomerName() != null ? request.getCustomerName().trim() : "";
+    if (name.length() > 100) {
+      throw new RuntimeException("Name is too long");
+    }
+    String phone = request.getCustomerPhone() != null && !request.getCustomerPhone().isBlank()
+        ? request.getCustomerPhone().trim()
+        : null;
+    if (phone != null && !phone.matches("^[0-9]{10}$")) {
+      throw new RuntimeException("Invalid phone number");
+    }
+    double total = lines.stream().mapToDouble(l -> l.getPrice() * l.getQuantity()).sum();
+    QrCart cart = new QrCart(UUID.randomUUID().toString(), tableNumber,
+        name.isEmpty() ? "Table " + tableNumber : name, phone, lines, total, PENDING, null, null,
+        LocalDateTime.now(), null);
+
+    synchronized (carts) {
+      long millis = System.currentTimeMillis();
+      int perMinute = config.getCartsPerTablePerMinute();
+      if (!buckets.computeIfAbsent(tableNumber, t -> new Bucket(perMinute, millis)).take(perMinute, millis)) {
+        throw new TooManyRequestsException("Too many orders from table " + tableNumber + ", please wait a minute");
+      }
+      int pending = 0;
+      int pendingHere = 0;
+      for (QrCart other : carts.values()) {
+        if (PENDING.equals(other.getStatus())) {
+          pending++;
+          if (other.getTableNumber().equals(tableNumber)) {
+            pendingHere++;
+          }
+        }
+      }
+      if (pendingHere >= config.getMaxPendingPerTable()) {
+        throw new TooManyRequestsException(
+            "Table " + tableNumber + " already has " + pendingHere + " orders waiting for staff");
+      }
+      if (pending >= config.getMaxPendingCarts()) {
+        throw new ServiceBusyException("Too many orders waiting, please ask a waiter");
+      }
+      carts.put(cart.getId(), cart);
+    }
+    log.info("QR cart {} from table {}: {} lines, {}", cart.getId(), tableNumber, lines.size(), total);
+    eventDispatcher.broadcast(TOPIC, cart);
+    return cart;
+  }
+
+  public QrCart getCart(String id) {
+    synchronized (carts) {
+      QrCart cart = carts.get(id);
+      if (cart == null) {
+        throw new ResourceNotFoundException("Cart not found: " + id);
+      }
+      return cart;
+    }
+  }
+
+  // Oldest first, the order staff should work through them
+  public List<QrCart> getPendingCarts() {
+    synchronized (carts) {
+      List<QrCart> pending = new ArrayList<>();
+      for (QrCart cart : carts.values()) {
+        if (PENDING.equals(cart.getStatus())) {
+          pending.add(cart);
+        }
+      }
+      pending.sort(Comparator.comparing(QrCart::getCreatedAt));
+      return pending;
+    }
+  }
+
+  // The cart leaves PENDING under the lock before the order is submitted, so a
+  // reject or expiry racing the confirm either wins outright or is refused.
+  // Confirming a confirmed cart again gets the same order: the cart id is the
+  // Idempotency-Key of the order it becomes
+  public JournalReceipt confirm(String id) {
+    QrCart cart;
+    synchronized (carts) {
+      cart = getCart(id);
+      if (PENDING.equals(cart.getStatus())) {
+        cart.setStatus(CONFIRMING);
+      } else if (CONFIRMING.equals(cart.getStatus())) {
+        throw new RuntimeException("Cart is already being confirmed");
+      } else if (!CONFIRMED.equals(cart.getStatus())) {
+        throw new RuntimeException("Cart is " + cart.getStatus().toLowerCase());
+      }
+    }
+    OrderRequest request = new OrderRequest();
+    request.setCustomerName(cart.getCustomerName());
+    request.setCustomerPhone(cart.getCustomerPhone());
+    request.setTableNumber(cart.getTableNumber());
+    request.setOrderType(OrderType.DINE_IN);
+    request.setCreatedBy(CREATED_BY);
+    List<OrderItemRequest> items = new ArrayList<>();
+    for (QrCart.Line line : cart.getLines()) {
+      OrderItemRequest item = new OrderItemRequest();
+      item.setMenuItemId(line.getMenuItemId());
+      item.setVariationId(line.getVariationId());
+      item.setQuantity(line.getQuantity());
+      items.add(item);
+    }
+    request.setItems(items);
+
+    JournalReceipt receipt;
+    try {
+      receipt = billingJournalService.submitOrder(request, "qr-cart-" + id);
+    } catch (RuntimeException e) {
+      // Nothing was ordered: back to staff, who can retry or reject it
+      synchronized (carts) {
+        if (CONFIRMING.equals(cart.getStatus())) {
+          cart.setStatus(PENDING);
+        }
+      }
+      throw e;
+    }
+    synchronized (carts) {
+      if (!CONFIRMED.equals(cart.getStatus())) {
+        cart.setStatus(CONFIRMED);
+        cart.setResolvedAt(LocalDateTime.now());
+      }
+      if (receipt.isApplied()) {
+        cart.setOrderId(((Order) receipt.getResult()).getId());
+      } else {
+        cart.setJournalRef(receipt.getJournalRef());
+      }
+    }
+    eventDispatcher.broadcast(TOPIC, cart);
+    return receipt;
+  }
+
+  public QrCart reject(String id) {
+    QrCart cart = getCart(id);
+    synchronized (carts) {
+      if (!PENDING.equals(cart.getStatus())) {
+        throw new RuntimeException("Cart is " + cart.getStatus().toLowerCase());
+      }
+      cart.setStatus(REJECTED);
+      cart.setResolvedAt(LocalDateTime.now());
+    }
+    eventDispatcher.broadcast(TOPIC, cart);
+    return cart;
+  }
+
+  @Scheduled(fixedDelayString = "${app.qr.sweep-ms:60000}")
+  public void expireCarts() {
+    LocalDateTime cutoff = LocalDateTime.now().minusMinutes(appProperties.getQr().getCartTtlMinutes());
+    List<QrCart> expired = new ArrayList<>();
+    synchronized (carts) {
+      Iterator<QrCart> it = carts.values().iterator();
+      while (it.hasNext()) {
+        QrCart cart = it.next();
+        if (PENDING.equals(cart.getStatus())) {
+          if (cart.getCreatedAt().isBefore(cutoff)) {
+            cart.setStatus(EXPIRED);
+            cart.setResolvedAt(LocalDateTime.now());
+            expired.add(cart);
+          }
+        } else if (cart.getResolvedAt() != null && cart.getResolvedAt().isBefore(cutoff)) {
+          it.remove();
+        }
+      }
+      long now = System.currentTimeMillis();
+      int perMinute = appProperties.getQr().getCartsPerTablePerMinute();
+      buckets.values().removeIf(bucket -> bucket.full(perMinute, now));
+    }
+    expired.forEach(cart -> eventDispatcher.broadcast(TOPIC, cart));
+  }
+
+  private List<QrCart.Line> lines(QrMenuService.Bundle menu, QrCartRequest request) {
+    AppProperties.Qr config = appProperties.getQr();
+    if (request.getMenuVersion() != null && !request.getMenuVersion().equals(menu.version())) {
+      throw new RuntimeException("The menu has changed, please review your order");
+    }
+    if (request.getItems() == null || request.getItems().isEmpty()) {
+      throw new RuntimeException("Order must have at least one item");
+    }
+    if (request.getItems().size() > config.getMaxLinesPerCart()) {
+      throw new RuntimeException("At most " + config.getMaxLinesPerCart() + " items per order");
+    }
+    List<QrCart.Line> lines = new ArrayList<>();
+    for (OrderItemRequest item : request.getItems()) {
+      QrMenuService.Item menuItem = item.getMenuItemId() != null ? menu.items().get(item.getMenuItemId()) : null;
+      if (menuItem == null) {
+        throw new RuntimeException("Menu item " + item.getMenuItemId() + " is not available");
+      }
+      if (item.getQuantity() < 1 || item.getQuantity() > config.getMaxQuantityPerLine()) {
+        throw new RuntimeException(
+            "Quantity for " + menuItem.name() + " must be 1 to " + config.getMaxQuantityPerLine());
+      }
+      QrMenuService.Variation variation = null;
+      if (item.getVariationId() != null) {
+        variation = menuItem.variations().get(item.getVariationId());
+        if (variation == null) {
+          throw new RuntimeException("Unknown option for " + menuItem.name());
+        }
+      }
+      lines.add(new QrCart.Line(menuItem.id(), item.getVariationId(), menuItem.name(),
+          variation != null ? variation.name() : null, item.getQuantity(),
+          variation != null ? variation.price() : menuItem.price()));
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,176 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.model.Category;
+import com.biryanipos.backend.model.MenuItem;
+import com.biryanipos.backend.model.MenuItemVariation;
+import com.biryanipos.backend.model.RestaurantTable;
+import com.biryanipos.backend.repository.CategoryRepository;
+import com.biryanipos.backend.repository.MenuItemRepository;
+import com.biryanipos.backend.repository.TableRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+// The menu customer phones see after scanning a table QR code. It is built
+// once into JSON and gzip bytes and served from memory, so a room full of
+// diners scanning at once never reaches the database. Menu, category and
+// table changes call invalidate(); the next request after the commit
+// rebuilds the bundle. The version is a hash of the content, used as the
+// ETag, so phones revalidate with a 304 and an edit that changes nothing
+// visible keeps the old version.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class QrMenuService {
+
+  private final MenuItemRepository menuItemRepository;
+  private final CategoryRepository categoryRepository;
+  private final TableRepository tableRepository;
+  private final EventDispatcher eventDispatcher;
+  private final ObjectMapper objectMapper;
+
+  private volatile Bundle bundle;
+  private volatile boolean stale = true;
+
+  public record Item(Long id, String name, double price, Map<Long, Variation> variations) {
+  }
+
+  public record Variation(String name, double price) {
+  }
+
+  // items and tables let carts be checked without a query
+  public record Bundle(String version, byte[] json, byte[] gzip, Map<Long, Item> items, Set<String> tables) {
+  }
+
+  public void invalidate() {
+    eventDispatcher.afterCommit(() -> stale = true);
+  }
+
+  public Bundle getBundle() {
+    Bundle current = bundle;
+    if (!stale && current != null) {
+      return current;
+    }
+    synchronized (this) {
+      if (stale || bundle == null) {
+        // Cleared first: a change committed while building marks it again
+        stale = false;
+        try {
+          bundle = build(bundle);
+        } catch (RuntimeException e) {
+          stale = true;
+          throw e;
+        }
+      }
+      return bundle;
+    }
+  }
+
+  // The entity graph loads variations with the items, so no transaction is needed
+  private Bundle build(Bundle previous) {
+    Map<String, Integer> categoryOrder = new HashMap<>();
+    Set<String> hiddenCategories = new HashSet<>();
+    for (Category category : categoryRepository.findAllByOrderByDisplayOrderAsc()) {
+      categoryOrder.put(category.getName(), category.getDisplayOrder());
+      if (!category.isActive()) {
+        hiddenCategories.add(category.getName());
+      }
+    }
+
+    List<MenuItem> available = new ArrayList<>(menuItemRepository.findWithVariationsByAvailableTrue());
+    available.removeIf(item -> hiddenCategories.contains(item.getCategory()));
+    // Known categories in their display order, the rest after them by name
+    available.sort(Comparator
+        .comparing((MenuItem item) -> categoryOrder.getOrDefault(item.getCategory(), Integer.MAX_VALUE))
+        .thenComparing(MenuItem::getCategory)
+        .thenComparingInt(MenuItem::getDisplayOrder)
+        .thenComparing(MenuItem::getName));
+
+    Map<String, List<Map<String, Object>>> sections = new LinkedHashMap<>();
+    Map<Long, Item> items = new HashMap<>();
+    for (MenuItem menuItem : available) {
+      Map<Long, Variation> variations = new HashMap<>();
+      List<Map<String, Object>> variationViews = new ArrayList<>();
+      for (MenuItemVariation variation : menuItem.getVariations()) {
+        variations.put(variation.getId(), new Variation(variation.getName(), variation.getPrice()));
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("id", variation.getId());
+        view.put("name", variation.getName());
+        view.put("price", variation.getPrice());
+        variationViews.add(view);
+      }
+      items.put(menuItem.getId(), new Item(menuItem.getId(), menuItem.getName(), menuItem.getPrice(), variations));
+
+      Map<String, Object> view = new LinkedHashMap<>();
+      view.put("id", menuItem.getId());
+      view.put("name", menuItem.getName());
+      view.put("description", menuItem.getDescription());
+      view.put("price", menuItem.getPrice());
+      view.put("vegetarian", menuItem.isVegetarian());
+      view.put("prepTimeMinutes", menuItem.getPrepTimeMinutes());
+      view.put("imageUrl", menuItem.getImageUrl());
+      view.put("variations", variationViews);
+      sections.computeIfAbsent(menuItem.getCategory(), c -> new ArrayList<>()).add(view);
+    }
+
+    Set<String> tables = new HashSet<>();
+    for (RestaurantTable table : tableRepository.findAllByOrderByTableNumberAsc()) {
+      tables.add(table.getTableNumber());
+    }
+
+    List<Map<String, Object>> categories = new ArrayList<>();
+    sections.forEach((name, list) -> {
+      Map<String, Object> section = new LinkedHashMap<>();
+      section.put("name", name);
+      section.put("items", list);
+      categories.add(section);
+    });
+
+    try {
+      byte[] content = objectMapper.writeValueAsBytes(categories);
+      String version = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content), 0, 8);
+      if (previous != null && previous.version().equals(version)) {
+        return new Bundle(version, previous.json(), previous.gzip(), items, tables);
+      }
+      Map<String, Object> body = new LinkedHashMap<>();
+      body.put("version", version);
+      body.put("generatedAt", LocalDateTime.now());
+      body.put("categories", categories);
+      byte[] json = objectMapper.writeValueAsBytes(body);
+      byte[] gzip = gzip(json);
+      log.info("QR menu bundle {}: {} items, {} bytes, {} gzipped", version, items.size(), json.length,
+          gzip.length);
+      return new Bundle(version, json, gzip, items, tables);
+    } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+      throw new RuntimeException("Could not build QR menu: " + e.getMessage(), e);
+    }
+  }
+
+  private static byte[] gzip(byte[] data) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+    try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+      gz.write(data);
+    } catch (IOException e) {
+      throw new RuntimeException("Could not compress QR menu", e);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,69 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.dto.QuickBillRequest;
+import com.biryanipos.backend.dto.QuickBillResult;
+import com.biryanipos.backend.model.Order;
+import com.biryanipos.backend.model.OrderType;
+import com.biryanipos.backend.model.Payment;
+import com.biryanipos.backend.repository.OrderRepository;
+import com.biryanipos.backend.repository.PaymentRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+// Counter takeaway in one command: order, stock, payment and receipt in a
+// single transaction, where the frontend used to create the order, pay it
+// and fetch the receipt in three. The KDS gets one /topic/orders event with
+// the order already paid.
+@Service
+@RequiredArgsConstructor
+public class QuickBillService {
+
+  private final OrderService orderService;
+  private final PaymentService paymentService;
+  private final OrderRepository orderRepository;
+  private final PaymentRepository paymentRepository;
+  private final PrintingService printingService;
+  private final PrintSpoolerService printSpoolerService;
+  private final EventDispatcher eventDispatcher;
+  private final AppProperties appProperties;
+
+  @Transactional
+  @OrderLane(OrderLane.Key.ORDER_REQUEST)
+  @RetryOnConflict
+  public QuickBillResult quickBill(QuickBillRequest request) {
+    return quickBill(request, null);
+  }
+
+  // journalRef makes replays from the billing journal idempotent
+  @Transactional
+  @OrderLane(OrderLane.Key.ORDER_REQUEST)
+  @RetryOnConflict
+  public QuickBillResult quickBill(QuickBillRequest request, String journalRef) {
+    if (journalRef != null) {
+      Optional<Order> existing = orderRepository.findByJournalRef(journalRef);
+      if (existing.isPresent()) {
+        Order order = existing.get();
+        Payment payment = paymentRepository.findWithDetailsByOrderId(order.getId()).orElse(null);
+        return new QuickBillResult(order, payment, printingService.generateTextReceipt(order, payment));
+      }
+    }
+
+    request.setOrderType(OrderType.TAKEAWAY);
+    request.setTableNumber(null);
+    Order order = orderService.buildOrder(request, journalRef);
+    Payment payment = paymentService.settle(order, request.toPaymentRequest(order.getId()), journalRef);
+
+    eventDispatcher.broadcast("/topic/orders", order);
+    if (appProperties.getOrder().isAutoPrintKds()) {
+      printSpoolerService.printKots(order, order.getItems(), null);
+    }
+    if (appProperties.getOrder().isAutoPrintBill()) {
+      printSpoolerService.printBill(order, payment);
+    }
+    return new QuickBillResult(order, payment, printingService.generateTextReceipt(order, payment));
+  }
+}
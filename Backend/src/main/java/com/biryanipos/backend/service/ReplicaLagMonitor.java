@@ -0,0 +1,77 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.config.ConnectionPools;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Measures how far the read replica is behind with app.replica.lag-query and
+// tells ConnectionPools, which only routes reads there while the lag is within
+// app.replica.max-lag-seconds. A failed check, a stopped replication thread
+// (NULL lag) or an empty status all count as unusable.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReplicaLagMonitor {
+
+  private final ConnectionPools connectionPools;
+  private final AppProperties appProperties;
+
+  private boolean wasUsable;
+
+  @Scheduled(fixedDelayString = "${app.replica.check-ms:2000}")
+  public synchronized void check() {
+    DataSource replica = connectionPools.getReplica();
+    if (replica == null) {
+      return;
+    }
+    Long lag;
+    try {
+      lag = readLag(replica, appProperties.getReplica().getLagQuery());
+    } catch (SQLException e) {
+      log.debug("Replica lag check failed: {}", e.getMessage());
+      lag = null;
+    }
+    connectionPools.setReplicaLagSeconds(lag);
+
+    boolean usable = connectionPools.isReplicaUsable();
+    if (usable != wasUsable) {
+      if (usable) {
+        log.info("Read replica in sync (lag {}s): serving report and listing reads", lag);
+      } else {
+        log.warn("Read replica unusable (lag {}s): reads fall back to the primary", lag);
+      }
+      wasUsable = usable;
+    }
+  }
+
+  private static Long readLag(DataSource replica, String query) throws SQLException {
+    try (Connection connection = replica.getConnection();
+        Statement statement = connection.createStatement();
+        ResultSet rs = statement.executeQuery(query)) {
+      if (!rs.next()) {
+        return null; // Not a replica
+      }
+      ResultSetMetaData meta = rs.getMetaData();
+      int column = 1;
+      for (int i = 1; i <= meta.getColumnCount(); i++) {
+        String name = meta.getColumnLabel(i);
+        if ("Seconds_Behind_Source".equalsIgnoreCase(name) || "Seconds_Behind_Master".equalsIgnoreCase(name)) {
+          column = i;
+          break;
+        }
+      }
+      long lag = rs.getLong(column);
+      return rs.wasNull() ? null : lag;
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package com.biryanipos.backend.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// The method's @Transactional(readOnly = true) reads may be served from the
+// read replica, up to app.replica.max-lag-seconds behind the primary. Only
+// for listings nobody reads straight after their own write.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReplicaRead {
+}
@@ -0,0 +1,27 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.ConnectionPools;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+// Marks @ReplicaRead calls before their transaction starts, so the routing
+// DataSource can send them to the replica (see ConnectionPools)
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 3)
+public class ReplicaReadAspect {
+
+  @Around("@annotation(com.biryanipos.backend.service.ReplicaRead)")
+  public Object route(ProceedingJoinPoint pjp) throws Throwable {
+    Boolean previous = ConnectionPools.allowReplicaReads(true);
+    try {
+      return pjp.proceed();
+    } finally {
+      ConnectionPools.allowReplicaReads(previous);
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.dto.SalesFragment;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Sales figures of closed business days, kept for good: one JSON file per day
+// under app.reporting.cache-directory, read through an in-memory copy. Only
+// a back-dated correction (see ReportDayCacheListener) removes a day, and a
+// restore (BackupService) removes them all. Each removal bumps the day's
+// generation, and a fragment computed before it is not stored, so a report
+// racing a correction cannot save the old figures.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReportDayCache {
+
+  private final AppProperties appProperties;
+  private final ObjectMapper objectMapper;
+  private final EventDispatcher eventDispatcher;
+
+  private final Map<LocalDate, SalesFragment> days = new ConcurrentHashMap<>();
+  private final Map<LocalDate, Long> generations = new HashMap<>(); // Guarded by this
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+  private long clears; // Counts into every day's generation; guarded by this
+  private Path directory;
+
+  @PostConstruct
+  public void init() throws IOException {
+    directory = Path.of(appProperties.getReporting().getCacheDirectory());
+    Files.createDirectories(directory);
+  }
+
+  // The stored fragment, or null; take generation() first if you may put()
+  public SalesFragment get(LocalDate day) {
+    SalesFragment fragment = days.get(day);
+    if (fragment == null) {
+      fragment = load(day);
+    }
+    if (fragment != null) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    return fragment;
+  }
+
+  public synchronized long generation(LocalDate day) {
+    return clears + generations.getOrDefault(day, 0L);
+  }
+
+  public synchronized void put(LocalDate day, SalesFragment fragment, long generation) {
+    if (generation != generation(day)) {
+      return; // Corrected while it was being computed
+    }
+    Path file = file(day);
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      objectMapper.writeValue(tmp.toFile(), fragment);
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warn("Could not cache sales for {}: {}", day, e.getMessage());
+      return;
+    }
+    days.put(day, fragment);
+  }
+
+  // Called when data dated in the past changes. Runs again after the commit,
+  // since a report may have read the old rows in between.
+  public void invalidate(LocalDate day) {
+    if (day == null || !day.isBefore(LocalDate.now())) {
+      return; // Today and later are never cached
+    }
+    remove(day);
+    eventDispatcher.afterCommit(() -> remove(day));
+  }
+
+  // A restore rewrote the tables over JDBC, past the entity listener: every
+  // stored day goes, in memory and on disk
+  public synchronized void clear() {
+    clears++;
+    days.clear();
+    int dropped = 0;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "sales-*.json")) {
+      for (Path file : files) {
+        if (Files.deleteIfExists(file)) {
+          dropped++;
+        }
+      }
+    } catch (IOException e) {
+      log.error("Could not drop cached sales after a restore", e);
+    }
+    invalidations.add(dropped);
+    log.info("Cached sales for {} days dropped after a restore", dropped);
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("daysInMemory", days.size());
+    stats.put("hits", hits.sum());
+    stats.put("misses", misses.sum());
+    stats.put("invalidations", invalidations.sum());
+    return stats;
+  }
+
+  private synchronized void remove(LocalDate day) {
+    generations.merge(day, 1L, Long::sum);
+    days.remove(day);
+    try {
+      if (Files.deleteIfExists(file(day))) {
+        invalidations.increment();
+        log.info("Cached sales for {} dropped after a back-dated change", day);
+      }
+    } catch (IOException e) {
+      log.error("Could not drop cached sales for {}", day, e);
+    }
+  }
+
+  // Under the lock so a concurrent remove() cannot be undone by a stale read
+  private synchronized SalesFragment load(LocalDate day) {
+    SalesFragment fragment = days.get(day);
+    if (fragment == null) {
+      fragment = read(day);
+      if (fragment != null) {
+        days.put(day, fragment);
+      }
+    }
+    return fragment;
+  }
+
+  private SalesFragment read(LocalDate day) {
+    Path file = file(day);
+    if (!Files.exists(file)) {
+      return null;
+    }
+    try {
+      return objectMapper.readValue(file.toFile(), SalesFragment.class);
+    } catch (IOException e) {
+      log.warn("Unreadable cached sales for {}, recomputing: {}", day, e.getMessage());
+      remove(day);
+      return null;
+    }
+  }
+
+  private Path file(LocalDate day) {
+    return directory.resolve("sales-" + day + ".json");
+  }
+}
@@ -0,0 +1,63 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.model.Expense;
+import com.biryanipos.backend.model.Order;
+import com.biryanipos.backend.model.Payment;
+import com.biryanipos.backend.model.StockTransaction;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Entity listener on the rows a sales report adds up. A write dated before
+// today is a back-dated correction and drops that day from ReportDayCache;
+// a payment's also has the sales cube rebuild the day. Hibernate creates it
+// through Spring; both are looked up on first use because the listener is
+// built together with the EntityManagerFactory.
+public class ReportDayCacheListener {
+
+  private final ObjectProvider<ReportDayCache> reportDayCache;
+  private final ObjectProvider<SalesCubeService> salesCube;
+
+  public ReportDayCacheListener(ObjectProvider<ReportDayCache> reportDayCache,
+      ObjectProvider<SalesCubeService> salesCube) {
+    this.reportDayCache = reportDayCache;
+    this.salesCube = salesCube;
+  }
+
+  @PostPersist
+  @PostUpdate
+  @PostRemove
+  public void changed(Object entity) {
+    LocalDate day = businessDay(entity);
+    if (day != null && day.isBefore(LocalDate.now())) {
+      reportDayCache.getObject().invalidate(day);
+      if (entity instanceof Payment) {
+        salesCube.getObject().invalidate(day);
+      }
+    }
+  }
+
+  private static LocalDate businessDay(Object entity) {
+    if (entity instanceof Order order) {
+      return date(order.getCreatedAt());
+    }
+    if (entity instanceof Payment payment) {
+      return date(payment.getPaidAt());
+    }
+    if (entity instanceof Expense expense) {
+      return expense.getExpenseDate();
+    }
+    if (entity instanceof StockTransaction transaction) {
+      return date(transaction.getTransactionDate());
+    }
+    return null;
+  }
+
+  private static LocalDate date(LocalDateTime time) {
+    return time != null ? time.toLocalDate() : null;
+  }
+}
@@ -0,0 +1,332 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.config.ConnectionPools;
+import com.biryanipos.backend.dto.RecipeCostingDto;
+import com.biryanipos.backend.dto.ReportJobRequest;
+import com.biryanipos.backend.dto.SalesFragment;
+import com.biryanipos.backend.exception.ResourceNotFoundException;
+import com.biryanipos.backend.exception.ServiceBusyException;
+import com.biryanipos.backend.model.ReportJob;
+import com.biryanipos.backend.model.ReportJobStatus;
+import com.biryanipos.backend.model.ReportJobType;
+import com.biryanipos.backend.repository.ReportJobRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Background report jobs for ranges too long to answer inside a request.
+// Jobs are rows in report_jobs, run one at a time on a low-priority thread
+// with the reporting connection pool, and write their artifact to
+// app.reporting.job-directory a day at a time. After each day the file is
+// forced to disk and the job row records the next day and the file length,
+// so a job interrupted by a restart is re-queued and carries on from there.
+// Between days a job waits while the OLTP pool is busy and checks for
+// cancellation. Progress goes to /topic/report-jobs. A sales job writes each
+// day's figures as {"days": [...]} and closes with the report added up from
+// them, so a resumed job still totals the days written before the restart.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReportJobService {
+
+  private static final String TOPIC = "/topic/report-jobs";
+  private static final long PROGRESS_INTERVAL_MS = 1000;
+  private static final long BUSY_POLL_MS = 200;
+  private static final List<ReportJobStatus> PENDING = List.of(ReportJobStatus.QUEUED, ReportJobStatus.RUNNING);
+
+  private final ReportJobRepository reportJobRepository;
+  private final ReportService reportService;
+  private final MenuItemService menuItemService;
+  private final ConnectionPools connectionPools;
+  private final EventDispatcher eventDispatcher;
+  private final ObjectMapper objectMapper;
+  private final AppProperties appProperties;
+
+  private final Set<Long> cancelled = ConcurrentHashMap.newKeySet();
+  private ExecutorService executor;
+  private Path directory;
+
+  @PostConstruct
+  public void init() throws IOException {
+    directory = Path.of(appProperties.getReporting().getJobDirectory());
+    Files.createDirectories(directory);
+    executor = Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "report-job");
+      t.setDaemon(true);
+      t.setPriority(Thread.MIN_PRIORITY);
+      return t;
+    });
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void resume() {
+    int requeued = reportJobRepository.requeueInterrupted();
+    if (requeued > 0) {
+      log.warn("Resuming {} report jobs interrupted by the last shutdown", requeued);
+    }
+    reportJobRepository.findByStatusOrderByIdAsc(ReportJobStatus.QUEUED)
+        .forEach(job -> executor.execute(() -> run(job.getId())));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  public ReportJob submit(ReportJobRequest request) {
+    AppProperties.Reporting config = appProperties.getReporting();
+    if (request.getType() == null) {
+      throw new RuntimeException("Report type is required");
+    }
+    ReportJob job = new ReportJob();
+    job.setJobType(request.getType());
+    if (request.getType() == ReportJobType.RECIPE_COSTING) {
+      job.setTotalChunks(1);
+    } else {
+      if (request.getStart() == null || request.getEnd() == null || request.getEnd().isBefore(request.getStart())) {
+        throw new RuntimeException("A start and end date, in that order, are required");
+      }
+      long days = ChronoUnit.DAYS.between(request.getStart(), request.getEnd()) + 1;
+      if (days > config.getMaxJobDays()) {
+        throw new RuntimeException("A report job covers at most " + config.getMaxJobDays() + " days");
+      }
+      job.setStartDate(request.getStart());
+      job.setEndDate(request.getEnd());
+      job.setNextDate(request.getStart());
+      job.setTotalChunks((int) days);
+    }
+    if (reportJobRepository.countByStatusIn(PENDING) >= config.getMaxQueuedJobs()) {
+      throw new ServiceBusyException("Too many report jobs waiting, please try again later");
+    }
+    ReportJob saved = reportJobRepository.save(job);
+    log.info("Report job {} queued: {} {} to {}", saved.getId(), saved.getJobType(), saved.getStartDate(),
+        saved.getEndDate());
+    executor.execute(() -> run(saved.getId()));
+    return saved;
+  }
+
+  public ReportJob getJob(Long id) {
+    return reportJobRepository.findById(id)
+        .orElseThrow(() -> new ResourceNotFoundException("Report job not found: " + id));
+  }
+
+  public List<ReportJob> getRecentJobs() {
+    return reportJobRepository.findTop50ByOrderByIdDesc();
+  }
+
+  // A queued job is cancelled at once; a running one after its current day
+  public ReportJob cancel(Long id) {
+    ReportJob job = getJob(id);
+    if (!PENDING.contains(job.getStatus())) {
+      throw new RuntimeException("Report job is already " + job.getStatus().name().toLowerCase());
+    }
+    cancelled.add(id);
+    if (job.getStatus() == ReportJobStatus.QUEUED) {
+      finish(job, ReportJobStatus.CANCELLED, null);
+    }
+    return job;
+  }
+
+  public Path getArtifact(Long id) {
+    ReportJob job = getJob(id);
+    if (job.getStatus() != ReportJobStatus.DONE) {
+      throw new RuntimeException("Report job is " + job.getStatus().name().toLowerCase());
+    }
+    Path file = artifactPath(job);
+    if (!Files.exists(file)) {
+      throw new ResourceNotFoundException("Report file is no longer available");
+    }
+    return file;
+  }
+
+  public String getFileName(ReportJob job) {
+    String range = job.getStartDate() != null ? "_" + job.getStartDate() + "_" + job.getEndDate() : "";
+    return job.getJobType().name().toLowerCase() + range + extension(job.getJobType());
+  }
+
+  @Scheduled(cron = "0 45 3 * * ?")
+  public void purgeFinishedJobs() {
+    LocalDateTime cutoff = LocalDateTime.now().minusDays(appProperties.getReporting().getJobRetentionDays());
+    for (ReportJob job : reportJobRepository.findByFinishedAtBefore(cutoff)) {
+      deleteArtifact(job);
+      reportJobRepository.delete(job);
+    }
+  }
+
+  private void run(Long id) {
+    ReportJob job = reportJobRepository.findById(id).orElse(null);
+    if (job == null || job.getStatus() != ReportJobStatus.QUEUED) {
+      cancelled.remove(id);
+      return; // Cancelled while queued
+    }
+    if (cancelled.remove(id)) {
+      finish(job, ReportJobStatus.CANCELLED, null);
+      return;
+    }
+    job.setStatus(ReportJobStatus.RUNNING);
+    if (job.getStartedAt() == null) {
+      job.setStartedAt(LocalDateTime.now());
+    }
+    job = reportJobRepository.save(job);
+    eventDispatcher.broadcast(TOPIC, job);
+
+    Path file = artifactPath(job);
+    try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      out.truncate(job.getArtifactBytes()); // Drops a day half-written before a restart
+      out.position(job.getArtifactBytes());
+      if (job.getArtifactBytes() == 0) {
+        write(out, header(job.getJobType()));
+      }
+      long lastProgress = System.currentTimeMillis();
+      while (job.getChunksDone() < job.getTotalChunks()) {
+        if (cancelled.remove(id)) {
+          out.close();
+          deleteArtifact(job);
+          finish(job, ReportJobStatus.CANCELLED, null);
+          return;
+        }
+        waitWhileOltpBusy();
+        ReportJob current = job;
+        String chunk = ConnectionPools.reporting(() -> chunk(current));
+        write(out, chunk);
+        out.force(false);
+
+        job.setChunksDone(job.getChunksDone() + 1);
+        job.setArtifactBytes(out.position());
+        if (job.getNextDate() != null) {
+          job.setNextDate(job.getNextDate().plusDays(1));
+        }
+        job = reportJobRepository.save(job);
+        if (System.currentTimeMillis() - lastProgress >= PROGRESS_INTERVAL_MS) {
+          eventDispatcher.broadcast(TOPIC, job);
+          lastProgress = System.currentTimeMillis();
+        }
+      }
+      if (job.getJobType() == ReportJobType.SALES) {
+        Object report = reportService.salesReport(writtenDays(file), job.getStartDate(), job.getEndDate());
+        write(out, "\n],\n\"report\": " + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report)
+            + "\n}\n");
+      }
+      out.force(true);
+      finish(job, ReportJobStatus.DONE, null);
+      log.info("Report job {} done: {} bytes", id, Files.size(file));
+    } catch (InterruptedException | ClosedByInterruptException e) {
+      Thread.currentThread().interrupt(); // Shutting down; resumes on the next start
+    } catch (Exception e) {
+      log.error("Report job {} failed", id, e);
+      finish(job, ReportJobStatus.FAILED, e.getMessage());
+    }
+  }
+
+  // One day of the range (or the whole report for undated types)
+  private String chunk(ReportJob job) {
+    LocalDate day = job.getNextDate();
+    StringBuilder out = new StringBuilder();
+    switch (job.getJobType()) {
+      case SALES -> {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("day", day.toString());
+        entry.put("sales", reportService.getDaySales(day));
+        out.append(job.getChunksDone() > 0 ? ",\n" : "").append(objectMapper.valueToTree(entry).toString());
+      }
+      case GST -> reportService.appendGstRows(out, day, day);
+      case WASTAGE -> reportService.appendWastageRows(out, day, day);
+      case RECIPE_COSTING -> appendRecipeCostingRows(out, menuItemService.getAllRecipeCosting());
+      default -> throw new IllegalStateException("Unknown report job type " + job.getJobType());
+    }
+    return out.toString();
+  }
+
+  // Adds up the days a sales job has written so far; the list is still open
+  private SalesFragment writtenDays(Path file) throws IOException {
+    SalesFragment total = new SalesFragment();
+    JsonNode days = objectMapper.readTree(Files.readString(file) + "]}").get("days");
+    for (JsonNode day : days) {
+      total.add(objectMapper.treeToValue(day.get("sales"), SalesFragment.class));
+    }
+    return total;
+  }
+
+  private static void appendRecipeCostingRows(StringBuilder csv, List<RecipeCostingDto> items) {
+    for (RecipeCostingDto item : items) {
+      csv.append(item.getMenuItemId()).append(",")
+          .append(ReportService.csvText(item.getMenuItemName())).append(",")
+          .append(item.getSellingPrice()).append(",")
+          .append(item.getEstimatedCost()).append(",")
+          .append(item.getProfitAmount()).append(",")
+          .append(item.getMarginPercentage()).append("\n");
+    }
+  }
+
+  private static String header(ReportJobType type) {
+    return switch (type) {
+      case GST -> ReportService.GST_CSV_HEADER;
+      case WASTAGE -> ReportService.WASTAGE_CSV_HEADER;
+      case RECIPE_COSTING -> "Item Id,Item,Selling Price,Estimated Cost,Profit,Margin %\n";
+      case SALES -> "{\"days\": [\n";
+    };
+  }
+
+  private static String extension(ReportJobType type) {
+    return type == ReportJobType.SALES ? ".json" : ".csv";
+  }
+
+  private void waitWhileOltpBusy() throws InterruptedException {
+    while (connectionPools.isOltpBusy(appProperties.getReporting().getOltpBusyRatio())) {
+      Thread.sleep(BUSY_POLL_MS);
+    }
+  }
+
+  private void finish(ReportJob job, ReportJobStatus status, String error) {
+    job.setStatus(status);
+    job.setLastError(error);
+    job.setFinishedAt(LocalDateTime.now());
+    eventDispatcher.broadcast(TOPIC, reportJobRepository.save(job));
+  }
+
+  private static void write(FileChannel out, String text) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+  }
+
+  private Path artifactPath(ReportJob job) {
+    return directory.resolve("report-job-" + job.getId() + extension(job.getJobType()));
+  }
+
+  private void deleteArtifact(ReportJob job) {
+    try {
+      Files.deleteIfExists(artifactPath(job));
+    } catch (IOException e) {
+      log.warn("Could not delete report job file {}: {}", artifactPath(job), e.getMessage());
+    }
+  }
+}
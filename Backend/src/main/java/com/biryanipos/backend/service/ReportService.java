@@ -1,6 +1,7 @@
 package com.biryanipos.backend.service;
 
 import com.biryanipos.backend.dto.DashboardData;
+import com.biryanipos.backend.dto.SalesFragment;
 import com.biryanipos.backend.model.*;
 import com.biryanipos.backend.repository.*;
 import lombok.RequiredArgsConstructor;
@@ -22,6 +23,9 @@ public class ReportService {
   private final StockItemRepository stockItemRepository;
   private final StockTransactionRepository stockTransactionRepository;
   private final OrderItemRepository orderItemRepository;
+  private final ShiftRepository shiftRepository;
+  private final ReportDayCache reportDayCache;
+  private final TopSellerTracker topSellerTracker;
 
   public DashboardData getDashboardData() {
     LocalDateTime todayStart = LocalDate.now().atStartOfDay();
@@ -36,10 +40,9 @@ public class ReportService {
 
     Double todayExpenses = expenseRepository.sumAmountBetween(LocalDate.now(), LocalDate.now());
 
-    List<DashboardData.TopSellingItem> topItems = orderItemRepository.findTopSellingItems(todayStart, todayEnd).stream()
-        .limit(5)
-        .map(row -> new DashboardData.TopSellingItem((String) row[0], ((Number) row[1]).intValue(),
-            ((Number) row[2]).doubleValue()))
+    // Live from the payment stream; no GROUP BY over today's items per poll
+    List<DashboardData.TopSellingItem> topItems = topSellerTracker.top(TopSellerTracker.Window.TODAY, 5).stream()
+        .map(item -> new DashboardData.TopSellingItem(item.getName(), (int) item.getQuantity(), item.getRevenue()))
         .collect(Collectors.toList());
 
     // Payment mode breakdown
@@ -99,140 +102,184 @@ public class ReportService {
     return dashboard;
   }
 
+  // Adds up one cached fragment per closed business day and computes the
+  // rest (today, and any day an open shift still covers) live. A day missing
+  // from the cache is computed on its own and stored.
   public Map<String, Object> getSalesReport(LocalDate startDate, LocalDate endDate) {
-    LocalDateTime start = startDate.atStartOfDay();
-    LocalDateTime end = endDate.atTime(LocalTime.MAX);
+    LocalDate firstOpenDay = firstOpenDay();
+    SalesFragment total = new SalesFragment();
+    LocalDate day = startDate;
+    for (; !day.isAfter(endDate) && day.isBefore(firstOpenDay); day = day.plusDays(1)) {
+      total.add(closedDaySales(day));
+    }
+    if (!day.isAfter(endDate)) {
+      total.add(computeSales(day, endDate));
+    }
+    return salesReport(total, startDate, endDate);
+  }
 
-    List<Order> orders = orderRepository.findByCreatedAtBetween(start, end);
-    // Optimization: We now use sum queries for taxes instead of iterating payments
-    // list
-    Double totalCgst = paymentRepository.sumCgstBetween(start, end);
-    Double totalSgst = paymentRepository.sumSgstBetween(start, end);
+  // One day's figures, through the day cache once the day is closed
+  public SalesFragment getDaySales(LocalDate day) {
+    return day.isBefore(firstOpenDay()) ? closedDaySales(day) : computeSales(day, day);
+  }
 
-    // Fetch payments if needed for other specialized breakdowns, but for summary we
-    // use sum queries
-    // List<Payment> payments =
-    // paymentRepository.findCompletedPaymentsBetween(start, end);
+  // The sales report for figures already added up, e.g. from getDaySales()
+  public Map<String, Object> salesReport(SalesFragment total, LocalDate startDate, LocalDate endDate) {
+    double outputGst = total.getOutputCgst() + total.getOutputSgst();
+    List<Map<String, Object>> topItems = total.getItems().entrySet().stream()
+        .sorted(Comparator.comparingLong(
+            (Map.Entry<String, SalesFragment.ItemSales> e) -> e.getValue().getQuantity()).reversed())
+        .limit(10)
+        .map(e -> {
+          Map<String, Object> m = new HashMap<>();
+          m.put("name", e.getKey());
+          m.put("quantity", e.getValue().getQuantity());
+          m.put("revenue", e.getValue().getRevenue());
+          return m;
+        })
+        .collect(Collectors.toList());
 
-    // We still might need totalDiscount sum query, adding it or keeping simplified
-    // mapping
-    // For now let's assume totalDiscount is calculated via repo if we want full
-    // optimization
-    // But since CGST/SGST are added, let's keep it clean.
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("period", startDate + " to " + endDate);
+    report.put("totalOrders", total.getTotalOrders());
+    report.put("paidOrders", total.getPaidOrders());
+    report.put("cancelledOrders", total.getCancelledOrders());
+    report.put("dineInOrders", total.getDineInOrders());
+    report.put("takeawayOrders", total.getTakeawayOrders());
+    report.put("totalRevenue", total.getTotalRevenue());
 
-    // To calculate totalDiscount without fetching all payments, we can add
-    // sumDiscountBetween too.
-    // Given the flow, let's just use the current payment sum query logic.
+    // GST Details for Reconciliation
+    report.put("taxableRevenue", total.getTaxableRevenue());
+    report.put("exemptRevenue", total.getExemptRevenue());
+    report.put("outputCgst", total.getOutputCgst());
+    report.put("outputSgst", total.getOutputSgst());
+    report.put("outputGst", outputGst);
+    report.put("inputGst", total.getInputGst());
+    report.put("netGstPayable", outputGst - total.getInputGst());
 
-    // We'll keep totalDiscount as 0 or add the query to PaymentRepository later if
-    // needed.
-    // For now, let's focus on GST Reconciliation.
-    double outputGst = (totalCgst != null ? totalCgst : 0) + (totalSgst != null ? totalSgst : 0);
+    report.put("totalGst", outputGst); // Legacy support for UI
+    report.put("totalExpenses", total.getTotalExpenses());
+    report.put("cogs", total.getCogs());
+    report.put("wastageValue", total.getWastageValue());
+
+    double netRevenue = total.getTotalRevenue() - outputGst;
+    double netExpenses = total.getTotalExpenses() - total.getInputGst();
+
+    report.put("netProfit", netRevenue - netExpenses - total.getCogs() - total.getWastageValue());
+    report.put("topItems", topItems);
+    report.put("paymentBreakdown", total.getPaymentBreakdown());
+    report.put("waiterPerformance", total.getWaiterPerformance());
+
+    return report;
+  }
+
+  private SalesFragment closedDaySales(LocalDate day) {
+    SalesFragment cached = reportDayCache.get(day);
+    if (cached == null) {
+      long generation = reportDayCache.generation(day);
+      cached = computeSales(day, day);
+      reportDayCache.put(day, cached, generation);
+    }
+    return cached;
+  }
+
+  // Days before this one are closed: in the past and not covered by the open shift
+  private LocalDate firstOpenDay() {
+    LocalDate today = LocalDate.now();
+    return shiftRepository.findByActiveTrue()
+        .map(Shift::getOpeningTime)
+        .filter(Objects::nonNull)
+        .map(LocalDateTime::toLocalDate)
+        .filter(opened -> opened.isBefore(today))
+        .orElse(today);
+  }
+
+  private SalesFragment computeSales(LocalDate startDate, LocalDate endDate) {
+    LocalDateTime start = startDate.atStartOfDay();
+    LocalDateTime end = endDate.atTime(LocalTime.MAX);
+    SalesFragment sales = new SalesFragment();
 
-    Double totalExpenses = expenseRepository.sumAmountBetween(startDate, endDate);
-    Double inputGst = expenseRepository.sumGstAmountBetween(startDate, endDate);
+    sales.setOutputCgst(orZero(paymentRepository.sumCgstBetween(start, end)));
+    sales.setOutputSgst(orZero(paymentRepository.sumSgstBetween(start, end)));
+    sales.setTotalExpenses(orZero(expenseRepository.sumAmountBetween(startDate, endDate)));
+    sales.setInputGst(orZero(expenseRepository.sumGstAmountBetween(startDate, endDate)));
 
     // Order status counts
-    long totalOrders = orderRepository.countByCreatedAtBetween(start, end);
-    long paidOrders = orderRepository.countByStatusAndCreatedAtBetween(OrderStatus.PAID, start, end);
-    long cancelledOrders = orderRepository.countByStatusAndCreatedAtBetween(OrderStatus.CANCELLED, start, end);
+    sales.setTotalOrders(orderRepository.countByCreatedAtBetween(start, end));
+    sales.setPaidOrders(orderRepository.countByStatusAndCreatedAtBetween(OrderStatus.PAID, start, end));
+    sales.setCancelledOrders(orderRepository.countByStatusAndCreatedAtBetween(OrderStatus.CANCELLED, start, end));
 
     // Revenue Aggregations
-    Double totalRevenue = paymentRepository.sumTotalAmountBetween(start, end);
+    sales.setTotalRevenue(orZero(paymentRepository.sumTotalAmountBetween(start, end)));
 
     // Order type breakdown
-    long dineInOrders = orderRepository.countByOrderTypeAndCreatedAtBetween(OrderType.DINE_IN, start, end);
-    long takeawayOrders = orderRepository.countByOrderTypeAndCreatedAtBetween(OrderType.TAKEAWAY, start, end);
+    sales.setDineInOrders(orderRepository.countByOrderTypeAndCreatedAtBetween(OrderType.DINE_IN, start, end));
+    sales.setTakeawayOrders(orderRepository.countByOrderTypeAndCreatedAtBetween(OrderType.TAKEAWAY, start, end));
 
     // Taxable vs Exempt breakdown
-    Double taxableRevenue = paymentRepository.sumTaxableRevenueBetween(start, end);
-    Double exemptRevenue = paymentRepository.sumExemptRevenueBetween(start, end);
+    sales.setTaxableRevenue(orZero(paymentRepository.sumTaxableRevenueBetween(start, end)));
+    sales.setExemptRevenue(orZero(paymentRepository.sumExemptRevenueBetween(start, end)));
 
     // Payment breakdown
-    List<Object[]> modeStats = paymentRepository.findPaymentModeBreakdownBetween(start, end);
-    Map<String, Double> paymentBreakdown = new HashMap<>();
-    for (Object[] row : modeStats) {
-      paymentBreakdown.put(row[0].toString(), (Double) row[1]);
+    for (Object[] row : paymentRepository.findPaymentModeBreakdownBetween(start, end)) {
+      sales.getPaymentBreakdown().put(row[0].toString(), (Double) row[1]);
     }
 
-    Double wastageVal = stockTransactionRepository.sumWastageValueBetween(start, end);
-    double wastageValue = wastageVal != null ? wastageVal : 0.0;
+    sales.setWastageValue(orZero(stockTransactionRepository.sumWastageValueBetween(start, end)));
 
     // Employee Performance
-    List<Object[]> waiterStats = orderRepository.findWaiterPerformanceBetween(start, end);
-    Map<String, Double> waiterPerformance = new HashMap<>();
-    for (Object[] row : waiterStats) {
-      waiterPerformance.put((String) row[0], (Double) row[1]);
+    for (Object[] row : orderRepository.findWaiterPerformanceBetween(start, end)) {
+      sales.getWaiterPerformance().put((String) row[0], (Double) row[1]);
     }
 
-    List<Map<String, Object>> topItems = orderItemRepository.findTopSellingItems(start, end).stream()
-        .limit(10)
-        .map(row -> {
-          Map<String, Object> m = new HashMap<>();
-          m.put("name", row[0]);
-          m.put("quantity", row[1]);
-          m.put("revenue", ((Number) row[2]).doubleValue());
-          return m;
-        })
-        .collect(Collectors.toList());
+    // Every item, so fragments of different days still add up to the right top ten
+    for (Object[] row : orderItemRepository.findTopSellingItems(start, end)) {
+      sales.getItems().put((String) row[0], new SalesFragment.ItemSales(((Number) row[1]).longValue(),
+          ((Number) row[2]).doubleValue()));
+    }
 
     // Cost of Goods Sold (COGS) and Wastage
-    Double cogsVal = stockTransactionRepository.sumCogsValueBetween(start, end);
-    double cogs = cogsVal != null ? cogsVal : 0.0;
-
-    Map<String, Object> report = new LinkedHashMap<>();
-    report.put("period", startDate + " to " + endDate);
-    report.put("totalOrders", totalOrders);
-    report.put("paidOrders", paidOrders);
-    report.put("cancelledOrders", cancelledOrders);
-    report.put("dineInOrders", dineInOrders);
-    report.put("takeawayOrders", takeawayOrders);
-    report.put("totalRevenue", totalRevenue);
-
-    // GST Details for Reconciliation
-    report.put("taxableRevenue", taxableRevenue != null ? taxableRevenue : 0);
-    report.put("exemptRevenue", exemptRevenue != null ? exemptRevenue : 0);
-    report.put("outputCgst", totalCgst != null ? totalCgst : 0);
-    report.put("outputSgst", totalSgst != null ? totalSgst : 0);
-    report.put("outputGst", outputGst);
-    report.put("inputGst", inputGst != null ? inputGst : 0);
-    report.put("netGstPayable", outputGst - (inputGst != null ? inputGst : 0));
-
-    report.put("totalGst", outputGst); // Legacy support for UI
-    report.put("totalExpenses", totalExpenses != null ? totalExpenses : 0);
-    report.put("cogs", cogs);
-    report.put("wastageValue", wastageValue);
+    sales.setCogs(orZero(stockTransactionRepository.sumCogsValueBetween(start, end)));
+    return sales;
+  }
 
-    double netRevenue = (totalRevenue != null ? totalRevenue : 0) - outputGst;
-    double netExpenses = (totalExpenses != null ? totalExpenses : 0) - (inputGst != null ? inputGst : 0);
+  private static double orZero(Double value) {
+    return value != null ? value : 0.0;
+  }
 
-    report.put("netProfit", netRevenue - netExpenses - cogs - wastageValue);
-    report.put("topItems", topItems);
-    report.put("paymentBreakdown", paymentBreakdown);
-    report.put("waiterPerformance", waiterPerformance);
+  public static final String GST_CSV_HEADER =
+      "Date,Invoice No,Customer,Total Amount,Taxable Value,CGST,SGST,Total GST,Payment Mode,GST Status\n";
+  public static final String WASTAGE_CSV_HEADER =
+      "Date,Item,Quantity,Unit,Unit Cost,Value,Waste Category,Reason\n";
 
-    return report;
+  public String generateGstReportCsv(LocalDate startDate, LocalDate endDate) {
+    StringBuilder csv = new StringBuilder(GST_CSV_HEADER);
+    appendGstRows(csv, startDate, endDate);
+    return csv.toString();
   }
 
-  public String generateGstReportCsv(LocalDate startDate, LocalDate endDate) {
+  // One row per completed payment; report jobs call it a day at a time
+  public void appendGstRows(StringBuilder csv, LocalDate startDate, LocalDate endDate) {
     LocalDateTime start = startDate.atStartOfDay();
     LocalDateTime end = endDate.atTime(LocalTime.MAX);
     List<Payment> payments = paymentRepository.findCompletedPaymentsBetween(start, end);
 
-    StringBuilder csv = new StringBuilder();
-    csv.append("Date,Invoice No,Customer,Total Amount,Taxable Value,CGST,SGST,Total GST,Payment Mode,GST Status\n");
+    // One query for all the orders instead of one per payment
+    Map<Long, Order> orders = orderRepository.findAllById(payments.stream()
+        .map(Payment::getOrderId).filter(Objects::nonNull).collect(Collectors.toSet())).stream()
+        .collect(Collectors.toMap(Order::getId, o -> o));
 
     for (Payment p : payments) {
       Long orderId = p.getOrderId();
       if (orderId == null)
         continue;
-      Order o = orderRepository.findById(orderId).orElse(null);
+      Order o = orders.get(orderId);
       if (o == null)
         continue;
 
       double taxableValue = p.getTotalAmount() - p.getCgst() - p.getSgst();
       csv.append(o.getCreatedAt().toLocalDate()).append(",")
-          .append("INV-").append(o.getId()).append(",")
+          .append(p.getInvoiceNumber() != null ? p.getInvoiceNumber() : "INV-" + o.getId()).append(",")
           .append(o.getCustomerName() != null ? o.getCustomerName() : "Cash").append(",")
           .append(p.getTotalAmount()).append(",")
           .append(taxableValue).append(",")
@@ -242,6 +289,30 @@ public class ReportService {
           .append(p.getPaymentMode()).append(",")
           .append(p.isGstEnabled() ? "GST" : "Non-GST").append("\n");
     }
-    return csv.toString();
+  }
+
+  public void appendWastageRows(StringBuilder csv, LocalDate startDate, LocalDate endDate) {
+    List<StockTransaction> waste = stockTransactionRepository.findWithItemByTransactionTypeAndTransactionDateBetween(
+        StockTransactionType.WASTE, startDate.atStartOfDay(), endDate.atTime(LocalTime.MAX));
+    for (StockTransaction t : waste) {
+      StockItem item = t.getStockItem();
+      csv.append(t.getTransactionDate().toLocalDate()).append(",")
+          .append(csvText(item.getName())).append(",")
+          .append(t.getQuantity()).append(",")
+          .append(csvText(item.getUnit())).append(",")
+          .append(t.getUnitCostSnapshot()).append(",")
+          .append(t.getQuantity() * t.getUnitCostSnapshot()).append(",")
+          .append(csvText(t.getWasteCategory())).append(",")
+          .append(csvText(t.getReason())).append("\n");
+    }
+  }
+
+  static String csvText(String value) {
+    if (value == null) {
+      return "";
+    }
+    return value.contains(",") || value.contains("\"") || value.contains("\n")
+        ? "\"" + value.replace("\"", "\"\"") + "\""
+        : value;
   }
 }
@@ -0,0 +1,129 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.config.ConnectionPools;
+import com.biryanipos.backend.exception.ServiceBusyException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Bulkhead for reports and exports. They run on a few threads of their own,
+// with the reporting connection pool, and the controllers answer
+// asynchronously, so a long report holds neither a Tomcat thread nor an OLTP
+// connection. Order, payment and KDS requests always go first: a report
+// waits to start while the OLTP pool is under pressure and is shed with 503
+// after app.reporting.max-hold-back-ms. A full queue is refused with 503 too.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReportingExecutor {
+
+  private static final long HOLD_BACK_POLL_MS = 100;
+
+  private final AppProperties appProperties;
+  private final ConnectionPools connectionPools;
+
+  private ThreadPoolExecutor executor;
+  private final LongAdder submitted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder shed = new LongAdder();
+  private final LongAdder heldBack = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+  private final LongAdder runNanos = new LongAdder();
+
+  @PostConstruct
+  public void init() {
+    AppProperties.Reporting config = appProperties.getReporting();
+    AtomicInteger count = new AtomicInteger();
+    executor = new ThreadPoolExecutor(config.getThreads(), config.getThreads(), 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(config.getQueueCapacity()), r -> {
+          Thread t = new Thread(r, "reporting-" + count.incrementAndGet());
+          t.setDaemon(true);
+          t.setPriority(Thread.NORM_PRIORITY - 1);
+          return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    log.info("Reporting bulkhead: {} threads x queue {}, {} read-only connections", config.getThreads(),
+        config.getQueueCapacity(), config.getPoolSize());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  public <T> CompletableFuture<T> submit(String name, Supplier<T> report) {
+    long enqueued = System.nanoTime();
+    RequestTrace trace = RequestTrace.current();
+    CompletableFuture<T> result;
+    try {
+      result = CompletableFuture.supplyAsync(() -> {
+        long started = System.nanoTime();
+        waitNanos.add(started - enqueued);
+        RequestTrace.attach(trace);
+        try {
+          holdBackWhileOltpBusy(name);
+          return ConnectionPools.reporting(report);
+        } finally {
+          RequestTrace.attach(null);
+          runNanos.add(System.nanoTime() - started);
+        }
+      }, executor);
+    } catch (RejectedExecutionException e) {
+      rejected.increment();
+      throw new ServiceBusyException("Too many reports running, please try again in a minute");
+    }
+    submitted.increment();
+    return result;
+  }
+
+  public Map<String, Object> getStats() {
+    long count = submitted.sum();
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("threads", executor.getMaximumPoolSize());
+    stats.put("active", executor.getActiveCount());
+    stats.put("queued", executor.getQueue().size());
+    stats.put("completed", executor.getCompletedTaskCount());
+    stats.put("rejected", rejected.sum());
+    stats.put("heldBack", heldBack.sum());
+    stats.put("shed", shed.sum());
+    stats.put("avgWaitMs", count > 0 ? waitNanos.sum() / count / 1_000_000.0 : 0.0);
+    stats.put("avgRunMs", count > 0 ? runNanos.sum() / count / 1_000_000.0 : 0.0);
+    stats.put("pools", connectionPools.getStats());
+    return stats;
+  }
+
+  private void holdBackWhileOltpBusy(String name) {
+    AppProperties.Reporting config = appProperties.getReporting();
+    if (!connectionPools.isOltpBusy(config.getOltpBusyRatio())) {
+      return;
+    }
+    heldBack.increment();
+    long deadline = System.currentTimeMillis() + config.getMaxHoldBackMs();
+    while (connectionPools.isOltpBusy(config.getOltpBusyRatio())) {
+      if (System.currentTimeMillis() >= deadline) {
+        shed.increment();
+        log.warn("Report {} shed: billing has been busy for {} ms", name, config.getMaxHoldBackMs());
+        throw new ServiceBusyException("Billing is busy right now, please try the report again in a minute");
+      }
+      try {
+        Thread.sleep(HOLD_BACK_POLL_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ServiceBusyException("Interrupted while waiting to run the report");
+      }
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.biryanipos.backend.service;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cost of one HTTP request: JDBC statements and time, time spent waiting on
+// row locks (SELECT ... FOR UPDATE), WebSocket publishes and response bytes.
+// Bound to the request thread by RequestTracingFilter; threads that do work
+// on the request's behalf (order lanes, the journal applier) attach it too.
+public class RequestTrace {
+
+  private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+
+  private final long startNanos = System.nanoTime();
+  private final AtomicLong statements = new AtomicLong();
+  private final AtomicLong dbNanos = new AtomicLong();
+  private final AtomicLong lockNanos = new AtomicLong();
+  private final AtomicLong publishes = new AtomicLong();
+  private volatile long responseBytes;
+
+  public static RequestTrace current() {
+    return CURRENT.get();
+  }
+
+  // Returns whatever was attached before so the caller can restore it
+  public static RequestTrace attach(RequestTrace trace) {
+    RequestTrace previous = CURRENT.get();
+    if (trace == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(trace);
+    }
+    return previous;
+  }
+
+  public static void statementExecuted(String sql, long nanos) {
+    RequestTrace trace = CURRENT.get();
+    if (trace == null) {
+      return;
+    }
+    trace.statements.incrementAndGet();
+    trace.dbNanos.addAndGet(nanos);
+    if (sql != null && isLocking(sql)) {
+      trace.lockNanos.addAndGet(nanos);
+    }
+  }
+
+  public static void published() {
+    RequestTrace trace = CURRENT.get();
+    if (trace != null) {
+      trace.publishes.incrementAndGet();
+    }
+  }
+
+  public long getStatements() {
+    return statements.get();
+  }
+
+  public double getDbMillis() {
+    return dbNanos.get() / 1_000_000.0;
+  }
+
+  public double getLockMillis() {
+    return lockNanos.get() / 1_000_000.0;
+  }
+
+  public long getPublishes() {
+    return publishes.get();
+  }
+
+  public long getResponseBytes() {
+    return responseBytes;
+  }
+
+  public void setResponseBytes(long responseBytes) {
+    this.responseBytes = responseBytes;
+  }
+
+  public double getElapsedMillis() {
+    return (System.nanoTime() - startNanos) / 1_000_000.0;
+  }
+
+  private static boolean isLocking(String sql) {
+    return sql.toLowerCase(Locale.ROOT).contains(" for update");
+  }
+}
@@ -0,0 +1,14 @@
+package com.biryanipos.backend.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Re-runs the whole transactional method when an @Version check fails.
+// Only takes effect on the outermost call; inside an existing transaction the
+// conflict propagates to the caller that owns it.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+}
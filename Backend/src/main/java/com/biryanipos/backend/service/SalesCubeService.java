@@ -0,0 +1,618 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.config.ConnectionPools;
+import com.biryanipos.backend.dto.SalesCubeFilter;
+import com.biryanipos.backend.model.Order;
+import com.biryanipos.backend.model.OrderItem;
+import com.biryanipos.backend.model.OrderType;
+import com.biryanipos.backend.model.Payment;
+import com.biryanipos.backend.model.PaymentMode;
+import com.biryanipos.backend.repository.PaymentRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+// Sales pre-aggregated by day x hour x item x order type x payment mode and
+// held in memory, so a slice or a series costs a walk over the cells of the
+// days asked for, never over their orders. A day is a sorted array of cells:
+// a packed key, a count and an amount. Item lines count quantity and line
+// value; item code 0 holds the order totals (orders and amount billed).
+// A payment adds its cells once it commits. Any day can be rebuilt from the
+// payments table; closed days are saved under app.reporting.cache-directory
+// so a restart only rebuilds the days it has no file for, and a back-dated
+// payment change (see ReportDayCacheListener) rebuilds its day.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SalesCubeService {
+
+  public enum Dimension {
+    DAY, HOUR, ITEM, ORDER_TYPE, PAYMENT_MODE
+  }
+
+  public enum Bucket {
+    HOUR, DAY, WEEK, MONTH
+  }
+
+  private static final int ORDER_TOTALS = 0;
+  private static final OrderType[] ORDER_TYPES = OrderType.values();
+  private static final PaymentMode[] PAYMENT_MODES = PaymentMode.values();
+  private static final int UNKNOWN_TYPE = 0x7;
+  private static final int UNKNOWN_MODE = 0xF;
+  private static final int ITEM_MASK = 0xFFFFF000;
+  private static final int HOUR_MASK = 0x1F << 7;
+  private static final int TYPE_MASK = 0x7 << 4;
+  private static final int MODE_MASK = 0xF;
+  private static final int MAX_POINTS = 2000;
+  private static final long BUSY_POLL_MS = 200;
+  private static final String FILE_PREFIX = "cube-";
+
+  private final PaymentRepository paymentRepository;
+  private final ConnectionPools connectionPools;
+  private final EventDispatcher eventDispatcher;
+  private final ObjectMapper objectMapper;
+  private final AppProperties appProperties;
+  private final PlatformTransactionManager transactionManager;
+
+  private final NavigableMap<LocalDate, Slice> days = new ConcurrentSkipListMap<>();
+  private final Map<String, Integer> itemCodes = new ConcurrentHashMap<>();
+  private volatile String[] itemNames = { null }; // By code; grown under itemCodes
+  private final Map<LocalDate, Set<Long>> applied = new HashMap<>(); // Today's payment ids, guarded by this
+  private final Set<LocalDate> pendingRebuilds = ConcurrentHashMap.newKeySet();
+  private final LongAdder payments = new LongAdder();
+  private final LongAdder rebuilds = new LongAdder();
+  private ExecutorService executor;
+  private TransactionTemplate snapshotTx;
+  private Path directory;
+
+  // One day's cells, keys ascending. Never changed once built.
+  private record Slice(int[] keys, long[] counts, double[] amounts) {
+
+    static final Slice EMPTY = new Slice(new int[0], new long[0], new double[0]);
+
+    static Slice of(SortedMap<Integer, Cell> cells) {
+      Slice slice = new Slice(new int[cells.size()], new long[cells.size()], new double[cells.size()]);
+      int i = 0;
+      for (Map.Entry<Integer, Cell> cell : cells.entrySet()) {
+        slice.keys[i] = cell.getKey();
+        slice.counts[i] = cell.getValue().count;
+        slice.amounts[i] = cell.getValue().amount;
+        i++;
+      }
+      return slice;
+    }
+
+    Slice plus(Map<Integer, Cell> delta) {
+      SortedMap<Integer, Cell> cells = new TreeMap<>();
+      for (int i = 0; i < keys.length; i++) {
+        cells.put(keys[i], new Cell(counts[i], amounts[i]));
+      }
+      delta.forEach((key, cell) -> cells.computeIfAbsent(key, k -> new Cell(0, 0)).add(cell.count, cell.amount));
+      return of(cells);
+    }
+  }
+
+  private static final class Cell {
+    long count;
+    double amount;
+
+    Cell(long count, double amount) {
+      this.count = count;
+      this.amount = amount;
+    }
+
+    void add(long count, double amount) {
+      this.count += count;
+      this.amount += amount;
+    }
+  }
+
+  // How a closed day is written to its file; item is null on order totals
+  record SavedCell(int hour, OrderType orderType, PaymentMode paymentMode, String item, long count,
+      double amount) {
+  }
+
+  @PostConstruct
+  public void init() throws IOException {
+    directory = Path.of(appProperties.getReporting().getCacheDirectory());
+    Files.createDirectories(directory);
+    executor = Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "sales-cube");
+      t.setDaemon(true);
+      t.setPriority(Thread.MIN_PRIORITY);
+      return t;
+    });
+    // Not read-only: aggregates and payment ids must come from one snapshot
+    // of the primary, never from a lagging replica
+    snapshotTx = new TransactionTemplate(transactionManager);
+    loadSavedDays();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void catchUp() {
+    executor.execute(this::fillMissingDays);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  // Called inside the payment's transaction; the cube counts it after commit
+  public void record(Order order, Payment payment) {
+    LocalDateTime paidAt = payment.getPaidAt();
+    Map<Integer, Cell> delta = new HashMap<>();
+    for (OrderItem item : order.getItems()) {
+      add(delta, key(code(itemName(item)), paidAt.getHour(), order.getOrderType(), payment.getPaymentMode()),
+          item.getQuantity(), item.getQuantity() * item.getPrice());
+    }
+    add(delta, key(ORDER_TOTALS, paidAt.getHour(), order.getOrderType(), payment.getPaymentMode()),
+        1, payment.getTotalAmount());
+    Long paymentId = payment.getId();
+    eventDispatcher.afterCommit(() -> apply(paidAt.toLocalDate(), paymentId, delta));
+  }
+
+  // A payment dated before today changed; its day is rebuilt after the commit
+  public void invalidate(LocalDate day) {
+    eventDispatcher.afterCommit(() -> {
+      if (pendingRebuilds.add(day)) {
+        executor.execute(() -> rebuild(day));
+      }
+    });
+  }
+
+  // Queues days for a rebuild from the payments table, oldest first
+  public int rebuild(LocalDate start, LocalDate end) {
+    checkRange(start, end);
+    if (start.isBefore(LocalDate.now().minusDays(appProperties.getReporting().getCubeHistoryDays()))) {
+      throw new RuntimeException("The sales cube covers the last "
+          + appProperties.getReporting().getCubeHistoryDays() + " days");
+    }
+    int queued = 0;
+    for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+      LocalDate target = day;
+      if (pendingRebuilds.add(target)) {
+        executor.execute(() -> rebuild(target));
+        queued++;
+      }
+    }
+    return queued;
+  }
+
+  // A restore replaced the payments underneath: every day is dropped, on
+  // disk too, and read again from the payments table
+  public void reset() {
+    executor.execute(() -> {
+      synchronized (this) {
+        days.clear();
+        applied.clear();
+        deleteSavedDays();
+      }
+      fillMissingDays();
+    });
+  }
+
+  // The day closed a few hours ago is rebuilt once more and saved
+  @Scheduled(cron = "0 30 3 * * ?")
+  public void closeYesterday() {
+    LocalDate today = LocalDate.now();
+    synchronized (this) {
+      applied.keySet().removeIf(day -> day.isBefore(today));
+    }
+    rebuild(today.minusDays(1), today.minusDays(1));
+  }
+
+  // Measures per combination of the grouped dimensions. Orders and amount
+  // billed are left out once items are grouped or filtered, as an order
+  // spans items. Rows come in time order when grouped by DAY or HOUR first,
+  // by revenue otherwise.
+  public List<Map<String, Object>> query(LocalDate start, LocalDate end, List<Dimension> groupBy,
+      SalesCubeFilter filter, int limit) {
+    checkRange(start, end);
+    boolean linesOnly = groupBy.contains(Dimension.ITEM) || filter.hasItems();
+    boolean byDay = groupBy.contains(Dimension.DAY);
+    int mask = (groupBy.contains(Dimension.ITEM) ? ITEM_MASK : 0) | (groupBy.contains(Dimension.HOUR) ? HOUR_MASK : 0)
+        | (groupBy.contains(Dimension.ORDER_TYPE) ? TYPE_MASK : 0)
+        | (groupBy.contains(Dimension.PAYMENT_MODE) ? MODE_MASK : 0);
+    Set<Integer> items = itemFilter(filter);
+
+    Map<Long, double[]> groups = new HashMap<>();
+    for (Map.Entry<LocalDate, Slice> day : days.subMap(start, true, end, true).entrySet()) {
+      long dayPart = byDay ? day.getKey().toEpochDay() << 32 : 0;
+      Slice slice = day.getValue();
+      for (int i = 0; i < slice.keys.length; i++) {
+        int key = slice.keys[i];
+        if (matches(key, filter, items, linesOnly)) {
+          accumulate(groups.computeIfAbsent(dayPart | ((key & mask) & 0xFFFFFFFFL), k -> new double[4]),
+              key, slice, i);
+        }
+      }
+    }
+
+    Comparator<Map.Entry<Long, double[]>> byRevenue = Comparator.comparingDouble(group -> -group.getValue()[1]);
+    Comparator<Map.Entry<Long, double[]>> order = !groupBy.isEmpty()
+        && (groupBy.get(0) == Dimension.DAY || groupBy.get(0) == Dimension.HOUR)
+        ? Comparator.<Map.Entry<Long, double[]>>comparingLong(group -> group.getKey() >>> 32)
+            .thenComparingInt(group -> hour(group.getKey().intValue())).thenComparing(byRevenue)
+        : byRevenue;
+    return groups.entrySet().stream()
+        .sorted(order)
+        .limit(limit > 0 ? limit : Long.MAX_VALUE)
+        .map(group -> row(group.getKey(), group.getValue(), groupBy, linesOnly))
+        .toList();
+  }
+
+  // Totals per time bucket, empty buckets included. When the bucket asked
+  // for gives more than maxPoints points, the next coarser one is used.
+  public Map<String, Object> series(LocalDate start, LocalDate end, Bucket bucket, int maxPoints,
+      SalesCubeFilter filter) {
+    checkRange(start, end);
+    int cap = Math.max(2, Math.min(maxPoints, MAX_POINTS));
+    Bucket used = bucket != null ? bucket : Bucket.HOUR;
+    List<LocalDateTime> starts = bucketStarts(used, start, end);
+    while (starts.size() > cap && used != Bucket.MONTH) {
+      used = Bucket.values()[used.ordinal() + 1];
+      starts = bucketStarts(used, start, end);
+    }
+    if (starts.size() > cap) {
+      throw new RuntimeException("Too long a range for " + cap + " points");
+    }
+    boolean linesOnly = filter.hasItems();
+    Set<Integer> items = itemFilter(filter);
+
+    Map<LocalDateTime, double[]> points = new LinkedHashMap<>();
+    starts.forEach(point -> points.put(point, new double[4]));
+    for (Map.Entry<LocalDate, Slice> day : days.subMap(start, true, end, true).entrySet()) {
+      Slice slice = day.getValue();
+      for (int i = 0; i < slice.keys.length; i++) {
+        int key = slice.keys[i];
+        if (matches(key, filter, items, linesOnly)) {
+          accumulate(points.get(bucketStart(used, day.getKey(), hour(key))), key, slice, i);
+        }
+      }
+    }
+
+    List<Map<String, Object>> series = new ArrayList<>();
+    points.forEach((point, measures) -> {
+      Map<String, Object> row = new LinkedHashMap<>();
+      row.put("start", point);
+      putMeasures(row, measures, linesOnly);
+      series.add(row);
+    });
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("bucket", used);
+    result.put("points", series);
+    return result;
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("days", days.size());
+    stats.put("cells", days.values().stream().mapToLong(slice -> slice.keys.length).sum());
+    stats.put("items", itemCodes.size());
+    stats.put("firstDay", days.isEmpty() ? null : days.firstKey());
+    stats.put("paymentsApplied", payments.sum());
+    stats.put("daysRebuilt", rebuilds.sum());
+    stats.put("pendingRebuilds", pendingRebuilds.size());
+    return stats;
+  }
+
+  private synchronized void apply(LocalDate day, Long paymentId, Map<Integer, Cell> delta) {
+    Set<Long> seen = applied.get(day);
+    if (seen != null && !seen.add(paymentId)) {
+      return; // Already counted by a rebuild that read it
+    }
+    days.put(day, days.getOrDefault(day, Slice.EMPTY).plus(delta));
+    payments.increment();
+    if (day.isBefore(LocalDate.now()) && Files.exists(file(day))) {
+      save(day, days.get(day)); // Paid just before midnight, committed after
+    }
+  }
+
+  void rebuild(LocalDate day) {
+    pendingRebuilds.remove(day);
+    if (day.isBefore(LocalDate.now())) {
+      Slice slice = read(day, false);
+      synchronized (this) {
+        days.put(day, slice);
+        save(day, slice);
+      }
+    } else {
+      // Holds back apply() so a payment committing meanwhile is either in the
+      // snapshot, and its id recorded, or applied on top of it
+      synchronized (this) {
+        days.put(day, read(day, true));
+      }
+    }
+    rebuilds.increment();
+  }
+
+  private Slice read(LocalDate day, boolean recordIds) {
+    LocalDateTime start = day.atStartOfDay();
+    LocalDateTime end = start.plusDays(1);
+    return ConnectionPools.reporting(() -> snapshotTx.execute(status -> {
+      SortedMap<Integer, Cell> cells = new TreeMap<>();
+      for (Object[] row : paymentRepository.findCubeLinesBetween(start, end)) {
+        add(cells, key(code((String) row[3]), ((Number) row[0]).intValue(), (OrderType) row[1],
+            (PaymentMode) row[2]), ((Number) row[4]).longValue(), ((Number) row[5]).doubleValue());
+      }
+      for (Object[] row : paymentRepository.findCubeOrdersBetween(start, end)) {
+        add(cells, key(ORDER_TOTALS, ((Number) row[0]).intValue(), (OrderType) row[1], (PaymentMode) row[2]),
+            ((Number) row[3]).longValue(), ((Number) row[4]).doubleValue());
+      }
+      if (recordIds) {
+        applied.put(day, new HashSet<>(paymentRepository.findCompletedIdsBetween(start, end)));
+      }
+      return Slice.of(cells);
+    }));
+  }
+
+  // Today first, then every day back to the first payment that has no file
+  private void fillMissingDays() {
+    try {
+      LocalDate today = LocalDate.now();
+      rebuild(today);
+      LocalDateTime firstPaidAt = ConnectionPools.reporting(paymentRepository::findFirstPaidAt);
+      if (firstPaidAt == null) {
+        return;
+      }
+      LocalDate oldest = today.minusDays(appProperties.getReporting().getCubeHistoryDays());
+      LocalDate first = firstPaidAt.toLocalDate().isAfter(oldest) ? firstPaidAt.toLocalDate() : oldest;
+      int built = 0;
+      for (LocalDate day = today.minusDays(1); !day.isBefore(first); day = day.minusDays(1)) {
+        if (!days.containsKey(day)) {
+          while (connectionPools.isOltpBusy(appProperties.getReporting().getOltpBusyRatio())) {
+            Thread.sleep(BUSY_POLL_MS);
+          }
+          rebuild(day);
+          built++;
+        }
+      }
+      if (built > 0) {
+        log.info("Sales cube rebuilt {} days from payments", built);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt(); // Shutting down; the rest is built on the next start
+    } catch (RuntimeException e) {
+      log.error("Sales cube could not catch up with payment history", e);
+    }
+  }
+
+  private void loadSavedDays() throws IOException {
+    LocalDate today = LocalDate.now();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*.json")) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        try {
+          LocalDate day = LocalDate.parse(name.substring(FILE_PREFIX.length(), name.length() - ".json".length()));
+          if (!day.isBefore(today)) {
+            continue; // Written with a wrong clock; rebuilt instead
+          }
+          SortedMap<Integer, Cell> cells = new TreeMap<>();
+          for (SavedCell saved : objectMapper.readValue(file.toFile(), SavedCell[].class)) {
+            add(cells, key(saved.item() != null ? code(saved.item()) : ORDER_TOTALS, saved.hour(),
+                saved.orderType(), saved.paymentMode()), saved.count(), saved.amount());
+          }
+          days.put(day, Slice.of(cells));
+        } catch (IOException | RuntimeException e) {
+          log.warn("Unreadable sales cube file {}, the day is rebuilt: {}", name, e.getMessage());
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+  }
+
+  private void deleteSavedDays() {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*.json")) {
+      for (Path file : files) {
+        Files.deleteIfExists(file);
+      }
+    } catch (IOException e) {
+      log.warn("Could not delete saved sales cube days: {}", e.getMessage());
+    }
+  }
+
+  private void save(LocalDate day, Slice slice) {
+    List<SavedCell> cells = new ArrayList<>();
+    for (int i = 0; i < slice.keys.length; i++) {
+      int key = slice.keys[i];
+      cells.add(new SavedCell(hour(key), orderType(key), paymentMode(key),
+          item(key) == ORDER_TOTALS ? null : itemNames[item(key)], slice.counts[i], slice.amounts[i]));
+    }
+    Path file = file(day);
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      objectMapper.writeValue(tmp.toFile(), cells);
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warn("Could not save the sales cube for {}: {}", day, e.getMessage());
+    }
+  }
+
+  private Path file(LocalDate day) {
+    return directory.resolve(FILE_PREFIX + day + ".json");
+  }
+
+  private static void checkRange(LocalDate start, LocalDate end) {
+    if (start == null || end == null || end.isBefore(start)) {
+      throw new RuntimeException("A start and end date, in that order, are required");
+    }
+  }
+
+  // Codes of the filtered items; null when items are not filtered
+  private Set<Integer> itemFilter(SalesCubeFilter filter) {
+    if (!filter.hasItems()) {
+      return null;
+    }
+    Set<Integer> codes = new HashSet<>();
+    filter.getItems().forEach(name -> {
+      Integer code = itemCodes.get(name);
+      if (code != null) {
+        codes.add(code);
+      }
+    });
+    return codes;
+  }
+
+  private static boolean matches(int key, SalesCubeFilter filter, Set<Integer> items, boolean linesOnly) {
+    int item = item(key);
+    if (item == ORDER_TOTALS ? linesOnly : items != null && !items.contains(item)) {
+      return false;
+    }
+    int hour = hour(key);
+    if ((filter.getFromHour() != null && hour < filter.getFromHour())
+        || (filter.getToHour() != null && hour > filter.getToHour())) {
+      return false;
+    }
+    if (filter.getOrderTypes() != null && !filter.getOrderTypes().isEmpty()
+        && !filter.getOrderTypes().contains(orderType(key))) {
+      return false;
+    }
+    return filter.getPaymentModes() == null || filter.getPaymentModes().isEmpty()
+        || filter.getPaymentModes().contains(paymentMode(key));
+  }
+
+  // quantity, revenue, orders, billed
+  private static void accumulate(double[] measures, int key, Slice slice, int i) {
+    int offset = item(key) == ORDER_TOTALS ? 2 : 0;
+    measures[offset] += slice.counts[i];
+    measures[offset + 1] += slice.amounts[i];
+  }
+
+  private Map<String, Object> row(long group, double[] measures, List<Dimension> groupBy, boolean linesOnly) {
+    int key = (int) group;
+    Map<String, Object> row = new LinkedHashMap<>();
+    for (Dimension dimension : groupBy) {
+      switch (dimension) {
+        case DAY -> row.put("day", LocalDate.ofEpochDay(group >>> 32));
+        case HOUR -> row.put("hour", hour(key));
+        case ITEM -> row.put("item", itemNames[item(key)]);
+        case ORDER_TYPE -> row.put("orderType", orderType(key));
+        case PAYMENT_MODE -> row.put("paymentMode", paymentMode(key));
+      }
+    }
+    putMeasures(row, measures, linesOnly);
+    return row;
+  }
+
+  private static void putMeasures(Map<String, Object> row, double[] measures, boolean linesOnly) {
+    row.put("quantity", (long) measures[0]);
+    row.put("revenue", round(measures[1]));
+    if (!linesOnly) {
+      row.put("orders", (long) measures[2]);
+      row.put("billed", round(measures[3]));
+    }
+  }
+
+  private static List<LocalDateTime> bucketStarts(Bucket bucket, LocalDate start, LocalDate end) {
+    List<LocalDateTime> starts = new ArrayList<>();
+    LocalDateTime point = bucketStart(bucket, start, 0);
+    LocalDateTime last = end.atTime(23, 0);
+    // One past the cap is enough to know the bucket is too fine
+    while (!point.isAfter(last) && starts.size() <= MAX_POINTS) {
+      starts.add(point);
+      point = switch (bucket) {
+        case HOUR -> point.plusHours(1);
+        case DAY -> point.plusDays(1);
+        case WEEK -> point.plusWeeks(1);
+        case MONTH -> point.plusMonths(1);
+      };
+    }
+    return starts;
+  }
+
+  private static LocalDateTime bucketStart(Bucket bucket, LocalDate day, int hour) {
+    return switch (bucket) {
+      case HOUR -> day.atTime(hour, 0);
+      case DAY -> day.atStartOfDay();
+      case WEEK -> day.minusDays(day.getDayOfWeek().getValue() - DayOfWeek.MONDAY.getValue()).atStartOfDay();
+      case MONTH -> day.withDayOfMonth(1).atStartOfDay();
+    };
+  }
+
+  private int code(String name) {
+    Integer code = itemCodes.get(name);
+    if (code != null) {
+      return code;
+    }
+    synchronized (itemCodes) {
+      return itemCodes.computeIfAbsent(name, n -> {
+        String[] names = Arrays.copyOf(itemNames, itemNames.length + 1);
+        names[names.length - 1] = n;
+        itemNames = names;
+        return names.length - 1;
+      });
+    }
+  }
+
+  private static String itemName(OrderItem item) {
+    return item.getSnapshot() != null && item.getSnapshot().getName() != null ? item.getSnapshot().getName()
+        : "Unknown";
+  }
+
+  private static int key(int item, int hour, OrderType orderType, PaymentMode paymentMode) {
+    return item << 12 | hour << 7 | (orderType != null ? orderType.ordinal() : UNKNOWN_TYPE) << 4
+        | (paymentMode != null ? paymentMode.ordinal() : UNKNOWN_MODE);
+  }
+
+  private static int item(int key) {
+    return key >>> 12;
+  }
+
+  private static int hour(int key) {
+    return (key & HOUR_MASK) >>> 7;
+  }
+
+  private static OrderType orderType(int key) {
+    int ordinal = (key & TYPE_MASK) >>> 4;
+    return ordinal < ORDER_TYPES.length ? ORDER_TYPES[ordinal] : null;
+  }
+
+  private static PaymentMode paymentMode(int key) {
+    int ordinal = key & MODE_MASK;
+    return ordinal < PAYMENT_MODES.length ? PAYMENT_MODES[ordinal] : null;
+  }
+
+  private static void add(Map<Integer, Cell> cells, int key, long count, double amount) {
+    cells.computeIfAbsent(key, k -> new Cell(0, 0)).add(count, amount);
+  }
+
+  private static double round(double amount) {
+    return Math.round(amount * 100) / 100.0;
+  }
+}
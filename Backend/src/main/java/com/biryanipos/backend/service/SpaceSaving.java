@@ -0,0 +1,129 @@
+package com.biryanipos.backend.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// Space-Saving heavy hitters (Metwally et al.) with weighted updates: at most
+// `capacity` counters. An item without a counter, once all are taken, takes
+// over the smallest one and inherits its count as error. Counts are never
+// low and at most `error` high, and any item with more than total/capacity
+// of the weight is sure to hold a counter. Finding the smallest is a scan:
+// at a few dozen counters that beats keeping a heap ordered. Not thread-safe.
+public class SpaceSaving {
+
+  public static final class Counter {
+    private final String item;
+    private long count;
+    private long error;
+    private double revenue; // Only what was added while the item held the counter
+
+    Counter(String item, long count, long error, double revenue) {
+      this.item = item;
+      this.count = count;
+      this.error = error;
+      this.revenue = revenue;
+    }
+
+    public String getItem() {
+      return item;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getError() {
+      return error;
+    }
+
+    public double getRevenue() {
+      return revenue;
+    }
+  }
+
+  private final int capacity;
+  private final Map<String, Counter> counters = new HashMap<>();
+
+  public SpaceSaving(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.capacity = capacity;
+  }
+
+  public void offer(String item, long weight, double revenue) {
+    Counter counter = counters.get(item);
+    if (counter == null) {
+      if (counters.size() < capacity) {
+        counters.put(item, new Counter(item, weight, 0, revenue));
+        return;
+      }
+      Counter smallest = null;
+      for (Counter candidate : counters.values()) {
+        if (smallest == null || candidate.count < smallest.count) {
+          smallest = candidate;
+        }
+      }
+      counters.remove(smallest.item);
+      counters.put(item, new Counter(item, smallest.count + weight, smallest.count, revenue));
+      return;
+    }
+    counter.count += weight;
+    counter.revenue += revenue;
+  }
+
+  // What an item missing from a full sketch may have had, at most
+  public long minCount() {
+    if (counters.size() < capacity) {
+      return 0;
+    }
+    long min = Long.MAX_VALUE;
+    for (Counter counter : counters.values()) {
+      min = Math.min(min, counter.count);
+    }
+    return min;
+  }
+
+  public Collection<Counter> counters() {
+    return counters.values();
+  }
+
+  public boolean isEmpty() {
+    return counters.isEmpty();
+  }
+
+  public void clear() {
+    counters.clear();
+  }
+
+  // Adds the sketches up (Agarwal et al., mergeable summaries). An item one
+  // sketch has no counter for is charged that sketch's minCount as both
+  // count and error, so merged counts keep the never-low guarantee.
+  public static Map<String, Counter> merge(Collection<SpaceSaving> sketches) {
+    Map<String, Counter> merged = new HashMap<>();
+    long missingSoFar = 0;
+    for (SpaceSaving sketch : sketches) {
+      long missing = sketch.minCount();
+      for (Counter counter : merged.values()) {
+        if (!sketch.counters.containsKey(counter.item)) {
+          counter.count += missing;
+          counter.error += missing;
+        }
+      }
+      for (Counter counter : sketch.counters.values()) {
+        Counter total = merged.get(counter.item);
+        if (total == null) {
+          merged.put(counter.item, new Counter(counter.item, missingSoFar + counter.count,
+              missingSoFar + counter.error, counter.revenue));
+        } else {
+          total.count += counter.count;
+          total.error += counter.error;
+          total.revenue += counter.revenue;
+        }
+      }
+      missingSoFar += missing;
+    }
+    return merged;
+  }
+}
@@ -7,7 +7,6 @@ import com.biryanipos.backend.model.StockTransactionType;
 import com.biryanipos.backend.repository.StockItemRepository;
 import com.biryanipos.backend.repository.StockTransactionRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,7 +17,7 @@ import java.util.List;
 public class StockService {
   private final StockItemRepository stockItemRepository;
   private final StockTransactionRepository stockTransactionRepository;
-  private final SimpMessagingTemplate messagingTemplate;
+  private final EventDispatcher eventDispatcher;
 
   // ===== Stock Item CRUD =====
 
@@ -93,7 +92,7 @@ public class StockService {
 
     // Notify if low stock
     if (item.isLowStock()) {
-      messagingTemplate.convertAndSend("/topic/stock/alerts",
+      eventDispatcher.broadcast("/topic/stock/alerts",
           "RUNNING OUT OF STOCK: " + item.getName() + " (" + item.getCurrentStock() + " " + item.getUnit()
               + " remaining)");
     }
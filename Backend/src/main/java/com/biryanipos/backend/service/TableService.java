@@ -5,7 +5,6 @@ import com.biryanipos.backend.model.TableStatus;
 import com.biryanipos.backend.repository.TableRepository;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -14,7 +13,8 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TableService {
   private final TableRepository tableRepository;
-  private final SimpMessagingTemplate messagingTemplate;
+  private final EventDispatcher eventDispatcher;
+  private final QrMenuService qrMenuService; // Knows the table numbers QR carts may use
 
   public List<RestaurantTable> getAllTables() {
     return tableRepository.findAllByOrderByTableNumberAsc();
@@ -30,17 +30,23 @@ public class TableService {
   }
 
   public RestaurantTable createTable(RestaurantTable table) {
-    return tableRepository.save(table);
+    RestaurantTable saved = tableRepository.save(table);
+    qrMenuService.invalidate();
+    return saved;
   }
 
+  @RetryOnConflict
   public RestaurantTable updateTable(Long id, RestaurantTable updated) {
     RestaurantTable existing = tableRepository.findById(id)
         .orElseThrow(() -> new RuntimeException("Table not found: " + id));
     existing.setTableNumber(updated.getTableNumber());
     existing.setCapacity(updated.getCapacity());
-    return tableRepository.save(existing);
+    RestaurantTable saved = tableRepository.save(existing);
+    qrMenuService.invalidate();
+    return saved;
   }
 
+  @RetryOnConflict
   public RestaurantTable updateStatus(Long id, TableStatus status) {
     RestaurantTable table = tableRepository.findById(id)
         .orElseThrow(() -> new RuntimeException("Table not found: " + id));
@@ -49,12 +55,13 @@ public class TableService {
       table.setCurrentOrderId(null);
     }
     RestaurantTable saved = tableRepository.save(table);
-    messagingTemplate.convertAndSend("/topic/tables", "TABLE_UPDATE");
+    eventDispatcher.broadcast("/topic/tables", "TABLE_UPDATE");
     return saved;
   }
 
   public void deleteTable(Long id) {
     tableRepository.deleteById(id);
+    qrMenuService.invalidate();
   }
 
   @PostConstruct
@@ -0,0 +1,194 @@
+package com.biryanipos.backend.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Hashed timer wheel: a ring of buckets, one per tick, each a doubly linked
+// list of timeouts. Scheduling drops the timeout into the bucket its deadline
+// hashes to (deadlines beyond one revolution carry a round count) and
+// cancelling unlinks it, both O(1). A single thread advances one bucket per
+// tick and hands expired tasks to the executor. Timeouts fire at most one
+// tick late, never early, and at most once.
+public class TimerWheel {
+
+  private static final int PENDING = 0;
+  private static final int CANCELLED = 1;
+  private static final int EXPIRED = 2;
+
+  private final long tickNanos;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final Executor executor;
+  private final String name;
+  private final long startNanos = System.nanoTime();
+
+  private long tick; // Ticks already processed
+  private int pending;
+  private Thread worker;
+  private volatile boolean running;
+
+  public final class Timeout {
+    private final Runnable task;
+    private long remainingRounds;
+    private int state = PENDING;
+    private Bucket bucket;
+    private Timeout prev;
+    private Timeout next;
+
+    private Timeout(Runnable task) {
+      this.task = task;
+    }
+
+    // False if it already fired or was cancelled
+    public boolean cancel() {
+      synchronized (TimerWheel.this) {
+        if (state != PENDING) {
+          return false;
+        }
+        state = CANCELLED;
+        bucket.remove(this);
+        pending--;
+        return true;
+      }
+    }
+
+    public boolean isExpired() {
+      synchronized (TimerWheel.this) {
+        return state == EXPIRED;
+      }
+    }
+  }
+
+  private static final class Bucket {
+    private Timeout head;
+    private Timeout tail;
+
+    void add(Timeout timeout) {
+      timeout.bucket = this;
+      timeout.prev = tail;
+      if (tail == null) {
+        head = timeout;
+      } else {
+        tail.next = timeout;
+      }
+      tail = timeout;
+    }
+
+    void remove(Timeout timeout) {
+      if (timeout.prev == null) {
+        head = timeout.next;
+      } else {
+        timeout.prev.next = timeout.next;
+      }
+      if (timeout.next == null) {
+        tail = timeout.prev;
+      } else {
+        timeout.next.prev = timeout.prev;
+      }
+      timeout.prev = null;
+      timeout.next = null;
+      timeout.bucket = null;
+    }
+  }
+
+  // wheelSize is rounded up to a power of two
+  public TimerWheel(String name, long tickDuration, TimeUnit unit, int wheelSize, Executor executor) {
+    if (tickDuration <= 0 || wheelSize <= 0) {
+      throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+    }
+    int size = Integer.highestOneBit(wheelSize - 1) << 1;
+    if (wheelSize == 1) {
+      size = 1;
+    }
+    this.name = name;
+    this.tickNanos = unit.toNanos(tickDuration);
+    this.wheel = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = size - 1;
+    this.executor = executor;
+  }
+
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    running = true;
+    worker = new Thread(this::run, name);
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  public void stop() {
+    Thread thread;
+    synchronized (this) {
+      running = false;
+      thread = worker;
+      worker = null;
+    }
+    if (thread != null) {
+      thread.interrupt();
+    }
+  }
+
+  public synchronized Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+    Timeout timeout = new Timeout(task);
+    long deadline = System.nanoTime() - startNanos + unit.toNanos(Math.max(0, delay));
+    // A deadline that has already passed goes into the bucket processed next
+    long ticks = Math.max(deadline / tickNanos, tick);
+    timeout.remainingRounds = (ticks - tick) / wheel.length;
+    wheel[(int) (ticks & mask)].add(timeout);
+    pending++;
+    return timeout;
+  }
+
+  public synchronized int pendingCount() {
+    return pending;
+  }
+
+  private void run() {
+    while (running) {
+      long due = startNanos + (tick + 1) * tickNanos;
+      long wait = due - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(this, wait);
+        if (Thread.interrupted() && !running) {
+          return;
+        }
+        continue;
+      }
+      for (Timeout timeout : advance()) {
+        try {
+          executor.execute(timeout.task);
+        } catch (RuntimeException e) {
+          // Executor shut down; nothing left to deliver to
+          return;
+        }
+      }
+    }
+  }
+
+  private synchronized List<Timeout> advance() {
+    List<Timeout> expired = new ArrayList<>();
+    Bucket bucket = wheel[(int) (tick & mask)];
+    Timeout timeout = bucket.head;
+    while (timeout != null) {
+      Timeout next = timeout.next;
+      if (timeout.remainingRounds <= 0) {
+        bucket.remove(timeout);
+        timeout.state = EXPIRED;
+        pending--;
+        expired.add(timeout);
+      } else {
+        timeout.remainingRounds--;
+      }
+      timeout = next;
+    }
+    tick++;
+    return expired;
+  }
+}
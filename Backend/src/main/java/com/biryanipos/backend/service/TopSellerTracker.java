@@ -0,0 +1,247 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.config.ConnectionPools;
+import com.biryanipos.backend.dto.TopSeller;
+import com.biryanipos.backend.model.Order;
+import com.biryanipos.backend.model.Payment;
+import com.biryanipos.backend.repository.PaymentRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Live best sellers of the last hour, today and this week, fed by payments
+// as they commit. A window is a set of Space-Saving sketches: twelve
+// five-minute slices for the rolling hour, one per day for today and the
+// week. Its ranking merges them, so quantities are estimates with an error
+// bound; exact() adds up the payments table instead. When the order of a
+// window's top ranks changes, the new ranking goes to /topic/top-sellers.
+// The sketches are filled from payments on start, and again by BackupService
+// after a restore.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TopSellerTracker {
+
+  public enum Window {
+    LAST_HOUR, TODAY, THIS_WEEK
+  }
+
+  private static final String TOPIC = "/topic/top-sellers";
+  private static final int SLICE_MINUTES = 5;
+  private static final int SLICES = 60 / SLICE_MINUTES;
+  private static final long RECENT_MINUTES = 10; // Payments that may commit while the windows are filled
+
+  private final PaymentRepository paymentRepository;
+  private final EventDispatcher eventDispatcher;
+  private final AppProperties appProperties;
+  private final PlatformTransactionManager transactionManager;
+
+  // All guarded by this
+  private final SpaceSaving[] slices = new SpaceSaving[SLICES];
+  private final long[] sliceNumbers = new long[SLICES];
+  private final NavigableMap<LocalDate, SpaceSaving> days = new TreeMap<>();
+  private final Map<Window, List<String>> published = new EnumMap<>(Window.class);
+  private Set<Long> seeded = new HashSet<>(); // Recent payments the fill already counted
+  private TransactionTemplate snapshotTx;
+
+  private record Line(String item, long quantity, double revenue) {
+  }
+
+  @PostConstruct
+  public void init() {
+    for (int i = 0; i < SLICES; i++) {
+      slices[i] = new SpaceSaving(appProperties.getReporting().getTopSellerCounters());
+      sliceNumbers[i] = Long.MIN_VALUE;
+    }
+    // Not read-only: the sums and the recent ids must come from one snapshot
+    // of the primary, never from a lagging replica
+    snapshotTx = new TransactionTemplate(transactionManager);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public synchronized void seed() {
+    LocalDateTime now = LocalDateTime.now();
+    long current = sliceNumber(now);
+    try {
+      ConnectionPools.reporting(() -> snapshotTx.execute(status -> {
+        for (LocalDate day = weekStart(now.toLocalDate()); !day.isAfter(now.toLocalDate()); day = day.plusDays(1)) {
+          SpaceSaving sketch = day(day);
+          sketch.clear();
+          offerAll(sketch, day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+        }
+        for (long n = current - SLICES + 1; n <= current; n++) {
+          SpaceSaving sketch = slice(n);
+          sketch.clear(); // Anything offered before the fill is in its sums
+          offerAll(sketch, sliceStart(n), sliceStart(n + 1));
+        }
+        seeded = new HashSet<>(paymentRepository.findCompletedIdsBetween(now.minusMinutes(RECENT_MINUTES),
+            now.plusDays(1)));
+        return null;
+      }));
+    } catch (RuntimeException e) {
+      log.error("Could not fill the best seller windows from payments", e);
+    }
+    publishRankChanges();
+  }
+
+  // Called inside the payment's transaction; counted after the commit
+  public void record(Order order, Payment payment) {
+    List<Line> lines = order.getItems().stream()
+        .map(item -> new Line(item.getSnapshot() != null && item.getSnapshot().getName() != null
+            ? item.getSnapshot().getName() : "Unknown", item.getQuantity(), item.getQuantity() * item.getPrice()))
+        .toList();
+    Long paymentId = payment.getId();
+    LocalDateTime paidAt = payment.getPaidAt();
+    eventDispatcher.afterCommit(() -> offer(paymentId, paidAt, lines));
+  }
+
+  public synchronized List<TopSeller> top(Window window, int limit) {
+    return rank(window, limit);
+  }
+
+  // Exact figures for the same window, from the payments table
+  public List<TopSeller> exact(Window window, int limit) {
+    LocalDateTime now = LocalDateTime.now();
+    LocalDateTime start = switch (window) {
+      case LAST_HOUR -> sliceStart(sliceNumber(now) - SLICES + 1);
+      case TODAY -> now.toLocalDate().atStartOfDay();
+      case THIS_WEEK -> weekStart(now.toLocalDate()).atStartOfDay();
+    };
+    return paymentRepository.findItemSalesBetween(start, now.toLocalDate().plusDays(1).atStartOfDay(),
+        PageRequest.of(0, Math.max(1, limit))).stream()
+        .map(row -> new TopSeller((String) row[0], ((Number) row[1]).longValue(),
+            round(((Number) row[2]).doubleValue()), 0))
+        .toList();
+  }
+
+  // Rolls the hour and the week over when nothing is being sold. First run
+  // a minute in, by when every payment the fill raced with has been offered.
+  @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+  public synchronized void tick() {
+    seeded = new HashSet<>();
+    days.headMap(weekStart(LocalDate.now())).clear();
+    publishRankChanges();
+  }
+
+  private synchronized void offer(Long paymentId, LocalDateTime paidAt, List<Line> lines) {
+    if (seeded.remove(paymentId)) {
+      return; // Already in the sums the windows were filled from
+    }
+    long n = sliceNumber(paidAt);
+    long current = sliceNumber(LocalDateTime.now());
+    boolean inHour = n > current - SLICES && n <= current;
+    boolean inWeek = !paidAt.toLocalDate().isBefore(weekStart(LocalDate.now()));
+    for (Line line : lines) {
+      if (inWeek) {
+        day(paidAt.toLocalDate()).offer(line.item(), line.quantity(), line.revenue());
+      }
+      if (inHour) {
+        slice(n).offer(line.item(), line.quantity(), line.revenue());
+      }
+    }
+    publishRankChanges();
+  }
+
+  private void offerAll(SpaceSaving sketch, LocalDateTime start, LocalDateTime end) {
+    for (Object[] row : paymentRepository.findItemSalesBetween(start, end, Pageable.unpaged())) {
+      sketch.offer((String) row[0], ((Number) row[1]).longValue(), ((Number) row[2]).doubleValue());
+    }
+  }
+
+  private void publishRankChanges() {
+    int limit = appProperties.getReporting().getTopSellers();
+    for (Window window : Window.values()) {
+      List<TopSeller> ranking = rank(window, limit);
+      List<String> names = ranking.stream().map(TopSeller::getName).toList();
+      if (!names.equals(published.get(window))) {
+        published.put(window, names);
+        eventDispatcher.broadcast(TOPIC, Map.of("window", window, "items", ranking));
+      }
+    }
+  }
+
+  private List<TopSeller> rank(Window window, int limit) {
+    return SpaceSaving.merge(sketches(window)).values().stream()
+        .sorted(Comparator.comparingLong(SpaceSaving.Counter::getCount).reversed()
+            .thenComparing(SpaceSaving.Counter::getItem))
+        .limit(Math.max(1, limit))
+        .map(counter -> new TopSeller(counter.getItem(), counter.getCount(), round(counter.getRevenue()),
+            counter.getError()))
+        .toList();
+  }
+
+  private List<SpaceSaving> sketches(Window window) {
+    LocalDate today = LocalDate.now();
+    List<SpaceSaving> sketches = new ArrayList<>();
+    switch (window) {
+      case LAST_HOUR -> {
+        long current = sliceNumber(LocalDateTime.now());
+        for (int i = 0; i < SLICES; i++) {
+          if (sliceNumbers[i] > current - SLICES && sliceNumbers[i] <= current) {
+            sketches.add(slices[i]);
+          }
+        }
+      }
+      case TODAY -> {
+        if (days.containsKey(today)) {
+          sketches.add(days.get(today));
+        }
+      }
+      case THIS_WEEK -> sketches.addAll(days.tailMap(weekStart(today), true).values());
+    }
+    return sketches;
+  }
+
+  // The ring slot of five-minute slice n, emptied if it still holds an older one
+  private SpaceSaving slice(long n) {
+    int index = (int) Math.floorMod(n, (long) SLICES);
+    if (sliceNumbers[index] != n) {
+      slices[index].clear();
+      sliceNumbers[index] = n;
+    }
+    return slices[index];
+  }
+
+  private SpaceSaving day(LocalDate day) {
+    return days.computeIfAbsent(day, d -> new SpaceSaving(appProperties.getReporting().getTopSellerCounters()));
+  }
+
+  private static long sliceNumber(LocalDateTime time) {
+    return time.atZone(ZoneId.systemDefault()).toEpochSecond() / (SLICE_MINUTES * 60);
+  }
+
+  private static LocalDateTime sliceStart(long n) {
+    return LocalDateTime.ofInstant(Instant.ofEpochSecond(n * SLICE_MINUTES * 60), ZoneId.systemDefault());
+  }
+
+  private static LocalDate weekStart(LocalDate day) {
+    return day.minusDays(day.getDayOfWeek().getValue() - 1L);
+  }
+
+  private static double round(double amount) {
+    return Math.round(amount * 100) / 100.0;
+  }
+}
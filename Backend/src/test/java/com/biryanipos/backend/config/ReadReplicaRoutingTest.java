@@ -0,0 +1,89 @@
+package com.biryanipos.backend.config;
+
+import com.biryanipos.backend.model.MenuItem;
+import com.biryanipos.backend.service.MenuItemService;
+import com.biryanipos.backend.service.ReplicaLagMonitor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Two H2 databases stand in for the primary and its replica. The replica is a
+// snapshot taken before the last write, so which rows come back shows which
+// database a read went to.
+@SpringBootTest
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.show-sql=false",
+    "app.journal.enabled=false",
+    "app.printing.enabled=false",
+    "app.replica.url=" + ReadReplicaRoutingTest.REPLICA_URL,
+    "app.replica.username=sa",
+    "app.replica.password=",
+    "app.replica.lag-query=SELECT 0",
+    "app.replica.check-ms=3600000"
+})
+class ReadReplicaRoutingTest {
+
+  static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+  @Autowired
+  private MenuItemService menuItemService;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private ReplicaLagMonitor replicaLagMonitor;
+
+  @Autowired
+  private AppProperties appProperties;
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void staleTolerantReadsUseTheReplicaOnlyWhileItKeepsUp() throws Exception {
+    String snapshot = tempDir.resolve("primary.sql").toString().replace('\\', '/');
+    jdbcTemplate.execute("SCRIPT TO '" + snapshot + "'");
+    try (Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+        Statement statement = replica.createStatement()) {
+      statement.execute("RUNSCRIPT FROM '" + snapshot + "'");
+    }
+    MenuItem latest = menuItemService.createItem(MenuItem.builder()
+        .name("Replica Probe").price(10).category("Test").build());
+
+    replicaLagMonitor.check();
+    assertFalse(names(menuItemService.getAllItems()).contains("Replica Probe"));
+    assertFalse(menuItemService.getAllItems().isEmpty());
+    // Single-item reads are not marked @ReplicaRead
+    assertEquals("Replica Probe", menuItemService.getItemById(latest.getId()).getName());
+
+    appProperties.getReplica().setLagQuery("SELECT 60");
+    replicaLagMonitor.check();
+    assertTrue(names(menuItemService.getAllItems()).contains("Replica Probe"));
+
+    appProperties.getReplica().setLagQuery("SELECT broken");
+    replicaLagMonitor.check();
+    assertTrue(names(menuItemService.getAllItems()).contains("Replica Probe"));
+  }
+
+  private static List<String> names(List<MenuItem> items) {
+    return items.stream().map(MenuItem::getName).toList();
+  }
+}
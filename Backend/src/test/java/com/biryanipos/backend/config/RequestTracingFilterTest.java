@@ -0,0 +1,72 @@
+package com.biryanipos.backend.config;
+
+import com.biryanipos.backend.service.RequestTrace;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestTracingFilterTest {
+
+  @Test
+  void serverTimingReportsStatementsLocksPublishesAndBytes() throws Exception {
+    JdbcDataSource h2 = new JdbcDataSource();
+    h2.setURL("jdbc:h2:mem:tracing" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+    DataSource dataSource = TracingDataSource.wrap(h2, RequestTrace::statementExecuted);
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE stock (id INT PRIMARY KEY, qty INT)");
+      statement.execute("INSERT INTO stock VALUES (1, 10)");
+    }
+
+    RequestTracingFilter filter = new RequestTracingFilter(new AppProperties());
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/orders");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    RequestTrace[] traced = new RequestTrace[1];
+    filter.doFilter(request, response, (req, res) -> {
+      try (Connection connection = dataSource.getConnection()) {
+        connection.setAutoCommit(false);
+        connection.prepareStatement("SELECT qty FROM stock WHERE id = 1 FOR UPDATE").executeQuery().next();
+        connection.prepareStatement("UPDATE stock SET qty = qty - 1 WHERE id = 1").executeUpdate();
+        connection.commit();
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+      RequestTrace.published();
+      // Work handed to another thread counts once the trace is attached there
+      RequestTrace trace = RequestTrace.current();
+      traced[0] = trace;
+      CompletableFuture.runAsync(() -> {
+        RequestTrace.attach(trace);
+        RequestTrace.published();
+        RequestTrace.attach(null);
+      }).join();
+      res.getWriter().write("{\"id\":1}");
+    });
+
+    String timing = response.getHeader("Server-Timing");
+    assertNotNull(timing);
+    assertTrue(timing.contains("desc=\"2 statements\""), timing);
+    assertTrue(timing.contains("desc=\"2 publishes\""), timing);
+    assertTrue(timing.contains("desc=\"8 bytes\""), timing);
+    assertTrue(traced[0].getLockMillis() > 0);
+    assertTrue(traced[0].getLockMillis() < traced[0].getDbMillis());
+    assertEquals("{\"id\":1}", response.getContentAsString());
+    assertNull(RequestTrace.current());
+  }
+
+  @Test
+  void reportDownloadsStreamStraightToTheClient() throws Exception {
+    RequestTracingFilter filter = new RequestTracingFilter(new AppProperties());
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/reports/jobs/12/download");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    filter.doFilter(request, response, (req, res) -> assertSame(response, res));
+    assertNull(response.getHeader("Server-Timing"));
+  }
+}
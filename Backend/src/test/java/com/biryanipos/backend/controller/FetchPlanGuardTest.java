@@ -0,0 +1,180 @@
+package com.biryanipos.backend.controller;
+
+import com.biryanipos.backend.security.JwtUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+// Renders every entity-returning endpoint with open-in-view off. Any
+// association the fetch plan missed is touched by Jackson after the service
+// transaction has closed and fails the request with a lazy-loading error.
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:fetchplan;DB_CLOSE_DELAY=-1",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.open-in-view=false",
+    "spring.jpa.show-sql=false",
+    "spring.jpa.properties.hibernate.enable_lazy_load_no_trans=false",
+    "app.journal.enabled=false",
+    "app.printing.enabled=false",
+    "app.reporting.cache-directory=target/report-cache-${random.uuid}",
+    "app.reporting.job-directory=target/report-jobs-${random.uuid}"
+})
+class FetchPlanGuardTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private JwtUtil jwtUtil;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  private String token;
+
+  @BeforeEach
+  void setUp() {
+    token = "Bearer " + jwtUtil.generateToken("admin", "ADMIN");
+  }
+
+  @Test
+  void endpointsRenderWithoutLazyLoadingOutsideTransactions() throws Exception {
+    call(post("/api/menu-items/seed"));
+    JsonNode menu = call(get("/api/menu-items"));
+    assertTrue(menu.size() > 0);
+    long menuItemId = menu.get(0).path("id").asLong();
+
+    JsonNode order = call(post("/api/orders").contentType(MediaType.APPLICATION_JSON).content(
+        "{\"customerName\":\"Guest\",\"orderType\":\"TAKEAWAY\",\"items\":[{\"menuItemId\":" + menuItemId
+            + ",\"quantity\":2}]}"));
+    long orderId = order.path("id").asLong();
+    assertEquals(menuItemId, order.path("items").get(0).path("menuItem").path("id").asLong());
+
+    call(post("/api/orders/" + orderId + "/items").contentType(MediaType.APPLICATION_JSON)
+        .content("[{\"menuItemId\":" + menuItemId + ",\"quantity\":1}]"));
+    call(put("/api/orders/" + orderId + "/extend-time").param("minutes", "5"));
+    call(put("/api/orders/" + orderId + "/status").param("status", "COOKING"));
+    long itemId = call(get("/api/orders/" + orderId)).path("items").get(0).path("id").asLong();
+    call(put("/api/orders/items/" + itemId + "/status").param("status", "READY"));
+
+    String payment = "{\"orderId\":" + orderId + ",\"paymentMode\":\"CASH\",\"amountReceived\":5000}";
+    JsonNode paid = call(post("/api/payments").header("Idempotency-Key", "pay-" + orderId)
+        .contentType(MediaType.APPLICATION_JSON).content(payment));
+    // A timed-out client retrying with its key gets the same payment, not "Order already paid"
+    JsonNode retried = call(post("/api/payments").header("Idempotency-Key", "pay-" + orderId)
+        .contentType(MediaType.APPLICATION_JSON).content(payment));
+    assertEquals(paid.path("id").asLong(), retried.path("id").asLong());
+
+    JsonNode bill = call(post("/api/orders/quick-bill").contentType(MediaType.APPLICATION_JSON).content(
+        "{\"customerName\":\"Walk In\",\"paymentMode\":\"UPI\",\"items\":[{\"menuItemId\":" + menuItemId
+            + ",\"quantity\":1}]}"));
+    assertEquals("COMPLETED", bill.path("order").path("paymentStatus").asText());
+    assertTrue(bill.path("receipt").asText().contains("Order: #" + bill.path("order").path("id").asLong()));
+
+    String today = LocalDate.now().toString();
+    call(get("/api/orders"));
+    call(get("/api/orders/active"));
+    call(get("/api/orders/kitchen"));
+    call(get("/api/orders/by-date").param("start", today).param("end", today));
+    call(get("/api/orders/" + orderId + "/print"));
+    call(get("/api/payments/bill/" + orderId));
+    call(get("/api/payments/order/" + orderId));
+
+    call(get("/api/menu-items/available"));
+    call(get("/api/menu-items/" + menuItemId));
+    call(get("/api/menu-items/search").param("q", menu.get(0).path("name").asText().substring(0, 3)));
+    call(get("/api/menu-items/category/" + menu.get(0).path("category").asText()));
+    call(get("/api/menu-items/costing"));
+    call(put("/api/menu-items/" + menuItemId + "/toggle-availability"));
+
+    JsonNode stock = call(get("/api/stock/items"));
+    call(get("/api/stock/items/low-stock"));
+    call(get("/api/stock/transactions/item/" + stock.get(0).path("id").asLong()));
+    call(get("/api/stock/transactions/waste"));
+    call(get("/api/stock/transactions/expiring"));
+    call(get("/api/expenses"));
+    call(get("/api/expenses/today"));
+    call(get("/api/procurement/pos"));
+
+    JsonNode second = call(post("/api/orders").contentType(MediaType.APPLICATION_JSON).content(
+        "{\"customerName\":\"Guest\",\"orderType\":\"TAKEAWAY\",\"items\":[{\"menuItemId\":" + menuItemId
+            + ",\"quantity\":1}]}"));
+    call(get("/api/orders/kitchen/batches"));
+    JsonNode ready = call(post("/api/orders/kitchen/batches/ready").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"menuItemId\":" + menuItemId + ",\"portions\":1}"));
+    assertEquals(1, ready.path("assigned").asInt());
+    call(put("/api/orders/" + second.path("id").asLong() + "/cancel"));
+
+    // QR cart from a customer phone, confirmed by staff; the toggled item is gone from the menu
+    JsonNode qrItems = call(get("/api/qr/menu")).path("categories").get(0).path("items");
+    assertNotEquals(menuItemId, qrItems.get(0).path("id").asLong());
+    JsonNode cart = call(post("/api/qr/tables/T1/carts").contentType(MediaType.APPLICATION_JSON).content(
+        "{\"items\":[{\"menuItemId\":" + qrItems.get(0).path("id").asLong() + ",\"quantity\":1}]}"));
+    JsonNode qrOrder = call(post("/api/qr/carts/" + cart.path("id").asText() + "/confirm"));
+    assertEquals("CUSTOMER_QR", qrOrder.path("createdBy").asText());
+
+    // Reports complete asynchronously on the reporting bulkhead
+    JsonNode sales = call(get("/api/reports/sales").param("start", today).param("end", today));
+    assertTrue(sales.path("totalOrders").asLong() > 0, sales::toString);
+    call(get("/api/reports/dashboard"));
+
+    // Yesterday is closed and now cached; a back-dated expense drops it
+    String yesterday = LocalDate.now().minusDays(1).toString();
+    JsonNode twoDays = call(get("/api/reports/sales").param("start", yesterday).param("end", today));
+    call(post("/api/expenses").contentType(MediaType.APPLICATION_JSON).content(
+        "{\"category\":\"Gas\",\"description\":\"Cylinder\",\"amount\":500,\"expenseDate\":\"" + yesterday + "\"}"));
+    JsonNode corrected = call(get("/api/reports/sales").param("start", yesterday).param("end", today));
+    assertEquals(twoDays.path("totalExpenses").asDouble() + 500, corrected.path("totalExpenses").asDouble());
+    assertEquals(twoDays.path("totalOrders").asLong(), corrected.path("totalOrders").asLong());
+
+    // The same range as a background GST export
+    long jobId = call(post("/api/reports/jobs").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"type\":\"GST\",\"start\":\"" + yesterday + "\",\"end\":\"" + today + "\"}"))
+        .path("id").asLong();
+    JsonNode job = call(get("/api/reports/jobs/" + jobId));
+    for (int i = 0; i < 100 && !job.path("status").asText().equals("DONE"); i++) {
+      Thread.sleep(50);
+      job = call(get("/api/reports/jobs/" + jobId));
+    }
+    assertEquals("DONE", job.path("status").asText(), job::toString);
+    String csv = mockMvc.perform(get("/api/reports/jobs/" + jobId + "/download").header("Authorization", token))
+        .andReturn().getResponse().getContentAsString();
+    assertTrue(csv.startsWith("Date,Invoice No"), csv);
+    assertTrue(csv.lines().count() > 1, csv);
+  }
+
+  private JsonNode call(MockHttpServletRequestBuilder request) throws Exception {
+    MvcResult started = mockMvc.perform(request.header("Authorization", token)).andReturn();
+    MvcResult result = started.getRequest().isAsyncStarted()
+        ? mockMvc.perform(asyncDispatch(started)).andReturn()
+        : started;
+    String body = result.getResponse().getContentAsString();
+    assertNull(result.getResolvedException(), () -> result.getRequest().getRequestURI() + ": "
+        + result.getResolvedException());
+    assertTrue(result.getResponse().getStatus() < 300,
+        () -> result.getRequest().getRequestURI() + ": " + result.getResponse().getStatus() + " " + body);
+    return body.isEmpty() || !body.startsWith("{") && !body.startsWith("[")
+        ? objectMapper.nullNode()
+        : objectMapper.readTree(body);
+  }
+}
@@ -0,0 +1,282 @@
+package com.biryanipos.backend.repository;
+
+import com.biryanipos.backend.config.TracingDataSource;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs every query method of every repository against a year of seeded
+// trade and EXPLAINs the SQL it sends. A plan that reads a large table end
+// to end, instead of seeking an index, fails the build. Plans come from H2
+// in MySQL mode: the same indexes, a simpler planner, enough to catch a
+// dropped index or a query rewritten past one.
+@SpringBootTest
+@Import(QueryPlanTest.SqlCaptureConfig.class)
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:plans;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.show-sql=false",
+    "app.journal.enabled=false",
+    "app.printing.enabled=false"
+})
+class QueryPlanTest {
+
+  private static final int ORDERS = 20000;
+
+  // Tables that grow with trade; master data (menu, stock items, tables,
+  // users...) stays small enough to scan
+  private static final Set<String> LARGE_TABLES = Set.of("orders", "order_items", "payments",
+      "payment_details", "stock_transactions", "expenses", "print_jobs");
+
+  // Methods that read a large table end to end on purpose
+  private static final Map<String, String> WHOLE_TABLE_BY_DESIGN = Map.of(
+      "OrderRepository.findAllWithItems", "the full order history screen",
+      "ExpenseRepository.findAll", "the expense ledger screen",
+      "PrintJobRepository.findTop100ByOrderByIdDesc", "reads the newest 100 off the primary key and stops",
+      "OrderItemRepository.backfillSnapshots", "one-off copy of menu details at startup");
+
+  // H2 plan comments: "/* public.orders.tableScan */" is a full scan, so is
+  // an index walked without a condition ("/* public.idx_order_created */")
+  private static final Pattern ACCESS = Pattern.compile(
+      "\"public\"\\.\"(\\w+)\"(?: \"\\w+\")? /\\* ([^*]+?) \\*/");
+
+  private static final List<String> captured = new ArrayList<>();
+  private static volatile Thread capturing;
+
+  @Autowired
+  private ApplicationContext context;
+  @Autowired
+  private DataSource dataSource;
+  @Autowired
+  private EntityManager entityManager;
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @TestConfiguration(proxyBeanMethods = false)
+  static class SqlCaptureConfig {
+    @Bean
+    static BeanPostProcessor sqlCapturingDataSource() {
+      return new BeanPostProcessor() {
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+          return bean instanceof DataSource source ? TracingDataSource.wrap(source, (sql, nanos) -> {
+            if (Thread.currentThread() == capturing && sql != null) {
+              captured.add(sql);
+            }
+          }) : bean;
+        }
+      };
+    }
+  }
+
+  @Test
+  void repositoryQueriesSeekOnLargeTables() {
+    JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+    seed(jdbc);
+
+    List<String> fullScans = new ArrayList<>();
+    int explained = 0;
+    for (Class<?> repository : repositories()) {
+      Object bean = context.getBean(repository);
+      for (Method method : repository.getDeclaredMethods()) {
+        Query query = method.getAnnotation(Query.class);
+        if (method.isDefault() || (query != null && query.nativeQuery() && query.value().startsWith("ALTER"))) {
+          continue;
+        }
+        String name = repository.getSimpleName() + "." + method.getName();
+        List<String> statements = capture(bean, method);
+        assertFalse(statements.isEmpty(), name + " ran no SQL");
+        for (String statement : statements) {
+          String plan = explain(jdbc, statement);
+          explained++;
+          Matcher access = ACCESS.matcher(plan);
+          while (access.find()) {
+            String table = access.group(1);
+            String index = access.group(2);
+            boolean scan = index.endsWith(".tableScan") || !index.contains(":");
+            if (scan && LARGE_TABLES.contains(table) && !WHOLE_TABLE_BY_DESIGN.containsKey(name)) {
+              fullScans.add(name + " scans " + table + ":\n  " + plan);
+            }
+          }
+        }
+      }
+    }
+    assertTrue(explained > 50, "only " + explained + " statements explained");
+    assertTrue(fullScans.isEmpty(), "Full scans on large tables:\n" + String.join("\n", fullScans));
+  }
+
+  private static String explain(JdbcTemplate jdbc, String sql) {
+    return jdbc.execute((Connection connection) -> {
+      try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+        // Plans are made for any value; the parameters only need to be bound
+        int parameters = explain.getParameterMetaData().getParameterCount();
+        for (int i = 1; i <= parameters; i++) {
+          explain.setNull(i, Types.NULL);
+        }
+        try (ResultSet plan = explain.executeQuery()) {
+          plan.next();
+          return plan.getString(1).replaceAll("\\s+", " ");
+        }
+      }
+    });
+  }
+
+  private static String range(int rows) {
+    return "(SELECT \"X\" AS x FROM SYSTEM_RANGE(1, " + rows + "))";
+  }
+
+  // A year of trading at a busy counter, written straight into the tables
+  private static void seed(JdbcTemplate jdbc) {
+    jdbc.execute("SET REFERENTIAL_INTEGRITY FALSE");
+    jdbc.execute("INSERT INTO orders (id, version, order_type, status, payment_status, table_number, created_at, "
+        + "completed_at, subtotal, cgst, sgst, total_amount, discount, gst_enabled, frozen, created_by) "
+        + "SELECT 1000000 + x, 0, CASE WHEN MOD(x, 3) = 0 THEN 'TAKEAWAY' ELSE 'DINE_IN' END, "
+        + "CASE WHEN MOD(x, 40) = 0 THEN 'CANCELLED' ELSE 'PAID' END, 'COMPLETED', 'T' || MOD(x, 20), "
+        + "DATEADD('MINUTE', -30 * x, CURRENT_TIMESTAMP), DATEADD('MINUTE', 20 - 30 * x, CURRENT_TIMESTAMP), "
+        + "400, 10, 10, 420, 0, MOD(x, 2) = 0, TRUE, 'waiter' || MOD(x, 5) FROM " + range(ORDERS));
+    jdbc.execute("INSERT INTO order_items (id, version, order_id, menu_item_id, item_name, item_gst_percent, "
+        + "item_station, quantity, price, status) "
+        + "SELECT 1000000 + x, 0, 1000000 + (x + 2) / 3, 1 + MOD(x, 12), 'Item ' || MOD(x, 12), 5, 'KITCHEN', "
+        + "1 + MOD(x, 3), 140, 'SERVED' FROM " + range(3 * ORDERS));
+    jdbc.execute("INSERT INTO payments (id, version, order_id, payment_mode, payment_status, subtotal, cgst, sgst, "
+        + "total_amount, discount, gst_enabled, amount_received, change_returned, paid_at) "
+        + "SELECT 1000000 + x, 0, 1000000 + x, CASE MOD(x, 3) WHEN 0 THEN 'CASH' WHEN 1 THEN 'UPI' ELSE 'CARD' END, "
+        + "'COMPLETED', 400, 10, 10, 420, 0, MOD(x, 2) = 0, 420, 0, DATEADD('MINUTE', 25 - 30 * x, CURRENT_TIMESTAMP) "
+        + "FROM " + range(ORDERS));
+    jdbc.execute("INSERT INTO payment_details (id, payment_id, payment_mode, amount) "
+        + "SELECT 1000000 + x, 1000000 + x, 'CASH', 420 FROM " + range(ORDERS));
+    jdbc.execute("INSERT INTO stock_transactions (id, stock_item_id, transaction_type, quantity, unit_cost_snapshot, "
+        + "expiry_date, order_id, transaction_date) "
+        + "SELECT 1000000 + x, 1 + MOD(x, 8), CASE MOD(x, 10) WHEN 0 THEN 'PURCHASE' WHEN 1 THEN 'WASTE' "
+        + "ELSE 'ORDER_DEDUCT' END, 0.25, 220, CASE MOD(x, 10) WHEN 0 THEN DATEADD('DAY', 30 - x / 50, CURRENT_DATE) END, "
+        + "1000000 + x / 2, DATEADD('MINUTE', -15 * x, CURRENT_TIMESTAMP) FROM " + range(2 * ORDERS));
+    jdbc.execute("INSERT INTO expenses (id, category, description, amount, expense_date, gst_amount, is_recurring) "
+        + "SELECT 1000000 + x, 'SUPPLIES', 'Supplies', 500, DATEADD('DAY', -x / 10, CURRENT_DATE), 25, MOD(x, 100) = 0 "
+        + "FROM " + range(ORDERS / 5));
+    jdbc.execute("INSERT INTO print_jobs (id, printer_name, job_type, order_id, content, dedupe_key, status, attempts, "
+        + "created_at, printed_at) "
+        + "SELECT 1000000 + x, 'KITCHEN', 'KOT', 1000000 + x / 2, 'KOT', 'k' || x, 'PRINTED', 1, "
+        + "DATEADD('MINUTE', -15 * x, CURRENT_TIMESTAMP), DATEADD('MINUTE', -15 * x, CURRENT_TIMESTAMP) "
+        + "FROM " + range(2 * ORDERS));
+    jdbc.execute("INSERT INTO outbox_events (id, event_type, payload, attempts, created_at) "
+        + "SELECT 1000000 + x, 'ORDER', '{}', 0, DATEADD('MINUTE', -x, CURRENT_TIMESTAMP) "
+        + "FROM " + range(ORDERS / 10));
+    jdbc.execute("SET REFERENTIAL_INTEGRITY TRUE");
+    // Row counts and selectivity for the planner
+    jdbc.execute("ANALYZE");
+  }
+
+  private List<String> capture(Object bean, Method method) {
+    List<String> sql = new ArrayList<>();
+    transactionTemplate.executeWithoutResult(status -> {
+      status.setRollbackOnly();
+      captured.clear();
+      capturing = Thread.currentThread();
+      try {
+        method.invoke(bean, arguments(method));
+        entityManager.flush();
+      } catch (Exception e) {
+        throw new IllegalStateException(method + ": " + e, e);
+      } finally {
+        capturing = null;
+      }
+      sql.addAll(captured);
+    });
+    return sql;
+  }
+
+  private Object[] arguments(Method method) {
+    Class<?>[] types = method.getParameterTypes();
+    Type[] generic = method.getGenericParameterTypes();
+    Object[] args = new Object[types.length];
+    for (int i = 0; i < types.length; i++) {
+      args[i] = sample(types[i], generic[i]);
+    }
+    return args;
+  }
+
+  private Object sample(Class<?> type, Type generic) {
+    if (type == Long.class || type == long.class) {
+      return 1L;
+    }
+    if (type == Integer.class || type == int.class) {
+      return 1;
+    }
+    if (type == Boolean.class || type == boolean.class) {
+      return true;
+    }
+    if (type == String.class) {
+      return "x";
+    }
+    if (type == LocalDateTime.class) {
+      return LocalDateTime.now();
+    }
+    if (type == LocalDate.class) {
+      return LocalDate.now();
+    }
+    if (type.isEnum()) {
+      return type.getEnumConstants()[0];
+    }
+    if (Pageable.class.isAssignableFrom(type)) {
+      return PageRequest.of(0, 10);
+    }
+    if (Collection.class.isAssignableFrom(type)) {
+      Class<?> element = (Class<?>) ((ParameterizedType) generic).getActualTypeArguments()[0];
+      return List.of(sample(element, element));
+    }
+    if (type.isAnnotationPresent(Entity.class)) {
+      return entityManager.getReference(type, 1L);
+    }
+    throw new IllegalArgumentException("No sample for " + type);
+  }
+
+  private List<Class<?>> repositories() {
+    Repositories repositories = new Repositories(context);
+    List<Class<?>> interfaces = new ArrayList<>();
+    for (Class<?> domainType : repositories) {
+      repositories.getRepositoryInformationFor(domainType)
+          .ifPresent(info -> interfaces.add(info.getRepositoryInterface()));
+    }
+    interfaces.sort(Comparator.comparing(Class::getSimpleName));
+    return interfaces;
+  }
+}
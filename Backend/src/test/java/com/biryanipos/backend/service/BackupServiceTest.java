@@ -0,0 +1,155 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.dto.BackupInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class BackupServiceTest {
+
+  @TempDir
+  Path backupDir;
+
+  private JdbcTemplate jdbc;
+  private BackupService backupService;
+  private final InvoiceNumberService invoiceNumberService = mock(InvoiceNumberService.class);
+  private final ReportDayCache reportDayCache = mock(ReportDayCache.class);
+  private final SalesCubeService salesCubeService = mock(SalesCubeService.class);
+  private final TopSellerTracker topSellerTracker = mock(TopSellerTracker.class);
+
+  @BeforeEach
+  void setUp() {
+    JdbcDataSource dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:backup" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+    jdbc = new JdbcTemplate(dataSource);
+    jdbc.execute("CREATE TABLE orders (id BIGINT AUTO_INCREMENT PRIMARY KEY, status VARCHAR(20), "
+        + "total_amount DECIMAL(10,2), paid BOOLEAN, updated_at TIMESTAMP)");
+    jdbc.execute("CREATE TABLE stock_transactions (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+        + "order_id BIGINT REFERENCES orders(id), quantity DOUBLE)");
+
+    AppProperties props = new AppProperties();
+    props.getSystem().setBackupPath(backupDir.toString());
+    props.getSystem().setBackupChunkRows(2);
+    backupService = new BackupService(dataSource, new ObjectMapper(), props, invoiceNumberService, reportDayCache,
+        salesCubeService, topSellerTracker);
+  }
+
+  @Test
+  void incrementalChainRestoresLatestState() {
+    for (int i = 1; i <= 5; i++) {
+      jdbc.update("INSERT INTO orders (status, total_amount, paid, updated_at) VALUES ('NEW', ?, FALSE, "
+          + "TIMESTAMP '2026-01-01 10:00:00')", i * 100);
+      jdbc.update("INSERT INTO stock_transactions (order_id, quantity) VALUES (?, -1.5)", i);
+    }
+    String full = backupService.performBackup();
+    assertTrue(full.endsWith("_full.zip"), full);
+
+    // Stamped as the app does, with the time of the change
+    jdbc.update("UPDATE orders SET status = 'PAID', paid = TRUE, updated_at = CURRENT_TIMESTAMP WHERE id = 2");
+    jdbc.update("INSERT INTO orders (status, total_amount, paid, updated_at) VALUES ('NEW', 999.99, NULL, "
+        + "CURRENT_TIMESTAMP)");
+    jdbc.update("INSERT INTO stock_transactions (order_id, quantity) VALUES (6, -2)");
+    jdbc.update("DELETE FROM stock_transactions WHERE id IN (1, 3)");
+    jdbc.update("DELETE FROM orders WHERE id IN (1, 3)");
+    String incremental = backupService.performIncrementalBackup();
+    assertTrue(incremental.endsWith("_incr.zip"), incremental);
+
+    List<BackupInfo> backups = backupService.listBackups();
+    assertEquals(2, backups.size());
+    assertEquals(incremental, backups.get(0).getFileName());
+    assertEquals(full, backups.get(0).getBaseBackup());
+    // Only the updated and the new order plus one stock row
+    assertEquals(3, backups.get(0).getRowCount());
+
+    jdbc.update("DELETE FROM stock_transactions");
+    jdbc.update("DELETE FROM orders");
+
+    Map<String, Object> result = backupService.restoreBackup(incremental);
+    assertEquals(List.of(full, incremental), result.get("archives"));
+    verify(invoiceNumberService).reset();
+    verify(reportDayCache).clear();
+    verify(salesCubeService).reset();
+    verify(topSellerTracker).seed();
+
+    // Deleted rows stay deleted
+    assertEquals(List.of(2L, 4L, 5L, 6L), jdbc.queryForList("SELECT id FROM orders ORDER BY id", Long.class));
+    assertEquals(List.of(2L, 4L, 5L, 6L),
+        jdbc.queryForList("SELECT id FROM stock_transactions ORDER BY id", Long.class));
+    assertEquals("PAID", jdbc.queryForObject("SELECT status FROM orders WHERE id = 2", String.class));
+    assertEquals(Boolean.TRUE, jdbc.queryForObject("SELECT paid FROM orders WHERE id = 2", Boolean.class));
+    assertNull(jdbc.queryForObject("SELECT paid FROM orders WHERE id = 6", Boolean.class));
+    assertEquals(0, jdbc.queryForObject("SELECT total_amount FROM orders WHERE id = 6", java.math.BigDecimal.class)
+        .compareTo(new java.math.BigDecimal("999.99")));
+
+    // Identity continues after the restored ids
+    jdbc.update("INSERT INTO orders (status) VALUES ('NEW')");
+    assertEquals(7L, jdbc.queryForObject("SELECT MAX(id) FROM orders", Long.class));
+  }
+
+  @Test
+  void aRowCommittedAfterTheScanWithAnEarlierStampIsInTheNextIncremental() {
+    jdbc.update("INSERT INTO orders (status, updated_at) VALUES ('NEW', CURRENT_TIMESTAMP)");
+    jdbc.update("INSERT INTO orders (status, updated_at) VALUES ('NEW', CURRENT_TIMESTAMP)");
+    backupService.performBackup();
+    // Stamped while the backup ran, committed once it was done
+    jdbc.update("UPDATE orders SET status = 'PAID', updated_at = DATEADD('SECOND', -30, CURRENT_TIMESTAMP) "
+        + "WHERE id = 1");
+    String incremental = backupService.performIncrementalBackup();
+
+    jdbc.update("UPDATE orders SET status = 'LOST'");
+    backupService.restoreBackup(incremental);
+    assertEquals("PAID", jdbc.queryForObject("SELECT status FROM orders WHERE id = 1", String.class));
+  }
+
+  @Test
+  void aTableThatFailsHalfwayIsLeftAsItWas() {
+    for (int i = 1; i <= 5; i++) {
+      jdbc.update("INSERT INTO orders (status, updated_at) VALUES (?, CURRENT_TIMESTAMP)",
+          i == 5 ? "CANCELLED" : "NEW");
+    }
+    String full = backupService.performBackup();
+    // The third chunk no longer fits the column
+    jdbc.update("UPDATE orders SET status = 'PAID'");
+    jdbc.execute("ALTER TABLE orders ALTER COLUMN status VARCHAR(5)");
+
+    assertThrows(RuntimeException.class, () -> backupService.restoreBackup(full));
+    assertEquals(5, jdbc.queryForObject("SELECT COUNT(*) FROM orders", Integer.class));
+    assertEquals(5, jdbc.queryForObject("SELECT COUNT(*) FROM orders WHERE status = 'PAID'", Integer.class));
+  }
+
+  @Test
+  void corruptedChunkIsRejectedBeforeRestore() throws Exception {
+    jdbc.update("INSERT INTO orders (status, updated_at) VALUES ('NEW', CURRENT_TIMESTAMP)");
+    String full = backupService.performBackup();
+
+    Path archive = backupDir.resolve(full);
+    try (FileSystem zip = FileSystems.newFileSystem(URI.create("jar:" + archive.toUri()), Map.of())) {
+      try (OutputStream out = Files.newOutputStream(zip.getPath("data/ORDERS/chunk-00001.jsonl"))) {
+        out.write("[1,\"TAMPERED\",null,null,null]".getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    jdbc.update("UPDATE orders SET status = 'PAID'");
+
+    RuntimeException e = assertThrows(RuntimeException.class, () -> backupService.restoreBackup(full));
+    assertTrue(e.getMessage().contains("checksum"), e.getMessage());
+    assertEquals("PAID", jdbc.queryForObject("SELECT status FROM orders", String.class));
+  }
+}
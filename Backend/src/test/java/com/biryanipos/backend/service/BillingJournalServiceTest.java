@@ -0,0 +1,168 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.dto.JournalReceipt;
+import com.biryanipos.backend.dto.OrderRequest;
+import com.biryanipos.backend.dto.PaymentRequest;
+import com.biryanipos.backend.model.Order;
+import com.biryanipos.backend.model.OrderType;
+import com.biryanipos.backend.model.Payment;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BillingJournalServiceTest {
+
+  @TempDir
+  Path dir;
+
+  private final List<BillingJournalService> started = new ArrayList<>();
+  private final List<OrderLaneExecutor> lanes = new ArrayList<>();
+
+  @AfterEach
+  void tearDown() {
+    started.forEach(BillingJournalService::stop);
+    lanes.forEach(OrderLaneExecutor::shutdown);
+  }
+
+  @Test
+  void anAppliedCommandAnswersWithTheSavedOrderAndLeavesNothingPending() {
+    OrderService orderService = mock(OrderService.class);
+    Order saved = new Order();
+    saved.setId(42L);
+    when(orderService.createOrder(any(), any())).thenReturn(saved);
+    BillingJournalService journal = start(orderService, mock(EventDispatcher.class));
+
+    JournalReceipt receipt = journal.submitOrder(order("Ravi"), null);
+    assertTrue(receipt.isApplied());
+    assertSame(saved, receipt.getResult());
+    verify(orderService).createOrder(argThat(r -> r.getCustomerName().equals("Ravi")), eq(receipt.getJournalRef()));
+    assertEquals(0, journal.pendingCount());
+  }
+
+  @Test
+  void aCommandTheDatabaseNeverTookIsReplayedOnRestartAndOnlyThatOne() {
+    OrderService down = mock(OrderService.class);
+    when(down.createOrder(argThat(r -> r != null && r.getCustomerName().equals("Ravi")), any()))
+        .thenReturn(new Order());
+    when(down.createOrder(argThat(r -> r != null && r.getCustomerName().equals("Meena")), any()))
+        .thenThrow(new CannotCreateTransactionException("Connection refused"));
+    BillingJournalService first = start(down, mock(EventDispatcher.class));
+    JournalReceipt applied = first.submitOrder(order("Ravi"), null);
+    JournalReceipt queued = first.submitOrder(order("Meena"), null);
+    assertTrue(applied.isApplied());
+    assertEquals("QUEUED", queued.getStatus());
+    first.stop();
+
+    OrderService up = mock(OrderService.class);
+    Order saved = new Order();
+    saved.setId(7L);
+    when(up.createOrder(any(), any())).thenReturn(saved);
+    EventDispatcher eventDispatcher = mock(EventDispatcher.class);
+    BillingJournalService second = start(up, eventDispatcher);
+
+    verify(eventDispatcher, timeout(5000)).broadcast(eq("/topic/journal"), argThat(e ->
+        e instanceof Map<?, ?> event && event.get("journalRef").equals(queued.getJournalRef())
+            && event.get("status").equals("APPLIED") && event.get("orderId").equals(7L)));
+    verify(up).createOrder(argThat(r -> r.getCustomerName().equals("Meena")), eq(queued.getJournalRef()));
+    verify(up, never()).createOrder(any(), eq(applied.getJournalRef()));
+    assertEquals(0, second.pendingCount());
+  }
+
+  @Test
+  void anOrderWaitingForTheDatabaseDoesNotHoldUpOtherTables() {
+    OrderService orderService = mock(OrderService.class);
+    when(orderService.createOrder(argThat(r -> r != null && r.getTableNumber().equals("1")), any()))
+        .thenThrow(new CannotCreateTransactionException("Lock wait timeout"));
+    when(orderService.createOrder(argThat(r -> r != null && r.getTableNumber().equals("2")), any()))
+        .thenReturn(new Order());
+    BillingJournalService journal = start(orderService, mock(EventDispatcher.class));
+
+    assertEquals("QUEUED", journal.submitOrder(dineIn("1"), null).getStatus());
+    assertTrue(journal.submitOrder(dineIn("2"), null).isApplied());
+    assertEquals(1, journal.pendingCount());
+  }
+
+  @Test
+  void aPaymentForAQueuedOrderAppliesAfterTheOrder() {
+    OrderService orderService = mock(OrderService.class);
+    AtomicInteger attempts = new AtomicInteger();
+    AtomicBoolean orderSaved = new AtomicBoolean();
+    when(orderService.createOrder(any(), any())).thenAnswer(inv -> {
+      if (attempts.incrementAndGet() <= 4) {
+        throw new CannotCreateTransactionException("Connection refused");
+      }
+      orderSaved.set(true);
+      return new Order();
+    });
+    PaymentService paymentService = mock(PaymentService.class);
+    AtomicBoolean paidAfterOrder = new AtomicBoolean();
+    when(paymentService.processPayment(any(), any())).thenAnswer(inv -> {
+      paidAfterOrder.set(orderSaved.get());
+      return new Payment();
+    });
+    BillingJournalService journal = start(orderService, paymentService, mock(EventDispatcher.class));
+
+    JournalReceipt order = journal.submitOrder(dineIn("3"), null);
+    assertEquals("QUEUED", order.getStatus());
+    PaymentRequest payment = new PaymentRequest();
+    payment.setOrderJournalRef(order.getJournalRef());
+    journal.submitPayment(payment, null);
+
+    verify(paymentService, timeout(5000)).processPayment(any(), any());
+    assertTrue(paidAfterOrder.get());
+    assertEquals(5, attempts.get());
+  }
+
+  private BillingJournalService start(OrderService orderService, EventDispatcher eventDispatcher) {
+    return start(orderService, mock(PaymentService.class), eventDispatcher);
+  }
+
+  private BillingJournalService start(OrderService orderService, PaymentService paymentService,
+      EventDispatcher eventDispatcher) {
+    AppProperties appProperties = new AppProperties();
+    appProperties.getJournal().setDirectory(dir.toString());
+    appProperties.getJournal().setSegmentSizeMb(1);
+    appProperties.getJournal().setApplyTimeoutMs(200);
+    appProperties.getJournal().setInitialRetryBackoffMs(20);
+    OrderLaneExecutor laneExecutor = new OrderLaneExecutor(appProperties);
+    laneExecutor.init();
+    lanes.add(laneExecutor);
+    BillingJournalService journal = new BillingJournalService(orderService, paymentService,
+        mock(QuickBillService.class), mock(IdempotencyStore.class), new ObjectMapper().findAndRegisterModules(),
+        appProperties, eventDispatcher, laneExecutor);
+    journal.open();
+    journal.start();
+    started.add(journal);
+    return journal;
+  }
+
+  private static OrderRequest order(String customer) {
+    OrderRequest request = new OrderRequest();
+    request.setCustomerName(customer);
+    request.setItems(List.of());
+    return request;
+  }
+
+  private static OrderRequest dineIn(String table) {
+    OrderRequest request = order("Table " + table);
+    request.setOrderType(OrderType.DINE_IN);
+    request.setTableNumber(table);
+    return request;
+  }
+}
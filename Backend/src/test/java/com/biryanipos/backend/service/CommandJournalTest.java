@@ -0,0 +1,124 @@
+package com.biryanipos.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandJournalTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void concurrentCommandsSurviveReopenUntilResolved() throws Exception {
+    CommandJournal journal = new CommandJournal(dir, 1024 * 1024);
+    assertTrue(journal.open().isEmpty());
+
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<?>> writers = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      int thread = t;
+      writers.add(pool.submit(() -> {
+        for (int i = 0; i < 50; i++) {
+          long seq = journal.append(CommandJournal.COMMAND, "cmd-" + thread + "-" + i, body("order " + i));
+          journal.sync(seq);
+        }
+      }));
+    }
+    for (Future<?> writer : writers) {
+      writer.get();
+    }
+    pool.shutdown();
+    journal.append(CommandJournal.APPLIED, "cmd-0-0", new byte[0]);
+    journal.append(CommandJournal.REJECTED, "cmd-1-0", new byte[0]);
+    journal.close();
+
+    CommandJournal reopened = new CommandJournal(dir, 1024 * 1024);
+    List<CommandJournal.Entry> pending = reopened.open();
+    assertEquals(398, pending.size());
+    assertTrue(pending.stream().noneMatch(e -> e.getRef().equals("cmd-0-0") || e.getRef().equals("cmd-1-0")));
+    for (int i = 1; i < pending.size(); i++) {
+      assertTrue(pending.get(i).getSeq() > pending.get(i - 1).getSeq());
+    }
+    assertEquals("order 1", new String(pending.stream().filter(e -> e.getRef().equals("cmd-0-1")).findFirst()
+        .orElseThrow().getBody(), StandardCharsets.UTF_8));
+    reopened.close();
+  }
+
+  @Test
+  void tornTailIsDiscardedAndOverwritten() throws Exception {
+    CommandJournal journal = new CommandJournal(dir, 64 * 1024);
+    journal.open();
+    journal.sync(journal.append(CommandJournal.COMMAND, "first", body("complete")));
+    long second = journal.append(CommandJournal.COMMAND, "second", body("torn by power loss"));
+    journal.sync(second);
+    journal.close();
+
+    // Damage the last byte of the second record, as a write cut short would
+    Path segment = singleSegment();
+    int secondEnd = 2 * 17 + (2 + 5 + 8) + (2 + 6 + 18);
+    try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+      file.seek(secondEnd - 1);
+      file.write('X');
+    }
+
+    CommandJournal reopened = new CommandJournal(dir, 64 * 1024);
+    List<CommandJournal.Entry> pending = reopened.open();
+    assertEquals(List.of("first"), pending.stream().map(CommandJournal.Entry::getRef).toList());
+    reopened.sync(reopened.append(CommandJournal.COMMAND, "third", body("after recovery")));
+    reopened.close();
+
+    CommandJournal again = new CommandJournal(dir, 64 * 1024);
+    assertEquals(List.of("first", "third"), again.open().stream().map(CommandJournal.Entry::getRef).toList());
+    again.close();
+  }
+
+  @Test
+  void fullyAppliedSegmentsAreDeleted() throws Exception {
+    CommandJournal journal = new CommandJournal(dir, 256);
+    journal.open();
+    for (int i = 0; i < 20; i++) {
+      journal.append(CommandJournal.COMMAND, "cmd-" + i, body("payload " + i));
+    }
+    assertTrue(segmentCount() > 2);
+
+    for (int i = 0; i < 20; i++) {
+      journal.append(CommandJournal.APPLIED, "cmd-" + i, new byte[0]);
+    }
+    assertEquals(0, journal.pendingCount());
+    assertEquals(1, segmentCount());
+    journal.close();
+
+    CommandJournal reopened = new CommandJournal(dir, 256);
+    assertTrue(reopened.open().isEmpty());
+    reopened.close();
+  }
+
+  private static byte[] body(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private Path singleSegment() throws Exception {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.findFirst().orElseThrow();
+    }
+  }
+
+  private long segmentCount() throws Exception {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.count();
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConflictRetryAspectTest {
+
+  static class OrderWriter {
+    int failuresLeft;
+    int attempts;
+
+    @RetryOnConflict
+    public String addItems() {
+      attempts++;
+      if (failuresLeft-- > 0) {
+        throw new ObjectOptimisticLockingFailureException("Order", 1L);
+      }
+      return "saved";
+    }
+  }
+
+  private ConflictRetryAspect aspect;
+  private OrderWriter target;
+  private OrderWriter proxy;
+
+  @BeforeEach
+  void setUp() {
+    AppProperties props = new AppProperties();
+    props.getConcurrency().setConflictBackoffMs(1);
+    aspect = new ConflictRetryAspect(props);
+    target = new OrderWriter();
+    AspectJProxyFactory factory = new AspectJProxyFactory(target);
+    factory.setProxyTargetClass(true);
+    factory.addAspect(aspect);
+    proxy = factory.getProxy();
+  }
+
+  @Test
+  void conflictingWriteIsRetriedAndCounted() {
+    target.failuresLeft = 2;
+    assertEquals("saved", proxy.addItems());
+    assertEquals(3, target.attempts);
+
+    @SuppressWarnings("unchecked")
+    Map<String, Object> stats = (Map<String, Object>) aspect.getStats().get("OrderWriter.addItems");
+    assertEquals(1L, stats.get("calls"));
+    assertEquals(2L, stats.get("conflicts"));
+    assertEquals(1L, stats.get("retriedOk"));
+  }
+
+  @Test
+  void givesUpAfterMaxRetries() {
+    target.failuresLeft = 10;
+    assertThrows(ObjectOptimisticLockingFailureException.class, () -> proxy.addItems());
+    assertEquals(4, target.attempts);
+
+    @SuppressWarnings("unchecked")
+    Map<String, Object> stats = (Map<String, Object>) aspect.getStats().get("OrderWriter.addItems");
+    assertEquals(1L, stats.get("exhausted"));
+  }
+}
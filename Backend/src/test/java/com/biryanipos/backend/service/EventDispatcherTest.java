@@ -0,0 +1,80 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EventDispatcherTest {
+
+  private SimpMessagingTemplate messagingTemplate;
+  private EventDispatcher dispatcher;
+  private TransactionTemplate tx;
+
+  @BeforeEach
+  void setUp() {
+    JdbcDataSource dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:events" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+    DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+    tx = new TransactionTemplate(transactionManager);
+
+    messagingTemplate = mock(SimpMessagingTemplate.class);
+    dispatcher = new EventDispatcher(messagingTemplate, new ObjectMapper(), new AppProperties(),
+        mock(OutboxEventRepository.class), transactionManager);
+    dispatcher.init();
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    dispatcher.shutdown();
+  }
+
+  @Test
+  void broadcastWaitsForCommitAndIsDroppedOnRollback() throws Exception {
+    tx.executeWithoutResult(status -> {
+      dispatcher.broadcast("/topic/orders", Map.of("id", 1));
+      verifyNoInteractions(messagingTemplate);
+    });
+    verify(messagingTemplate, timeout(2000)).convertAndSend(eq("/topic/orders"), any(JsonNode.class));
+
+    assertThrows(RuntimeException.class, () -> tx.executeWithoutResult(status -> {
+      dispatcher.broadcast("/topic/stock/alerts", "RUNNING OUT OF STOCK: Rice");
+      throw new RuntimeException("Insufficient stock");
+    }));
+    dispatcher.broadcast("/topic/tables", "TABLE_UPDATE");
+    verify(messagingTemplate, timeout(2000)).convertAndSend("/topic/tables", "TABLE_UPDATE");
+    verify(messagingTemplate, never()).convertAndSend(eq("/topic/stock/alerts"), any(Object.class));
+  }
+
+  @Test
+  void publishedEventRunsHandlerAfterCommit() throws Exception {
+    CountDownLatch handled = new CountDownLatch(1);
+    double[] amount = new double[1];
+    dispatcher.registerHandler("CUSTOMER_VISIT", event -> {
+      amount[0] = event.path("amount").asDouble();
+      handled.countDown();
+    });
+
+    tx.executeWithoutResult(status -> {
+      dispatcher.publish("CUSTOMER_VISIT", Map.of("phone", "9876543210", "amount", 450.0));
+      assertEquals(1, handled.getCount());
+    });
+    assertTrue(handled.await(2, TimeUnit.SECONDS));
+    assertEquals(450.0, amount[0]);
+  }
+}
@@ -0,0 +1,62 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.exception.IdempotencyConflictException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyStoreTest {
+
+  private AppProperties appProperties;
+  private IdempotencyStore store;
+
+  @BeforeEach
+  void setUp() {
+    appProperties = new AppProperties();
+    appProperties.getIdempotency().setMaxEntries(3);
+    store = new IdempotencyStore(appProperties);
+  }
+
+  @Test
+  void retriesShareTheFirstAttemptsResult() {
+    IdempotencyStore.Claim first = store.claim("ORDER", "tab-7-1", "abc");
+    IdempotencyStore.Claim retry = store.claim("ORDER", "tab-7-1", "abc");
+    assertTrue(first.isFirst());
+    assertFalse(retry.isFirst());
+    assertEquals(first.getRef(), retry.getRef());
+    // The same key on another endpoint is a different command
+    assertNotEquals(first.getRef(), store.claim("PAYMENT", "tab-7-1", "abc").getRef());
+
+    first.getResult().complete("order 42");
+    assertEquals("order 42", retry.getResult().join());
+    assertEquals("order 42", store.claim("ORDER", "tab-7-1", "abc").getResult().join());
+
+    assertThrows(IdempotencyConflictException.class, () -> store.claim("ORDER", "tab-7-1", "other body"));
+  }
+
+  @Test
+  void failedAttemptsAreForgottenSoTheClientCanRetry() {
+    IdempotencyStore.Claim first = store.claim("PAYMENT", "k", "abc");
+    first.getResult().completeExceptionally(new RuntimeException("Out of stock"));
+    IdempotencyStore.Claim again = store.claim("PAYMENT", "k", "fixed body");
+    assertTrue(again.isFirst());
+    assertEquals(first.getRef(), again.getRef()); // Same ref, so the database still dedupes
+  }
+
+  @Test
+  void entriesAreBoundedAndExpire() {
+    for (int i = 0; i < 5; i++) {
+      store.claim("ORDER", "k" + i, "abc").getResult().complete(i);
+    }
+    assertEquals(3, store.size());
+    assertTrue(store.claim("ORDER", "k0", "abc").isFirst()); // Evicted
+
+    appProperties.getIdempotency().setTtlMinutes(0);
+    store = new IdempotencyStore(appProperties);
+    store.claim("ORDER", "k", "abc");
+    assertTrue(store.claim("ORDER", "k", "abc").isFirst()); // Already expired
+    assertEquals(1, store.size());
+  }
+}
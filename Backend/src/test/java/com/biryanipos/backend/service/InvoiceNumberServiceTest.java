@@ -0,0 +1,251 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.model.InvoiceSequence;
+import com.biryanipos.backend.repository.InvoiceSequenceRepository;
+import com.biryanipos.backend.repository.PaymentRepository;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class InvoiceNumberServiceTest {
+
+  private static final String FY = "26-27";
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void rolledBackNumbersAreReusedPerSeriesAndYear() {
+    Harness h = new Harness("jdbc:h2:mem:invoice" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", 3);
+    h.createSchema();
+
+    h.bill(InvoiceNumberService.SERIES_GST, FY, false);
+    h.bill(InvoiceNumberService.SERIES_GST, FY, true); // Rolled back: 2 is issued next
+    h.bill(InvoiceNumberService.SERIES_NON_GST, FY, false);
+    h.bill(InvoiceNumberService.SERIES_GST, FY, false);
+    h.bill(InvoiceNumberService.SERIES_GST, "27-28", false);
+    for (int i = 0; i < 4; i++) {
+      h.bill(InvoiceNumberService.SERIES_GST, FY, false);
+    }
+
+    assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), h.committed(InvoiceNumberService.SERIES_GST, FY));
+    assertEquals(List.of(1L), h.committed(InvoiceNumberService.SERIES_NON_GST, FY));
+    assertEquals(List.of(1L), h.committed(InvoiceNumberService.SERIES_GST, "27-28"));
+    // Block of 3: six numbers needed two reservations, not six row locks
+    assertEquals(6L, h.highWater.get("GST/26-27"));
+    verify(h.sequences, times(2)).save(argThat(row -> row.getSeries().equals("GST")
+        && row.getFiscalYear().equals(FY)));
+
+    assertEquals("26-27", InvoiceNumberService.fiscalYear(LocalDate.of(2026, 4, 1)));
+    assertEquals("25-26", InvoiceNumberService.fiscalYear(LocalDate.of(2026, 3, 31)));
+    assertEquals("INV/26-27/000042", h.service.format(InvoiceNumberService.SERIES_GST, FY, 42));
+  }
+
+  @Test
+  void aBillWaitsForTheOneBeforeItSoNumbersFollowCommitOrder() throws Exception {
+    Harness h = new Harness("jdbc:h2:mem:invoice" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", 10);
+    h.createSchema();
+    CountDownLatch numbered = new CountDownLatch(1);
+    CountDownLatch rollBack = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      Future<Long> first = pool.submit(() -> h.tx.execute(status -> {
+        long seq = h.service.allocate(InvoiceNumberService.SERIES_GST, FY);
+        numbered.countDown();
+        await(rollBack);
+        status.setRollbackOnly();
+        return seq;
+      }));
+      assertTrue(numbered.await(5, TimeUnit.SECONDS));
+      Future<Long> second = pool.submit(() -> h.bill(InvoiceNumberService.SERIES_GST, FY, false));
+      Thread.sleep(200);
+      assertFalse(second.isDone()); // Cannot take 2 while 1 may still commit
+
+      rollBack.countDown();
+      assertEquals(1L, first.get(5, TimeUnit.SECONDS));
+      assertEquals(1L, second.get(5, TimeUnit.SECONDS)); // Not 2: the bill before it never committed
+      assertEquals(2L, h.bill(InvoiceNumberService.SERIES_GST, FY, false));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void resetResumesFromThePaymentsARestoreLeft() {
+    Harness h = new Harness("jdbc:h2:mem:invoice" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", 10);
+    h.createSchema();
+    for (int i = 0; i < 5; i++) {
+      h.bill(InvoiceNumberService.SERIES_GST, FY, false);
+    }
+    h.jdbc.update("DELETE FROM payments WHERE invoice_seq > 3"); // Restored from an earlier backup
+
+    h.service.reset();
+    assertEquals(4L, h.bill(InvoiceNumberService.SERIES_GST, FY, false));
+  }
+
+  @Test
+  void killedProcessLeavesNoGapsAfterRestart() throws Exception {
+    String url = "jdbc:h2:file:" + dir.resolve("pos").toAbsolutePath() + ";FILE_LOCK=NO;WRITE_DELAY=0;DB_CLOSE_DELAY=-1";
+    Process worker = new ProcessBuilder(
+        Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+        "-cp", System.getProperty("java.class.path"), Worker.class.getName(), url)
+        .redirectError(ProcessBuilder.Redirect.INHERIT)
+        .start();
+    Set<Long> acknowledged = new HashSet<>();
+    try (BufferedReader out = new BufferedReader(
+        new InputStreamReader(worker.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while (acknowledged.size() < 300 && (line = out.readLine()) != null) {
+        if (line.startsWith("committed ")) {
+          acknowledged.add(Long.parseLong(line.substring(10).trim()));
+        }
+      }
+      // Killed with bills in flight and part of a block reserved but unused
+      worker.destroyForcibly();
+      assertTrue(worker.waitFor(10, TimeUnit.SECONDS));
+    }
+    assertEquals(300, acknowledged.size(), "worker stopped early");
+
+    Harness restarted = new Harness(url, 10);
+    List<Long> beforeRestart = restarted.committed(InvoiceNumberService.SERIES_GST, FY);
+    assertTrue(beforeRestart.containsAll(acknowledged));
+    for (int i = 0; i < 40; i++) {
+      restarted.bill(InvoiceNumberService.SERIES_GST, FY, false);
+    }
+
+    List<Long> all = restarted.committed(InvoiceNumberService.SERIES_GST, FY);
+    assertEquals(LongStream.rangeClosed(1, all.size()).boxed().collect(Collectors.toList()), all);
+    assertEquals(beforeRestart.size() + 40, all.size());
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // Bills continuously from several threads until killed; prints each
+  // invoice number once its transaction has committed
+  public static class Worker {
+    public static void main(String[] args) throws Exception {
+      Harness h = new Harness(args[0], 10);
+      h.createSchema();
+      ExecutorService pool = Executors.newFixedThreadPool(4);
+      for (int t = 0; t < 4; t++) {
+        pool.execute(() -> {
+          while (true) {
+            Long seq = h.bill(InvoiceNumberService.SERIES_GST, FY, ThreadLocalRandom.current().nextInt(7) == 0);
+            if (seq != null) {
+              synchronized (System.out) {
+                System.out.println("committed " + seq);
+                System.out.flush();
+              }
+            }
+          }
+        });
+      }
+      pool.awaitTermination(1, TimeUnit.HOURS);
+    }
+  }
+
+  // payments is a real H2 table so rollbacks and a killed process behave as
+  // they would in MySQL; invoice_sequences rows are kept in memory
+  private static class Harness {
+    final JdbcTemplate jdbc;
+    final TransactionTemplate tx;
+    final InvoiceNumberService service;
+    final InvoiceSequenceRepository sequences = mock(InvoiceSequenceRepository.class);
+    final Map<String, Long> highWater = new ConcurrentHashMap<>();
+
+    Harness(String url, int blockSize) {
+      JdbcDataSource dataSource = new JdbcDataSource();
+      dataSource.setURL(url);
+      DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+      jdbc = new JdbcTemplate(dataSource);
+      tx = new TransactionTemplate(transactionManager);
+      AppProperties props = new AppProperties();
+      props.getInvoice().setBlockSize(blockSize);
+
+      when(sequences.findForUpdate(any(), any())).thenAnswer(inv -> {
+        String series = inv.getArgument(0);
+        String fiscalYear = inv.getArgument(1);
+        Long limit = highWater.get(series + "/" + fiscalYear);
+        return Optional.ofNullable(limit).map(l -> new InvoiceSequence(1L, series, fiscalYear, l, null));
+      });
+      when(sequences.save(any())).thenAnswer(inv -> {
+        InvoiceSequence row = inv.getArgument(0);
+        highWater.put(row.getSeries() + "/" + row.getFiscalYear(), row.getHighWater());
+        return row;
+      });
+      PaymentRepository payments = mock(PaymentRepository.class);
+      when(payments.findMaxInvoiceSeq(any(), any())).thenAnswer(inv -> jdbc.queryForObject(
+          "SELECT COALESCE(MAX(invoice_seq), 0) FROM payments WHERE invoice_series = ? AND invoice_year = ?",
+          Long.class, inv.getArgument(0), inv.getArgument(1)));
+      when(payments.countInvoiceSeqs(any(), any())).thenAnswer(inv -> jdbc.queryForObject(
+          "SELECT COUNT(invoice_seq) FROM payments WHERE invoice_series = ? AND invoice_year = ?",
+          Long.class, inv.getArgument(0), inv.getArgument(1)));
+
+      service = new InvoiceNumberService(sequences, payments, transactionManager, props);
+      service.init();
+    }
+
+    void createSchema() {
+      jdbc.execute("CREATE TABLE IF NOT EXISTS payments (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+          + "invoice_series VARCHAR(8), invoice_year VARCHAR(8), invoice_seq BIGINT, "
+          + "UNIQUE (invoice_series, invoice_year, invoice_seq))");
+    }
+
+    // Returns the committed number, or null when the bill was rolled back
+    Long bill(String series, String fiscalYear, boolean fail) {
+      try {
+        return tx.execute(status -> {
+          long seq = service.allocate(series, fiscalYear);
+          jdbc.update("INSERT INTO payments (invoice_series, invoice_year, invoice_seq) VALUES (?, ?, ?)",
+              series, fiscalYear, seq);
+          if (fail) {
+            throw new IllegalStateException("Cash payment requires amount received");
+          }
+          return seq;
+        });
+      } catch (IllegalStateException e) {
+        return null;
+      }
+    }
+
+    List<Long> committed(String series, String fiscalYear) {
+      return jdbc.queryForList("SELECT invoice_seq FROM payments WHERE invoice_series = ? AND invoice_year = ? "
+          + "ORDER BY invoice_seq", Long.class, series, fiscalYear);
+    }
+  }
+}
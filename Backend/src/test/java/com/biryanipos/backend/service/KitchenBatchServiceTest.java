@@ -0,0 +1,159 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.dto.BatchReadyRequest;
+import com.biryanipos.backend.dto.BatchReadyResult;
+import com.biryanipos.backend.dto.BulkStatusRequest;
+import com.biryanipos.backend.dto.KitchenBatch;
+import com.biryanipos.backend.model.MenuItemSnapshot;
+import com.biryanipos.backend.model.Order;
+import com.biryanipos.backend.model.OrderItem;
+import com.biryanipos.backend.model.OrderStatus;
+import com.biryanipos.backend.repository.OrderItemRepository;
+import com.biryanipos.backend.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class KitchenBatchServiceTest {
+
+  private OrderItemRepository orderItemRepository;
+  private EventDispatcher eventDispatcher;
+  private OrderService orderService;
+  private OrderEtaService orderEtaService;
+  private KitchenBatchService service;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    orderItemRepository = mock(OrderItemRepository.class);
+    eventDispatcher = mock(EventDispatcher.class);
+    // No transaction here: after-commit work runs straight away
+    doAnswer(inv -> {
+      ((Runnable) inv.getArgument(0)).run();
+      return null;
+    }).when(eventDispatcher).afterCommit(any());
+    orderService = mock(OrderService.class);
+    ObjectProvider<OrderService> provider = mock(ObjectProvider.class);
+    when(provider.getObject()).thenReturn(orderService);
+    orderEtaService = mock(OrderEtaService.class);
+    service = new KitchenBatchService(mock(OrderRepository.class), orderItemRepository, eventDispatcher,
+        orderEtaService, provider);
+  }
+
+  @Test
+  void totalsFollowEachOrderIncrementally() {
+    Order first = order(1L, line(11L, 5L, null, 3, OrderStatus.NEW), line(12L, 5L, 50L, 2, OrderStatus.NEW));
+    Order second = order(2L, line(21L, 5L, null, 2, OrderStatus.COOKING), line(22L, 7L, null, 1, OrderStatus.NEW));
+    service.track(first);
+    service.track(second);
+
+    KitchenBatch plain = find(5L, null);
+    assertEquals(5, plain.getPortions());
+    assertEquals(3, plain.getNewPortions());
+    assertEquals(2, plain.getCookingPortions());
+    assertEquals(2, plain.getOrders());
+    assertEquals(1L, plain.getOldestOrderId());
+    assertEquals(3, service.getBatches().size());
+    assertEquals(plain, service.getBatches().get(0)); // Biggest batch first
+
+    // One line of the first order is ready: only that order's share changes
+    first.getItems().get(0).setStatus(OrderStatus.READY);
+    service.track(first);
+    assertEquals(2, find(5L, null).getPortions());
+    assertEquals(2L, find(5L, null).getOldestOrderId());
+
+    // Paid or cancelled orders leave the board entirely
+    second.setStatus(OrderStatus.CANCELLED);
+    service.track(second);
+    assertNull(find(5L, null));
+    assertNull(find(7L, null));
+    assertEquals(2, find(5L, 50L).getPortions());
+
+    // Re-tracking an unchanged order pushes nothing new
+    int pushes = mockingDetails(eventDispatcher).getInvocations().stream()
+        .filter(i -> i.getMethod().getName().equals("broadcast")).toList().size();
+    service.track(first);
+    verify(eventDispatcher, times(pushes)).broadcast(eq("/topic/kitchen/batches"), any());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void aCookingLineIsTimedFromWhenItStartedCookingNotFromItsLastEdit() {
+    OrderItem line = line(11L, 5L, null, 2, OrderStatus.NEW);
+    Order order = order(1L, line);
+    line.setStatus(OrderStatus.COOKING);
+    LocalDateTime started = line.getCookingStartedAt();
+    assertNotNull(started);
+    line.setStatus(OrderStatus.COOKING); // Saved again while cooking
+    line.setUpdatedAt(started.plusMinutes(5));
+    assertEquals(started, line.getCookingStartedAt());
+    service.track(order);
+
+    ArgumentCaptor<List<KitchenBatchService.Line>> waiting = ArgumentCaptor.forClass(List.class);
+    verify(orderEtaService).update(eq(1L), any(), waiting.capture(), eq(true));
+    assertEquals(started, waiting.getValue().get(0).since());
+  }
+
+  @Test
+  void readyPortionsGoToTheOldestWholeLines() {
+    when(orderItemRepository.findWaitingLines(5L, null)).thenReturn(List.of(
+        new Object[] { 11L, 1L, "T1", 3 },
+        new Object[] { 21L, 2L, "T2", 2 },
+        new Object[] { 31L, 3L, "T3", 4 }));
+
+    BatchReadyRequest request = new BatchReadyRequest();
+    request.setMenuItemId(5L);
+    request.setPortions(7);
+    BatchReadyResult result = service.markReady(request);
+
+    // 3 + 2 fit; the next line needs 4, so 2 portions are left over
+    assertEquals(5, result.getAssigned());
+    assertEquals(2, result.getLeftover());
+    assertEquals(List.of(11L, 21L), result.getLines().stream().map(BatchReadyResult.ReadyLine::getItemId).toList());
+    // Both lines go in one transaction
+    ArgumentCaptor<BulkStatusRequest> bulk = ArgumentCaptor.forClass(BulkStatusRequest.class);
+    verify(orderService).updateItemStatuses(bulk.capture());
+    assertEquals(OrderStatus.READY, bulk.getValue().getStatus());
+    assertEquals(List.of(11L, 21L), bulk.getValue().getItemIds());
+
+    request.setPortions(0);
+    assertThrows(RuntimeException.class, () -> service.markReady(request));
+  }
+
+  private KitchenBatch find(Long menuItemId, Long variationId) {
+    return service.getBatches().stream()
+        .filter(b -> b.getMenuItemId().equals(menuItemId) && Objects.equals(b.getVariationId(), variationId))
+        .findFirst().orElse(null);
+  }
+
+  private static Order order(Long id, OrderItem... items) {
+    Order order = new Order();
+    order.setId(id);
+    order.setStatus(OrderStatus.NEW);
+    order.setCreatedAt(LocalDateTime.now().minusMinutes(10 - id));
+    order.setItems(new ArrayList<>(List.of(items)));
+    return order;
+  }
+
+  private static OrderItem line(Long id, Long menuItemId, Long variationId, int quantity, OrderStatus status) {
+    OrderItem item = new OrderItem();
+    item.setId(id);
+    item.setMenuItemId(menuItemId);
+    item.setVariationId(variationId);
+    item.setQuantity(quantity);
+    item.setStatus(status);
+    item.setSnapshot(new MenuItemSnapshot("Chicken Biryani", variationId != null ? "Full" : null, 5.0, "KITCHEN",
+        250.0));
+    return item;
+  }
+}
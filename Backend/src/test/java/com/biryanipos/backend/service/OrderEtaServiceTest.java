@@ -0,0 +1,144 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.model.MenuItem;
+import com.biryanipos.backend.model.MenuItemSnapshot;
+import com.biryanipos.backend.model.OrderItem;
+import com.biryanipos.backend.model.OrderStatus;
+import com.biryanipos.backend.repository.MenuItemRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OrderEtaServiceTest {
+
+  private MenuItemRepository menuItemRepository;
+  private EventDispatcher eventDispatcher;
+  private OrderDeadlineService orderDeadlineService;
+  private OrderEtaService service;
+  private LocalDateTime start;
+
+  @BeforeEach
+  void setUp() {
+    menuItemRepository = mock(MenuItemRepository.class);
+    when(menuItemRepository.findPrepTimes()).thenReturn(List.<Object[]>of(new Object[] { 5L, 10 }));
+    AppProperties appProperties = new AppProperties();
+    appProperties.getOrder().setStationCapacity(2);
+    eventDispatcher = mock(EventDispatcher.class);
+    orderDeadlineService = mock(OrderDeadlineService.class);
+    service = new OrderEtaService(menuItemRepository, appProperties, eventDispatcher, orderDeadlineService);
+    service.loadPrepTimes();
+    start = LocalDateTime.now();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void ordersQueueBehindTheStationsCapacityAndOnlyMovedEtasArePushed() {
+    // Two slots, four 10-minute lines: the last two wait for a free slot
+    for (long order = 1; order <= 4; order++) {
+      service.update(order, List.of(), List.of(line(order, OrderStatus.NEW, null)), true);
+    }
+    Map<Long, LocalDateTime> eta = service.getProjections();
+    assertMinutesFromStart(10, eta.get(1L));
+    assertMinutesFromStart(10, eta.get(2L));
+    assertMinutesFromStart(20, eta.get(3L));
+    assertMinutesFromStart(20, eta.get(4L));
+    verify(eventDispatcher, never()).broadcast(eq("/topic/orders/eta"), any());
+
+    // A new order goes after all four
+    assertMinutesFromStart(30, service.predict(List.of(newItem())));
+
+    // Order 1 is done: order 3 moves up, nobody else changes
+    service.update(1L, List.of(line(1, OrderStatus.NEW, null)), List.of(), true);
+    ArgumentCaptor<Object> pushed = ArgumentCaptor.forClass(Object.class);
+    verify(eventDispatcher).broadcast(eq("/topic/orders/eta"), pushed.capture());
+    List<?> changes = (List<?>) pushed.getValue();
+    assertEquals(1, changes.size());
+    assertEquals(3L, ((Map<?, ?>) changes.get(0)).get("orderId"));
+    assertMinutesFromStart(10, service.getProjections().get(3L));
+    // and handed to the overdue deadlines: the four first projections, then the move
+    ArgumentCaptor<Map<Long, LocalDateTime>> held = ArgumentCaptor.forClass(Map.class);
+    verify(orderDeadlineService, times(5)).updateEtas(held.capture());
+    assertEquals(Set.of(3L), held.getValue().keySet());
+    assertMinutesFromStart(10, held.getValue().get(3L));
+    assertFalse(service.getProjections().containsKey(1L));
+  }
+
+  @Test
+  void aSavedPrepTimeIsUsedWithoutReloadingTheMenu() {
+    service.prepTimeChanged(5L, 20);
+    service.refresh();
+
+    assertMinutesFromStart(20, service.predict(List.of(newItemWithoutMenu())));
+    verify(menuItemRepository, times(1)).findPrepTimes(); // Only the startup load
+  }
+
+  @Test
+  void stationPaceFollowsObservedCookingTimes() {
+    // Cooked for 20 minutes against a 10-minute prep time
+    service.update(1L, List.of(), List.of(line(1, OrderStatus.COOKING, start.minusMinutes(20))), true);
+    service.update(1L, List.of(line(1, OrderStatus.COOKING, start.minusMinutes(20))), List.of(), true);
+
+    // Pace moves a fifth of the way from 1.0 to 2.0
+    assertMinutesFromStart(12, service.predict(List.of(newItem())));
+    Map<?, ?> station = (Map<?, ?>) ((Map<?, ?>) service.getStats().get("stations")).get("Main Kitchen");
+    assertEquals(1.2, station.get("pace"));
+
+    // Cancelled orders teach nothing
+    service.update(2L, List.of(), List.of(line(2, OrderStatus.COOKING, start.minusMinutes(40))), true);
+    service.update(2L, List.of(line(2, OrderStatus.COOKING, start.minusMinutes(40))), List.of(), false);
+    assertMinutesFromStart(12, service.predict(List.of(newItem())));
+  }
+
+  @Test
+  void updatingAndPredictingStayWellUnderAMillisecondPerOrder() {
+    int orders = 300;
+    for (long order = 1; order <= orders; order++) {
+      service.update(order, List.of(), List.of(line(order, OrderStatus.NEW, null)), true);
+    }
+    long started = System.nanoTime();
+    for (long order = orders + 1; order <= 2L * orders; order++) {
+      service.predict(List.of(newItem()));
+      service.update(order, List.of(), List.of(line(order, OrderStatus.NEW, null)), true);
+    }
+    long perOrderMicros = (System.nanoTime() - started) / orders / 1000;
+    assertTrue(perOrderMicros < 1000, perOrderMicros + " us per order");
+  }
+
+  private void assertMinutesFromStart(long minutes, LocalDateTime eta) {
+    long actual = Duration.between(start, eta).toSeconds();
+    assertTrue(Math.abs(actual - minutes * 60) < 5, "expected ~" + minutes + " min, got " + actual + " s");
+  }
+
+  private KitchenBatchService.Line line(long orderId, OrderStatus status, LocalDateTime since) {
+    return new KitchenBatchService.Line(orderId * 10, orderId, new KitchenBatchService.Key(5L, null),
+        "Chicken Biryani", null, null, 1, status, start.plusSeconds(orderId), since);
+  }
+
+  private static OrderItem newItemWithoutMenu() {
+    OrderItem item = new OrderItem();
+    item.setMenuItemId(5L);
+    item.setSnapshot(new MenuItemSnapshot("Chicken Biryani", null, 5.0, null, 250.0));
+    return item;
+  }
+
+  private static OrderItem newItem() {
+    MenuItem menuItem = new MenuItem();
+    menuItem.setId(5L);
+    menuItem.setPrepTimeMinutes(10);
+    OrderItem item = new OrderItem();
+    item.setMenuItem(menuItem);
+    item.setSnapshot(new MenuItemSnapshot("Chicken Biryani", null, 5.0, null, 250.0));
+    return item;
+  }
+}
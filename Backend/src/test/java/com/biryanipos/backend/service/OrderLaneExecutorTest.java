@@ -0,0 +1,124 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.exception.ServiceBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderLaneExecutorTest {
+
+  private OrderLaneExecutor lanes;
+  private ExecutorService callers;
+
+  @BeforeEach
+  void setUp() {
+    AppProperties properties = new AppProperties();
+    properties.getConcurrency().setOrderLanes(4);
+    properties.getConcurrency().setLaneQueueCapacity(2);
+    lanes = new OrderLaneExecutor(properties);
+    lanes.init();
+    callers = Executors.newFixedThreadPool(8);
+  }
+
+  @AfterEach
+  void tearDown() {
+    callers.shutdownNow();
+    lanes.shutdown();
+  }
+
+  @Test
+  void commandsForOneOrderNeverOverlap() throws Exception {
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+    for (int i = 0; i < 3; i++) {
+      int step = i;
+      // Submitted one after another so the queue stays within capacity
+      Future<?> caller = submit(42L, () -> {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        assertTrue(OrderLaneExecutor.isOnLane());
+        Thread.sleep(20);
+        applied.add(step);
+        inFlight.decrementAndGet();
+        return step;
+      });
+      Thread.sleep(5);
+      if (step == 2) {
+        caller.get(2, TimeUnit.SECONDS);
+      }
+    }
+    Thread.sleep(50);
+    assertEquals(List.of(0, 1, 2), applied);
+    assertEquals(1, maxInFlight.get());
+    assertFalse(OrderLaneExecutor.isOnLane());
+  }
+
+  @Test
+  void otherOrdersAreNotBlockedAndErrorsReachTheCaller() throws Throwable {
+    // Some other order id that lands on a different lane
+    long candidate = 2;
+    while (laneOf(candidate) == laneOf(1L)) {
+      candidate++;
+    }
+    long other = candidate;
+
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> slow = submit(1L, () -> release.await(5, TimeUnit.SECONDS));
+    Thread.sleep(20);
+    assertEquals("done", lanes.execute(other, () -> "done")); // Not stuck behind order 1
+
+    RuntimeException error = assertThrows(RuntimeException.class,
+        () -> lanes.execute(other, () -> {
+          throw new RuntimeException("Order not found");
+        }));
+    assertEquals("Order not found", error.getMessage());
+
+    release.countDown();
+    slow.get(2, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void fullLaneRefusesNewCommands() throws Throwable {
+    CountDownLatch release = new CountDownLatch(1);
+    List<Future<?>> queued = new ArrayList<>();
+    // One running plus two waiting fills the lane
+    for (int i = 0; i < 3; i++) {
+      queued.add(submit(7L, () -> release.await(5, TimeUnit.SECONDS)));
+      Thread.sleep(20);
+    }
+    assertThrows(ServiceBusyException.class, () -> lanes.execute(7L, () -> "late"));
+    assertEquals(1L, lanes.getStats().get("rejected"));
+
+    release.countDown();
+    for (Future<?> future : queued) {
+      future.get(2, TimeUnit.SECONDS);
+    }
+  }
+
+  private Future<Object> submit(Object key, OrderLaneExecutor.Command<Object> command) {
+    return callers.submit(() -> {
+      try {
+        return lanes.execute(key, command);
+      } catch (Throwable t) {
+        throw new Exception(t);
+      }
+    });
+  }
+
+  private int laneOf(long key) throws Throwable {
+    return lanes.execute(key, () -> Integer.parseInt(Thread.currentThread().getName().replace("order-lane-", "")));
+  }
+}
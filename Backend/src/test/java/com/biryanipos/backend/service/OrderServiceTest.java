@@ -1,23 +1,31 @@
 package com.biryanipos.backend.service;
 
 import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.dto.BulkStatusRequest;
+import com.biryanipos.backend.dto.BulkStatusResult;
 import com.biryanipos.backend.dto.OrderItemRequest;
 import com.biryanipos.backend.dto.OrderRequest;
 import com.biryanipos.backend.model.MenuItem;
 import com.biryanipos.backend.model.Order;
+import com.biryanipos.backend.model.OrderItem;
 import com.biryanipos.backend.model.OrderStatus;
 import com.biryanipos.backend.repository.MenuItemRepository;
 import com.biryanipos.backend.repository.OrderItemRepository;
 import com.biryanipos.backend.repository.OrderRepository;
 import com.biryanipos.backend.repository.TableRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -42,11 +50,26 @@ class OrderServiceTest {
   private StockService stockService;
 
   @Mock
-  private SimpMessagingTemplate messagingTemplate;
+  private EventDispatcher eventDispatcher;
 
   @Mock
   private AppProperties appProperties;
 
+  @Mock
+  private PrintSpoolerService printSpoolerService;
+
+  @Mock
+  private OrderDeadlineService orderDeadlineService;
+
+  @Mock
+  private KitchenBatchService kitchenBatchService;
+
+  @Mock
+  private OrderEtaService orderEtaService;
+
+  @Mock
+  private QrMenuService qrMenuService;
+
   @InjectMocks
   private OrderService orderService;
 
@@ -58,6 +81,7 @@ class OrderServiceTest {
     AppProperties.Order orderConfig = new AppProperties.Order();
     orderConfig.setDefaultPrepTimeMinutes(15);
     when(appProperties.getOrder()).thenReturn(orderConfig);
+    when(orderEtaService.predict(any())).thenReturn(LocalDateTime.now());
   }
 
   @Test
@@ -71,7 +95,7 @@ class OrderServiceTest {
     menuItem.setPrice(250.0);
     menuItem.setCategory("Main");
     menuItem.setAvailable(true);
-    when(menuItemRepository.findById(1L)).thenReturn(Optional.of(menuItem));
+    when(menuItemRepository.findByIdWithLock(1L)).thenReturn(Optional.of(menuItem));
 
     OrderRequest request = new OrderRequest();
     request.setCustomerName("John Doe");
@@ -99,13 +123,14 @@ class OrderServiceTest {
     assertEquals(101L, result.getId());
     assertEquals(500.0, result.getTotalAmount());
     verify(orderRepository).save(any(Order.class));
-    verify(messagingTemplate).convertAndSend(eq("/topic/orders"), any(Order.class));
+    verify(eventDispatcher).broadcast(eq("/topic/orders"), any(Order.class));
+    verify(printSpoolerService).printKots(eq(savedOrder), anyList(), isNull());
   }
 
   @Test
   void createOrder_ItemNotFound() {
     // Arrange
-    when(menuItemRepository.findById(99L)).thenReturn(Optional.empty());
+    when(menuItemRepository.findByIdWithLock(99L)).thenReturn(Optional.empty());
 
     OrderRequest request = new OrderRequest();
     OrderItemRequest itemRequest = new OrderItemRequest();
@@ -124,7 +149,7 @@ class OrderServiceTest {
     existingOrder.setId(101L);
     existingOrder.setStatus(OrderStatus.NEW);
 
-    when(orderRepository.findById(101L)).thenReturn(Optional.of(existingOrder));
+    when(orderRepository.findWithItemsById(101L)).thenReturn(Optional.of(existingOrder));
     when(orderRepository.save(any(Order.class))).thenReturn(existingOrder);
 
     // Act
@@ -132,6 +157,87 @@ class OrderServiceTest {
 
     // Assert
     assertEquals(OrderStatus.COOKING, result.getStatus());
-    verify(messagingTemplate).convertAndSend(eq("/topic/orders/update"), any(Order.class));
+    verify(eventDispatcher).broadcast(eq("/topic/orders/update"), any(Order.class));
+  }
+
+  @Test
+  void orderLinesCarryMenuSnapshot() throws Exception {
+    MenuItem menuItem = new MenuItem();
+    menuItem.setId(7L);
+    menuItem.setName("Chicken 65");
+    menuItem.setPrice(180.0);
+    menuItem.setGstPercent(18.0);
+    menuItem.setPreparationStation("Fry Station");
+    menuItem.setImageUrl("data:image/png;base64,iVBORw0KGgo");
+    menuItem.setAvailable(true);
+    when(menuItemRepository.findByIdWithLock(7L)).thenReturn(Optional.of(menuItem));
+    when(orderRepository.save(any(Order.class))).thenAnswer(inv -> inv.getArgument(0));
+
+    OrderRequest request = new OrderRequest();
+    request.setCustomerName("Walk In");
+    request.setGstEnabled(true);
+    OrderItemRequest itemRequest = new OrderItemRequest();
+    itemRequest.setMenuItemId(7L);
+    itemRequest.setQuantity(1);
+    request.setItems(Collections.singletonList(itemRequest));
+
+    orderService.createOrder(request);
+    ArgumentCaptor<Order> saved = ArgumentCaptor.forClass(Order.class);
+    verify(orderRepository).save(saved.capture());
+    OrderItem line = saved.getValue().getItems().get(0);
+
+    // Later menu edits do not change what was sold
+    menuItem.setName("Chicken 65 (Boneless)");
+    menuItem.setGstPercent(5.0);
+    assertEquals("Chicken 65", line.getItemName());
+    assertEquals(18.0, line.getGstPercent());
+    assertEquals(16.2, saved.getValue().getCgst(), 0.001);
+
+    JsonNode json = new ObjectMapper().findAndRegisterModules().valueToTree(line);
+    assertEquals(7L, json.path("menuItem").path("id").asLong());
+    assertEquals("Chicken 65", json.path("menuItem").path("name").asText());
+    assertEquals("Fry Station", json.path("menuItem").path("preparationStation").asText());
+    assertEquals(180.0, json.path("menuItem").path("price").asDouble());
+    assertFalse(json.toString().contains("base64"));
+
+    // A line the backfill could not fill never reaches for the lazy menu item
+    OrderItem bare = new OrderItem();
+    bare.setSnapshot(null);
+    assertEquals(OrderItem.UNKNOWN_ITEM, bare.getItemName());
+    assertEquals(0.0, bare.getGstPercent());
+  }
+
+  @Test
+  void bulkStatusChangesLinesOnceAndUpdatesEachOrderOnce() {
+    Order order = new Order();
+    order.setId(101L);
+    order.setStatus(OrderStatus.COOKING);
+    List<OrderItem> items = new ArrayList<>();
+    for (long id = 1; id <= 3; id++) {
+      OrderItem item = new OrderItem();
+      item.setId(id);
+      item.setStatus(id == 3 ? OrderStatus.READY : OrderStatus.COOKING);
+      items.add(item);
+    }
+    order.setItems(items);
+    when(orderRepository.findWithItemsByIdIn(any())).thenReturn(List.of(order));
+
+    BulkStatusRequest request = new BulkStatusRequest();
+    request.setStatus(OrderStatus.READY);
+    request.setOrderId(101L);
+    BulkStatusResult result = orderService.updateItemStatuses(request);
+
+    // The already-ready line is untouched; the order turns READY once
+    assertEquals(2, result.getUpdated());
+    assertEquals(List.of(1L, 2L), result.getOrders().get(0).getItemIds());
+    assertEquals(OrderStatus.READY, order.getStatus());
+    verify(orderRepository, times(1)).save(order);
+    // One compact event and no full orders: the screens patch the lines they hold
+    verify(eventDispatcher, times(1)).broadcast(eq("/topic/orders/items"), any());
+    verify(eventDispatcher, never()).broadcast(eq("/topic/orders"), any());
+    verify(eventDispatcher, never()).broadcast(eq("/topic/orders/update"), any());
+
+    request.setMenuItemId(5L);
+    assertThrows(RuntimeException.class, () -> orderService.updateItemStatuses(request));
   }
 }
@@ -0,0 +1,232 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.model.PrintJob;
+import com.biryanipos.backend.model.PrintJobStatus;
+import com.biryanipos.backend.model.PrintJobType;
+import com.biryanipos.backend.repository.PrintJobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+// Drives the spooler against PrinterEmulator, with print_jobs kept in memory
+class PrintSpoolerServiceTest {
+
+  private final Map<Long, PrintJob> jobs = new TreeMap<>();
+  private final List<Long> printed = new ArrayList<>(); // Job ids in the order they were printed
+  private final List<PrinterEmulator> emulators = new ArrayList<>();
+  private AppProperties appProperties;
+  private PrintSpoolerService spooler;
+
+  @BeforeEach
+  void setUp() {
+    appProperties = new AppProperties();
+    AppProperties.Printing printing = appProperties.getPrinting();
+    printing.setEnabled(true);
+    printing.setInitialBackoffMs(50);
+    printing.setMaxBackoffMs(200);
+    printing.setPollIntervalMs(50);
+    printing.setConnectTimeoutMs(500);
+    spooler = new PrintSpoolerService(repository(), new PrintingService(), appProperties);
+  }
+
+  @AfterEach
+  void tearDown() {
+    spooler.stop();
+    emulators.forEach(PrinterEmulator::stop);
+  }
+
+  @Test
+  void eachPrinterPrintsItsTicketsInQueueOrder() throws Exception {
+    PrinterEmulator kitchen = emulator(0);
+    PrinterEmulator counter = emulator(0);
+    printer("kitchen", kitchen.getPort());
+    printer("counter", counter.getPort());
+    spooler.start();
+
+    List<Long> kots = new ArrayList<>();
+    for (int i = 1; i <= 5; i++) {
+      kots.add(spooler.enqueue("kitchen", PrintJobType.KOT, (long) i, "Main Kitchen", "KOT " + i, false).getId());
+      spooler.enqueue("counter", PrintJobType.BILL, (long) i, null, "BILL " + i, false);
+    }
+
+    await(() -> kitchen.getJobsReceived() == 5 && counter.getJobsReceived() == 5);
+    await(() -> printedCount() == 10);
+    assertEquals(kots, printedOn("kitchen"));
+  }
+
+  @Test
+  void aDroppedPrinterHoldsItsQueueAndPrintsEverythingOnceBack() throws Exception {
+    PrinterEmulator kitchen = emulator(0);
+    int port = kitchen.getPort();
+    kitchen.stop(); // Printer unplugged
+    printer("kitchen", port);
+    spooler.start();
+
+    Long first = spooler.enqueue("kitchen", PrintJobType.KOT, 1L, null, "KOT 1", false).getId();
+    Long second = spooler.enqueue("kitchen", PrintJobType.KOT, 2L, null, "KOT 2", false).getId();
+    // Back to PENDING between attempts; read both under one look, as the next attempt may already be running
+    await(() -> {
+      PrintJob head = job(first);
+      synchronized (jobs) {
+        return head.getAttempts() >= 2 && head.getStatus() == PrintJobStatus.PENDING && head.getLastError() != null;
+      }
+    });
+    assertEquals(0, job(second).getAttempts()); // Waits behind the failing head
+
+    PrinterEmulator back = emulator(port);
+    await(() -> printedCount() == 2);
+    assertEquals(List.of(first, second), printedOn("kitchen"));
+    await(() -> back.getJobsReceived() == 2); // Counted once the emulator has read the whole job
+    assertNull(job(first).getLastError());
+  }
+
+  @Test
+  void aJobCutOffMidPrintByARestartIsPrintedAfterIt() throws Exception {
+    PrinterEmulator bar = emulator(0);
+    printer("bar", bar.getPort());
+    PrintJob interrupted = new PrintJob();
+    interrupted.setPrinterName("bar");
+    interrupted.setJobType(PrintJobType.KOT);
+    interrupted.setContent("KOT 1");
+    interrupted.setDedupeKey("k1");
+    interrupted.setStatus(PrintJobStatus.PRINTING);
+    interrupted.setAttempts(1);
+    Long id = save(interrupted).getId();
+
+    spooler.start();
+    await(() -> bar.getJobsReceived() == 1);
+    await(() -> job(id).getStatus() == PrintJobStatus.PRINTED);
+    assertEquals(2, job(id).getAttempts());
+  }
+
+  @Test
+  void aReprintRepeatedInsideTheWindowIsQueuedOnce() throws Exception {
+    PrinterEmulator kitchen = emulator(0);
+    printer("kitchen", kitchen.getPort());
+    appProperties.getPrinting().setDedupeWindowSeconds(30);
+    spooler.start();
+
+    PrintJob reprint = spooler.enqueue("kitchen", PrintJobType.KOT, 7L, null, "KOT (REPRINT) 7", true);
+    assertEquals(reprint.getId(), spooler.enqueue("kitchen", PrintJobType.KOT, 7L, null, "KOT (REPRINT) 7", true)
+        .getId());
+    await(() -> kitchen.getJobsReceived() == 1);
+    await(() -> job(reprint.getId()).getStatus() == PrintJobStatus.PRINTED);
+    // Still a duplicate once printed, until the window has passed
+    assertEquals(reprint.getId(), spooler.enqueue("kitchen", PrintJobType.KOT, 7L, null, "KOT (REPRINT) 7", true)
+        .getId());
+
+    synchronized (jobs) {
+      reprint.setCreatedAt(LocalDateTime.now().minusSeconds(31));
+    }
+    PrintJob later = spooler.enqueue("kitchen", PrintJobType.KOT, 7L, null, "KOT (REPRINT) 7", true);
+    assertNotEquals(reprint.getId(), later.getId());
+    await(() -> kitchen.getJobsReceived() == 2);
+  }
+
+  private PrinterEmulator emulator(int port) throws Exception {
+    PrinterEmulator emulator = new PrinterEmulator(port, 0, null);
+    emulator.start();
+    emulators.add(emulator);
+    return emulator;
+  }
+
+  private void printer(String name, int port) {
+    AppProperties.Printing.Printer printer = new AppProperties.Printing.Printer();
+    printer.setPort(port);
+    appProperties.getPrinting().getPrinters().put(name, printer);
+  }
+
+  private PrintJob job(Long id) {
+    synchronized (jobs) {
+      return jobs.get(id);
+    }
+  }
+
+  private int printedCount() {
+    synchronized (jobs) {
+      return printed.size();
+    }
+  }
+
+  private List<Long> printedOn(String printer) {
+    synchronized (jobs) {
+      return printed.stream().filter(id -> jobs.get(id).getPrinterName().equals(printer)).toList();
+    }
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.currentTimeMillis() < deadline, "timed out");
+      Thread.sleep(10);
+    }
+  }
+
+  private PrintJob save(PrintJob job) {
+    synchronized (jobs) {
+      if (job.getId() == null) {
+        job.setId((long) jobs.size() + 1);
+        job.setCreatedAt(LocalDateTime.now());
+        if (job.getNextAttemptAt() == null) {
+          job.setNextAttemptAt(job.getCreatedAt());
+        }
+      }
+      if (job.getStatus() == PrintJobStatus.PRINTED && !printed.contains(job.getId())) {
+        printed.add(job.getId());
+      }
+      jobs.put(job.getId(), job);
+      return job;
+    }
+  }
+
+  private PrintJobRepository repository() {
+    PrintJobRepository repository = mock(PrintJobRepository.class);
+    when(repository.save(any(PrintJob.class))).thenAnswer(inv -> save(inv.getArgument(0)));
+    when(repository.findFirstByPrinterNameAndStatusOrderByIdAsc(any(), any())).thenAnswer(inv -> {
+      synchronized (jobs) {
+        return jobs.values().stream()
+            .filter(j -> j.getPrinterName().equals(inv.getArgument(0)) && j.getStatus() == inv.getArgument(1))
+            .findFirst();
+      }
+    });
+    when(repository.findFirstByDedupeKeyAndStatusInAndCreatedAtAfterOrderByIdDesc(any(), any(), any()))
+        .thenAnswer(inv -> {
+          synchronized (jobs) {
+            Collection<PrintJobStatus> statuses = inv.getArgument(1);
+            LocalDateTime after = inv.getArgument(2);
+            return jobs.values().stream()
+                .filter(j -> j.getDedupeKey().equals(inv.getArgument(0)) && statuses.contains(j.getStatus())
+                    && j.getCreatedAt().isAfter(after))
+                .reduce((a, b) -> b);
+          }
+        });
+    when(repository.requeueInterrupted()).thenAnswer(inv -> {
+      synchronized (jobs) {
+        List<PrintJob> interrupted = jobs.values().stream()
+            .filter(j -> j.getStatus() == PrintJobStatus.PRINTING).toList();
+        interrupted.forEach(j -> j.setStatus(PrintJobStatus.PENDING));
+        return interrupted.size();
+      }
+    });
+    when(repository.findPrintersWithPendingJobs()).thenAnswer(inv -> {
+      synchronized (jobs) {
+        return jobs.values().stream().filter(j -> j.getStatus() == PrintJobStatus.PENDING)
+            .map(PrintJob::getPrinterName).distinct().toList();
+      }
+    });
+    return repository;
+  }
+}
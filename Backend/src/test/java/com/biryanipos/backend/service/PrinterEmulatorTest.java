@@ -0,0 +1,69 @@
+package com.biryanipos.backend.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrinterEmulatorTest {
+
+  private PrinterEmulator emulator;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    emulator = new PrinterEmulator(0, 0, null);
+    emulator.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    emulator.stop();
+  }
+
+  @Test
+  void receivesConcurrentJobs() throws Exception {
+    byte[] ticket = new PrintingService().toPrinterBytes("KOT #1\n 2 x Chicken Biryani\n");
+    int jobs = 50;
+
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<?>> sent = new ArrayList<>();
+    for (int i = 0; i < jobs; i++) {
+      sent.add(pool.submit(() -> {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), emulator.getPort())) {
+          OutputStream out = socket.getOutputStream();
+          out.write(ticket);
+          socket.shutdownOutput();
+          socket.getInputStream().read(); // Wait for the emulator to close
+        }
+        return null;
+      }));
+    }
+    for (Future<?> f : sent) {
+      f.get();
+    }
+    pool.shutdown();
+
+    assertEquals(jobs, emulator.getJobsReceived());
+    assertEquals((long) jobs * ticket.length, emulator.getBytesReceived());
+  }
+
+  @Test
+  void toPrinterBytes_wrapsTextInEscPos() {
+    byte[] bytes = new PrintingService().toPrinterBytes("HI");
+    assertEquals(0x1B, bytes[0]);
+    assertEquals(0x40, bytes[1]);
+    assertEquals("HI", new String(bytes, 2, 2, StandardCharsets.US_ASCII));
+    assertEquals(0x1D, bytes[bytes.length - 4]);
+  }
+}
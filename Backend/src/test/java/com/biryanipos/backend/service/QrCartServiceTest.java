@@ -0,0 +1,131 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.dto.JournalReceipt;
+import com.biryanipos.backend.dto.OrderItemRequest;
+import com.biryanipos.backend.dto.OrderRequest;
+import com.biryanipos.backend.dto.QrCart;
+import com.biryanipos.backend.dto.QrCartRequest;
+import com.biryanipos.backend.exception.ResourceNotFoundException;
+import com.biryanipos.backend.exception.ServiceBusyException;
+import com.biryanipos.backend.exception.TooManyRequestsException;
+import com.biryanipos.backend.model.Order;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class QrCartServiceTest {
+
+  private AppProperties appProperties;
+  private BillingJournalService billingJournalService;
+  private QrCartService service;
+
+  @BeforeEach
+  void setUp() {
+    QrMenuService qrMenuService = mock(QrMenuService.class);
+    when(qrMenuService.getBundle()).thenReturn(new QrMenuService.Bundle("v1", new byte[0], new byte[0],
+        Map.of(5L, new QrMenuService.Item(5L, "Chicken Biryani", 250.0,
+            Map.of(50L, new QrMenuService.Variation("Full", 400.0)))),
+        Set.of("T1", "T2")));
+    appProperties = new AppProperties();
+    billingJournalService = mock(BillingJournalService.class);
+    service = new QrCartService(qrMenuService, billingJournalService, mock(EventDispatcher.class), appProperties);
+  }
+
+  @Test
+  void cartsArePricedFromTheBundleAndBecomeOrdersOnlyWhenConfirmed() {
+    QrCart cart = service.submit("T1", cart(line(5L, null, 2), line(5L, 50L, 1)));
+    assertEquals(900.0, cart.getTotal());
+    assertEquals("Table T1", cart.getCustomerName());
+    assertEquals(List.of(cart), service.getPendingCarts());
+    verifyNoInteractions(billingJournalService);
+
+    Order order = new Order();
+    order.setId(77L);
+    when(billingJournalService.submitOrder(any(), any()))
+        .thenReturn(new JournalReceipt("ref", "ORDER", "APPLIED", null, order));
+    service.confirm(cart.getId());
+
+    ArgumentCaptor<OrderRequest> request = ArgumentCaptor.forClass(OrderRequest.class);
+    verify(billingJournalService).submitOrder(request.capture(), eq("qr-cart-" + cart.getId()));
+    assertEquals("T1", request.getValue().getTableNumber());
+    assertEquals(QrCartService.CREATED_BY, request.getValue().getCreatedBy());
+    assertEquals(2, request.getValue().getItems().size());
+    assertEquals(77L, service.getCart(cart.getId()).getOrderId());
+    assertTrue(service.getPendingCarts().isEmpty());
+    assertThrows(RuntimeException.class, () -> service.reject(cart.getId()));
+  }
+
+  @Test
+  void aRejectRacingTheConfirmIsRefusedAndAFailedConfirmGoesBackToStaff() {
+    QrCart cart = service.submit("T1", cart(line(5L, null, 1)));
+    Order order = new Order();
+    order.setId(78L);
+    when(billingJournalService.submitOrder(any(), any())).thenAnswer(inv -> {
+      // Staff on another screen, while the order is on its way
+      assertThrows(RuntimeException.class, () -> service.reject(cart.getId()));
+      assertThrows(RuntimeException.class, () -> service.confirm(cart.getId()));
+      service.expireCarts();
+      return new JournalReceipt("ref", "ORDER", "APPLIED", null, order);
+    });
+    appProperties.getQr().setCartTtlMinutes(-1); // Expire everything still pending
+    service.confirm(cart.getId());
+    assertEquals(QrCartService.CONFIRMED, service.getCart(cart.getId()).getStatus());
+    assertEquals(78L, service.getCart(cart.getId()).getOrderId());
+
+    appProperties.getQr().setCartTtlMinutes(15);
+    QrCart failed = service.submit("T1", cart(line(5L, null, 1)));
+    doThrow(new RuntimeException("Out of stock")).when(billingJournalService).submitOrder(any(), any());
+    assertThrows(RuntimeException.class, () -> service.confirm(failed.getId()));
+    assertEquals(QrCartService.PENDING, service.getCart(failed.getId()).getStatus());
+    service.reject(failed.getId());
+    assertThrows(RuntimeException.class, () -> service.confirm(failed.getId()));
+  }
+
+  @Test
+  void badCartsAreRejectedWithoutTouchingTheDatabase() {
+    assertThrows(ResourceNotFoundException.class, () -> service.submit("T9", cart(line(5L, null, 1))));
+    assertThrows(RuntimeException.class, () -> service.submit("T1", cart(line(6L, null, 1))));
+    assertThrows(RuntimeException.class, () -> service.submit("T1", cart(line(5L, 51L, 1))));
+    assertThrows(RuntimeException.class, () -> service.submit("T1", cart(line(5L, null, 0))));
+    QrCartRequest stale = cart(line(5L, null, 1));
+    stale.setMenuVersion("v0");
+    assertThrows(RuntimeException.class, () -> service.submit("T1", stale));
+  }
+
+  @Test
+  void eachTableIsThrottledAndTheQueueIsBounded() {
+    appProperties.getQr().setCartsPerTablePerMinute(2);
+    appProperties.getQr().setMaxPendingPerTable(5);
+    service.submit("T1", cart(line(5L, null, 1)));
+    service.submit("T1", cart(line(5L, null, 1)));
+    assertThrows(TooManyRequestsException.class, () -> service.submit("T1", cart(line(5L, null, 1))));
+
+    // Another table is not affected, until the whole queue is full
+    appProperties.getQr().setMaxPendingCarts(3);
+    service.submit("T2", cart(line(5L, null, 1)));
+    assertThrows(ServiceBusyException.class, () -> service.submit("T2", cart(line(5L, null, 1))));
+  }
+
+  private static QrCartRequest cart(OrderItemRequest... items) {
+    QrCartRequest request = new QrCartRequest();
+    request.setItems(List.of(items));
+    return request;
+  }
+
+  private static OrderItemRequest line(Long menuItemId, Long variationId, int quantity) {
+    OrderItemRequest item = new OrderItemRequest();
+    item.setMenuItemId(menuItemId);
+    item.setVariationId(variationId);
+    item.setQuantity(quantity);
+    return item;
+  }
+}
@@ -0,0 +1,316 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.dto.BulkStatusRequest;
+import com.biryanipos.backend.dto.OrderItemRequest;
+import com.biryanipos.backend.dto.OrderRequest;
+import com.biryanipos.backend.dto.PaymentRequest;
+import com.biryanipos.backend.dto.QuickBillRequest;
+import com.biryanipos.backend.dto.RecipeIngredientRequest;
+import com.biryanipos.backend.dto.StockTransactionRequest;
+import com.biryanipos.backend.model.MenuItem;
+import com.biryanipos.backend.model.Order;
+import com.biryanipos.backend.model.OrderStatus;
+import com.biryanipos.backend.model.OrderType;
+import com.biryanipos.backend.model.PaymentMode;
+import com.biryanipos.backend.model.StockItem;
+import com.biryanipos.backend.model.StockTransactionType;
+import com.biryanipos.backend.support.QueryCounter;
+import com.biryanipos.backend.support.QueryCounterConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Statement budgets per service call. Every check runs twice, before and
+// after the dataset grows by GROWTH paid orders; the statement count must
+// stay within budget and must not change with the data, which is what an
+// N+1 does. Single-row calls must also read the same number of rows.
+@SpringBootTest
+@Import(QueryCounterConfig.class)
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:budgets;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.show-sql=false",
+    "app.journal.enabled=false",
+    "app.printing.enabled=false"
+})
+class QueryBudgetTest {
+
+  private static final int GROWTH = 40;
+
+  @Autowired
+  private OrderService orderService;
+  @Autowired
+  private PaymentService paymentService;
+  @Autowired
+  private QuickBillService quickBillService;
+  @Autowired
+  private ReportService reportService;
+  @Autowired
+  private StockService stockService;
+  @Autowired
+  private MenuItemService menuItemService;
+
+  private static boolean seeded;
+
+  private List<MenuItem> menu;
+  private StockItem chicken;
+  private final Map<String, Check> checks = new LinkedHashMap<>();
+
+  private static final class Check {
+    final long statements;
+    final boolean fixedRows;
+    final Supplier<Runnable> call;
+
+    Check(long statements, boolean fixedRows, Supplier<Runnable> call) {
+      this.statements = statements;
+      this.fixedRows = fixedRows;
+      this.call = call;
+    }
+  }
+
+  @BeforeEach
+  void setUp() {
+    menu = menuItemService.getAllItems();
+    chicken = stockService.getAllStockItems().stream()
+        .filter(s -> s.getName().startsWith("Chicken")).findFirst().orElseThrow();
+    if (!seeded) {
+      // Sample recipes draw on every stock item; keep them well stocked
+      stockService.getAllStockItems().forEach(item -> stock(item, 10000));
+      grow(GROWTH);
+      seeded = true;
+    }
+  }
+
+  @Test
+  void orderServiceBudgets() {
+    // Each recipe ingredient on a line is locked, updated and journaled
+    fixed("createOrder 1 line", 22, () -> () -> placeOrder(1));
+    fixed("createOrder 4 lines", 76, () -> () -> placeOrder(4));
+    fixed("addItemsToOrder 2 lines", 41, () -> {
+      Long id = placeOrder(1).getId();
+      return () -> orderService.addItemsToOrder(id, lines(2));
+    });
+    fixed("updateStatus", 2, () -> {
+      Long id = placeOrder(3).getId();
+      return () -> orderService.updateStatus(id, OrderStatus.COOKING);
+    });
+    fixed("updateOrderItemStatus", 5, () -> {
+      Long itemId = placeOrder(3).getItems().get(0).getId();
+      return () -> orderService.updateOrderItemStatus(itemId, OrderStatus.READY);
+    });
+    fixed("updateItemStatuses 4 lines", 6, () -> {
+      Long id = placeOrder(4).getId();
+      BulkStatusRequest request = new BulkStatusRequest();
+      request.setStatus(OrderStatus.READY);
+      request.setOrderId(id);
+      return () -> orderService.updateItemStatuses(request);
+    });
+    fixed("cancelOrder", 39, () -> {
+      Long id = placeOrder(2).getId();
+      return () -> orderService.cancelOrder(id);
+    });
+    fixed("extendOrderPrepTime", 2, () -> {
+      Long id = placeOrder(2).getId();
+      return () -> orderService.extendOrderPrepTime(id, 5);
+    });
+    fixed("getOrderById", 1, () -> {
+      Long id = placeOrder(3).getId();
+      return () -> orderService.getOrderById(id);
+    });
+    scaling("getAllOrders", 1, () -> () -> orderService.getAllOrders());
+    scaling("getActiveOrders", 1, () -> () -> orderService.getActiveOrders());
+    scaling("getKitchenOrders", 1, () -> () -> orderService.getKitchenOrders());
+    scaling("getOrdersByDateRange", 1, () -> () -> orderService.getOrdersByDateRange(
+        LocalDate.now().atStartOfDay(), LocalDateTime.now().plusMinutes(1)));
+    run();
+  }
+
+  @Test
+  void paymentServiceBudgets() {
+    fixed("processPayment", 5, () -> {
+      Long id = placeOrder(3).getId();
+      return () -> pay(id);
+    });
+    fixed("quickBill 1 line", 25, () -> () -> quickBillService.quickBill(quickBill(1)));
+    fixed("generateBill", 2, () -> {
+      Long id = placeOrder(3).getId();
+      return () -> paymentService.generateBill(id);
+    });
+    fixed("getPaymentByOrderId", 1, () -> {
+      Long id = placeOrder(2).getId();
+      pay(id);
+      return () -> paymentService.getPaymentByOrderId(id);
+    });
+    scaling("getPaymentsByDateRange", 1, () -> () -> paymentService.getPaymentsByDateRange(
+        LocalDate.now().atStartOfDay(), LocalDateTime.now().plusMinutes(1)));
+    run();
+  }
+
+  @Test
+  void reportServiceBudgets() {
+    scaling("getDashboardData", 15, () -> () -> reportService.getDashboardData());
+    scaling("getSalesReport", 18, () -> () -> reportService.getSalesReport(LocalDate.now(), LocalDate.now()));
+    scaling("generateGstReportCsv", 2, () -> () -> reportService.generateGstReportCsv(LocalDate.now(),
+        LocalDate.now()));
+    run();
+  }
+
+  @Test
+  void stockServiceBudgets() {
+    fixed("recordTransaction", 4, () -> () -> stock(chicken, 1));
+    fixed("createStockItem", 1, () -> () -> stockService.createStockItem(newStockItem()));
+    fixed("updateStockItem", 2, () -> {
+      StockItem item = stockService.createStockItem(newStockItem());
+      return () -> stockService.updateStockItem(item.getId(), item);
+    });
+    fixed("deleteStockItem", 2, () -> {
+      Long id = stockService.createStockItem(newStockItem()).getId();
+      return () -> stockService.deleteStockItem(id);
+    });
+    scaling("getAllStockItems", 1, () -> () -> stockService.getAllStockItems());
+    scaling("getLowStockItems", 1, () -> () -> stockService.getLowStockItems());
+    scaling("getTransactionsByItem", 1, () -> () -> stockService.getTransactionsByItem(chicken.getId()));
+    scaling("getWasteTransactions", 1, () -> () -> stockService.getWasteTransactions());
+    scaling("getExpiringItems", 1, () -> () -> stockService.getExpiringItems(7));
+    run();
+  }
+
+  @Test
+  void menuItemServiceBudgets() {
+    Long recipeItem = menu.get(0).getId();
+    Long plainItem = menu.get(menu.size() - 1).getId();
+    Long recipeTarget = menu.get(menu.size() - 2).getId();
+    scaling("getAllItems", 2, () -> () -> menuItemService.getAllItems());
+    scaling("getAvailableItems", 2, () -> () -> menuItemService.getAvailableItems());
+    scaling("getItemsByCategory", 2, () -> () -> menuItemService.getItemsByCategory(menu.get(0).getCategory()));
+    scaling("searchItems", 2, () -> () -> menuItemService.searchItems("Biryani"));
+    scaling("getAllRecipeCosting", 2, () -> () -> menuItemService.getAllRecipeCosting());
+    fixed("getItemById", 2, () -> () -> menuItemService.getItemById(recipeItem));
+    fixed("getRecipeCosting", 2, () -> () -> menuItemService.getRecipeCosting(recipeItem));
+    fixed("toggleAvailability", 4, () -> () -> menuItemService.toggleAvailability(plainItem));
+    fixed("updateItem", 5, () -> () -> menuItemService.updateItem(plainItem, menuItemService.getItemById(plainItem)));
+    fixed("updateRecipe", 5, () -> {
+      RecipeIngredientRequest ingredient = new RecipeIngredientRequest();
+      ingredient.setStockItemId(chicken.getId());
+      ingredient.setQuantity(0.1);
+      menuItemService.clearRecipe(recipeTarget);
+      return () -> menuItemService.updateRecipe(recipeTarget, List.of(ingredient));
+    });
+    run();
+  }
+
+  private void fixed(String name, long statements, Supplier<Runnable> call) {
+    checks.put(name, new Check(statements, true, call));
+  }
+
+  private void scaling(String name, long statements, Supplier<Runnable> call) {
+    checks.put(name, new Check(statements, false, call));
+  }
+
+  private void run() {
+    Map<String, QueryCounter.Counts> before = measureAll();
+    grow(GROWTH);
+    Map<String, QueryCounter.Counts> after = measureAll();
+
+    List<String> failures = new ArrayList<>();
+    checks.forEach((name, check) -> {
+      QueryCounter.Counts small = before.get(name);
+      QueryCounter.Counts large = after.get(name);
+      if (large.getStatements() > check.statements || small.getStatements() > check.statements) {
+        failures.add(name + ": budget " + check.statements + " statements, used " + small + " / " + large);
+      } else if (large.getStatements() != small.getStatements()) {
+        failures.add(name + ": statements grow with data, " + small + " -> " + large);
+      } else if (check.fixedRows && large.getRows() != small.getRows()) {
+        failures.add(name + ": rows grow with data, " + small + " -> " + large);
+      }
+    });
+    assertTrue(failures.isEmpty(), () -> String.join("\n", failures));
+  }
+
+  private Map<String, QueryCounter.Counts> measureAll() {
+    Map<String, QueryCounter.Counts> counts = new LinkedHashMap<>();
+    checks.forEach((name, check) -> {
+      Runnable call = check.call.get();
+      counts.put(name, QueryCounter.measure(call));
+    });
+    return counts;
+  }
+
+  private void grow(int orders) {
+    for (int i = 0; i < orders; i++) {
+      Order order = placeOrder(1 + i % 4);
+      if (i % 5 != 0) {
+        pay(order.getId());
+      }
+    }
+  }
+
+  private Order placeOrder(int lines) {
+    OrderRequest request = new OrderRequest();
+    request.setCustomerName("Guest");
+    request.setOrderType(OrderType.TAKEAWAY);
+    request.setGstEnabled(true);
+    request.setItems(lines(lines));
+    return orderService.createOrder(request);
+  }
+
+  private QuickBillRequest quickBill(int lines) {
+    QuickBillRequest request = new QuickBillRequest();
+    request.setCustomerName("Guest");
+    request.setGstEnabled(true);
+    request.setItems(lines(lines));
+    request.setPaymentMode(PaymentMode.UPI);
+    return request;
+  }
+
+  private List<OrderItemRequest> lines(int count) {
+    List<OrderItemRequest> lines = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      OrderItemRequest line = new OrderItemRequest();
+      line.setMenuItemId(menu.get(i).getId());
+      line.setQuantity(1 + i % 2);
+      lines.add(line);
+    }
+    return lines;
+  }
+
+  private void pay(Long orderId) {
+    PaymentRequest request = new PaymentRequest();
+    request.setOrderId(orderId);
+    request.setPaymentMode(PaymentMode.CASH);
+    request.setAmountReceived(5000);
+    paymentService.processPayment(request);
+  }
+
+  private void stock(StockItem item, double quantity) {
+    StockTransactionRequest request = new StockTransactionRequest();
+    request.setStockItemId(item.getId());
+    request.setTransactionType(StockTransactionType.PURCHASE);
+    request.setQuantity(quantity);
+    stockService.recordTransaction(request);
+  }
+
+  private StockItem newStockItem() {
+    StockItem item = new StockItem();
+    item.setName("Item " + System.nanoTime());
+    item.setUnit("KG");
+    return item;
+  }
+}
@@ -0,0 +1,68 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.dto.SalesFragment;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ReportDayCacheTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void closedDaysSurviveARestart() throws Exception {
+    LocalDate day = LocalDate.now().minusDays(3);
+    SalesFragment fragment = new SalesFragment();
+    fragment.setTotalOrders(12);
+    fragment.getItems().put("Chicken Biryani", new SalesFragment.ItemSales(7, 1750.0));
+
+    ReportDayCache cache = newCache();
+    cache.put(day, fragment, cache.generation(day));
+
+    SalesFragment reloaded = newCache().get(day);
+    assertEquals(12, reloaded.getTotalOrders());
+    assertEquals(7, reloaded.getItems().get("Chicken Biryani").getQuantity());
+  }
+
+  @Test
+  void aCorrectionWinsOverAReportComputedBeforeIt() throws Exception {
+    LocalDate day = LocalDate.now().minusDays(1);
+    ReportDayCache cache = newCache();
+    long generation = cache.generation(day);
+    cache.invalidate(day); // Lands while the report is still adding up the old rows
+    cache.put(day, new SalesFragment(), generation);
+    assertNull(cache.get(day));
+    assertNull(newCache().get(day));
+  }
+
+  @Test
+  void aRestoreDropsEveryDayIncludingOnesStillBeingComputed() throws Exception {
+    LocalDate stored = LocalDate.now().minusDays(2);
+    LocalDate computing = LocalDate.now().minusDays(5);
+    ReportDayCache cache = newCache();
+    cache.put(stored, new SalesFragment(), cache.generation(stored));
+    long generation = cache.generation(computing);
+
+    cache.clear();
+    cache.put(computing, new SalesFragment(), generation); // Added up from the rows before the restore
+    assertNull(cache.get(stored));
+    assertNull(cache.get(computing));
+    assertNull(newCache().get(stored));
+  }
+
+  private ReportDayCache newCache() throws Exception {
+    AppProperties appProperties = new AppProperties();
+    appProperties.getReporting().setCacheDirectory(dir.toString());
+    ReportDayCache cache = new ReportDayCache(appProperties, new ObjectMapper(), mock(EventDispatcher.class));
+    cache.init();
+    return cache;
+  }
+}
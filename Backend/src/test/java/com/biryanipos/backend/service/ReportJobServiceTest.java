@@ -0,0 +1,126 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.config.ConnectionPools;
+import com.biryanipos.backend.dto.SalesFragment;
+import com.biryanipos.backend.model.ReportJob;
+import com.biryanipos.backend.model.ReportJobStatus;
+import com.biryanipos.backend.model.ReportJobType;
+import com.biryanipos.backend.repository.ReportJobRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ReportJobServiceTest {
+
+  @TempDir
+  Path dir;
+
+  private ReportJobService service;
+
+  @AfterEach
+  void tearDown() {
+    service.shutdown();
+  }
+
+  @Test
+  void anInterruptedJobCarriesOnFromItsLastFinishedDay() throws Exception {
+    LocalDate start = LocalDate.of(2026, 3, 1);
+    ReportJob job = new ReportJob();
+    job.setId(9L);
+    job.setJobType(ReportJobType.GST);
+    job.setStatus(ReportJobStatus.RUNNING);
+    job.setStartDate(start);
+    job.setEndDate(start.plusDays(2));
+    job.setTotalChunks(3);
+
+    // Day one was finished; day two was half-written when the process died
+    String done = ReportService.GST_CSV_HEADER + "row " + start + "\n";
+    Files.writeString(dir.resolve("report-job-9.csv"), done + "row 2026-03-0", StandardCharsets.UTF_8);
+    job.setChunksDone(1);
+    job.setNextDate(start.plusDays(1));
+    job.setArtifactBytes(done.getBytes(StandardCharsets.UTF_8).length);
+
+    ReportService reportService = mock(ReportService.class);
+    doAnswer(inv -> {
+      ((StringBuilder) inv.getArgument(0)).append("row ").append((LocalDate) inv.getArgument(1)).append("\n");
+      return null;
+    }).when(reportService).appendGstRows(any(), any(), any());
+
+    resume(job, reportService);
+    assertEquals(ReportService.GST_CSV_HEADER + "row 2026-03-01\nrow 2026-03-02\nrow 2026-03-03\n",
+        Files.readString(service.getArtifact(9L)));
+    verify(reportService, never()).appendGstRows(any(), eq(start), any());
+  }
+
+  @Test
+  void aSalesJobWritesEachDayAndTotalsWhatItWrote() throws Exception {
+    LocalDate start = LocalDate.now().minusDays(1); // Through today, which the day cache never holds
+    ReportJob job = new ReportJob();
+    job.setId(4L);
+    job.setJobType(ReportJobType.SALES);
+    job.setStatus(ReportJobStatus.RUNNING);
+    job.setStartDate(start);
+    job.setEndDate(start.plusDays(1));
+    job.setTotalChunks(2);
+
+    // Yesterday was written before a restart
+    String done = "{\"days\": [\n{\"day\":\"" + start + "\",\"sales\":{\"totalOrders\":5}}";
+    Files.writeString(dir.resolve("report-job-4.json"), done, StandardCharsets.UTF_8);
+    job.setChunksDone(1);
+    job.setNextDate(start.plusDays(1));
+    job.setArtifactBytes(done.getBytes(StandardCharsets.UTF_8).length);
+
+    ReportService reportService = mock(ReportService.class);
+    SalesFragment today = new SalesFragment();
+    today.setTotalOrders(3);
+    when(reportService.getDaySales(start.plusDays(1))).thenReturn(today);
+    when(reportService.salesReport(any(), any(), any())).thenAnswer(inv ->
+        Map.of("totalOrders", ((SalesFragment) inv.getArgument(0)).getTotalOrders()));
+
+    resume(job, reportService);
+    JsonNode artifact = new ObjectMapper().readTree(service.getArtifact(4L).toFile());
+    assertEquals(2, artifact.get("days").size());
+    assertEquals(3, artifact.get("days").get(1).get("sales").get("totalOrders").asLong());
+    assertEquals(8, artifact.get("report").get("totalOrders").asLong());
+    verify(reportService, never()).getDaySales(start);
+    verify(reportService, never()).getSalesReport(any(), any());
+  }
+
+  private void resume(ReportJob job, ReportService reportService) throws Exception {
+    ReportJobRepository repository = mock(ReportJobRepository.class);
+    when(repository.requeueInterrupted()).then(inv -> {
+      job.setStatus(ReportJobStatus.QUEUED);
+      return 1;
+    });
+    when(repository.findByStatusOrderByIdAsc(ReportJobStatus.QUEUED)).thenReturn(List.of(job));
+    when(repository.findById(job.getId())).thenReturn(Optional.of(job));
+    when(repository.save(any())).then(inv -> inv.getArgument(0));
+
+    AppProperties appProperties = new AppProperties();
+    appProperties.getReporting().setJobDirectory(dir.toString());
+    service = new ReportJobService(repository, reportService, mock(MenuItemService.class),
+        mock(ConnectionPools.class), mock(EventDispatcher.class), new ObjectMapper(), appProperties);
+    service.init();
+    service.resume();
+
+    for (int i = 0; i < 100 && job.getStatus() != ReportJobStatus.DONE; i++) {
+      Thread.sleep(50);
+    }
+    assertEquals(ReportJobStatus.DONE, job.getStatus());
+  }
+}
@@ -0,0 +1,69 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.config.ConnectionPools;
+import com.biryanipos.backend.exception.ServiceBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.*;
+
+class ReportingExecutorTest {
+
+  private ReportingExecutor executor;
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdown();
+  }
+
+  @Test
+  void aFullQueueIsRefusedUpFront() throws Exception {
+    AppProperties appProperties = new AppProperties();
+    appProperties.getReporting().setThreads(1);
+    appProperties.getReporting().setQueueCapacity(1);
+    executor = new ReportingExecutor(appProperties, mock(ConnectionPools.class));
+    executor.init();
+
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<Boolean> running = executor.submit("slow", () -> await(release));
+    CompletableFuture<Boolean> queued = executor.submit("queued", () -> true);
+    assertThrows(ServiceBusyException.class, () -> executor.submit("third", () -> true));
+
+    release.countDown();
+    assertTrue(running.get(5, TimeUnit.SECONDS));
+    assertTrue(queued.get(5, TimeUnit.SECONDS));
+    assertEquals(1L, executor.getStats().get("rejected"));
+  }
+
+  @Test
+  void reportsWaitForBillingAndAreShedIfItStaysBusy() {
+    AppProperties appProperties = new AppProperties();
+    appProperties.getReporting().setMaxHoldBackMs(0);
+    ConnectionPools pools = mock(ConnectionPools.class);
+    when(pools.isOltpBusy(anyDouble())).thenReturn(true);
+    executor = new ReportingExecutor(appProperties, pools);
+    executor.init();
+
+    CompletableFuture<Boolean> report = executor.submit("sales", () -> true);
+    ExecutionException e = assertThrows(ExecutionException.class, () -> report.get(5, TimeUnit.SECONDS));
+    assertInstanceOf(ServiceBusyException.class, e.getCause());
+    assertEquals(1L, executor.getStats().get("shed"));
+  }
+
+  private static boolean await(CountDownLatch latch) {
+    try {
+      return latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.config.ConnectionPools;
+import com.biryanipos.backend.dto.SalesCubeFilter;
+import com.biryanipos.backend.model.Order;
+import com.biryanipos.backend.model.OrderItem;
+import com.biryanipos.backend.model.OrderType;
+import com.biryanipos.backend.model.Payment;
+import com.biryanipos.backend.model.PaymentMode;
+import com.biryanipos.backend.repository.PaymentRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SalesCubeServiceTest {
+
+  @TempDir
+  Path dir;
+
+  private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+  private SalesCubeService cube;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    EventDispatcher eventDispatcher = mock(EventDispatcher.class);
+    doAnswer(inv -> {
+      ((Runnable) inv.getArgument(0)).run(); // As if committed
+      return null;
+    }).when(eventDispatcher).afterCommit(any());
+    AppProperties appProperties = new AppProperties();
+    appProperties.getReporting().setCacheDirectory(dir.toString());
+    cube = new SalesCubeService(paymentRepository, mock(ConnectionPools.class), eventDispatcher,
+        new ObjectMapper().findAndRegisterModules(), appProperties, mock(PlatformTransactionManager.class));
+    cube.init();
+  }
+
+  @AfterEach
+  void tearDown() {
+    cube.shutdown();
+  }
+
+  @Test
+  void aPaymentAlreadyReadByARebuildIsNotCountedTwice() {
+    LocalDate today = LocalDate.now();
+    List<Object[]> lines = new ArrayList<>();
+    lines.add(new Object[] { 13, OrderType.DINE_IN, PaymentMode.UPI, "Chicken Biryani", 2L, 500.0 });
+    List<Object[]> orders = new ArrayList<>();
+    orders.add(new Object[] { 13, OrderType.DINE_IN, PaymentMode.UPI, 1L, 525.0 });
+    when(paymentRepository.findCubeLinesBetween(any(), any())).thenReturn(lines);
+    when(paymentRepository.findCubeOrdersBetween(any(), any())).thenReturn(orders);
+    when(paymentRepository.findCompletedIdsBetween(any(), any())).thenReturn(List.of(7L));
+    cube.rebuild(today);
+
+    // Payment 7 committed before the rebuild read the day; 8 after it
+    cube.record(order("Chicken Biryani", 2), payment(7L, today.atTime(13, 5), 525.0));
+    cube.record(order("Chicken Biryani", 1), payment(8L, today.atTime(14, 10), 262.5));
+
+    List<Map<String, Object>> byItem = cube.query(today, today, List.of(SalesCubeService.Dimension.ITEM),
+        new SalesCubeFilter(), 0);
+    assertEquals(1, byItem.size());
+    assertEquals(3L, byItem.get(0).get("quantity"));
+    assertEquals(750.0, byItem.get(0).get("revenue"));
+    assertFalse(byItem.get(0).containsKey("orders"));
+
+    SalesCubeFilter afternoon = new SalesCubeFilter();
+    afternoon.setFromHour(14);
+    afternoon.setPaymentModes(Set.of(PaymentMode.UPI));
+    Map<String, Object> total = cube.query(today, today, List.of(), afternoon, 0).get(0);
+    assertEquals(1L, total.get("orders"));
+    assertEquals(262.5, total.get("billed"));
+  }
+
+  @Test
+  void aSeriesTooLongForItsBucketIsDownsampled() {
+    LocalDate today = LocalDate.now();
+    cube.record(order("Mutton Biryani", 1), payment(1L, today.atTime(12, 0), 320.0));
+
+    Map<String, Object> series = cube.series(today.minusDays(89), today, null, 100, new SalesCubeFilter());
+    assertEquals(SalesCubeService.Bucket.DAY, series.get("bucket"));
+    List<?> points = (List<?>) series.get("points");
+    assertEquals(90, points.size());
+    assertEquals(320.0, ((Map<?, ?>) points.get(89)).get("billed"));
+    assertEquals(0L, ((Map<?, ?>) points.get(0)).get("orders"));
+  }
+
+  private static Order order(String item, int quantity) {
+    OrderItem line = new OrderItem();
+    line.getSnapshot().setName(item);
+    line.setQuantity(quantity);
+    line.setPrice(250.0);
+    Order order = new Order();
+    order.setOrderType(OrderType.DINE_IN);
+    order.setItems(List.of(line));
+    return order;
+  }
+
+  private static Payment payment(Long id, LocalDateTime paidAt, double total) {
+    Payment payment = new Payment();
+    payment.setId(id);
+    payment.setPaidAt(paidAt);
+    payment.setPaymentMode(PaymentMode.UPI);
+    payment.setTotalAmount(total);
+    return payment;
+  }
+}
@@ -0,0 +1,90 @@
+package com.biryanipos.backend.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTest {
+
+  private ExecutorService executor;
+  private TimerWheel wheel;
+
+  @BeforeEach
+  void setUp() {
+    executor = Executors.newSingleThreadExecutor();
+    // 8 buckets of 5 ms: anything past 40 ms needs more than one revolution
+    wheel = new TimerWheel("test-wheel", 5, TimeUnit.MILLISECONDS, 8, executor);
+    wheel.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    wheel.stop();
+    executor.shutdownNow();
+  }
+
+  @Test
+  void thousandsOfTimersFireOnceNotEarlyAndCancelledOnesNever() throws Exception {
+    int count = 5000;
+    Map<Integer, Long> firedLate = new ConcurrentHashMap<>();
+    AtomicInteger duplicates = new AtomicInteger();
+    int cancelled = 0;
+    for (int i = 1; i < count; i += 2) {
+      cancelled += i % 150 >= 100 ? 1 : 0;
+    }
+    CountDownLatch done = new CountDownLatch(count - cancelled);
+    List<TimerWheel.Timeout> timeouts = new ArrayList<>();
+
+    for (int i = 0; i < count; i++) {
+      int id = i;
+      long delay = i % 150; // 0..149 ms: up to four revolutions
+      long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+      timeouts.add(wheel.schedule(() -> {
+        if (firedLate.put(id, System.nanoTime() - due) != null) {
+          duplicates.incrementAndGet();
+        }
+        done.countDown();
+      }, delay, TimeUnit.MILLISECONDS));
+    }
+    // Cancel the odd timers that are still at least 100 ms away
+    for (int i = 1; i < count; i += 2) {
+      if (i % 150 >= 100) {
+        assertTrue(timeouts.get(i).cancel());
+        assertFalse(timeouts.get(i).cancel());
+      }
+    }
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    Thread.sleep(200);
+    assertEquals(0, duplicates.get());
+    assertEquals(0, wheel.pendingCount());
+    for (int i = 0; i < count; i++) {
+      boolean expectCancelled = i % 2 == 1 && i % 150 >= 100;
+      assertEquals(!expectCancelled, firedLate.containsKey(i), "timer " + i);
+      assertEquals(!expectCancelled, timeouts.get(i).isExpired());
+    }
+    // Never early (small allowance for the clock read before scheduling)
+    assertTrue(firedLate.values().stream().allMatch(late -> late > -TimeUnit.MILLISECONDS.toNanos(1)));
+  }
+
+  @Test
+  void firedTimerCannotBeCancelled() throws Exception {
+    CountDownLatch fired = new CountDownLatch(1);
+    TimerWheel.Timeout timeout = wheel.schedule(fired::countDown, 0, TimeUnit.MILLISECONDS);
+    assertTrue(fired.await(1, TimeUnit.SECONDS));
+    assertTrue(timeout.isExpired());
+    assertFalse(timeout.cancel());
+  }
+}
@@ -0,0 +1,98 @@
+package com.biryanipos.backend.service;
+
+import com.biryanipos.backend.config.AppProperties;
+import com.biryanipos.backend.dto.TopSeller;
+import com.biryanipos.backend.model.Order;
+import com.biryanipos.backend.model.OrderItem;
+import com.biryanipos.backend.model.Payment;
+import com.biryanipos.backend.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TopSellerTrackerTest {
+
+  private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+  private final EventDispatcher eventDispatcher = mock(EventDispatcher.class);
+  private TopSellerTracker tracker;
+  private long nextPaymentId = 100;
+
+  @BeforeEach
+  void setUp() {
+    doAnswer(inv -> {
+      ((Runnable) inv.getArgument(0)).run(); // As if committed
+      return null;
+    }).when(eventDispatcher).afterCommit(any());
+    AppProperties appProperties = new AppProperties();
+    appProperties.getReporting().setTopSellerCounters(3);
+    tracker = new TopSellerTracker(paymentRepository, eventDispatcher, appProperties,
+        mock(PlatformTransactionManager.class));
+    tracker.init();
+  }
+
+  @Test
+  void aSmallSketchKeepsTheHeavyHittersAndPushesOnlyRankChanges() {
+    sell("Chicken Biryani", 10);
+    sell("Mutton Biryani", 5);
+    sell("Raita", 1);
+    sell("Kebab", 1); // No counter left: takes over Raita's and its count
+
+    List<TopSeller> top = tracker.top(TopSellerTracker.Window.TODAY, 4);
+    assertEquals(List.of("Chicken Biryani", "Mutton Biryani", "Kebab"), top.stream().map(TopSeller::getName).toList());
+    assertEquals(10, top.get(0).getQuantity());
+    assertEquals(0, top.get(0).getError());
+    assertEquals(2, top.get(2).getQuantity());
+    assertEquals(1, top.get(2).getError());
+    verify(eventDispatcher, atLeastOnce()).broadcast(eq("/topic/top-sellers"), any());
+
+    clearInvocations(eventDispatcher);
+    sell("Chicken Biryani", 1);
+    verify(eventDispatcher, never()).broadcast(any(), any());
+  }
+
+  @Test
+  void aPaymentAlreadyInTheFillIsNotCountedAgain() {
+    LocalDate today = LocalDate.now();
+    List<Object[]> rows = new ArrayList<>();
+    rows.add(new Object[] { "Chicken Biryani", 4L, 1000.0 });
+    when(paymentRepository.findItemSalesBetween(eq(today.atStartOfDay()), eq(today.plusDays(1).atStartOfDay()),
+        any())).thenReturn(rows);
+    when(paymentRepository.findCompletedIdsBetween(any(), any())).thenReturn(List.of(7L));
+    tracker.seed();
+
+    tracker.record(order("Chicken Biryani", 4), payment(7L)); // Committed just before the fill read
+    tracker.record(order("Chicken Biryani", 1), payment(8L));
+    assertEquals(5, tracker.top(TopSellerTracker.Window.TODAY, 1).get(0).getQuantity());
+  }
+
+  private void sell(String item, int quantity) {
+    tracker.record(order(item, quantity), payment(nextPaymentId++));
+  }
+
+  private static Order order(String item, int quantity) {
+    OrderItem line = new OrderItem();
+    line.getSnapshot().setName(item);
+    line.setQuantity(quantity);
+    line.setPrice(250.0);
+    Order order = new Order();
+    order.setItems(List.of(line));
+    return order;
+  }
+
+  private static Payment payment(Long id) {
+    Payment payment = new Payment();
+    payment.setId(id);
+    payment.setPaidAt(LocalDateTime.now());
+    return payment;
+  }
+}
@@ -0,0 +1,114 @@
+package com.biryanipos.backend.support;
+
+import com.biryanipos.backend.config.TracingDataSource;
+import com.biryanipos.backend.service.OrderLaneExecutor;
+import com.biryanipos.backend.service.RequestTrace;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Counts JDBC statements executed and rows read through a TracingDataSource.
+// Only work done on the measuring thread, or on an order lane it handed the
+// call to, is counted; scheduled jobs and after-commit dispatch are not, nor
+// lane work they hand off. A lane task carries its submitter's RequestTrace,
+// which is how the measured call's own lane work is told apart.
+public final class QueryCounter {
+
+  private static final AtomicLong statements = new AtomicLong();
+  private static final AtomicLong rows = new AtomicLong();
+  private static volatile Thread owner;
+  private static volatile RequestTrace ownerTrace;
+
+  private QueryCounter() {
+  }
+
+  public static final class Counts {
+    private final long statements;
+    private final long rows;
+
+    Counts(long statements, long rows) {
+      this.statements = statements;
+      this.rows = rows;
+    }
+
+    public long getStatements() {
+      return statements;
+    }
+
+    public long getRows() {
+      return rows;
+    }
+
+    @Override
+    public String toString() {
+      return statements + " statements, " + rows + " rows";
+    }
+  }
+
+  public static final class Measured<T> {
+    private final T result;
+    private final Counts counts;
+
+    Measured(T result, Counts counts) {
+      this.result = result;
+      this.counts = counts;
+    }
+
+    public T getResult() {
+      return result;
+    }
+
+    public Counts getCounts() {
+      return counts;
+    }
+  }
+
+  public static <T> Measured<T> measure(Supplier<T> call) {
+    statements.set(0);
+    rows.set(0);
+    RequestTrace trace = new RequestTrace();
+    RequestTrace previous = RequestTrace.attach(trace);
+    ownerTrace = trace;
+    owner = Thread.currentThread();
+    try {
+      T result = call.get();
+      return new Measured<>(result, new Counts(statements.get(), rows.get()));
+    } finally {
+      owner = null;
+      ownerTrace = null;
+      RequestTrace.attach(previous);
+    }
+  }
+
+  public static Counts measure(Runnable call) {
+    return measure(() -> {
+      call.run();
+      return null;
+    }).getCounts();
+  }
+
+  public static DataSource wrap(DataSource dataSource) {
+    return TracingDataSource.wrap(dataSource, new TracingDataSource.Listener() {
+      @Override
+      public void executed(String sql, long nanos) {
+        if (counting()) {
+          statements.incrementAndGet();
+        }
+      }
+
+      @Override
+      public void rowRead() {
+        if (counting()) {
+          rows.incrementAndGet();
+        }
+      }
+    });
+  }
+
+  private static boolean counting() {
+    Thread measuring = owner;
+    return measuring != null && (Thread.currentThread() == measuring
+        || OrderLaneExecutor.isOnLane() && RequestTrace.current() == ownerTrace);
+  }
+}
@@ -0,0 +1,23 @@
+package com.biryanipos.backend.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+
+// Import into a Spring test to route the application DataSource through
+// QueryCounter.
+@TestConfiguration(proxyBeanMethods = false)
+public class QueryCounterConfig {
+
+  @Bean
+  static BeanPostProcessor queryCountingDataSource() {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        return bean instanceof DataSource dataSource ? QueryCounter.wrap(dataSource) : bean;
+      }
+    };
+  }
+}
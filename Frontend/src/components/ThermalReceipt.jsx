@@ -72,7 +72,7 @@ const ThermalReceipt = ({ billData, calc }) => {
           <div className="info-grid">
             <div className="info-item">
               <span className="label">Bill No:</span>
-              <span className="value">{billData.orderId}</span>
+              <span className="value">{billData.invoiceNumber || billData.orderId}</span>
             </div>
             <div className="info-item text-right">
               <span className="label">Type:</span>
@@ -1,9 +1,9 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import { Link, useNavigate } from 'react-router-dom';
 import { jsPDF } from 'jspdf';
 import autoTable from 'jspdf-autotable';
 import { getOrders, getActiveOrders, processPayment, getBill, updateOrderStatus, getAvailableMenuItems, getActiveCategories, createOrder, getOrdersByDate, initiateDigitalPayment, verifyEasebuzzPayment } from '../service/api';
-import { connectWebSocket } from '../service/ws';
+import { connectWebSocket, applyItemChanges } from '../service/ws';
 import { useAuth } from '../context/AuthContext';
 import ThermalReceipt from '../components/ThermalReceipt';
 import { addPendingSync } from '../db';
@@ -49,6 +49,11 @@ function CounterPage() {
   const [customerPhone, setCustomerPhone] = useState('');
   const [showVariationModal, setShowVariationModal] = useState(null); // { item }
 
+  // Orders/payments answered with 202: the server saved them but the database has not confirmed yet.
+  // journalRef -> kind; outcomes that arrive before the 202 response are kept in journalOutcomes
+  const awaitingJournal = useRef({});
+  const journalOutcomes = useRef({});
+
   useEffect(() => {
     loadOrders();
     loadTakeawayData();
@@ -84,11 +89,51 @@ function CounterPage() {
       null, // No table updates for counter
       (alert) => {
         toast.error(alert, { duration: 6000 });
+      },
+      (outcome) => {
+        if (awaitingJournal.current[outcome.journalRef]) {
+          showJournalOutcome(outcome);
+        } else {
+          journalOutcomes.current[outcome.journalRef] = outcome;
+          const refs = Object.keys(journalOutcomes.current);
+          if (refs.length > 50) delete journalOutcomes.current[refs[0]];
+        }
+      },
+      null,
+      (event) => {
+        event.orders.filter(c => c.orderStatus === 'SERVED').forEach(c => {
+          toast.success(`💰 Order #${c.orderId} (Table ${c.tableNumber}) is DELIVERED. Ready for Payment!`, {
+            duration: 7000,
+            icon: '💵'
+          });
+        });
+        setOrders(prev => applyItemChanges(prev, event));
+        setAllOrders(prev => applyItemChanges(prev, event));
       }
     );
     return () => { if (stompClient) stompClient.deactivate(); };
   }, []);
 
+  const awaitJournal = (receipt) => {
+    const early = journalOutcomes.current[receipt.journalRef];
+    awaitingJournal.current[receipt.journalRef] = receipt.kind;
+    if (early) {
+      delete journalOutcomes.current[receipt.journalRef];
+      showJournalOutcome(early);
+    }
+  };
+
+  const showJournalOutcome = (outcome) => {
+    delete awaitingJournal.current[outcome.journalRef];
+    const what = outcome.kind === 'PAYMENT' ? 'Payment' : 'Order';
+    if (outcome.status === 'APPLIED') {
+      toast.success(`${what} for Order #${outcome.orderId} confirmed by the server.`, { duration: 6000 });
+    } else {
+      toast.error(`${what} could not be saved: ${outcome.error}`, { duration: 8000 });
+    }
+    loadOrders();
+  };
+
 
   useEffect(() => {
     const { total } = calculateBill();
@@ -317,7 +362,17 @@ function CounterPage() {
         return;
       }
 
-      await processPayment(payload);
+      const paymentRes = await processPayment(payload);
+      if (paymentRes.status === 202) {
+        // Saved on the server; the outcome arrives on /topic/journal
+        awaitJournal(paymentRes.data);
+        toast('Payment saved. Waiting for the database to confirm it…', { icon: '⏳', duration: 6000 });
+        setSelectedOrder(null);
+        setBillData(null);
+        setView('pending');
+        setLoading(false);
+        return;
+      }
 
       // IMPORTANT: Fetch the finalized bill data AFTER payment to include payment breakdown/modes
       let finalBillRes;
@@ -395,10 +450,18 @@ function CounterPage() {
         items: orderItems
       });
 
-      toast.success('Takeaway order created!');
       setCart({});
       setCustomerName('');
       setCustomerPhone('');
+      if (res.status === 202) {
+        // Saved on the server; it shows up in the pending list once the database confirms it
+        awaitJournal(res.data);
+        toast('Takeaway order saved. It will appear for billing once the database confirms it.',
+          { icon: '⏳', duration: 6000 });
+        setLoading(false);
+        return;
+      }
+      toast.success('Takeaway order created!');
       loadOrders();
 
       // Auto-select for billing
@@ -1144,8 +1207,9 @@ function CounterPage() {
                       selectedOrder.items?.forEach(i => {
                         const key = i.variationId ? `${i.menuItem.id}-${i.variationId}` : `${i.menuItem.id}`;
                         newCart[key] = {
-                          item: i.menuItem,
-                          variation: i.variationId ? i.menuItem.variations?.find(v => v.id === i.variationId) : null,
+                          // Current menu entry when listed; i.menuItem.price is the menu price, not this line's
+                          item: menuItems.find(m => m.id === i.menuItem.id) || i.menuItem,
+                          variation: i.variationId ? { id: i.variationId, name: i.variationName, price: i.price } : null,
                           qty: i.quantity
                         };
                       });
@@ -1,7 +1,7 @@
 import React, { useState, useEffect, useRef } from 'react';
 import { Link } from 'react-router-dom';
-import { getKitchenOrders, updateOrderStatus, extendOrderTime, getOrdersByDate } from '../service/api';
-import { connectWebSocket } from '../service/ws';
+import { getKitchenOrders, getOrderEtas, updateOrderStatus, extendOrderTime, getOrdersByDate } from '../service/api';
+import { connectWebSocket, applyItemChanges } from '../service/ws';
 import { useAuth } from '../context/AuthContext';
 import { toast } from 'react-hot-toast';
 import './KitchenPage.css';
@@ -14,6 +14,16 @@ function KitchenPage() {
   const audioRef = useRef(null);
 
   const mutedRef = useRef(muted);
+  // Ready times re-projected by the kitchen model; they are not written to the orders
+  const etasRef = useRef({});
+
+  const withEta = (order) => etasRef.current[order.id]
+    ? { ...order, estimatedReadyTime: etasRef.current[order.id] } : order;
+
+  const applyEtas = (changes) => {
+    changes.forEach(c => { etasRef.current[c.orderId] = c.estimatedReadyTime; });
+    setOrders(prev => prev.map(withEta));
+  };
 
   useEffect(() => {
     mutedRef.current = muted;
@@ -37,7 +47,7 @@ function KitchenPage() {
         }
         if (idx !== -1) {
           const updated = [...prev];
-          updated[idx] = order;
+          updated[idx] = withEta(order);
           return updated;
         }
         // New order
@@ -50,8 +60,11 @@ function KitchenPage() {
             audioRef.current.play().catch(() => { });
           }
         }
-        return [order, ...prev];
+        return [withEta(order), ...prev];
       });
+    }, null, null, null, applyEtas, (event) => {
+      if (event.orders.some(c => c.orderStatus === 'SERVED')) refreshDailyCount();
+      setOrders(prev => applyItemChanges(prev, event));
     });
     return () => { if (stompClient) stompClient.deactivate(); };
   }, []);
@@ -67,8 +80,9 @@ function KitchenPage() {
 
   const loadOrders = async () => {
     try {
-      const res = await getKitchenOrders();
-      setOrders(res.data);
+      const [res, etaRes] = await Promise.all([getKitchenOrders(), getOrderEtas()]);
+      etasRef.current = { ...etaRes.data };
+      setOrders(res.data.map(withEta));
       refreshDailyCount();
     } catch (err) {
       console.error('Failed to load kitchen orders:', err);
@@ -90,6 +104,7 @@ function KitchenPage() {
   const handleExtendTime = async (id, minutes) => {
     try {
       const res = await extendOrderTime(id, minutes);
+      delete etasRef.current[id]; // The extended time stands until the next projection
       setOrders(prev => prev.map(o => o.id === id ? res.data : o));
     } catch (err) {
       console.error('Failed to extend time:', err);
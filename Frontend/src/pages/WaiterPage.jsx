@@ -1,7 +1,7 @@
 import React, { useState, useEffect, useMemo } from 'react';
 import { Link, useNavigate } from 'react-router-dom';
 import { getAvailableMenuItems, createOrder, addItemsToOrder, getActiveOrders, getTables, getActiveCategories } from '../service/api';
-import { connectWebSocket } from '../service/ws';
+import { connectWebSocket, applyItemChanges } from '../service/ws';
 import { addPendingSync } from '../db';
 import { useAuth } from '../context/AuthContext';
 import { useConfig } from '../context/ConfigContext';
@@ -58,6 +58,17 @@ function WaiterPage() {
       },
       (alert) => {
         toast.error(alert, { duration: 6000 });
+      },
+      null,
+      null,
+      (event) => {
+        event.orders.filter(c => c.orderStatus === 'READY').forEach(c => {
+          toast.success(`🍽️ Order #${c.orderId} for Table ${c.tableNumber} is READY!`, {
+            duration: 5000,
+            icon: '🔥'
+          });
+        });
+        setActiveOrders(prev => applyItemChanges(prev, event));
       }
     );
     return () => { if (stompClient) stompClient.deactivate(); };
@@ -179,7 +190,7 @@ function WaiterPage() {
         await addItemsToOrder(existingOrder.id, orderItems);
         toast.success(`Items added to Order #${existingOrder.id}!`);
       } else {
-        await createOrder({
+        const res = await createOrder({
           customerName,
           customerPhone,
           tableNumber: orderType === 'DINE_IN' ? selectedTable : 'TAKEAWAY',
@@ -187,7 +198,12 @@ function WaiterPage() {
           createdBy: 'Waiter',
           items: orderItems
         });
-        toast.success('Order placed successfully!');
+        if (res.status === 202) {
+          // Saved on the server; the kitchen gets it once the database confirms it
+          toast('Order saved. It will reach the kitchen once the server confirms it.', { icon: '⏳' });
+        } else {
+          toast.success('Order placed successfully!');
+        }
       }
 
       setCart({});
@@ -64,6 +64,7 @@ export const createOrder = (order) => api.post('/orders', order);
 export const getOrders = () => api.get('/orders');
 export const getActiveOrders = () => api.get('/orders/active');
 export const getKitchenOrders = () => api.get('/orders/kitchen');
+export const getOrderEtas = () => api.get('/orders/eta');
 export const getOrderById = (id) => api.get(`/orders/${id}`);
 export const updateOrderStatus = (id, status) => api.put(`/orders/${id}/status?status=${status}`);
 export const addItemsToOrder = (id, items) => api.post(`/orders/${id}/items`, items);
@@ -3,7 +3,20 @@ import SockJS from 'sockjs-client';
 
 const SOCKET_URL = `http://${window.location.hostname}:8080/ws`;
 
-export const connectWebSocket = (onOrderReceived, onTableUpdate, onStockAlert) => {
+// Applies a /topic/orders/items event to orders a screen holds: the listed lines
+// take the new status and each order its status after the change
+export const applyItemChanges = (orders, event) => orders.map(o => {
+  const change = event.orders.find(c => c.orderId === o.id);
+  if (!change) return o;
+  return {
+    ...o,
+    status: change.orderStatus,
+    items: o.items?.map(i => change.itemIds.includes(i.id) ? { ...i, status: event.status } : i),
+  };
+});
+
+export const connectWebSocket = (onOrderReceived, onTableUpdate, onStockAlert, onJournalOutcome, onEtaUpdate,
+  onItemsChanged) => {
   const client = new Client({
     webSocketFactory: () => new SockJS(SOCKET_URL),
     onConnect: () => {
@@ -20,6 +33,18 @@ export const connectWebSocket = (onOrderReceived, onTableUpdate, onStockAlert) =
       client.subscribe('/topic/stock/alerts', (message) => {
         if (onStockAlert) onStockAlert(message.body);
       });
+      // Outcome of an order/payment that was answered with 202 (saved, database not confirmed yet)
+      if (onJournalOutcome) {
+        client.subscribe('/topic/journal', (message) => onJournalOutcome(JSON.parse(message.body)));
+      }
+      // Re-projected ready times: [{ orderId, estimatedReadyTime }], not written to the orders
+      if (onEtaUpdate) {
+        client.subscribe('/topic/orders/eta', (message) => onEtaUpdate(JSON.parse(message.body)));
+      }
+      // Many lines changed at once (bulk status); no full orders follow
+      if (onItemsChanged) {
+        client.subscribe('/topic/orders/items', (message) => onItemsChanged(JSON.parse(message.body)));
+      }
     },
     onStompError: (frame) => {
       console.error('Broker reported error: ' + frame.headers['message']);